@@ -0,0 +1,65 @@
+/*
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * "The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations under
+ * the License.
+ *
+ * The Original Code is ICEpdf 3.0 open source software code, released
+ * May 1st, 2009. The Initial Developer of the Original Code is ICEsoft
+ * Technologies Canada, Corp. Portions created by ICEsoft are Copyright (C)
+ * 2004-2009 ICEsoft Technologies Canada, Corp. All Rights Reserved.
+ *
+ * Contributor(s): _____________________.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"
+ * License), in which case the provisions of the LGPL License are
+ * applicable instead of those above. If you wish to allow use of your
+ * version of this file only under the terms of the LGPL License and not to
+ * allow others to use your version of this file under the MPL, indicate
+ * your decision by deleting the provisions above and replace them with
+ * the notice and other provisions required by the LGPL License. If you do
+ * not delete the provisions above, a recipient may use your version of
+ * this file under either the MPL or the LGPL License."
+ *
+ */
+package org.icepdf.core;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * <p>Page image callback receives the images of a batch of pages rendered by
+ * {@link org.icepdf.core.pobjects.Document#renderPages}.  The pages are
+ * rendered on several threads, depending on the order requested the callback
+ * is called in page order, one page at a time, or as soon as each page is
+ * finished, possibly from several threads at once.</p>
+ *
+ * @since 3.1
+ */
+public interface PageImageCallback {
+
+    /**
+     * Called when a page has been rendered.  The image's raster is reused
+     * for a following page once this method returns, so the image must be
+     * encoded or copied before returning.
+     *
+     * @param pageNumber zero-based page number of the page.
+     * @param image      image of the page.
+     */
+    public void pageRendered(int pageNumber, BufferedImage image);
+
+    /**
+     * Called when a page could not be rendered.
+     *
+     * @param pageNumber zero-based page number of the page.
+     * @param error      cause of the failure.
+     */
+    public void pageFailed(int pageNumber, Throwable error);
+}
@@ -0,0 +1,142 @@
+/*
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * "The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations under
+ * the License.
+ *
+ * The Original Code is ICEpdf 3.0 open source software code, released
+ * May 1st, 2009. The Initial Developer of the Original Code is ICEsoft
+ * Technologies Canada, Corp. Portions created by ICEsoft are Copyright (C)
+ * 2004-2009 ICEsoft Technologies Canada, Corp. All Rights Reserved.
+ *
+ * Contributor(s): _____________________.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"
+ * License), in which case the provisions of the LGPL License are
+ * applicable instead of those above. If you wish to allow use of your
+ * version of this file only under the terms of the LGPL License and not to
+ * allow others to use your version of this file under the MPL, indicate
+ * your decision by deleting the provisions above and replace them with
+ * the notice and other provisions required by the LGPL License. If you do
+ * not delete the provisions above, a recipient may use your version of
+ * this file under either the MPL or the LGPL License."
+ *
+ */
+package org.icepdf.core.io;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A SeekableInput backed by a FileChannel which only ever does positional
+ * reads.  Unlike {@link RandomAccessFileInputStream}, there is no single
+ * Thread that owns the file; every Thread gets its own buffered cursor, so
+ * many Threads can load objects from the same Document in parallel.
+ *
+ * @since 3.1
+ */
+public class FileChannelInputStream extends PositionalSeekableInput {
+
+    private static final Logger logger =
+            Logger.getLogger(FileChannelInputStream.class.toString());
+
+    public static FileChannelInputStream build(File file)
+            throws FileNotFoundException {
+        ChannelReader reader = new ChannelReader(file);
+        return new FileChannelInputStream(reader);
+    }
+
+    protected FileChannelInputStream(ChannelReader channelReader) {
+        super(channelReader);
+    }
+
+
+    /**
+     * Does the actual positional reads against the file's channel.
+     */
+    protected static class ChannelReader implements PositionalInput, Closeable {
+
+        private File file;
+        private long length;
+        private RandomAccessFile randomAccessFile;
+        private volatile FileChannel channel;
+        private volatile boolean closed;
+
+        protected ChannelReader(File file) throws FileNotFoundException {
+            this.file = file;
+            randomAccessFile = new RandomAccessFile(file, "r");
+            channel = randomAccessFile.getChannel();
+            length = file.length();
+        }
+
+        public int read(long position, byte[] buffer, int offset, int length)
+                throws IOException {
+            if (position >= this.length)
+                return -1;
+            try {
+                return readFully(channel, position, buffer, offset, length);
+            }
+            catch (ClosedByInterruptException e) {
+                // An interrupted reader closes the channel for everyone,
+                // so reopen it, and let the interrupted Thread carry on.
+                Thread.interrupted();
+                reopen();
+                Thread.currentThread().interrupt();
+                return readFully(channel, position, buffer, offset, length);
+            }
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        private int readFully(FileChannel fileChannel, long position,
+                              byte[] buffer, int offset, int length)
+                throws IOException {
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, offset, length);
+            int total = 0;
+            while (byteBuffer.hasRemaining()) {
+                int read = fileChannel.read(byteBuffer, position + total);
+                if (read < 0)
+                    break;
+                total += read;
+            }
+            return (total == 0 && length > 0) ? -1 : total;
+        }
+
+        private synchronized void reopen() throws IOException {
+            if (closed)
+                throw new IOException("Stream closed");
+            if (channel.isOpen())
+                return;
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine("Reopening channel closed by interrupt: " + file);
+            }
+            try {
+                randomAccessFile.close();
+            }
+            catch (IOException e) {
+                logger.log(Level.FINE, "Error closing interrupted channel.", e);
+            }
+            randomAccessFile = new RandomAccessFile(file, "r");
+            channel = randomAccessFile.getChannel();
+        }
+
+        public synchronized void close() throws IOException {
+            closed = true;
+            randomAccessFile.close();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * "The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations under
+ * the License.
+ *
+ * The Original Code is ICEpdf 3.0 open source software code, released
+ * May 1st, 2009. The Initial Developer of the Original Code is ICEsoft
+ * Technologies Canada, Corp. Portions created by ICEsoft are Copyright (C)
+ * 2004-2009 ICEsoft Technologies Canada, Corp. All Rights Reserved.
+ *
+ * Contributor(s): _____________________.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"
+ * License), in which case the provisions of the LGPL License are
+ * applicable instead of those above. If you wish to allow use of your
+ * version of this file only under the terms of the LGPL License and not to
+ * allow others to use your version of this file under the MPL, indicate
+ * your decision by deleting the provisions above and replace them with
+ * the notice and other provisions required by the LGPL License. If you do
+ * not delete the provisions above, a recipient may use your version of
+ * this file under either the MPL or the LGPL License."
+ *
+ */
+package org.icepdf.core.io;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * RangeFetcher for a local file, mostly useful as a stand in for a remote
+ * source when testing progressive loading.
+ *
+ * @since 3.1
+ */
+public class FileRangeFetcher implements RangeFetcher {
+
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private long length;
+
+    public FileRangeFetcher(File file) throws FileNotFoundException {
+        randomAccessFile = new RandomAccessFile(file, "r");
+        channel = randomAccessFile.getChannel();
+        length = file.length();
+    }
+
+    public int read(long position, byte[] buffer, int offset, int length)
+            throws IOException {
+        if (position >= this.length)
+            return -1;
+        return channel.read(ByteBuffer.wrap(buffer, offset, length), position);
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public boolean isLengthKnown() {
+        return true;
+    }
+
+    public void close() throws IOException {
+        randomAccessFile.close();
+    }
+}
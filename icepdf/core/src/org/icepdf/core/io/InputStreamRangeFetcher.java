@@ -0,0 +1,190 @@
+/*
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * "The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations under
+ * the License.
+ *
+ * The Original Code is ICEpdf 3.0 open source software code, released
+ * May 1st, 2009. The Initial Developer of the Original Code is ICEsoft
+ * Technologies Canada, Corp. Portions created by ICEsoft are Copyright (C)
+ * 2004-2009 ICEsoft Technologies Canada, Corp. All Rights Reserved.
+ *
+ * Contributor(s): _____________________.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"
+ * License), in which case the provisions of the LGPL License are
+ * applicable instead of those above. If you wish to allow use of your
+ * version of this file only under the terms of the LGPL License and not to
+ * allow others to use your version of this file under the MPL, indicate
+ * your decision by deleting the provisions above and replace them with
+ * the notice and other provisions required by the LGPL License. If you do
+ * not delete the provisions above, a recipient may use your version of
+ * this file under either the MPL or the LGPL License."
+ *
+ */
+package org.icepdf.core.io;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * RangeFetcher for a sequential InputStream, such as a download.  The
+ * stream is read exactly once, by a background Thread, into a spool file,
+ * and reads of a range block only until that range has arrived.  Unlike
+ * copying the whole stream before parsing, the Document can start on the
+ * beginning of the file, which for a linearized file holds everything
+ * needed to show the first page, while the rest is still arriving.
+ *
+ * @since 3.1
+ */
+public class InputStreamRangeFetcher implements RangeFetcher, Runnable {
+
+    private static final Logger logger =
+            Logger.getLogger(InputStreamRangeFetcher.class.toString());
+
+    private InputStream in;
+    private RandomAccessFile spool;
+    private FileChannel spoolChannel;
+
+    // guarded by this
+    private long arrived;
+    private boolean complete;
+    private boolean closed;
+    private IOException error;
+
+    /**
+     * Creates a new fetcher and starts reading the stream in the background.
+     *
+     * @param in        stream of document data, closed once fully read.
+     * @param spoolFile file which receives the data as it arrives.
+     * @throws IOException if the spool file can not be created.
+     */
+    public InputStreamRangeFetcher(InputStream in, File spoolFile)
+            throws IOException {
+        this.in = in;
+        spool = new RandomAccessFile(spoolFile, "rw");
+        spool.setLength(0);
+        spoolChannel = spool.getChannel();
+        Thread reader = new Thread(this, "ICEpdf-progressive-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public void run() {
+        byte[] buffer = new byte[32 * 1024];
+        try {
+            while (true) {
+                int read = in.read(buffer, 0, buffer.length);
+                if (read < 0)
+                    break;
+                if (read == 0)
+                    continue;
+                synchronized (this) {
+                    if (closed)
+                        return;
+                    spoolChannel.write(ByteBuffer.wrap(buffer, 0, read), arrived);
+                    arrived += read;
+                    notifyAll();
+                }
+            }
+        }
+        catch (IOException e) {
+            synchronized (this) {
+                if (!closed) {
+                    logger.log(Level.FINE, "Error reading progressive stream.", e);
+                    error = e;
+                }
+            }
+        }
+        finally {
+            try {
+                in.close();
+            }
+            catch (IOException e) {
+                logger.log(Level.FINE, "Error closing progressive stream.", e);
+            }
+            synchronized (this) {
+                complete = true;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits for the given position to arrive, or for the stream to end.
+     */
+    private synchronized long waitFor(long position) throws IOException {
+        while (arrived <= position && !complete && !closed) {
+            try {
+                wait();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(
+                        "Interrupted waiting for progressive data");
+            }
+        }
+        if (closed)
+            throw new IOException("Stream closed");
+        if (error != null && arrived <= position)
+            throw error;
+        return arrived;
+    }
+
+    public int read(long position, byte[] buffer, int offset, int length)
+            throws IOException {
+        if (length == 0)
+            return 0;
+        long available = waitFor(position);
+        if (position >= available)
+            return -1;
+        length = (int) Math.min((long) length, available - position);
+        // only the arrived, and so immutable, part of the spool is read
+        return spoolChannel.read(ByteBuffer.wrap(buffer, offset, length), position);
+    }
+
+    public long getLength() throws IOException {
+        waitFor(Long.MAX_VALUE);
+        synchronized (this) {
+            return arrived;
+        }
+    }
+
+    public synchronized boolean isLengthKnown() {
+        return complete;
+    }
+
+    /**
+     * @return number of bytes which have arrived so far.
+     */
+    public synchronized long getArrivedLength() {
+        return arrived;
+    }
+
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+            notifyAll();
+        }
+        try {
+            // unblocks the reading Thread, if it's waiting on the stream
+            in.close();
+        }
+        finally {
+            spool.close();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * "The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations under
+ * the License.
+ *
+ * The Original Code is ICEpdf 3.0 open source software code, released
+ * May 1st, 2009. The Initial Developer of the Original Code is ICEsoft
+ * Technologies Canada, Corp. Portions created by ICEsoft are Copyright (C)
+ * 2004-2009 ICEsoft Technologies Canada, Corp. All Rights Reserved.
+ *
+ * Contributor(s): _____________________.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"
+ * License), in which case the provisions of the LGPL License are
+ * applicable instead of those above. If you wish to allow use of your
+ * version of this file only under the terms of the LGPL License and not to
+ * allow others to use your version of this file under the MPL, indicate
+ * your decision by deleting the provisions above and replace them with
+ * the notice and other provisions required by the LGPL License. If you do
+ * not delete the provisions above, a recipient may use your version of
+ * this file under either the MPL or the LGPL License."
+ *
+ */
+package org.icepdf.core.io;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A SeekableInput over a memory mapped file.  The file is mapped read only
+ * in segments of at most {@link #SEGMENT_SIZE} bytes, so files larger than
+ * 2GB can be read, and every read is served from the operating system's
+ * page cache without a system call or any copying into a Java buffer.
+ * <p/>
+ * Like {@link FileChannelInputStream}, each Thread has its own cursor, so
+ * {@link #beginThreadAccess()} and {@link #endThreadAccess()} never block.
+ * Note that Java can not explicitly unmap a file, the mapping is released
+ * when the segments are garbage collected after {@link #close()}.
+ *
+ * @since 3.1
+ */
+public class MappedFileInputStream extends InputStream
+        implements SeekableInput, PositionalInput {
+
+    // 1GB segments keep every index within a segment a positive int
+    private static final int SEGMENT_SHIFT = 30;
+    public static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private volatile ByteBuffer[] segments;
+    private long length;
+    private ThreadLocal<Cursor> cursors;
+
+    public static MappedFileInputStream build(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long length = channel.size();
+            int count = (int) ((length + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+            ByteBuffer[] segments = new ByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long start = ((long) i) << SEGMENT_SHIFT;
+                long size = Math.min(SEGMENT_SIZE, length - start);
+                MappedByteBuffer segment = channel.map(
+                        FileChannel.MapMode.READ_ONLY, start, size);
+                segments[i] = segment;
+            }
+            return new MappedFileInputStream(segments, length);
+        }
+        finally {
+            // the mapping stays valid after the channel is closed
+            raf.close();
+        }
+    }
+
+    protected MappedFileInputStream(ByteBuffer[] segments, long length) {
+        super();
+        this.segments = segments;
+        this.length = length;
+        cursors = new ThreadLocal<Cursor>() {
+            protected Cursor initialValue() {
+                return new Cursor();
+            }
+        };
+    }
+
+    private ByteBuffer[] getSegments() throws IOException {
+        ByteBuffer[] mapped = segments;
+        if (mapped == null)
+            throw new IOException("Stream closed");
+        return mapped;
+    }
+
+
+    //
+    // InputStream overrides
+    //
+
+    public int read() throws IOException {
+        Cursor cursor = cursors.get();
+        long position = cursor.position;
+        if (position >= length)
+            return -1;
+        ByteBuffer segment = getSegments()[(int) (position >>> SEGMENT_SHIFT)];
+        cursor.position = position + 1;
+        return segment.get((int) (position & SEGMENT_MASK)) & 0xFF;
+    }
+
+    public int read(byte[] buffer) throws IOException {
+        return read(buffer, 0, buffer.length);
+    }
+
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        Cursor cursor = cursors.get();
+        int read = read(cursor.position, buffer, offset, length);
+        if (read > 0)
+            cursor.position += read;
+        return read;
+    }
+
+    public void close() throws IOException {
+        cursors.remove();
+        segments = null;
+    }
+
+    public int available() {
+        return 0;
+    }
+
+    public void mark(int readLimit) {
+        Cursor cursor = cursors.get();
+        cursor.mark = cursor.position;
+    }
+
+    public boolean markSupported() {
+        return true;
+    }
+
+    public void reset() throws IOException {
+        Cursor cursor = cursors.get();
+        cursor.position = cursor.mark;
+    }
+
+    public long skip(long n) throws IOException {
+        Cursor cursor = cursors.get();
+        long remain = length - cursor.position;
+        if (n <= 0 || remain <= 0)
+            return 0;
+        n = Math.min(remain, n);
+        cursor.position += n;
+        return n;
+    }
+
+
+    //
+    // SeekableInput implementation
+    //  (which are not already covered by InputStream overrides)
+    //
+
+    public void seekAbsolute(long absolutePosition) throws IOException {
+        cursors.get().position = (absolutePosition < 0L) ? 0L : absolutePosition;
+    }
+
+    public void seekRelative(long relativeOffset) throws IOException {
+        Cursor cursor = cursors.get();
+        long pos = cursor.position + relativeOffset;
+        cursor.position = (pos < 0L) ? 0L : pos;
+    }
+
+    public void seekEnd() throws IOException {
+        cursors.get().position = length;
+    }
+
+    public long getAbsolutePosition() throws IOException {
+        return cursors.get().position;
+    }
+
+    public long getLength() throws IOException {
+        return length;
+    }
+
+    public InputStream getInputStream() {
+        return this;
+    }
+
+    /**
+     * Each Thread has its own cursor, so there is no owner to wait for.
+     */
+    public void beginThreadAccess() {
+    }
+
+    public void endThreadAccess() {
+    }
+
+
+    //
+    // PositionalInput implementation
+    //
+
+    public int read(long position, byte[] buffer, int offset, int length)
+            throws IOException {
+        if (length == 0)
+            return 0;
+        if (position < 0L || position >= this.length)
+            return -1;
+        ByteBuffer[] mapped = getSegments();
+        length = (int) Math.min((long) length, this.length - position);
+        int total = 0;
+        // a read may straddle the boundary between two segments
+        while (total < length) {
+            // a duplicate has its own position, so other Threads aren't affected
+            ByteBuffer segment =
+                    mapped[(int) (position >>> SEGMENT_SHIFT)].duplicate();
+            int index = (int) (position & SEGMENT_MASK);
+            int count = Math.min(length - total, segment.limit() - index);
+            segment.position(index);
+            segment.get(buffer, offset + total, count);
+            total += count;
+            position += count;
+        }
+        return total;
+    }
+
+    /**
+     * A Thread's private position and mark.
+     */
+    private static class Cursor {
+        long position;
+        long mark;
+    }
+}
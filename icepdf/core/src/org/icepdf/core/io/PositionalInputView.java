@@ -0,0 +1,193 @@
+/*
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * "The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations under
+ * the License.
+ *
+ * The Original Code is ICEpdf 3.0 open source software code, released
+ * May 1st, 2009. The Initial Developer of the Original Code is ICEsoft
+ * Technologies Canada, Corp. Portions created by ICEsoft are Copyright (C)
+ * 2004-2009 ICEsoft Technologies Canada, Corp. All Rights Reserved.
+ *
+ * Contributor(s): _____________________.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"
+ * License), in which case the provisions of the LGPL License are
+ * applicable instead of those above. If you wish to allow use of your
+ * version of this file only under the terms of the LGPL License and not to
+ * allow others to use your version of this file under the MPL, indicate
+ * your decision by deleting the provisions above and replace them with
+ * the notice and other provisions required by the LGPL License. If you do
+ * not delete the provisions above, a recipient may use your version of
+ * this file under either the MPL or the LGPL License."
+ *
+ */
+package org.icepdf.core.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A buffered InputStream cursor over a window of a {@link PositionalInput}.
+ * Every view has its own position, mark and buffer, so many views of the
+ * same PositionalInput can be read by different Threads at the same time
+ * without any locking.  A view itself is not thread safe and should only
+ * be used by one Thread at a time.
+ *
+ * @since 3.1
+ */
+public class PositionalInputView extends InputStream {
+
+    private static final int DEFAULT_BUFFER_SIZE = 4096;
+
+    private PositionalInput input;
+    private long viewOffset;
+    private long viewLength;
+
+    // position and mark, relative to viewOffset
+    private long position;
+    private long markPosition;
+
+    // read ahead buffer, bufferStart is relative to viewOffset
+    private byte[] buffer;
+    private long bufferStart;
+    private int bufferLength;
+
+    public PositionalInputView(PositionalInput in, long offset, long length) {
+        this(in, offset, length, DEFAULT_BUFFER_SIZE);
+    }
+
+    public PositionalInputView(PositionalInput in, long offset, long length,
+                               int bufferSize) {
+        input = in;
+        viewOffset = offset;
+        viewLength = length;
+        buffer = new byte[Math.max(16, bufferSize)];
+    }
+
+    public int read() throws IOException {
+        if (position >= viewLength)
+            return -1;
+        if (position < bufferStart || position >= bufferStart + bufferLength) {
+            if (fill() <= 0)
+                return -1;
+        }
+        int b = buffer[(int) (position - bufferStart)] & 0xFF;
+        position++;
+        return b;
+    }
+
+    public int read(byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+    public int read(byte[] b, int offset, int length) throws IOException {
+        if (length == 0)
+            return 0;
+        long remain = viewLength - position;
+        if (remain <= 0)
+            return -1;
+        length = (int) Math.min(remain, (long) length);
+
+        // satisfy what we can from the buffer first
+        if (position >= bufferStart && position < bufferStart + bufferLength) {
+            int available = (int) (bufferStart + bufferLength - position);
+            int count = Math.min(available, length);
+            System.arraycopy(buffer, (int) (position - bufferStart), b, offset, count);
+            position += count;
+            return count;
+        }
+        // large reads go straight to the input
+        if (length >= buffer.length) {
+            int read = input.read(viewOffset + position, b, offset, length);
+            if (read > 0)
+                position += read;
+            return read;
+        }
+        if (fill() <= 0)
+            return -1;
+        int count = Math.min(bufferLength, length);
+        System.arraycopy(buffer, 0, b, offset, count);
+        position += count;
+        return count;
+    }
+
+    public long skip(long n) throws IOException {
+        if (n <= 0)
+            return 0;
+        long remain = viewLength - position;
+        if (remain <= 0)
+            return 0;
+        n = Math.min(remain, n);
+        position += n;
+        return n;
+    }
+
+    public int available() {
+        long remain = viewLength - position;
+        if (remain <= 0)
+            return 0;
+        return (int) Math.min(remain, (long) Integer.MAX_VALUE);
+    }
+
+    public void mark(int readLimit) {
+        markPosition = position;
+    }
+
+    public boolean markSupported() {
+        return true;
+    }
+
+    public void reset() throws IOException {
+        position = markPosition;
+    }
+
+    public void close() throws IOException {
+        // the PositionalInput is shared, so only our own state is released
+        bufferLength = 0;
+    }
+
+    /**
+     * Moves the cursor to the given position, relative to the start of the
+     * view.  It's alright to seek beyond the end, reads will just return -1.
+     *
+     * @param newPosition new position, clamped to zero if negative
+     */
+    public void seek(long newPosition) {
+        position = (newPosition < 0L) ? 0L : newPosition;
+    }
+
+    /**
+     * @return the cursor position, relative to the start of the view
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * @return the number of bytes in the view
+     */
+    public long getLength() {
+        return viewLength;
+    }
+
+    private int fill() throws IOException {
+        bufferStart = position;
+        bufferLength = 0;
+        int length = (int) Math.min((long) buffer.length, viewLength - position);
+        if (length <= 0)
+            return -1;
+        int read = input.read(viewOffset + position, buffer, 0, length);
+        if (read > 0)
+            bufferLength = read;
+        return read;
+    }
+}
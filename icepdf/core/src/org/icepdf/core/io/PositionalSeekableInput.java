@@ -0,0 +1,182 @@
+/*
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * "The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations under
+ * the License.
+ *
+ * The Original Code is ICEpdf 3.0 open source software code, released
+ * May 1st, 2009. The Initial Developer of the Original Code is ICEsoft
+ * Technologies Canada, Corp. Portions created by ICEsoft are Copyright (C)
+ * 2004-2009 ICEsoft Technologies Canada, Corp. All Rights Reserved.
+ *
+ * Contributor(s): _____________________.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"
+ * License), in which case the provisions of the LGPL License are
+ * applicable instead of those above. If you wish to allow use of your
+ * version of this file only under the terms of the LGPL License and not to
+ * allow others to use your version of this file under the MPL, indicate
+ * your decision by deleting the provisions above and replace them with
+ * the notice and other provisions required by the LGPL License. If you do
+ * not delete the provisions above, a recipient may use your version of
+ * this file under either the MPL or the LGPL License."
+ *
+ */
+package org.icepdf.core.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A SeekableInput over any {@link PositionalInput}.  There is no single
+ * Thread that owns the input; every Thread gets its own buffered cursor, so
+ * seeking and reading on one Thread never disturbs another.  As a result
+ * {@link #beginThreadAccess()} and {@link #endThreadAccess()} don't block,
+ * and many Threads can load objects from the same Document in parallel.
+ * <p/>
+ * The PositionalInput may block until the requested bytes are available,
+ * as a {@link RangeFetcher} does, and is closed along with this input if
+ * it is Closeable.
+ *
+ * @since 3.1
+ */
+public class PositionalSeekableInput extends InputStream
+        implements SeekableInput, PositionalInput {
+
+    private PositionalInput input;
+    private ThreadLocal<PositionalInputView> cursors;
+
+    public PositionalSeekableInput(PositionalInput positionalInput) {
+        super();
+        input = positionalInput;
+        // the cursors must only reference the PositionalInput, never this
+        // object, otherwise a pooled Thread's ThreadLocal entry would keep
+        // the whole input reachable after the Document is disposed.  The
+        // cursors aren't bounded by a length, as it might not be known yet,
+        // instead they rely on reads past the end returning -1.
+        final PositionalInput cursorInput = positionalInput;
+        cursors = new ThreadLocal<PositionalInputView>() {
+            protected PositionalInputView initialValue() {
+                return new PositionalInputView(cursorInput, 0L, Long.MAX_VALUE);
+            }
+        };
+    }
+
+    private PositionalInputView cursor() {
+        return cursors.get();
+    }
+
+    /**
+     * Indicates if {@link #getLength()} can answer without waiting for more
+     * data to arrive.
+     *
+     * @return true, unless a RangeFetcher still has to discover its length.
+     */
+    public boolean isLengthKnown() {
+        return !(input instanceof RangeFetcher) ||
+                ((RangeFetcher) input).isLengthKnown();
+    }
+
+
+    //
+    // InputStream overrides
+    //
+
+    public int read() throws IOException {
+        return cursor().read();
+    }
+
+    public int read(byte[] buffer) throws IOException {
+        return cursor().read(buffer, 0, buffer.length);
+    }
+
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        return cursor().read(buffer, offset, length);
+    }
+
+    public void close() throws IOException {
+        cursors.remove();
+        if (input instanceof Closeable) {
+            ((Closeable) input).close();
+        }
+    }
+
+    public int available() {
+        return 0;
+    }
+
+    public void mark(int readLimit) {
+        cursor().mark(readLimit);
+    }
+
+    public boolean markSupported() {
+        return true;
+    }
+
+    public void reset() throws IOException {
+        cursor().reset();
+    }
+
+    public long skip(long n) throws IOException {
+        return cursor().skip(n);
+    }
+
+
+    //
+    // SeekableInput implementation
+    //  (which are not already covered by InputStream overrides)
+    //
+
+    public void seekAbsolute(long absolutePosition) throws IOException {
+        cursor().seek(absolutePosition);
+    }
+
+    public void seekRelative(long relativeOffset) throws IOException {
+        PositionalInputView cursor = cursor();
+        cursor.seek(cursor.getPosition() + relativeOffset);
+    }
+
+    public void seekEnd() throws IOException {
+        cursor().seek(input.getLength());
+    }
+
+    public long getAbsolutePosition() throws IOException {
+        return cursor().getPosition();
+    }
+
+    public long getLength() throws IOException {
+        return input.getLength();
+    }
+
+    public InputStream getInputStream() {
+        return this;
+    }
+
+    /**
+     * Each Thread has its own cursor, so there is no owner to wait for.
+     */
+    public void beginThreadAccess() {
+    }
+
+    public void endThreadAccess() {
+    }
+
+
+    //
+    // PositionalInput implementation
+    //
+
+    public int read(long position, byte[] buffer, int offset, int length)
+            throws IOException {
+        return input.read(position, buffer, offset, length);
+    }
+}
@@ -61,6 +61,25 @@ public class SeekableInputConstrainedWrapper extends InputStream {
         usedYet = false;
     }
 
+    /**
+     * Gets an InputStream over the constrained bytes for the calling Thread.
+     * If the wrapped SeekableInput supports positional reads, then a private
+     * cursor is returned, so other Threads may read the same data at the
+     * same time, and closing it leaves this wrapper untouched.  Otherwise
+     * this wrapper is readied, as with prepareForCurrentUse(), and returned.
+     *
+     * @return stream of the constrained bytes, which should be closed after use
+     */
+    public InputStream getInputStreamForCurrentUse() {
+        SeekableInput in = streamDataInput;
+        if (in instanceof PositionalInput) {
+            return new PositionalInputView(
+                    (PositionalInput) in, filePositionOfStreamData, lengthOfStreamData);
+        }
+        prepareForCurrentUse();
+        return this;
+    }
+
     public void dispose() throws IOException {
         beginThreadAccess();
 //System.out.println("SICW.endFinalUse()  About to ... " + this);
@@ -200,7 +219,7 @@ public class SeekableInputConstrainedWrapper extends InputStream {
 
     public long getAbsolutePosition() throws IOException {
         ensureReadyOnFirstUse();
-        long absolutePosition = getAbsolutePosition();
+        long absolutePosition = streamDataInput.getAbsolutePosition();
         absolutePosition -= filePositionOfStreamData;
         return absolutePosition;
     }
@@ -0,0 +1,177 @@
+/*
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * "The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations under
+ * the License.
+ *
+ * The Original Code is ICEpdf 3.0 open source software code, released
+ * May 1st, 2009. The Initial Developer of the Original Code is ICEsoft
+ * Technologies Canada, Corp. Portions created by ICEsoft are Copyright (C)
+ * 2004-2009 ICEsoft Technologies Canada, Corp. All Rights Reserved.
+ *
+ * Contributor(s): _____________________.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"
+ * License), in which case the provisions of the LGPL License are
+ * applicable instead of those above. If you wish to allow use of your
+ * version of this file only under the terms of the LGPL License and not to
+ * allow others to use your version of this file under the MPL, indicate
+ * your decision by deleting the provisions above and replace them with
+ * the notice and other provisions required by the LGPL License. If you do
+ * not delete the provisions above, a recipient may use your version of
+ * this file under either the MPL or the LGPL License."
+ *
+ */
+package org.icepdf.core.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * RangeFetcher for a document on a web server which honours HTTP range
+ * requests.  Data is requested in aligned blocks of {@link #BLOCK_SIZE}
+ * bytes, so the many small reads done while parsing don't each become a
+ * request, and every block is kept once fetched.
+ *
+ * @since 3.1
+ */
+public class URLRangeFetcher implements RangeFetcher {
+
+    private static final Logger logger =
+            Logger.getLogger(URLRangeFetcher.class.toString());
+
+    public static final int BLOCK_SIZE = 64 * 1024;
+
+    private URL url;
+    private long length;
+    private ConcurrentHashMap<Long, byte[]> blocks;
+    private volatile boolean closed;
+
+    /**
+     * Probes the server with a one byte range request.
+     *
+     * @param url location of the document.
+     * @return a fetcher for the url, or null if the server doesn't support
+     *         range requests, in which case the document has to be streamed.
+     * @throws IOException if the server can not be reached.
+     */
+    public static URLRangeFetcher open(URL url) throws IOException {
+        URLConnection connection = url.openConnection();
+        if (!(connection instanceof HttpURLConnection))
+            return null;
+        HttpURLConnection http = (HttpURLConnection) connection;
+        http.setRequestProperty("Range", "bytes=0-0");
+        try {
+            if (http.getResponseCode() != HttpURLConnection.HTTP_PARTIAL)
+                return null;
+            // Content-Range: bytes 0-0/length
+            String contentRange = http.getHeaderField("Content-Range");
+            if (contentRange == null)
+                return null;
+            int slash = contentRange.lastIndexOf('/');
+            if (slash < 0)
+                return null;
+            long length = Long.parseLong(contentRange.substring(slash + 1).trim());
+            return new URLRangeFetcher(url, length);
+        }
+        catch (NumberFormatException e) {
+            // length is "*", unknown
+            logger.log(Level.FINE, "Server did not give a document length.", e);
+            return null;
+        }
+        finally {
+            http.disconnect();
+        }
+    }
+
+    protected URLRangeFetcher(URL url, long length) {
+        this.url = url;
+        this.length = length;
+        blocks = new ConcurrentHashMap<Long, byte[]>();
+    }
+
+    public int read(long position, byte[] buffer, int offset, int length)
+            throws IOException {
+        if (length == 0)
+            return 0;
+        if (position >= this.length)
+            return -1;
+        long blockIndex = position / BLOCK_SIZE;
+        byte[] block = getBlock(blockIndex);
+        int blockOffset = (int) (position - blockIndex * BLOCK_SIZE);
+        int count = Math.min(length, block.length - blockOffset);
+        System.arraycopy(block, blockOffset, buffer, offset, count);
+        return count;
+    }
+
+    private byte[] getBlock(long blockIndex) throws IOException {
+        if (closed)
+            throw new IOException("Fetcher closed");
+        Long key = blockIndex;
+        byte[] block = blocks.get(key);
+        if (block != null)
+            return block;
+        // Two Threads may occasionally fetch the same block, which is
+        // harmless, and better than holding a lock over the request
+        long start = blockIndex * BLOCK_SIZE;
+        long end = Math.min(start + BLOCK_SIZE, length) - 1;
+        block = fetch(start, end);
+        byte[] previous = blocks.putIfAbsent(key, block);
+        return (previous != null) ? previous : block;
+    }
+
+    private byte[] fetch(long start, long end) throws IOException {
+        HttpURLConnection http = (HttpURLConnection) url.openConnection();
+        http.setRequestProperty("Range", "bytes=" + start + "-" + end);
+        try {
+            if (http.getResponseCode() != HttpURLConnection.HTTP_PARTIAL)
+                throw new IOException("Range request refused: " +
+                        http.getResponseCode() + " " + url);
+            byte[] block = new byte[(int) (end - start + 1)];
+            InputStream in = http.getInputStream();
+            try {
+                int total = 0;
+                while (total < block.length) {
+                    int read = in.read(block, total, block.length - total);
+                    if (read < 0)
+                        throw new IOException("Range request ended early: " + url);
+                    total += read;
+                }
+            }
+            finally {
+                in.close();
+            }
+            return block;
+        }
+        finally {
+            http.disconnect();
+        }
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public boolean isLengthKnown() {
+        return true;
+    }
+
+    public void close() throws IOException {
+        closed = true;
+        blocks.clear();
+    }
+}
@@ -109,6 +109,7 @@ public class Catalog extends Dictionary {
         catch (NullPointerException e) {
             logger.log(Level.FINE, "Error parsing page tree.", e);
         }
+        inited = true;
     }
 
     /**
@@ -146,10 +147,25 @@ public class Catalog extends Dictionary {
      * @return Catalogs PageTree.
      * @see org.icepdf.core.pobjects.Page
      */
-    public PageTree getPageTree() {
+    public synchronized PageTree getPageTree() {
+        // the page tree of a progressively loaded document is only loaded
+        // once it is needed, as it may not have arrived yet.
+        if (!inited) {
+            init();
+        }
         return pageTree;
     }
 
+    /**
+     * Indicates if the page tree has been loaded, which for a linearized
+     * document only happens once a page other than the first is needed.
+     *
+     * @return true if the page tree has been loaded.
+     */
+    public synchronized boolean isPageTreeLoaded() {
+        return inited;
+    }
+
     /**
      * Gets the Outlines Dictionary that is the root of the document's outline
      * hierarchy. The Outline can be traversed to access child OutlineItems.
@@ -53,8 +53,26 @@ public class CrossReference {
     private static final Logger logger =
             Logger.getLogger(CrossReference.class.toString());
 
+    // set while the current thread is loading sections to merge them
+    private static final ThreadLocal<Boolean> merging = new ThreadLocal<Boolean>();
+
 //    private Vector<Entry> m_vXRefEntries;
-    private Hashtable<Number, Entry> m_hObjectNumber2Entry;
+    private CrossReferenceIndex m_index;
+
+    /**
+     * Objects located without a cross-reference section, such as with a
+     * linearized file's hint tables, are looked up after m_index, until the
+     * whole chain of sections has been merged.  Unlike m_index, these can be
+     * added to after the section is loaded, so access is synchronized.
+     */
+    private CrossReferenceIndex m_hintedIndex;
+
+    /**
+     * The entries of this section and of every peer and previous section,
+     * merged once the first lookup misses this section, so later lookups
+     * don't need to walk the chain.
+     */
+    private volatile CrossReferenceIndex m_mergedIndex;
 
     /**
      * In a Linearized PDF, we don't want to load all Trailers and their XRefs
@@ -75,7 +93,18 @@ public class CrossReference {
 
     public CrossReference() {
 //        m_vXRefEntries = new Vector<Entry>(4096);
-        m_hObjectNumber2Entry = new Hashtable<Number, Entry>(4096);
+        m_index = new CrossReferenceIndex(4096);
+    }
+
+    /**
+     * Creates a cross-reference from an index that already holds the entries
+     * of all of the document's sections, such as one restored by IndexCache.
+     *
+     * @param index entries of every cross-reference section, merged.
+     */
+    public CrossReference(CrossReferenceIndex index) {
+        m_index = index;
+        m_mergedIndex = index;
     }
 
     public void setTrailer(PTrailer trailer) {
@@ -95,6 +124,7 @@ public class CrossReference {
                 }
                 int startingObjectNumber = ((Number) startingObjectNumberOrTrailer).intValue();
                 int numEntries = ((Number) parser.getToken()).intValue();
+                m_index.ensureCapacity(startingObjectNumber + numEntries);
                 int currNumber = startingObjectNumber;
                 for (int i = 0; i < numEntries; i++) {
                     long tenDigitNum = parser.getIntSurroundedByWhitespace();  // ( (Number) getToken() ).longValue();
@@ -142,6 +172,8 @@ public class CrossReference {
                     fieldSizes[i] = ((Number) fieldSizesVec.get(i)).intValue();
             }
 
+            m_index.ensureCapacity(size);
+
             int fieldTypeSize = fieldSizes[0];
             int fieldTwoSize = fieldSizes[1];
             int fieldThreeSize = fieldSizes[2];
@@ -186,11 +218,61 @@ public class CrossReference {
 //System.out.println("Done reading xref stream entries : " + (new java.util.Date()) + "  count: " + countOfAllEntries);
     }
 
-    public Entry getEntryForObject(Integer objectNumber) {
-        Entry entry =  m_hObjectNumber2Entry.get(objectNumber);
+    public Entry getEntryForObject(int objectNumber) {
+        CrossReferenceIndex merged = m_mergedIndex;
+        if (merged != null)
+            return merged.getEntry(objectNumber);
+
+        Entry entry = m_index.getEntry(objectNumber);
         if (entry != null)
             return entry;
+        synchronized (this) {
+            if (m_hintedIndex != null) {
+                entry = m_hintedIndex.getEntry(objectNumber);
+                if (entry != null)
+                    return entry;
+            }
+        }
+        return getMergedIndex().getEntry(objectNumber);
+    }
+
+    /**
+     * Merges this section with its peer and previous sections, loading them
+     * as needed.  Newer sections take precedence over older ones.  No lock is
+     * held while sections are loaded, as loading may need the document's
+     * input, which another thread may hold while looking up an object.
+     *
+     * @return the merged index.
+     */
+    CrossReferenceIndex getMergedIndex() {
+        CrossReferenceIndex merged = m_mergedIndex;
+        if (merged != null)
+            return merged;
+        // Loading a section may itself look up objects, which can only use
+        // the sections loaded so far, and mustn't publish a partial merge
+        boolean loading = merging.get() == null;
+        if (loading)
+            merging.set(Boolean.TRUE);
+        try {
+            merged = new CrossReferenceIndex(m_index.getSize());
+            for (CrossReference xref = this; xref != null;
+                 xref = loading ? xref.getPrevious() : xref.m_xrefPrevious) {
+                merged.addMissingEntries(xref.m_index);
+                CrossReference peer = loading ? xref.getPeer() : xref.m_xrefPeer;
+                if (peer != null)
+                    merged.addMissingEntries(peer.m_index);
+            }
+        }
+        finally {
+            if (loading)
+                merging.remove();
+        }
+        if (loading)
+            m_mergedIndex = merged;
+        return merged;
+    }
 
+    private CrossReference getPeer() {
         if (m_bIsCrossReferenceTable && !m_bHaveTriedLoadingPeer &&
                 m_xrefPeer == null && m_PTrailer != null) {
             // Lazily load m_xrefPeer, using m_PTrailer
@@ -198,24 +280,17 @@ public class CrossReference {
             m_xrefPeer = m_PTrailer.getCrossReferenceStream();
             m_bHaveTriedLoadingPeer = true;
         }
-        if (m_xrefPeer != null) {
-            entry = m_xrefPeer.getEntryForObject(objectNumber);
-            if (entry != null)
-                return entry;
-        }
+        return m_xrefPeer;
+    }
 
+    private CrossReference getPrevious() {
         if (!m_bHaveTriedLoadingPrevious &&
                 m_xrefPrevious == null && m_PTrailer != null) {
             // Lazily load m_xrefPrevious, using m_PTrailer
             m_PTrailer.onDemandLoadAndSetupPreviousTrailer();
             m_bHaveTriedLoadingPrevious = true;
         }
-        if (m_xrefPrevious != null) {
-            entry = m_xrefPrevious.getEntryForObject(objectNumber);
-            if (entry != null)
-                return entry;
-        }
-        return entry;
+        return m_xrefPrevious;
     }
 
     public void addToEndOfChainOfPreviousXRefs(CrossReference prev) {
@@ -225,23 +300,34 @@ public class CrossReference {
             m_xrefPrevious.addToEndOfChainOfPreviousXRefs(prev);
     }
 
+    /**
+     * Adds the position of an object that was located without a
+     * cross-reference section, such as from a linearized file's hint tables,
+     * unless this section already has an entry for the object.
+     *
+     * @param objectNumber        object number.
+     * @param filePositionOfObject file offset of the object.
+     * @param generationNumber    generation number.
+     */
+    public synchronized void addHintedEntry(int objectNumber, long filePositionOfObject, int generationNumber) {
+        if (!m_index.hasEntry(objectNumber)) {
+            if (m_hintedIndex == null)
+                m_hintedIndex = new CrossReferenceIndex(0);
+            m_hintedIndex.addUsedEntry(objectNumber, filePositionOfObject, generationNumber);
+        }
+    }
+
     protected void addFreeEntry(int objectNumber, int nextFreeObjectNumber, int generationNumberIfReused) {
         FreeEntry entry = new FreeEntry(objectNumber, nextFreeObjectNumber, generationNumberIfReused);
 //        m_vXRefEntries.add(entry);
     }
 
     protected void addUsedEntry(int objectNumber, long filePositionOfObject, int generationNumber) {
-        UsedEntry entry = new UsedEntry(objectNumber, filePositionOfObject, generationNumber);
-//        m_vXRefEntries.add(entry);
-
-        m_hObjectNumber2Entry.put(objectNumber, entry);
+        m_index.addUsedEntry(objectNumber, filePositionOfObject, generationNumber);
     }
 
     protected void addCompressedEntry(int objectNumber, int objectNumberOfContainingObjectStream, int indexWithinObjectStream) {
-        CompressedEntry entry = new CompressedEntry(objectNumber, objectNumberOfContainingObjectStream, indexWithinObjectStream);
-//        m_vXRefEntries.add(entry);
-
-        m_hObjectNumber2Entry.put(objectNumber, entry);
+        m_index.addCompressedEntry(objectNumber, objectNumberOfContainingObjectStream, indexWithinObjectStream);
     }
 
 
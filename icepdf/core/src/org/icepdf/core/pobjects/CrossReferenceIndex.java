@@ -0,0 +1,254 @@
+/*
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * "The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations under
+ * the License.
+ *
+ * The Original Code is ICEpdf 3.0 open source software code, released
+ * May 1st, 2009. The Initial Developer of the Original Code is ICEsoft
+ * Technologies Canada, Corp. Portions created by ICEsoft are Copyright (C)
+ * 2004-2009 ICEsoft Technologies Canada, Corp. All Rights Reserved.
+ *
+ * Contributor(s): _____________________.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"
+ * License), in which case the provisions of the LGPL License are
+ * applicable instead of those above. If you wish to allow use of your
+ * version of this file only under the terms of the LGPL License and not to
+ * allow others to use your version of this file under the MPL, indicate
+ * your decision by deleting the provisions above and replace them with
+ * the notice and other provisions required by the LGPL License. If you do
+ * not delete the provisions above, a recipient may use your version of
+ * this file under either the MPL or the LGPL License."
+ *
+ */
+package org.icepdf.core.pobjects;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * <p>The <code>CrossReferenceIndex</code> class stores cross-reference
+ * entries in parallel primitive arrays indexed by object number, rather than
+ * as an <code>Entry</code> object per PDF object, so a document with hundreds
+ * of thousands of objects only costs a few bytes per object.</p>
+ * <p/>
+ * <p>For an in use entry the arrays hold the file position and generation
+ * number of the object, and for a compressed entry the object number of the
+ * containing object stream and the index within it.  Free entries aren't
+ * stored.  An index is filled by a single thread and is only read after it
+ * has been published, so lookups don't need any locking.</p>
+ *
+ * @since 3.1
+ */
+public class CrossReferenceIndex {
+
+    // no entry for the object number
+    private static final byte TYPE_NONE = -1;
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    // implementation limit on the number of indirect objects, larger object
+    // numbers are malformed and would otherwise exhaust memory
+    private static final int MAX_OBJECT_NUMBER = 8388607;
+
+    private byte[] types;
+    // file position, or number of the containing object stream
+    private long[] positions;
+    // generation number, or index within the containing object stream
+    private int[] values;
+    private int size;
+
+    /**
+     * Creates a new empty index.
+     *
+     * @param capacity expected number of objects, such as the trailer's Size.
+     */
+    public CrossReferenceIndex(int capacity) {
+        if (capacity <= 0 || capacity > MAX_OBJECT_NUMBER)
+            capacity = DEFAULT_CAPACITY;
+        types = new byte[capacity];
+        Arrays.fill(types, TYPE_NONE);
+        positions = new long[capacity];
+        values = new int[capacity];
+    }
+
+    /**
+     * Adds an in use entry, replacing any existing entry for the object.
+     *
+     * @param objectNumber         object number.
+     * @param filePositionOfObject byte offset of the object in the file.
+     * @param generationNumber     generation number of the object.
+     */
+    public void addUsedEntry(int objectNumber, long filePositionOfObject,
+                             int generationNumber) {
+        set(objectNumber, CrossReference.Entry.TYPE_USED,
+                filePositionOfObject, generationNumber);
+    }
+
+    /**
+     * Adds a compressed entry, replacing any existing entry for the object.
+     *
+     * @param objectNumber                        object number.
+     * @param objectNumberOfContainingObjectStream object number of the object
+     *                                            stream holding the object.
+     * @param indexWithinObjectStream             index of the object in the
+     *                                            object stream.
+     */
+    public void addCompressedEntry(int objectNumber,
+                                   int objectNumberOfContainingObjectStream,
+                                   int indexWithinObjectStream) {
+        set(objectNumber, CrossReference.Entry.TYPE_COMPRESSED,
+                objectNumberOfContainingObjectStream, indexWithinObjectStream);
+    }
+
+    /**
+     * Copies the entries of another index for objects this index has no entry
+     * for, so newer cross-reference sections take precedence over the older
+     * sections merged into them.
+     *
+     * @param older index of an older cross-reference section.
+     */
+    public void addMissingEntries(CrossReferenceIndex older) {
+        ensureCapacity(older.size);
+        for (int i = 0; i < older.size; i++) {
+            if (older.types[i] != TYPE_NONE && !hasEntry(i)) {
+                set(i, older.types[i], older.positions[i], older.values[i]);
+            }
+        }
+    }
+
+    /**
+     * Checks if the index has an entry for the object.
+     *
+     * @param objectNumber object number.
+     * @return true if there is an in use or compressed entry.
+     */
+    public boolean hasEntry(int objectNumber) {
+        return objectNumber >= 0 && objectNumber < size &&
+                types[objectNumber] != TYPE_NONE;
+    }
+
+    /**
+     * Gets the entry for the object.  Entries are created as they are asked
+     * for, and aren't kept by the index.
+     *
+     * @param objectNumber object number.
+     * @return entry for the object, or null if there is none.
+     */
+    public CrossReference.Entry getEntry(int objectNumber) {
+        if (!hasEntry(objectNumber))
+            return null;
+        if (types[objectNumber] == CrossReference.Entry.TYPE_USED) {
+            return new CrossReference.UsedEntry(objectNumber,
+                    positions[objectNumber], values[objectNumber]);
+        }
+        return new CrossReference.CompressedEntry(objectNumber,
+                (int) positions[objectNumber], values[objectNumber]);
+    }
+
+    /**
+     * Gets one more than the highest object number with an entry.
+     *
+     * @return number of object numbers covered by the index.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Writes the entries, so the index can be restored without parsing the
+     * document's cross-reference sections.
+     *
+     * @param out output to write to.
+     * @throws IOException if the entries can't be written.
+     */
+    public void write(DataOutput out) throws IOException {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (types[i] != TYPE_NONE)
+                count++;
+        }
+        out.writeInt(size);
+        out.writeInt(count);
+        for (int i = 0; i < size; i++) {
+            if (types[i] != TYPE_NONE) {
+                out.writeInt(i);
+                out.writeByte(types[i]);
+                out.writeLong(positions[i]);
+                out.writeInt(values[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads entries written by {@link #write(DataOutput)}.
+     *
+     * @param in input to read from.
+     * @return restored index.
+     * @throws IOException if the entries can't be read, or are malformed.
+     */
+    public static CrossReferenceIndex read(DataInput in) throws IOException {
+        int size = in.readInt();
+        int count = in.readInt();
+        if (size < 0 || size > MAX_OBJECT_NUMBER + 1 || count < 0 || count > size)
+            throw new IOException("Malformed cross-reference index.");
+        CrossReferenceIndex index = new CrossReferenceIndex(size);
+        for (int i = 0; i < count; i++) {
+            int objectNumber = in.readInt();
+            byte type = in.readByte();
+            long position = in.readLong();
+            int value = in.readInt();
+            if (objectNumber < 0 || objectNumber >= size ||
+                    (type != CrossReference.Entry.TYPE_USED &&
+                            type != CrossReference.Entry.TYPE_COMPRESSED))
+                throw new IOException("Malformed cross-reference index.");
+            index.set(objectNumber, type, position, value);
+        }
+        return index;
+    }
+
+    /**
+     * Makes room for entries up to the given object number, so a
+     * cross-reference subsection only needs to grow the arrays once.
+     *
+     * @param capacity number of object numbers to make room for.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity <= types.length)
+            return;
+        int newCapacity = Math.min(Math.max(capacity, types.length * 2),
+                MAX_OBJECT_NUMBER + 1);
+        byte[] newTypes = new byte[newCapacity];
+        System.arraycopy(types, 0, newTypes, 0, types.length);
+        Arrays.fill(newTypes, types.length, newCapacity, TYPE_NONE);
+        long[] newPositions = new long[newCapacity];
+        System.arraycopy(positions, 0, newPositions, 0, positions.length);
+        int[] newValues = new int[newCapacity];
+        System.arraycopy(values, 0, newValues, 0, values.length);
+        types = newTypes;
+        positions = newPositions;
+        values = newValues;
+    }
+
+    private void set(int objectNumber, int type, long position, int value) {
+        if (objectNumber < 0 || objectNumber > MAX_OBJECT_NUMBER)
+            return;
+        ensureCapacity(objectNumber + 1);
+        types[objectNumber] = (byte) type;
+        positions[objectNumber] = position;
+        values[objectNumber] = value;
+        if (objectNumber >= size)
+            size = objectNumber + 1;
+    }
+}
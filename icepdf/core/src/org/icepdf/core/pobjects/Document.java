@@ -32,6 +32,7 @@
  */
 package org.icepdf.core.pobjects;
 
+import org.icepdf.core.PageImageCallback;
 import org.icepdf.core.SecurityCallback;
 import org.icepdf.core.application.ProductInfo;
 import org.icepdf.core.exceptions.PDFException;
@@ -39,8 +40,10 @@ import org.icepdf.core.exceptions.PDFSecurityException;
 import org.icepdf.core.io.*;
 import org.icepdf.core.pobjects.security.SecurityManager;
 import org.icepdf.core.util.Defs;
+import org.icepdf.core.util.GraphicsRenderingHints;
 import org.icepdf.core.util.LazyObjectLoader;
 import org.icepdf.core.util.Library;
+import org.icepdf.core.util.MemoryPool;
 import org.icepdf.core.util.Parser;
 
 import java.awt.*;
@@ -50,6 +53,7 @@ import java.net.URL;
 import java.net.URLConnection;
 import java.util.Hashtable;
 import java.util.Vector;
+import java.util.concurrent.Executor;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
@@ -113,16 +117,46 @@ public class Document {
     // disable/enable file caching, overrides fileCachingSize.
     private static boolean isCachingEnabled;
 
+    // read local files with positional reads, so Threads don't serialize.
+    private static boolean isConcurrentFileAccessEnabled;
+
+    // memory map local files instead of reading them through a channel.
+    private static boolean isMemoryMappingEnabled;
+
+    // parse streams and urls as their bytes arrive, rather than after.
+    private static boolean isProgressiveLoadingEnabled;
+
     // repository of all PDF object associated with this document.
     private Library library = null;
 
+    // memory pool shared with other documents, if any
+    private MemoryPool memoryPool;
+
     private SeekableInput documentSeekableInput;
 
+    // linearization parameters, if the document is linearized.
+    private Linearization linearization;
+
+    // index of the pages' text, created on first use.
+    private TextIndex textIndex;
+
     static {
         // sets if file caching is enabled or disabled.
         isCachingEnabled =
                 Defs.sysPropertyBoolean("org.icepdf.core.streamcache.enabled",
                         true);
+        // sets if local files are read concurrently, or by one Thread at a time.
+        isConcurrentFileAccessEnabled =
+                Defs.sysPropertyBoolean("org.icepdf.core.io.concurrent",
+                        true);
+        // sets if local files are memory mapped by default.
+        isMemoryMappingEnabled =
+                Defs.sysPropertyBoolean("org.icepdf.core.io.mapped",
+                        false);
+        // sets if streams and urls are loaded progressively.
+        isProgressiveLoadingEnabled =
+                Defs.sysPropertyBoolean("org.icepdf.core.progressive.enabled",
+                        false);
     }
 
     /**
@@ -178,9 +212,34 @@ public class Document {
      */
     public void setFile(String filepath)
             throws PDFException, PDFSecurityException, IOException {
+        setFile(filepath, isMemoryMappingEnabled);
+    }
+
+    /**
+     * Load a PDF file from the given path and initiates the document's Catalog.
+     * If memoryMapped is true, the file is memory mapped so parsing and
+     * object loading read straight from the operating system's page cache,
+     * which suits very large local files.  The default used by
+     * {@link #setFile(String)} is set by the system property
+     * org.icepdf.core.io.mapped.
+     *
+     * @param filepath     path of PDF document.
+     * @param memoryMapped true to memory map the file.
+     * @throws PDFException         if an invalid file encoding.
+     * @throws PDFSecurityException if a security provider cannot be found
+     *                              or there is an error decrypting the file.
+     * @throws IOException          if a problem setting up, or parsing the file.
+     */
+    public void setFile(String filepath, boolean memoryMapped)
+            throws PDFException, PDFSecurityException, IOException {
         setDocumentOrigin(filepath);
-        RandomAccessFileInputStream rafis =
-                RandomAccessFileInputStream.build(new File(filepath));
+        File file = new File(filepath);
+        SeekableInput rafis;
+        if (memoryMapped) {
+            rafis = MappedFileInputStream.build(file);
+        } else {
+            rafis = buildFileInput(file);
+        }
 
         /*
         // Test code for setByteArray(-)
@@ -201,7 +260,25 @@ public class Document {
         }
         */
 
-        setInputStream(rafis);
+        setInputStream(rafis, file);
+    }
+
+    /**
+     * Builds the SeekableInput used to read a local file.  If the system
+     * property org.icepdf.core.io.concurrent=true, the default, the file is
+     * read with positional reads so any number of Threads can load objects
+     * at once; otherwise a RandomAccessFile is shared by one Thread at a time.
+     *
+     * @param file file to read.
+     * @return seekable input for the file.
+     * @throws FileNotFoundException if the file can not be opened for reading.
+     */
+    private static SeekableInput buildFileInput(File file)
+            throws FileNotFoundException {
+        if (isConcurrentFileAccessEnabled) {
+            return FileChannelInputStream.build(file);
+        }
+        return RandomAccessFileInputStream.build(file);
     }
 
     /**
@@ -209,6 +286,11 @@ public class Document {
      * If the system property org.icepdf.core.streamcache.enabled=true, the file
      * will be cached to a temp file; otherwise, the complete document stream will
      * be stored in memory.
+     * <p/>
+     * If the system property org.icepdf.core.progressive.enabled=true, the
+     * document is loaded progressively: when the server supports range
+     * requests only the parts of the file which are needed are downloaded,
+     * otherwise the file is parsed as it is downloaded.
      *
      * @param url location of file.
      * @throws PDFException         an invalid file encoding.
@@ -218,6 +300,14 @@ public class Document {
      */
     public void setUrl(URL url)
             throws PDFException, PDFSecurityException, IOException {
+        String pathOrURL = url.toString();
+        if (isProgressiveLoadingEnabled) {
+            URLRangeFetcher rangeFetcher = URLRangeFetcher.open(url);
+            if (rangeFetcher != null) {
+                setRangeFetcher(rangeFetcher, pathOrURL);
+                return;
+            }
+        }
         InputStream in = null;
         try {
             // make a connection
@@ -226,12 +316,11 @@ public class Document {
             // Create a stream on the URL connection
             in = urlConnection.getInputStream();
 
-            String pathOrURL = url.toString();
-
             setInputStream(in, pathOrURL);
         }
         finally {
-            if (in != null) {
+            // when loading progressively the stream is closed once read
+            if (in != null && !isProgressiveLoadingEnabled) {
                 in.close();
             }
         }
@@ -243,6 +332,13 @@ public class Document {
      * will be cached to a temp file; otherwise, the complete document stream will
      * be stored in memory.
      *
+     * <p/>
+     * If the system property org.icepdf.core.progressive.enabled=true, the
+     * stream is instead cached to a temp file by a background thread, and
+     * parsing starts straight away, only waiting on data which hasn't arrived
+     * yet.  In this case the stream is closed once it has been read, so the
+     * caller must not close it.
+     *
      * @param in        input stream containing PDF data
      * @param pathOrURL value assigned to document origin
      * @throws PDFException         an invalid stream or file encoding
@@ -254,7 +350,18 @@ public class Document {
             throws PDFException, PDFSecurityException, IOException {
         setDocumentOrigin(pathOrURL);
 
-        if (!isCachingEnabled) {
+        if (isProgressiveLoadingEnabled) {
+            File tempFile = File.createTempFile(
+                    "ICEpdfTempFile" + getClass().hashCode(),
+                    ".tmp");
+            // Delete temp file on exit
+            tempFile.deleteOnExit();
+            setDocumentCachedFilePath(tempFile.getAbsolutePath());
+
+            InputStreamRangeFetcher rangeFetcher =
+                    new InputStreamRangeFetcher(in, tempFile);
+            setInputStream(new PositionalSeekableInput(rangeFetcher));
+        } else if (!isCachingEnabled) {
 //System.out.println("Started  downloading PDF to memory : " + (new java.util.Date()));
             // read into memory first
             ConservativeSizingByteArrayOutputStream byteArrayOutputStream =
@@ -310,8 +417,7 @@ public class Document {
             setDocumentCachedFilePath(tempFile.getAbsolutePath());
 
             // finally read the cached file
-            RandomAccessFileInputStream rafis =
-                    RandomAccessFileInputStream.build(tempFile);
+            SeekableInput rafis = buildFileInput(tempFile);
             setInputStream(rafis);
         }
     }
@@ -368,12 +474,31 @@ public class Document {
             setDocumentCachedFilePath(tempFile.getAbsolutePath());
 
             // finally read the cached file
-            RandomAccessFileInputStream rafis =
-                    RandomAccessFileInputStream.build(tempFile);
+            SeekableInput rafis = buildFileInput(tempFile);
             setInputStream(rafis);
         }
     }
 
+    /**
+     * Load a PDF file progressively from the given RangeFetcher and initiates
+     * the document's Catalog.  Only the byte ranges which are actually needed
+     * are fetched, as they are needed, so a linearized document's first page
+     * can be shown once the first page section has arrived.  The fetcher is
+     * closed when the document is disposed.
+     *
+     * @param rangeFetcher source of the PDF data's byte ranges
+     * @param pathOrURL    value assigned to document origin
+     * @throws PDFException         an invalid stream or file encoding
+     * @throws PDFSecurityException if a security provider can not be found
+     *                              or there is an error decrypting the file.
+     * @throws IOException          if a problem fetching, or parsing the data.
+     */
+    public void setRangeFetcher(RangeFetcher rangeFetcher, String pathOrURL)
+            throws PDFException, PDFSecurityException, IOException {
+        setDocumentOrigin(pathOrURL);
+        setInputStream(new PositionalSeekableInput(rangeFetcher));
+    }
+
     /**
      * Load a PDF file from the given SeekableInput stream and initiates the
      * document's Catalog.
@@ -401,51 +526,91 @@ public class Document {
      */
     private void setInputStream(final SeekableInput in)
             throws PDFException, PDFSecurityException, IOException {
+        setInputStream(in, (File) null);
+    }
+
+    /**
+     * Sets the input stream of the PDF file to be rendered.  If the index
+     * cache is enabled and the input is a local file, the file's stored index
+     * is used to open it, or one is stored once it has been opened.
+     *
+     * @param in   inputstream containing PDF data stream
+     * @param file local file being read, null if there is none.
+     * @throws PDFException         if error occurs
+     * @throws PDFSecurityException security error
+     * @throws IOException          io error during stream handling
+     */
+    private void setInputStream(final SeekableInput in, File file)
+            throws PDFException, PDFSecurityException, IOException {
         try {
             documentSeekableInput = in;
 
             // create library to hold all document objects
             library = new Library();
+            if (memoryPool != null) {
+                library.setMemoryPool(memoryPool);
+            }
 
             // if interactive show visual progress bar
             //ProgressMonitorInputStream monitor = null;
 
             boolean loaded = false;
-            try {
-                loadDocumentViaXRefs(in);
-                loaded = true;
-            }
-            catch (PDFException e) {
-                throw e;
-            }
-            catch (PDFSecurityException e) {
-                throw e;
-            }
-            catch (Exception e) {
-                if (logger.isLoggable(Level.WARNING)) {
-                    logger.warning("Cross reference deferred loading failed, will fall back to linear reading.");
+            boolean storeIndex = false;
+            long fileLength = 0;
+            long fileLastModified = 0;
+            if (file != null && IndexCache.isEnabled()) {
+                fileLength = file.length();
+                fileLastModified = file.lastModified();
+                IndexCache index = IndexCache.load(file);
+                if (index != null) {
+                    try {
+                        loadDocumentViaIndex(in, index);
+                        loaded = true;
+                    }
+                    catch (Exception e) {
+                        logger.log(Level.FINE, "Error loading PDF file from its index.", e);
+                        resetLibrary();
+                    }
                 }
+                storeIndex = !loaded;
             }
 
             if (!loaded) {
-                // Cleanup any bits left behind by the failed xref loading
-                if (catalog != null) {
-                    catalog.dispose(false);
-                    catalog = null;
+                try {
+                    loadDocumentViaXRefs(in);
+                    loaded = true;
                 }
-                if (library != null) {
-                    library.dispose();
-                    library = null;
+                catch (PDFException e) {
+                    throw e;
                 }
-                library = new Library();
-                pTrailer = null;
+                catch (PDFSecurityException e) {
+                    throw e;
+                }
+                catch (Exception e) {
+                    if (logger.isLoggable(Level.WARNING)) {
+                        logger.warning("Cross reference deferred loading failed, will fall back to linear reading.");
+                    }
+                }
+            }
+
+            if (!loaded) {
+                // Cleanup any bits left behind by the failed xref loading
+                resetLibrary();
 
                 in.seekAbsolute(0L);
                 loadDocumentViaLinearTraversal(in.getInputStream());
             }
 
-            // initiate the catalog, build the outline for the document
-            catalog.init();
+            // initiate the catalog, build the outline for the document.  The
+            // page tree of a linearized document is loaded when first needed,
+            // as the first page can be found without it.
+            if (linearization == null) {
+                catalog.init();
+            }
+
+            if (storeIndex) {
+                storeIndex(in, file, fileLength, fileLastModified);
+            }
         }
         catch (PDFException e) {
              logger.log(Level.FINE, "Error loading PDF file during linear parse.", e);
@@ -466,6 +631,152 @@ public class Document {
         }
     }
 
+    /**
+     * Disposes of the objects left behind by a failed attempt to load the
+     * document, so it can be loaded another way.
+     */
+    private void resetLibrary() {
+        if (catalog != null) {
+            catalog.dispose(false);
+            catalog = null;
+        }
+        if (library != null) {
+            library.dispose();
+            library = null;
+        }
+        library = new Library();
+        if (memoryPool != null) {
+            library.setMemoryPool(memoryPool);
+        }
+        pTrailer = null;
+        linearization = null;
+    }
+
+    /**
+     * Utility method for loading the document's objects with an index stored
+     * by a previous opening of the file, without parsing its trailer and
+     * cross-reference sections.
+     *
+     * @param in    input stream to parse
+     * @param index stored index of the file
+     */
+    private void loadDocumentViaIndex(SeekableInput in, IndexCache index) {
+        CrossReference crossReference =
+                new CrossReference(index.getCrossReferenceIndex());
+        Hashtable<String, Object> trailerEntries = new Hashtable<String, Object>();
+        trailerEntries.put("Root", index.getRootReference());
+        if (index.getInfoReference() != null)
+            trailerEntries.put("Info", index.getInfoReference());
+        trailerEntries.put("Size",
+                index.getCrossReferenceIndex().getSize());
+        PTrailer documentTrailer =
+                new PTrailer(library, trailerEntries, crossReference, null);
+
+        LazyObjectLoader lol = new LazyObjectLoader(library, in, crossReference);
+        library.setLazyObjectLoader(lol);
+
+        pTrailer = documentTrailer;
+        catalog = documentTrailer.getRootCatalog();
+        library.setCatalog(catalog);
+
+        if (catalog == null)
+            throw new NullPointerException("Loading via index failed to find catalog");
+        library.setPageReferences(index.getPageReferences());
+    }
+
+    /**
+     * Stores the index of a file once it has been opened, so the next opening
+     * can skip parsing the cross-reference and walking the page tree.  The
+     * cross-reference of a file opened with a linear traversal is rebuilt
+     * from the positions of its object headers.  The page references are
+     * added later, on a background thread, and only if the page tree has
+     * been loaded.  Encrypted documents aren't stored.
+     *
+     * @param in           input stream of the file
+     * @param file         file that was opened
+     * @param length       length of the file when it was opened
+     * @param lastModified modification time of the file when it was opened
+     */
+    private void storeIndex(SeekableInput in, File file, long length,
+                            long lastModified) {
+        try {
+            if (pTrailer != null && pTrailer.getEncrypt() != null)
+                return;
+            Reference root = pTrailer != null ?
+                    pTrailer.getRootCatalogReference() :
+                    catalog.getPObjectReference();
+            if (root == null)
+                return;
+            CrossReferenceIndex crossReferenceIndex;
+            if (library.isLinearTraversal()) {
+                crossReferenceIndex = new CrossReferenceIndex(0);
+                LazyObjectLoader.scanObjectPositions(in, crossReferenceIndex);
+                // compressed entries can only come from the xref streams
+                if (pTrailer != null &&
+                        pTrailer.getPrimaryCrossReference() != null) {
+                    crossReferenceIndex.addMissingEntries(
+                            pTrailer.getPrimaryCrossReference().getMergedIndex());
+                }
+            } else {
+                crossReferenceIndex =
+                        pTrailer.getPrimaryCrossReference().getMergedIndex();
+            }
+            Reference info = pTrailer != null ?
+                    library.getObjectReference(pTrailer.getDictionary(), "Info") :
+                    null;
+            // stored without page references first, as finding them loads
+            // every page tree node and page, which opening the file mustn't
+            // wait for.
+            IndexCache index =
+                    new IndexCache(crossReferenceIndex, root, info, null);
+            IndexCache.store(file, length, lastModified, index);
+            // the page tree of a linearized document isn't loaded yet, and
+            // its pages are found with the hint tables instead.
+            if (catalog.isPageTreeLoaded()) {
+                storePageReferences(file, length, lastModified, index);
+            }
+        }
+        catch (Exception e) {
+            logger.log(Level.FINE, "Error storing index of PDF file.", e);
+        }
+    }
+
+    /**
+     * Stores the index of a file again with its page references, which are
+     * found on a background thread as every page tree node and page has to
+     * be loaded.
+     *
+     * @param file         file that was opened
+     * @param length       length of the file when it was opened
+     * @param lastModified modification time of the file when it was opened
+     * @param index        index of the file without page references
+     */
+    private void storePageReferences(final File file, final long length,
+                                     final long lastModified,
+                                     final IndexCache index) {
+        final Catalog catalog = this.catalog;
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Reference[] pages = catalog.getPageTree().getPageReferences();
+                    if (pages != null) {
+                        IndexCache.store(file, length, lastModified, new IndexCache(
+                                index.getCrossReferenceIndex(),
+                                index.getRootReference(),
+                                index.getInfoReference(), pages));
+                    }
+                }
+                catch (Exception e) {
+                    // the document may have been disposed of meanwhile
+                    logger.log(Level.FINE, "Error storing page references of PDF file.", e);
+                }
+            }
+        }, "ICEpdf index store");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
     /**
      * Uitility method for loading the documents objects from the Xref table.
      *
@@ -525,6 +836,10 @@ public class Document {
     }
 
     private long getInitialCrossReferencePosition(SeekableInput in) throws IOException {
+        long linearizedPosition = getLinearizedCrossReferencePosition(in);
+        if (linearizedPosition > 0L)
+            return linearizedPosition;
+
         in.seekEnd();
 
         long endOfFile = in.getAbsolutePosition();
@@ -560,6 +875,43 @@ public class Document {
         return xrefPositionObj.longValue();
     }
 
+    /**
+     * Looks for a linearization dictionary at the start of the file.  If the
+     * file is linearized, its first page cross reference section directly
+     * follows the dictionary, so the document can be opened without reading
+     * the end of the file, which may not even have arrived yet.
+     *
+     * @param in input stream to parse
+     * @return position of the first page cross reference section, or -1 if
+     *         the file isn't linearized.
+     */
+    private long getLinearizedCrossReferencePosition(SeekableInput in) {
+        try {
+            in.seekAbsolute(0L);
+            Parser parser = new Parser(in);
+            Object obj = parser.getObject(library);
+            if (obj instanceof PObject)
+                obj = ((PObject) obj).getObject();
+            if (!(obj instanceof Hashtable) ||
+                    !Linearization.isLinearizationDictionary((Hashtable) obj))
+                return -1;
+            Linearization lin = new Linearization(library, (Hashtable) obj);
+            // An updated file must be read from its end, but we can only tell
+            // if the length is known, otherwise trust the dictionary for now
+            boolean lengthKnown = !(in instanceof PositionalSeekableInput) ||
+                    ((PositionalSeekableInput) in).isLengthKnown();
+            if (lengthKnown && !lin.isValid(in.getLength()))
+                return -1;
+            linearization = lin;
+            library.setLinearization(lin);
+            return in.getAbsolutePosition();
+        }
+        catch (Exception e) {
+            logger.log(Level.FINE, "Error reading linearization dictionary.", e);
+        }
+        return -1;
+    }
+
     /**
      * Uitily method for parsing a PDF documents object.  This should only be
      * called when the xref lookup fails.
@@ -786,9 +1138,9 @@ public class Document {
      * @see #getPageDimension(int, float, float)
      */
     public PDimension getPageDimension(int pageNumber, float userRotation) {
-        Page page = catalog.getPageTree().getPage(pageNumber, this);
+        Page page = getPage(pageNumber);
         PDimension pd = page.getSize(userRotation);
-        catalog.getPageTree().releasePage(page, this);
+        releasePage(page);
         return pd;
     }
 
@@ -806,10 +1158,10 @@ public class Document {
      * @see #getPageDimension(int, float)
      */
     public PDimension getPageDimension(int pageNumber, float userRotation, float userZoom) {
-        Page page = catalog.getPageTree().getPage(pageNumber, this);
+        Page page = getPage(pageNumber);
         if (page != null) {
             PDimension pd = page.getSize(userRotation, userZoom);
-            catalog.getPageTree().releasePage(page, this);
+            releasePage(page);
             return pd;
         } else {
             return new PDimension(0, 0);
@@ -851,6 +1203,9 @@ public class Document {
      */
     public int getNumberOfPages() {
         try {
+            if (linearization != null && !catalog.isPageTreeLoaded()) {
+                return linearization.getNumberOfPages();
+            }
             return catalog.getPageTree().getNumberOfPages();
         } catch (Exception e) {
              logger.log(Level.FINE, "Error getting number of pages.", e);
@@ -874,7 +1229,7 @@ public class Document {
      */
     public void paintPage(int pageNumber, Graphics g, final int renderHintType,
                           final int pageBoundary, float userRotation, float userZoom) {
-        Page page = catalog.getPageTree().getPage(pageNumber, this);
+        Page page = getPage(pageNumber);
         PDimension sz = page.getSize(userRotation, userZoom);
         int pageWidth = (int) sz.getWidth();
         int pageHeight = (int) sz.getHeight();
@@ -883,13 +1238,19 @@ public class Document {
         page.paint(gg, renderHintType, pageBoundary, userRotation, userZoom);
 
         gg.dispose();
-        catalog.getPageTree().releasePage(page, this);
+        releasePage(page);
     }
 
     /**
      * Dispose of Document, freeing up all used resources.
      */
     public void dispose() {
+        synchronized (this) {
+            if (textIndex != null) {
+                textIndex.cancel();
+                textIndex = null;
+            }
+        }
         if (catalog != null) {
             catalog.dispose(false);
             catalog = null;
@@ -899,6 +1260,7 @@ public class Document {
             library = null;
         }
         pTrailer = null;
+        linearization = null;
         if (documentSeekableInput != null) {
             try {
                 documentSeekableInput.close();
@@ -974,7 +1336,7 @@ public class Document {
     public Image getPageImage(int pageNumber,
                               final int renderHintType, final int pageBoundary,
                               float userRotation, float userZoom) {
-        Page page = catalog.getPageTree().getPage(pageNumber, this);
+        Page page = getPage(pageNumber);
         PDimension sz = page.getSize(pageBoundary, userRotation, userZoom);
 
         int pageWidth = (int) sz.getWidth();
@@ -988,11 +1350,135 @@ public class Document {
         page.paint(g, renderHintType,
                 pageBoundary, userRotation, userZoom);
         g.dispose();
-        catalog.getPageTree().releasePage(page, this);
+        releasePage(page);
 
         return image;
     }
 
+    /**
+     * Gets a quick preview image of the specified page, meant for thumbnails.
+     * The thumbnail image embedded in the page is used when there is one,
+     * scaled to the page size, otherwise the page is painted with the
+     * {@link GraphicsRenderingHints#DRAFT} rendering hints, which skip shading
+     * and pattern fills and very large images.
+     *
+     * @param pageNumber   Page number of the page to preview.
+     *                     The page number is zero-based.
+     * @param pageBoundary Constant specifying the page boundary to use when
+     *                     painting the page content. Typically use Page.BOUNDARY_CROPBOX.
+     * @param userRotation Rotation factor, in degrees, to be applied to the preview.
+     *                     Only the following values are valid: 0.0f, 90.0f, 180.0f, 270.0f.
+     * @param userZoom     Zoom factor to be applied to the preview.
+     * @return an Image object of the preview of the page.
+     * @since 3.1
+     */
+    public Image getPagePreview(int pageNumber, final int pageBoundary,
+                                float userRotation, float userZoom) {
+        Page page = getPage(pageNumber);
+        PDimension sz = page.getSize(pageBoundary, userRotation, userZoom);
+
+        int pageWidth = (int) sz.getWidth();
+        int pageHeight = (int) sz.getHeight();
+
+        BufferedImage image = new BufferedImage(pageWidth,
+                pageHeight,
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+
+        Image thumbnail = page.getThumbnailImage();
+        if (thumbnail != null) {
+            // the thumbnail shows the page unrotated by the user, so turn it
+            // about the centre of the preview.
+            int quadrants = Math.round(userRotation / 90f) & 3;
+            boolean isSideways = (quadrants & 1) == 1;
+            int thumbnailWidth = isSideways ? pageHeight : pageWidth;
+            int thumbnailHeight = isSideways ? pageWidth : pageHeight;
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                    RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.translate(pageWidth / 2.0, pageHeight / 2.0);
+            g.rotate(quadrants * Math.PI / 2);
+            g.drawImage(thumbnail, -thumbnailWidth / 2, -thumbnailHeight / 2,
+                    thumbnailWidth, thumbnailHeight, null);
+        } else {
+            page.paint(g, GraphicsRenderingHints.DRAFT,
+                    pageBoundary, userRotation, userZoom);
+        }
+        g.dispose();
+        releasePage(page);
+
+        return image;
+    }
+
+    /**
+     * Renders a range of pages on the shared page rendering threads, see
+     * {@link #renderPages(int, int, int, int, float, float, boolean, Executor, PageImageCallback)}.
+     * The number of threads is set by the system property
+     * org.icepdf.core.render.threads, the number of processors by default.
+     *
+     * @param firstPage      zero-based number of the first page.
+     * @param lastPage       zero-based number of the last page, inclusive.
+     * @param renderHintType Constant specified by the GraphicsRenderingHints class.
+     *                       There are two possible entries, SCREEN and PRINT each with configurable
+     *                       rendering hints settings.
+     * @param pageBoundary   Constant specifying the page boundary to use when
+     *                       painting the page content.
+     * @param userRotation   Rotation factor, in degrees, to be applied to the rendered page
+     * @param userZoom       Zoom factor to be applied to the rendered page
+     * @param inPageOrder    true to receive the pages in page order, false to
+     *                       receive each page as soon as it is finished.
+     * @param callback       receives the image of each page.
+     * @throws InterruptedException if the calling thread is interrupted.
+     */
+    public void renderPages(int firstPage, int lastPage,
+                            int renderHintType, int pageBoundary,
+                            float userRotation, float userZoom,
+                            boolean inPageOrder, PageImageCallback callback)
+            throws InterruptedException {
+        renderPages(firstPage, lastPage, renderHintType, pageBoundary,
+                userRotation, userZoom, inPageOrder,
+                PageBatchRenderer.getDefaultExecutor(), callback);
+    }
+
+    /**
+     * Renders a range of pages, each page is initialized and painted on the
+     * executor and its image handed to the callback.  The images of the
+     * batch share a pool of rasters, a raster is reused once the callback
+     * returns, so each image must be encoded or copied by the callback.
+     * In page order the callback is called one page at a time, otherwise it
+     * may be called from several threads at once.  This method returns once
+     * every page has been handed to the callback.
+     *
+     * @param firstPage      zero-based number of the first page.
+     * @param lastPage       zero-based number of the last page, inclusive.
+     * @param renderHintType Constant specified by the GraphicsRenderingHints class.
+     *                       There are two possible entries, SCREEN and PRINT each with configurable
+     *                       rendering hints settings.
+     * @param pageBoundary   Constant specifying the page boundary to use when
+     *                       painting the page content.
+     * @param userRotation   Rotation factor, in degrees, to be applied to the rendered page
+     * @param userZoom       Zoom factor to be applied to the rendered page
+     * @param inPageOrder    true to receive the pages in page order, false to
+     *                       receive each page as soon as it is finished.
+     * @param executor       executor the pages are rendered on.
+     * @param callback       receives the image of each page.
+     * @throws InterruptedException if the calling thread is interrupted.
+     */
+    public void renderPages(int firstPage, int lastPage,
+                            int renderHintType, int pageBoundary,
+                            float userRotation, float userZoom,
+                            boolean inPageOrder, Executor executor,
+                            PageImageCallback callback)
+            throws InterruptedException {
+        firstPage = Math.max(firstPage, 0);
+        lastPage = Math.min(lastPage, getNumberOfPages() - 1);
+        if (firstPage > lastPage) {
+            return;
+        }
+        new PageBatchRenderer(this, renderHintType, pageBoundary,
+                userRotation, userZoom, inPageOrder, callback)
+                .render(firstPage, lastPage, executor);
+    }
+
     /**
      * Gets a vector of StringBuffers where each index represents a text block inside
      * the specified page number.  Due to limitations in how PDF document are encoded,
@@ -1004,17 +1490,31 @@ public class Document {
      * @return vector of StringBuffers of all text objects inside the specified page.
      */
     public Vector<StringBuffer> getPageText(int pageNumber) {
-        PageTree pageTree = catalog.getPageTree();
-        if (pageNumber >= 0 && pageNumber < pageTree.getNumberOfPages()) {
-            Page pg = pageTree.getPage(pageNumber, this);
+        if (pageNumber >= 0 && pageNumber < getNumberOfPages()) {
+            Page pg = getPage(pageNumber);
             Vector<StringBuffer> text = pg.getText();
-            catalog.getPageTree().releasePage(pg, this);
+            releasePage(pg);
             return text;
         } else {
             return new Vector<StringBuffer>();
         }
     }
 
+    /**
+     * Gets the index of the text of every page, for searching the document.
+     * The index is built in the background the first time it is asked for,
+     * its searches wait until it is complete.
+     *
+     * @return text index of the document.
+     */
+    public synchronized TextIndex getTextIndex() {
+        if (textIndex == null) {
+            textIndex = new TextIndex(this);
+            textIndex.start();
+        }
+        return textIndex;
+    }
+
     /**
      * Gets the security manager for this document. If the document has no
      * security manager null is returned.
@@ -1025,6 +1525,18 @@ public class Document {
         return library.securityManager;
     }
 
+    /**
+     * Sets the memory pool that holds the document's pages, in place of
+     * a pool of its own.  Documents sharing a pool, those of one tenant for
+     * example, share its limits and are isolated from the documents of
+     * other pools.  Must be set before the document is opened.
+     *
+     * @param memoryPool pool for the document's pages.
+     */
+    public void setMemoryPool(MemoryPool memoryPool) {
+        this.memoryPool = memoryPool;
+    }
+
     /**
      * Sets the security callback to be used for this document.  The security
      * callback allows a mechanism for prompting a user for a password if the
@@ -1060,12 +1572,46 @@ public class Document {
      * @return vector of Images inside the current page
      */
     public Vector getPageImages(int pageNumber) {
-        Page pg = catalog.getPageTree().getPage(pageNumber, this);
+        Page pg = getPage(pageNumber);
         Vector images = pg.getImages();
-        catalog.getPageTree().releasePage(pg, this);
+        releasePage(pg);
         return images;
     }
 
+    /**
+     * Gets a Page, locked on behalf of this Document, which must be released
+     * with releasePage(Page).  The pages of a linearized document are loaded
+     * directly using its hint tables, without the page tree, which may not
+     * have arrived yet if the document is loaded progressively.
+     *
+     * @param pageNumber zero-based page number.
+     * @return the requested page, or null if it doesn't exist.
+     */
+    Page getPage(int pageNumber) {
+        if (linearization != null && !catalog.isPageTreeLoaded()) {
+            Page page = linearization.getPage(pageNumber);
+            // a damaged hint table could point at some other page object
+            Object pageTree = library.getObject(catalog.getEntries(), "Pages");
+            if (page != null && pageTree instanceof PageTree &&
+                    ((PageTree) pageTree).isPageInTree(page)) {
+                library.memoryManager.lock(this, page);
+                return page;
+            }
+        }
+        return catalog.getPageTree().getPage(pageNumber, this);
+    }
+
+    /**
+     * Releases a Page locked by getPage(int).
+     *
+     * @param page page to release.
+     */
+    void releasePage(Page page) {
+        if (library != null && library.memoryManager != null) {
+            library.memoryManager.release(this, page);
+        }
+    }
+
     /**
      * Gets the Document Catalog's PageTree entry as specified by the Document
      * hierarchy.  The PageTree can be used to obtain detailed information about
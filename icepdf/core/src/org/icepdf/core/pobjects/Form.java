@@ -36,6 +36,7 @@ import org.icepdf.core.io.SeekableInputConstrainedWrapper;
 import org.icepdf.core.pobjects.graphics.GraphicsState;
 import org.icepdf.core.pobjects.graphics.Shapes;
 import org.icepdf.core.util.ContentParser;
+import org.icepdf.core.util.FormCache;
 import org.icepdf.core.util.Library;
 
 import java.awt.geom.AffineTransform;
@@ -68,6 +69,8 @@ public class Form extends Stream {
     private Resources resources;
     private Resources parentResource;
     private boolean inited = false;
+    // true when the shapes are shared through the library's form cache
+    private boolean sharedShapes;
 
     /**
      * @param l
@@ -83,7 +86,7 @@ public class Form extends Stream {
      * or reduce the memory footprint of, the refered objects
      */
     public void dispose(boolean cache) {
-        if (shapes != null)
+        if (shapes != null && !sharedShapes)
             shapes.dispose();
         if (resources != null) {
             resources.dispose(cache, this);
@@ -105,6 +108,7 @@ public class Form extends Stream {
         // null the reference, the shapes are refered to in the
         // parent page and will be disposed of later if needed.
         shapes = null;
+        sharedShapes = false;
         if (resources != null) {
             resources.removeReference(this);
             resources = null;
@@ -175,6 +179,18 @@ public class Form extends Stream {
         } else {
             leafResources = parentResource;
         }
+        // forms drawn again with the same graphics state reuse the shapes
+        // parsed the first time.
+        FormCache formCache = library.getFormCache();
+        Object cacheKey = formCache.getKey(this,
+                resources == null ? parentResource : null, graphicsState);
+        Shapes cachedShapes = formCache.get(cacheKey);
+        if (cachedShapes != null) {
+            shapes = cachedShapes;
+            sharedShapes = true;
+            inited = true;
+            return;
+        }
         // Build a new content parser for the content streams and apply the
         // content stream of the calling content stream. 
         ContentParser cp = new ContentParser(library, leafResources);
@@ -183,6 +199,7 @@ public class Form extends Stream {
         if (in != null) {
             try {
                 shapes = cp.parse(in);
+                sharedShapes = formCache.put(cacheKey, shapes);
             }
             catch (Throwable e) {
                 // reset shapes vector, we don't want to mess up the paint stack
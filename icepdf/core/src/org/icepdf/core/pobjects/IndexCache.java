@@ -0,0 +1,332 @@
+/*
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * "The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations under
+ * the License.
+ *
+ * The Original Code is ICEpdf 3.0 open source software code, released
+ * May 1st, 2009. The Initial Developer of the Original Code is ICEsoft
+ * Technologies Canada, Corp. Portions created by ICEsoft are Copyright (C)
+ * 2004-2009 ICEsoft Technologies Canada, Corp. All Rights Reserved.
+ *
+ * Contributor(s): _____________________.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"
+ * License), in which case the provisions of the LGPL License are
+ * applicable instead of those above. If you wish to allow use of your
+ * version of this file only under the terms of the LGPL License and not to
+ * allow others to use your version of this file under the MPL, indicate
+ * your decision by deleting the provisions above and replace them with
+ * the notice and other provisions required by the LGPL License. If you do
+ * not delete the provisions above, a recipient may use your version of
+ * this file under either the MPL or the LGPL License."
+ *
+ */
+package org.icepdf.core.pobjects;
+
+import org.icepdf.core.util.Defs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>The <code>IndexCache</code> class stores the resolved cross-reference
+ * and the page references of a PDF file on disk, so the next time the file
+ * is opened, the trailer and cross-reference sections don't need to be
+ * parsed, a broken cross-reference doesn't need to be rebuilt by reading the
+ * whole file, and pages are found without walking the page tree.</p>
+ * <p/>
+ * <p>An index is keyed by the file's canonical path, and is only used if the
+ * file's length, modification time and content hash still match, so it is
+ * invalidated as soon as the file changes.  The content hash is an MD5 digest
+ * of the first and last 64KB of the file, where the header, linearization
+ * data, trailer and cross-reference of any update are found, so large files
+ * don't have to be read in full.</p>
+ * <p/>
+ * <p>The cache is disabled by default, and is enabled with the system
+ * property org.icepdf.core.indexcache.enabled=true.  Index files are stored
+ * in the directory given by org.icepdf.core.indexcache.directory, which
+ * defaults to an icepdf-index folder in java.io.tmpdir.  Encrypted documents
+ * aren't cached.</p>
+ *
+ * @since 3.1
+ */
+public class IndexCache {
+
+    private static final Logger logger =
+            Logger.getLogger(IndexCache.class.toString());
+
+    private static final int MAGIC = 0x49435849;
+    private static final int VERSION = 1;
+
+    // bytes read from each end of the file for the content hash
+    private static final int HASH_SAMPLE_SIZE = 65536;
+
+    private static boolean isEnabled;
+    private static File cacheDirectory;
+
+    static {
+        isEnabled = Defs.sysPropertyBoolean(
+                "org.icepdf.core.indexcache.enabled", false);
+        cacheDirectory = new File(Defs.sysProperty(
+                "org.icepdf.core.indexcache.directory",
+                new File(System.getProperty("java.io.tmpdir"),
+                        "icepdf-index").getPath()));
+    }
+
+    private CrossReferenceIndex crossReferenceIndex;
+    private Reference rootReference;
+    private Reference infoReference;
+    private Reference[] pageReferences;
+
+    /**
+     * Creates a new index of a document.
+     *
+     * @param crossReferenceIndex merged entries of all cross-reference sections.
+     * @param rootReference       reference of the document catalog.
+     * @param infoReference       reference of the information dictionary,
+     *                            null if there is none.
+     * @param pageReferences      references of every page in page order, null
+     *                            if they couldn't be found.
+     */
+    public IndexCache(CrossReferenceIndex crossReferenceIndex,
+                      Reference rootReference, Reference infoReference,
+                      Reference[] pageReferences) {
+        this.crossReferenceIndex = crossReferenceIndex;
+        this.rootReference = rootReference;
+        this.infoReference = infoReference;
+        this.pageReferences = pageReferences;
+    }
+
+    /**
+     * Indicates if the index cache is enabled, by the system property
+     * org.icepdf.core.indexcache.enabled.
+     *
+     * @return true if documents opened from files should use the cache.
+     */
+    public static boolean isEnabled() {
+        return isEnabled;
+    }
+
+    /**
+     * Loads the index of a file, if one has been stored and the file hasn't
+     * changed since.
+     *
+     * @param file PDF file.
+     * @return index of the file, or null if there is no valid index.
+     */
+    public static IndexCache load(File file) {
+        try {
+            File indexFile = getIndexFile(file);
+            if (!indexFile.isFile())
+                return null;
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(indexFile)));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                    return null;
+                if (!in.readUTF().equals(file.getCanonicalPath()) ||
+                        in.readLong() != file.length() ||
+                        in.readLong() != file.lastModified())
+                    return null;
+                byte[] hash = new byte[in.readUnsignedByte()];
+                in.readFully(hash);
+                if (!Arrays.equals(hash, getContentHash(file)))
+                    return null;
+                Reference root = readReference(in);
+                Reference info = readReference(in);
+                Reference[] pages = null;
+                int pageCount = in.readInt();
+                if (pageCount >= 0) {
+                    pages = new Reference[pageCount];
+                    for (int i = 0; i < pageCount; i++) {
+                        pages[i] = readReference(in);
+                    }
+                }
+                CrossReferenceIndex index = CrossReferenceIndex.read(in);
+                if (root == null)
+                    return null;
+                return new IndexCache(index, root, info, pages);
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch (Exception e) {
+            logger.log(Level.FINE, "Error loading index of " + file, e);
+        }
+        return null;
+    }
+
+    /**
+     * Stores the index of a file, replacing any older index of the file.  The
+     * index isn't stored if the file has changed since it was opened.
+     *
+     * @param file         PDF file.
+     * @param length       length of the file when it was opened.
+     * @param lastModified modification time of the file when it was opened.
+     * @param index        index of the file.
+     */
+    public static void store(File file, long length, long lastModified,
+                             IndexCache index) {
+        File tempFile = null;
+        try {
+            if (file.length() != length || file.lastModified() != lastModified)
+                return;
+            if (!cacheDirectory.isDirectory() && !cacheDirectory.mkdirs())
+                return;
+            File indexFile = getIndexFile(file);
+            // written to a temporary file first, so other processes opening
+            // the same file never see a partly written index
+            tempFile = File.createTempFile("icepdf", ".tmp", cacheDirectory);
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(file.getCanonicalPath());
+                out.writeLong(length);
+                out.writeLong(lastModified);
+                byte[] hash = getContentHash(file);
+                out.writeByte(hash.length);
+                out.write(hash);
+                writeReference(out, index.rootReference);
+                writeReference(out, index.infoReference);
+                if (index.pageReferences == null) {
+                    out.writeInt(-1);
+                } else {
+                    out.writeInt(index.pageReferences.length);
+                    for (Reference page : index.pageReferences) {
+                        writeReference(out, page);
+                    }
+                }
+                index.crossReferenceIndex.write(out);
+            }
+            finally {
+                out.close();
+            }
+            indexFile.delete();
+            if (tempFile.renameTo(indexFile))
+                tempFile = null;
+        }
+        catch (Exception e) {
+            logger.log(Level.FINE, "Error storing index of " + file, e);
+        }
+        finally {
+            if (tempFile != null)
+                tempFile.delete();
+        }
+    }
+
+    /**
+     * Gets the merged entries of all of the document's cross-reference
+     * sections.
+     *
+     * @return cross-reference entries.
+     */
+    public CrossReferenceIndex getCrossReferenceIndex() {
+        return crossReferenceIndex;
+    }
+
+    /**
+     * Gets the reference of the document catalog.
+     *
+     * @return catalog reference.
+     */
+    public Reference getRootReference() {
+        return rootReference;
+    }
+
+    /**
+     * Gets the reference of the document information dictionary.
+     *
+     * @return information dictionary reference, null if there is none.
+     */
+    public Reference getInfoReference() {
+        return infoReference;
+    }
+
+    /**
+     * Gets the references of every page, in page order.
+     *
+     * @return page references, null if they weren't stored.
+     */
+    public Reference[] getPageReferences() {
+        return pageReferences;
+    }
+
+    private static File getIndexFile(File file)
+            throws IOException, NoSuchAlgorithmException {
+        MessageDigest md5 = MessageDigest.getInstance("MD5");
+        byte[] digest = md5.digest(file.getCanonicalPath().getBytes("UTF-8"));
+        StringBuffer name = new StringBuffer(digest.length * 2 + 4);
+        for (byte b : digest) {
+            name.append(Character.forDigit((b >> 4) & 0xF, 16));
+            name.append(Character.forDigit(b & 0xF, 16));
+        }
+        name.append(".idx");
+        return new File(cacheDirectory, name.toString());
+    }
+
+    static byte[] getContentHash(File file)
+            throws IOException, NoSuchAlgorithmException {
+        MessageDigest md5 = MessageDigest.getInstance("MD5");
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            long length = raf.length();
+            byte[] buffer = new byte[(int) Math.min(HASH_SAMPLE_SIZE, length)];
+            raf.readFully(buffer);
+            md5.update(buffer);
+            if (length > HASH_SAMPLE_SIZE) {
+                raf.seek(Math.max(HASH_SAMPLE_SIZE, length - HASH_SAMPLE_SIZE));
+                int count = (int) (length - raf.getFilePointer());
+                raf.readFully(buffer, 0, count);
+                md5.update(buffer, 0, count);
+            }
+        }
+        finally {
+            raf.close();
+        }
+        return md5.digest();
+    }
+
+    private static void writeReference(DataOutputStream out, Reference reference)
+            throws IOException {
+        if (reference == null) {
+            out.writeInt(-1);
+            out.writeInt(0);
+        } else {
+            out.writeInt(reference.getObjectNumber());
+            out.writeInt(reference.getGenerationNumber());
+        }
+    }
+
+    private static Reference readReference(DataInputStream in)
+            throws IOException {
+        int objectNumber = in.readInt();
+        int generationNumber = in.readInt();
+        if (objectNumber < 0)
+            return null;
+        return new Reference(objectNumber, generationNumber);
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * "The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations under
+ * the License.
+ *
+ * The Original Code is ICEpdf 3.0 open source software code, released
+ * May 1st, 2009. The Initial Developer of the Original Code is ICEsoft
+ * Technologies Canada, Corp. Portions created by ICEsoft are Copyright (C)
+ * 2004-2009 ICEsoft Technologies Canada, Corp. All Rights Reserved.
+ *
+ * Contributor(s): _____________________.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"
+ * License), in which case the provisions of the LGPL License are
+ * applicable instead of those above. If you wish to allow use of your
+ * version of this file only under the terms of the LGPL License and not to
+ * allow others to use your version of this file under the MPL, indicate
+ * your decision by deleting the provisions above and replace them with
+ * the notice and other provisions required by the LGPL License. If you do
+ * not delete the provisions above, a recipient may use your version of
+ * this file under either the MPL or the LGPL License."
+ *
+ */
+package org.icepdf.core.pobjects;
+
+import org.icepdf.core.util.Library;
+
+import java.util.Hashtable;
+import java.util.Vector;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>The <code>Linearization</code> class represents the linearization
+ * parameter dictionary of a linearized, or "fast web view", PDF file.  It
+ * must be the first object in the file, and is followed by the first page
+ * cross-reference section and trailer, so the document catalog and the
+ * first page can be loaded without reading the end of the file.</p>
+ * <p/>
+ * <p>A linearization dictionary is only valid if the file length it records
+ * matches the actual file length, otherwise the file has been updated since
+ * it was linearized, and should be read as a regular PDF file.  See
+ * Appendix F of the PDF Reference version 1.6 for more information.</p>
+ *
+ * @since 3.1
+ */
+public class Linearization extends Dictionary {
+
+    private static final Logger logger =
+            Logger.getLogger(Linearization.class.toString());
+
+    // primary hint stream tables, loaded when a page other than the first
+    // page is needed.
+    private LinearizationHints hints;
+    private boolean hintsLoaded;
+    // object numbers of the page objects located with the hint tables
+    private int[] pageObjectNumbers;
+
+    /**
+     * Creates a new instance of a Linearization dictionary.
+     *
+     * @param l document library.
+     * @param h linearization parameter dictionary entries.
+     */
+    public Linearization(Library l, Hashtable h) {
+        super(l, h);
+    }
+
+    /**
+     * Checks if the given dictionary is a linearization parameter dictionary.
+     *
+     * @param dictionary dictionary entries of the first object in the file.
+     * @return true if the dictionary has a Linearized entry.
+     */
+    public static boolean isLinearizationDictionary(Hashtable dictionary) {
+        return dictionary != null && dictionary.get("Linearized") != null;
+    }
+
+    /**
+     * Gets the length of the entire file in bytes.
+     *
+     * @return file length, or 0 if not specified.
+     */
+    public long getFileLength() {
+        return library.getLong(entries, "L");
+    }
+
+    /**
+     * Gets the offset of the primary hint stream.
+     *
+     * @return primary hint stream offset, or 0 if not specified.
+     */
+    public long getPrimaryHintStreamOffset() {
+        return getHintStreamEntry(0);
+    }
+
+    /**
+     * Gets the length of the primary hint stream.
+     *
+     * @return primary hint stream length, or 0 if not specified.
+     */
+    public long getPrimaryHintStreamLength() {
+        return getHintStreamEntry(1);
+    }
+
+    /**
+     * Gets the object number of the first page's page object.
+     *
+     * @return first page object number.
+     */
+    public int getFirstPageObjectNumber() {
+        return library.getInt(entries, "O");
+    }
+
+    /**
+     * Gets the offset of the end of the first page.
+     *
+     * @return end of the first page, or 0 if not specified.
+     */
+    public long getEndOfFirstPage() {
+        return library.getLong(entries, "E");
+    }
+
+    /**
+     * Gets the number of pages in the document.
+     *
+     * @return number of pages.
+     */
+    public int getNumberOfPages() {
+        return library.getInt(entries, "N");
+    }
+
+    /**
+     * Gets the offset of the first entry in the main cross-reference table.
+     *
+     * @return main cross-reference table first entry offset.
+     */
+    public long getMainCrossReferenceOffset() {
+        return library.getLong(entries, "T");
+    }
+
+    /**
+     * Gets the zero-based page number of the first page, which is the page
+     * stored in the first page section.
+     *
+     * @return first page number, 0 if not specified.
+     */
+    public int getFirstPageNumber() {
+        return library.getInt(entries, "P");
+    }
+
+    /**
+     * Checks if the linearization still describes the file, that is, if the
+     * file hasn't been updated since it was linearized.
+     *
+     * @param actualFileLength actual length of the file.
+     * @return true if the recorded file length matches.
+     */
+    public boolean isValid(long actualFileLength) {
+        return getFileLength() == actualFileLength;
+    }
+
+    /**
+     * Gets the page offset and shared object hint tables of the primary hint
+     * stream, which are read the first time they are needed.
+     *
+     * @return hint tables, or null if they are missing or can't be read.
+     */
+    public synchronized LinearizationHints getHints() {
+        if (!hintsLoaded) {
+            hintsLoaded = true;
+            long offset = getPrimaryHintStreamOffset();
+            if (offset > 0) {
+                Object hintStream = library.getObjectByFilePosition(offset);
+                if (hintStream instanceof Stream) {
+                    Stream stream = (Stream) hintStream;
+                    try {
+                        hints = new LinearizationHints(stream.getBytes(),
+                                library.getInt(stream.getEntries(), "S"),
+                                getNumberOfPages(), offset,
+                                getPrimaryHintStreamLength());
+                    }
+                    catch (IllegalArgumentException e) {
+                        logger.log(Level.FINE, "Error reading hint tables.", e);
+                    }
+                }
+            }
+        }
+        return hints;
+    }
+
+    /**
+     * Gets a page without the page tree.  The first page is found with the
+     * linearization dictionary, and other pages with the page offset hint
+     * table, whose page and shared object positions are added to the
+     * cross-reference, so the page's objects can be loaded without the main
+     * cross-reference section.  The returned page is not locked.
+     *
+     * @param pageIndex zero-based page index.
+     * @return the page, or null if it has to be found with the page tree.
+     */
+    public Page getPage(int pageIndex) {
+        int pageObjectNumber = -1;
+        if (pageIndex == getFirstPageNumber()) {
+            pageObjectNumber = getFirstPageObjectNumber();
+        }
+        // the hint tables are in page order starting with the first page,
+        // which is only page order if the first page is page 0.
+        else if (getFirstPageNumber() == 0) {
+            pageObjectNumber = getHintedPageObjectNumber(pageIndex);
+        }
+        if (pageObjectNumber < 0) {
+            return null;
+        }
+        Object pageObject = library.getObject(
+                new Reference(pageObjectNumber, 0));
+        if (pageObject instanceof Page) {
+            return (Page) pageObject;
+        }
+        return null;
+    }
+
+    private synchronized int getHintedPageObjectNumber(int pageIndex) {
+        LinearizationHints hints = getHints();
+        if (hints == null || pageIndex < 0 ||
+                pageIndex >= hints.getNumberOfPages()) {
+            return -1;
+        }
+        if (pageObjectNumbers == null) {
+            pageObjectNumbers = new int[hints.getNumberOfPages()];
+        }
+        // 0 is never a valid object number, so it marks pages not yet found
+        if (pageObjectNumbers[pageIndex] == 0) {
+            pageObjectNumbers[pageIndex] = library.addObjectPositions(
+                    hints.getPageOffset(pageIndex),
+                    hints.getPageLength(pageIndex), -1,
+                    hints.getPageObjectCount(pageIndex));
+            int[] groups = hints.getPageSharedGroups(pageIndex);
+            for (int group : groups) {
+                if (group < hints.getSharedGroupCount() &&
+                        !hints.isFirstPageSharedGroup(group)) {
+                    library.addObjectPositions(
+                            hints.getSharedGroupOffset(group),
+                            hints.getSharedGroupLength(group),
+                            hints.getSharedGroupFirstObjectNumber(group),
+                            hints.getSharedGroupObjectCount(group));
+                }
+            }
+        }
+        return pageObjectNumbers[pageIndex];
+    }
+
+    private long getHintStreamEntry(int index) {
+        Object hint = library.getObject(entries, "H");
+        if (hint instanceof Vector) {
+            Vector hintVector = (Vector) hint;
+            if (index < hintVector.size() &&
+                    hintVector.get(index) instanceof Number) {
+                return ((Number) hintVector.get(index)).longValue();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns a summary of the Linearization dictionary values.
+     *
+     * @return dictionary values.
+     */
+    public String toString() {
+        return "LINEARIZATION= " + entries.toString();
+    }
+}
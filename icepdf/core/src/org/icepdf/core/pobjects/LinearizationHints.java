@@ -0,0 +1,355 @@
+/*
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * "The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations under
+ * the License.
+ *
+ * The Original Code is ICEpdf 3.0 open source software code, released
+ * May 1st, 2009. The Initial Developer of the Original Code is ICEsoft
+ * Technologies Canada, Corp. Portions created by ICEsoft are Copyright (C)
+ * 2004-2009 ICEsoft Technologies Canada, Corp. All Rights Reserved.
+ *
+ * Contributor(s): _____________________.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"
+ * License), in which case the provisions of the LGPL License are
+ * applicable instead of those above. If you wish to allow use of your
+ * version of this file only under the terms of the LGPL License and not to
+ * allow others to use your version of this file under the MPL, indicate
+ * your decision by deleting the provisions above and replace them with
+ * the notice and other provisions required by the LGPL License. If you do
+ * not delete the provisions above, a recipient may use your version of
+ * this file under either the MPL or the LGPL License."
+ *
+ */
+package org.icepdf.core.pobjects;
+
+/**
+ * <p>The <code>LinearizationHints</code> class holds the page offset hint
+ * table and the shared object hint table of a linearized PDF file's primary
+ * hint stream.  The tables give the location, length and number of objects
+ * of every page, and of every group of objects shared between pages, so a
+ * page can be loaded without walking the page tree or reading the main
+ * cross-reference table.</p>
+ * <p/>
+ * <p>Offsets in the hint tables are recorded as if the primary hint stream
+ * were not present in the file, they are adjusted when the tables are read.
+ * See Appendix F.4 of the PDF Reference version 1.6 for more
+ * information.</p>
+ *
+ * @since 3.1
+ */
+public class LinearizationHints {
+
+    // page offset hint table, one entry per page
+    private int[] pageObjectCount;
+    private long[] pageOffset;
+    private long[] pageLength;
+    private int[][] pageSharedGroups;
+
+    // shared object hint table, one entry per shared object group
+    private int firstPageSharedGroupCount;
+    private int[] sharedGroupObjectCount;
+    private int[] sharedGroupFirstObjectNumber;
+    private long[] sharedGroupOffset;
+    private long[] sharedGroupLength;
+
+    /**
+     * Creates a new instance of the hint tables by reading the decoded
+     * primary hint stream.
+     *
+     * @param data                   decoded primary hint stream bytes.
+     * @param sharedObjectTableStart offset of the shared object hint table in
+     *                               the decoded stream, the hint stream's S entry.
+     * @param numberOfPages          number of pages in the document.
+     * @param hintStreamOffset       file offset of the primary hint stream.
+     * @param hintStreamLength       length of the primary hint stream.
+     * @throws IllegalArgumentException if the hint tables are truncated.
+     */
+    public LinearizationHints(byte[] data, int sharedObjectTableStart,
+                              int numberOfPages, long hintStreamOffset,
+                              long hintStreamLength) {
+        BitReader reader = new BitReader(data, 0);
+        readPageOffsetTable(reader, numberOfPages,
+                hintStreamOffset, hintStreamLength);
+        reader = new BitReader(data, sharedObjectTableStart);
+        readSharedObjectTable(reader, hintStreamOffset, hintStreamLength);
+    }
+
+    private void readPageOffsetTable(BitReader reader, int numberOfPages,
+                                     long hintStreamOffset,
+                                     long hintStreamLength) {
+        int leastObjectCount = (int) reader.read(32);
+        long firstPageOffset = reader.read(32);
+        int objectCountBits = (int) reader.read(16);
+        long leastPageLength = reader.read(32);
+        int pageLengthBits = (int) reader.read(16);
+        // content stream offset and length are not needed to load a page
+        reader.read(32);
+        int contentOffsetBits = (int) reader.read(16);
+        reader.read(32);
+        int contentLengthBits = (int) reader.read(16);
+        int sharedCountBits = (int) reader.read(16);
+        int sharedIdentifierBits = (int) reader.read(16);
+        int numeratorBits = (int) reader.read(16);
+        reader.read(16);
+
+        pageObjectCount = new int[numberOfPages];
+        pageOffset = new long[numberOfPages];
+        pageLength = new long[numberOfPages];
+        pageSharedGroups = new int[numberOfPages][];
+
+        // each item is stored for all the pages, before the next item
+        for (int i = 0; i < numberOfPages; i++) {
+            pageObjectCount[i] = leastObjectCount +
+                    (int) reader.read(objectCountBits);
+        }
+        reader.align();
+        for (int i = 0; i < numberOfPages; i++) {
+            pageLength[i] = leastPageLength + reader.read(pageLengthBits);
+        }
+        reader.align();
+        for (int i = 0; i < numberOfPages; i++) {
+            pageSharedGroups[i] = new int[(int) reader.read(sharedCountBits)];
+        }
+        reader.align();
+        for (int i = 0; i < numberOfPages; i++) {
+            int[] groups = pageSharedGroups[i];
+            for (int j = 0; j < groups.length; j++) {
+                groups[j] = (int) reader.read(sharedIdentifierBits);
+            }
+        }
+        reader.align();
+        for (int i = 0; i < numberOfPages; i++) {
+            reader.skip(numeratorBits * pageSharedGroups[i].length);
+        }
+        reader.align();
+        reader.skip(contentOffsetBits * numberOfPages);
+        reader.align();
+        reader.skip(contentLengthBits * numberOfPages);
+
+        // pages are stored in order, starting with the first page
+        long offset = firstPageOffset;
+        for (int i = 0; i < numberOfPages; i++) {
+            pageOffset[i] = adjustOffset(offset,
+                    hintStreamOffset, hintStreamLength);
+            offset += pageLength[i];
+        }
+    }
+
+    private void readSharedObjectTable(BitReader reader,
+                                       long hintStreamOffset,
+                                       long hintStreamLength) {
+        int firstObjectNumber = (int) reader.read(32);
+        long firstOffset = reader.read(32);
+        firstPageSharedGroupCount = (int) reader.read(32);
+        int groupCount = (int) reader.read(32);
+        int objectCountBits = (int) reader.read(16);
+        long leastGroupLength = reader.read(32);
+        int groupLengthBits = (int) reader.read(16);
+
+        sharedGroupObjectCount = new int[groupCount];
+        sharedGroupFirstObjectNumber = new int[groupCount];
+        sharedGroupOffset = new long[groupCount];
+        sharedGroupLength = new long[groupCount];
+
+        for (int i = 0; i < groupCount; i++) {
+            sharedGroupLength[i] = leastGroupLength +
+                    reader.read(groupLengthBits);
+        }
+        reader.align();
+        boolean[] signed = new boolean[groupCount];
+        for (int i = 0; i < groupCount; i++) {
+            signed[i] = reader.read(1) != 0;
+        }
+        reader.align();
+        for (int i = 0; i < groupCount; i++) {
+            // MD5 signature of the group
+            if (signed[i]) {
+                reader.skip(128);
+            }
+        }
+        reader.align();
+        for (int i = 0; i < groupCount; i++) {
+            sharedGroupObjectCount[i] = 1 + (int) reader.read(objectCountBits);
+        }
+
+        // groups of the first page are part of the first page section, and
+        // are found with the first page cross-reference, the rest are stored
+        // in order in the shared objects section.
+        long offset = firstOffset;
+        int objectNumber = firstObjectNumber;
+        for (int i = firstPageSharedGroupCount; i < groupCount; i++) {
+            sharedGroupOffset[i] = adjustOffset(offset,
+                    hintStreamOffset, hintStreamLength);
+            sharedGroupFirstObjectNumber[i] = objectNumber;
+            offset += sharedGroupLength[i];
+            objectNumber += sharedGroupObjectCount[i];
+        }
+    }
+
+    private static long adjustOffset(long offset, long hintStreamOffset,
+                                     long hintStreamLength) {
+        if (offset >= hintStreamOffset) {
+            return offset + hintStreamLength;
+        }
+        return offset;
+    }
+
+    /**
+     * Gets the number of pages described by the page offset hint table.
+     *
+     * @return number of pages.
+     */
+    public int getNumberOfPages() {
+        return pageOffset.length;
+    }
+
+    /**
+     * Gets the file offset of a page's page object, which is the first of the
+     * page's objects.
+     *
+     * @param pageIndex zero-based page index.
+     * @return file offset of the page object.
+     */
+    public long getPageOffset(int pageIndex) {
+        return pageOffset[pageIndex];
+    }
+
+    /**
+     * Gets the length in bytes of all of a page's objects.
+     *
+     * @param pageIndex zero-based page index.
+     * @return length of the page's objects.
+     */
+    public long getPageLength(int pageIndex) {
+        return pageLength[pageIndex];
+    }
+
+    /**
+     * Gets the number of objects belonging to a page, which are numbered
+     * sequentially starting with the page object.
+     *
+     * @param pageIndex zero-based page index.
+     * @return number of objects in the page.
+     */
+    public int getPageObjectCount(int pageIndex) {
+        return pageObjectCount[pageIndex];
+    }
+
+    /**
+     * Gets the identifiers of the shared object groups referenced by a page.
+     *
+     * @param pageIndex zero-based page index.
+     * @return shared object group identifiers, possibly empty.
+     */
+    public int[] getPageSharedGroups(int pageIndex) {
+        return pageSharedGroups[pageIndex];
+    }
+
+    /**
+     * Gets the number of shared object groups.
+     *
+     * @return number of shared object groups.
+     */
+    public int getSharedGroupCount() {
+        return sharedGroupObjectCount.length;
+    }
+
+    /**
+     * Indicates if a shared object group is stored in the first page section,
+     * in which case it is described by the first page cross-reference and its
+     * offset and object numbers are not recorded.
+     *
+     * @param groupIndex shared object group identifier.
+     * @return true if the group belongs to the first page section.
+     */
+    public boolean isFirstPageSharedGroup(int groupIndex) {
+        return groupIndex < firstPageSharedGroupCount;
+    }
+
+    /**
+     * Gets the file offset of a shared object group.
+     *
+     * @param groupIndex shared object group identifier.
+     * @return file offset of the group's first object.
+     */
+    public long getSharedGroupOffset(int groupIndex) {
+        return sharedGroupOffset[groupIndex];
+    }
+
+    /**
+     * Gets the length in bytes of a shared object group.
+     *
+     * @param groupIndex shared object group identifier.
+     * @return length of the group's objects.
+     */
+    public long getSharedGroupLength(int groupIndex) {
+        return sharedGroupLength[groupIndex];
+    }
+
+    /**
+     * Gets the object number of the first object of a shared object group,
+     * the rest of the group's objects are numbered sequentially.
+     *
+     * @param groupIndex shared object group identifier.
+     * @return first object number of the group.
+     */
+    public int getSharedGroupFirstObjectNumber(int groupIndex) {
+        return sharedGroupFirstObjectNumber[groupIndex];
+    }
+
+    /**
+     * Gets the number of objects in a shared object group.
+     *
+     * @param groupIndex shared object group identifier.
+     * @return number of objects in the group.
+     */
+    public int getSharedGroupObjectCount(int groupIndex) {
+        return sharedGroupObjectCount[groupIndex];
+    }
+
+    /**
+     * Reads the big-endian bit fields of the hint tables.
+     */
+    private static class BitReader {
+        private byte[] data;
+        private long bitPosition;
+
+        BitReader(byte[] data, int start) {
+            this.data = data;
+            bitPosition = (long) start * 8;
+        }
+
+        long read(int bits) {
+            long value = 0;
+            for (int i = 0; i < bits; i++) {
+                int index = (int) (bitPosition >> 3);
+                if (index >= data.length) {
+                    throw new IllegalArgumentException(
+                            "Hint table is truncated.");
+                }
+                int bit = (data[index] >> (7 - (int) (bitPosition & 7))) & 1;
+                value = (value << 1) | bit;
+                bitPosition++;
+            }
+            return value;
+        }
+
+        void skip(int bits) {
+            bitPosition += bits;
+        }
+
+        void align() {
+            bitPosition = (bitPosition + 7) & ~7L;
+        }
+    }
+}
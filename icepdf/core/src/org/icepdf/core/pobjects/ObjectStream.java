@@ -53,7 +53,8 @@ public class ObjectStream extends Stream {
             Logger.getLogger(Form.class.toString());
 
     private boolean m_bInited;
-    private SeekableInput m_DecodedStream;
+    // decoded data is shared, each load gets its own cursor over it
+    private byte[] m_DecodedData;
     private int[] m_iaObjectNumbers;
     private long[] m_laObjectOffset;
 
@@ -75,42 +76,47 @@ public class ObjectStream extends Stream {
         int numObjects = library.getInt(entries, "N");
         long firstObjectsOffset = library.getLong(entries, "First");
         byte[] data = getBytes();
-        m_DecodedStream = new SeekableByteArrayInputStream(data);
-        m_DecodedStream.beginThreadAccess();
-        m_iaObjectNumbers = new int[numObjects];
-        m_laObjectOffset = new long[numObjects];
-        try{
-            Parser parser = new Parser(m_DecodedStream);
+        int[] objectNumbers = new int[numObjects];
+        long[] objectOffsets = new long[numObjects];
+        if (data != null) {
+            SeekableInput decodedStream = new SeekableByteArrayInputStream(data);
+            Parser parser = new Parser(decodedStream);
             for (int i = 0; i < numObjects; i++) {
-                m_iaObjectNumbers[i] = parser.getIntSurroundedByWhitespace();
-                m_laObjectOffset[i] = parser.getLongSurroundedByWhitespace() + firstObjectsOffset;
+                objectNumbers[i] = parser.getIntSurroundedByWhitespace();
+                objectOffsets[i] = parser.getLongSurroundedByWhitespace() + firstObjectsOffset;
             }
         }
-        finally {
-            m_DecodedStream.endThreadAccess();
-        }
-
+        m_DecodedData = data;
+        m_iaObjectNumbers = objectNumbers;
+        m_laObjectOffset = objectOffsets;
     }
 
     public boolean loadObject(Library library, int objectIndex) {
 //System.out.println("ObjectStream.loadObject()  objectIndex: " + objectIndex);
         init();
-        if (m_iaObjectNumbers == null ||
-                m_laObjectOffset == null ||
-                m_iaObjectNumbers.length != m_laObjectOffset.length ||
+        // take local copies, as dispose() may run on another Thread
+        byte[] decodedData = m_DecodedData;
+        int[] objectNumbers = m_iaObjectNumbers;
+        long[] objectOffsets = m_laObjectOffset;
+        if (decodedData == null ||
+                objectNumbers == null ||
+                objectOffsets == null ||
+                objectNumbers.length != objectOffsets.length ||
                 objectIndex < 0 ||
-                objectIndex >= m_iaObjectNumbers.length) {
+                objectIndex >= objectNumbers.length) {
 //System.out.println("ObjectStream.loadObject()  init failed");
             return false;
         }
         boolean gotSomething = false;
         try {
-            int objectNumber = m_iaObjectNumbers[objectIndex];
-            long position = m_laObjectOffset[objectIndex];
+            int objectNumber = objectNumbers[objectIndex];
+            long position = objectOffsets[objectIndex];
 //System.out.println("ObjectStream.loadObject()  objectNumber: " + objectNumber + ", position: " + position);
-            m_DecodedStream.beginThreadAccess();
-            m_DecodedStream.seekAbsolute(position);
-            Parser parser = new Parser(m_DecodedStream, Parser.PARSE_MODE_OBJECT_STREAM);
+            // a private cursor per load lets Threads read objects in parallel
+            SeekableInput decodedStream =
+                    new SeekableByteArrayInputStream(decodedData);
+            decodedStream.seekAbsolute(position);
+            Parser parser = new Parser(decodedStream, Parser.PARSE_MODE_OBJECT_STREAM);
             // Parser.getObject() either does 1 of 3 things:
             // 1. Gets a core object (Dictionary or Stream), adds it to Library by object Reference, returns PObject
             // 2. Gets a non-core-object, leaves it on stack, returns null
@@ -130,15 +136,22 @@ public class ObjectStream extends Stream {
         catch (Exception e) {
              logger.log(Level.FINE, "Error loading PDF object.", e);
         }
-        finally {
-            m_DecodedStream.endThreadAccess();
-        }
         return gotSomething;
     }
 
+    /**
+     * Gets the number of decoded bytes held by the object stream.
+     *
+     * @return decoded length, or 0 if the stream isn't decoded.
+     */
+    public int getDecodedLength() {
+        byte[] decodedData = m_DecodedData;
+        return decodedData != null ? decodedData.length : 0;
+    }
+
     public void dispose(boolean cache) {
         m_bInited = false;
-        m_DecodedStream = null;
+        m_DecodedData = null;
         m_iaObjectNumbers = null;
         m_laObjectOffset = null;
         super.dispose(cache);
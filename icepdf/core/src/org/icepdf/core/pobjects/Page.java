@@ -50,6 +50,7 @@ import java.io.InputStream;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Vector;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
@@ -114,26 +115,34 @@ public class Page extends Dictionary implements MemoryManageable {
      */
     public static final int BOUNDARY_ARTBOX = 5;
 
-    // Flag for call to init method, very simple cache
-    private boolean isInited = false;
+    // Flag for call to init method, very simple cache, read without the
+    // page's lock so painting threads don't queue behind one another.
+    private volatile boolean isInited = false;
     private final Object isInitedLock = new Object();
 
     // resources for page's parent pages, default fonts, etc.
     private Resources resources;
 
     // Vector of annotations
-    private Vector<Annotation> annotation;
+    private volatile Vector<Annotation> annotation;
 
     // Contents
     private Vector<Stream> contents;
-    // Container for all shapes stored on page
-    private Shapes shapes = null;
+    // Container for all shapes stored on page, published once parsing is
+    // complete and never changed afterwards, so any number of threads can
+    // paint it at the same time.
+    private volatile Shapes shapes = null;
+    // estimated bytes retained by the initialized page, read by the
+    // memory manager without the page's lock
+    private volatile long memorySize;
 
     // extracted text from page
-    private Vector<StringBuffer> extractedText;
+    private volatile Vector<StringBuffer> extractedText;
 
-    // the collection of objects listening for page paint events
-    private Vector<PaintPageListener> paintPageListeners = new Vector<PaintPageListener>();
+    // the collection of objects listening for page paint events, copied on
+    // write so events can fire while listeners come and go.
+    private final CopyOnWriteArrayList<PaintPageListener> paintPageListeners =
+            new CopyOnWriteArrayList<PaintPageListener>();
 
     // Defines the boundaries of the physical medium on which the page is
     // intended to be displayed on.
@@ -178,10 +187,9 @@ public class Page extends Dictionary implements MemoryManageable {
         if (isInited) {
             // un-init a page to free up memory
             isInited = false;
+            memorySize = 0;
             // null data collections for page content
-            if (annotation != null) {
-                annotation.clear();
-            }
+            annotation = null;
             // work through contents and null any stream that have images in them
             if (contents != null) {
                 Enumeration pageContent = contents.elements();
@@ -197,17 +205,12 @@ public class Page extends Dictionary implements MemoryManageable {
                 contents.clear();
             }
 
-            // work through contents and null any stream that have images in them
-            if (shapes != null) {
-                shapes.dispose();
-                shapes = null;
-            }
+            // detach the shapes rather than clearing them, another thread
+            // may still be painting them and they are collected once it is done.
+            shapes = null;
 
-            // clear extracted text
-            if (extractedText != null) {
-                extractedText.clear();
-                extractedText = null;
-            }
+            // detach the extracted text, callers may still hold the vector.
+            extractedText = null;
 
             // work through resources and null any images in the image hash
             if (resources != null) {
@@ -216,9 +219,7 @@ public class Page extends Dictionary implements MemoryManageable {
             }
         }
         // clear vector of listeners
-        if (paintPageListeners != null) {
-            paintPageListeners.clear();
-        }
+        paintPageListeners.clear();
     }
 
     public boolean isInitiated() {
@@ -279,7 +280,7 @@ public class Page extends Dictionary implements MemoryManageable {
         Object annots = library.getObject(entries, "Annots");
         if (annots != null && annots instanceof Vector) {
             Vector v = (Vector) annots;
-            annotation = new Vector<Annotation>(v.size() + 1);
+            Vector<Annotation> annotation = new Vector<Annotation>(v.size() + 1);
             // add annotation
             Object annotObj;
             org.icepdf.core.pobjects.annotations.Annotation a = null;
@@ -307,6 +308,8 @@ public class Page extends Dictionary implements MemoryManageable {
                 // add any found annotations to the vector.
                 annotation.addElement(a);
             }
+            // publish the vector once it is complete
+            this.annotation = annotation;
         }
     }
 
@@ -338,6 +341,7 @@ public class Page extends Dictionary implements MemoryManageable {
              * go to town and build all of the page's shapes.
              */
 
+            Shapes shapes;
             if (contents != null) {
                 Vector<InputStream> inputStreamsVec = new Vector<InputStream>(contents.size());
                 for (int st = 0, max = contents.size(); st < max; st++) {
@@ -381,7 +385,9 @@ public class Page extends Dictionary implements MemoryManageable {
             else {
                 shapes = new Shapes();
             }
-            // set the initiated flag
+            // publish the finished shapes before the initiated flag
+            memorySize = shapes.getMemorySize();
+            this.shapes = shapes;
             isInited = true;
 
         }catch(InterruptedException e){
@@ -439,6 +445,9 @@ public class Page extends Dictionary implements MemoryManageable {
         if (!isInited) {
             init();
         }
+        // paint the shapes published by init even if the page is disposed
+        // part way through.
+        Shapes shapes = this.shapes;
 
         Graphics2D g2 = (Graphics2D) g;
         GraphicsRenderingHints grh = GraphicsRenderingHints.getDefault();
@@ -483,14 +492,13 @@ public class Page extends Dictionary implements MemoryManageable {
             AffineTransform pageTransform = g2.getTransform();
             Shape pageClip = g2.getClip();
 
-            shapes.setPageParent(this);
-            shapes.paint(g2, pagePainter);
-            shapes.setPageParent(null);
+            shapes.paint(g2, this, pagePainter);
 
             g2.setTransform(pageTransform);
             g2.setClip(pageClip);
         }
         // paint annotation if available and desired.
+        Vector<Annotation> annotation = this.annotation;
         if (annotation != null && paintAnnotations) {
             float totalRotation = getTotalRotation(userRotation);
             int num = annotation.size();
@@ -1028,66 +1036,128 @@ public class Page extends Dictionary implements MemoryManageable {
      *
      * @return vector of Strings of all text objects inside the specified page.
      */
-    public synchronized Vector<StringBuffer> getText() {
-
+    public Vector<StringBuffer> getText() {
         // we only do this once per page
+        Vector<StringBuffer> text = extractedText;
+        if (text != null) {
+            return text;
+        }
+        return extractText();
+    }
+
+    private synchronized Vector<StringBuffer> extractText() {
+        // another thread may have extracted the text while we waited
         if (extractedText != null) {
             return extractedText;
         }
 
         try{
-            /**
-             * Finally iterate through the contents vector and concat all of the
-             * the resouse streams together so that the contant parser can
-             * go to town and build all of the pages shapes.
-             */
-            if (contents == null) {
-                // Get the value of the page's content entry
-                initPageContents();
-            }
+            extractedText = parseTextBlocks(null, false);
+        }catch(InterruptedException e){
+            // keeps shapes vector so we can paint what we have but make init state as false
+            // so we can try to reparse it later.
+            isInited = false;
+            logger.log(Level.SEVERE, "Page text extraction thread interrupted.", e);
+        }
+        return extractedText;
+    }
 
-            if (resources == null) {
-                // get pages resources
-                initPageResources();
-            }
+    /**
+     * Extracts this page's text blocks along with the user space bounds of
+     * each character, as described by
+     * {@link ContentParser#parseTextBlocks(InputStream, Vector)}.  Unlike
+     * {@link #getText()} the result is not kept by the page.
+     *
+     * @param textBounds vector the character bounds are added to.
+     * @return vector of Strings of all text objects inside the page, or null
+     *         if the text could not be extracted.
+     */
+    public synchronized Vector<StringBuffer> getText(
+            Vector<Rectangle2D.Float> textBounds) {
+        try {
+            return parseTextBlocks(textBounds, textBounds != null);
+        } catch (InterruptedException e) {
+            logger.log(Level.SEVERE, "Page text extraction thread interrupted.", e);
+            return null;
+        }
+    }
 
-            if (contents != null) {
-                Vector<InputStream> inputStreamsVec =
-                        new Vector<InputStream>(contents.size());
-                for (int st = 0, max = contents.size(); st < max; st++) {
-                    Stream stream = contents.elementAt(st);
-                    InputStream input = stream.getInputStreamForDecodedStreamBytes();
-                    inputStreamsVec.add(input);
-                }
-                SequenceInputStream sis = new SequenceInputStream(inputStreamsVec.iterator());
+    /**
+     * Extracts this page's text blocks as {@link #getText(Vector)} does, but
+     * without working out the bounds of each character, as described by
+     * {@link ContentParser#parseTextBlocks(InputStream, boolean)}.  Unlike
+     * {@link #getText()} the result is not kept by the page.
+     *
+     * @param followGraphicsState true to follow the q, Q and cm operators, so
+     *                            the text is the same as the text extracted
+     *                            along with its bounds.
+     * @return vector of Strings of all text objects inside the page, or null
+     *         if the text could not be extracted.
+     */
+    public synchronized Vector<StringBuffer> getText(
+            boolean followGraphicsState) {
+        try {
+            return parseTextBlocks(null, followGraphicsState);
+        } catch (InterruptedException e) {
+            logger.log(Level.SEVERE, "Page text extraction thread interrupted.", e);
+            return null;
+        }
+    }
 
-                // push the library and resources to the content parse
-                // and return the the shapes vector for the screen elements
-                // for the page/resources in question.
-                try {
-                    ContentParser cp = new ContentParser(library, resources);
-                    // custom parsing for text extraction, should be faster
-                    extractedText = cp.parseTextBlocks(sis);
+    private Vector<StringBuffer> parseTextBlocks(
+            Vector<Rectangle2D.Float> textBounds, boolean followGraphicsState)
+            throws InterruptedException {
+        /**
+         * Finally iterate through the contents vector and concat all of the
+         * the resouse streams together so that the contant parser can
+         * go to town and build all of the pages shapes.
+         */
+        if (contents == null) {
+            // Get the value of the page's content entry
+            initPageContents();
+        }
+
+        if (resources == null) {
+            // get pages resources
+            initPageResources();
+        }
+
+        Vector<StringBuffer> text = null;
+        if (contents != null) {
+            Vector<InputStream> inputStreamsVec =
+                    new Vector<InputStream>(contents.size());
+            for (int st = 0, max = contents.size(); st < max; st++) {
+                Stream stream = contents.elementAt(st);
+                InputStream input = stream.getInputStreamForDecodedStreamBytes();
+                inputStreamsVec.add(input);
+            }
+            SequenceInputStream sis = new SequenceInputStream(inputStreamsVec.iterator());
+
+            // push the library and resources to the content parse
+            // and return the the shapes vector for the screen elements
+            // for the page/resources in question.
+            try {
+                ContentParser cp = new ContentParser(library, resources);
+                // custom parsing for text extraction, should be faster
+                if (textBounds != null) {
+                    text = cp.parseTextBlocks(sis, textBounds);
+                } else {
+                    text = cp.parseTextBlocks(sis, followGraphicsState);
                 }
-                catch (Exception e) {
-                    logger.log(Level.FINE, "Error getting page text.", e);
+            }
+            catch (Exception e) {
+                logger.log(Level.FINE, "Error getting page text.", e);
+            }
+            finally {
+                try {
+                    sis.close();
                 }
-                finally {
-                    try {
-                        sis.close();
-                    }
-                    catch (IOException e) {
-                        logger.log(Level.FINE, "Error closing page stream.", e);
-                    }
+                catch (IOException e) {
+                    logger.log(Level.FINE, "Error closing page stream.", e);
                 }
             }
-        }catch(InterruptedException e){
-            // keeps shapes vector so we can paint what we have but make init state as false
-            // so we can try to reparse it later.
-            isInited = false;
-            logger.log(Level.SEVERE, "Page text extraction thread interrupted.", e);
         }
-        return extractedText;
+        return text;
     }
 
     /**
@@ -1096,17 +1166,43 @@ public class Page extends Dictionary implements MemoryManageable {
      *
      * @return vector of Images inside the current page
      */
-    public synchronized Vector getImages() {
+    public Vector getImages() {
         if (!isInited) {
             init();
         }
-        return shapes.getImages();
+        Shapes shapes = this.shapes;
+        return shapes != null ? shapes.getImages() : new Vector();
     }
 
     public Resources getResources() {
         return resources;
     }
 
+    /**
+     * Gets the thumbnail image of this page from its Thumb entry.  The
+     * thumbnail is decoded without initializing the page.
+     *
+     * @return thumbnail image, null if the page has no thumbnail or it could
+     *         not be decoded.
+     * @since 3.1
+     */
+    public Image getThumbnailImage() {
+        Object thumb = library.getObject(entries, "Thumb");
+        if (!(thumb instanceof Stream)) {
+            return null;
+        }
+        try {
+            // a thumbnail's colour space is never a named resource, so empty
+            // resources are enough to resolve it.
+            Resources thumbResources = new Resources(library, new Hashtable());
+            return ((Stream) thumb).getImage(Color.white, thumbResources, false);
+        }
+        catch (Exception e) {
+            logger.log(Level.FINE, "Error decoding page thumbnail.", e);
+            return null;
+        }
+    }
+
     /**
      * Reduces the amount of memory used by this object.
      */
@@ -1114,18 +1210,23 @@ public class Page extends Dictionary implements MemoryManageable {
         dispose(true);
     }
 
-    public synchronized void addPaintPageListener(PaintPageListener listener) {
-        // add a listener if it is not already registered
-        if (!paintPageListeners.contains(listener)) {
-            paintPageListeners.addElement(listener);
-        }
+    /**
+     * Gets an estimate of the bytes retained by the page's content, its
+     * display list, text and decoded images.
+     *
+     * @return estimated size in bytes, 0 if the page is not initialized.
+     */
+    public long getMemorySize() {
+        return memorySize;
     }
 
-    public synchronized void removePaintPageListener(PaintPageListener listener) {
+    public void addPaintPageListener(PaintPageListener listener) {
         // add a listener if it is not already registered
-        if (paintPageListeners.contains(listener)) {
-            paintPageListeners.removeElement(listener);
-        }
+        paintPageListeners.addIfAbsent(listener);
+    }
+
+    public void removePaintPageListener(PaintPageListener listener) {
+        paintPageListeners.remove(listener);
     }
 
     public void notifyPaintPageListeners() {
@@ -1148,11 +1249,10 @@ public class Page extends Dictionary implements MemoryManageable {
 //            client.paintPage(evt);
 //        }
 
-        // fire the event to all listeners
-        PaintPageListener client;
-        for (int i = paintPageListeners.size() - 1; i >= 0; i--) {
-            client = paintPageListeners.elementAt(i);
-            client.paintPage(evt);
+        // fire the event to all listeners, the list is a snapshot
+        Object[] clients = paintPageListeners.toArray();
+        for (int i = clients.length - 1; i >= 0; i--) {
+            ((PaintPageListener) clients[i]).paintPage(evt);
         }
     }
 }
@@ -0,0 +1,267 @@
+/*
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * "The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations under
+ * the License.
+ *
+ * The Original Code is ICEpdf 3.0 open source software code, released
+ * May 1st, 2009. The Initial Developer of the Original Code is ICEsoft
+ * Technologies Canada, Corp. Portions created by ICEsoft are Copyright (C)
+ * 2004-2009 ICEsoft Technologies Canada, Corp. All Rights Reserved.
+ *
+ * Contributor(s): _____________________.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"
+ * License), in which case the provisions of the LGPL License are
+ * applicable instead of those above. If you wish to allow use of your
+ * version of this file only under the terms of the LGPL License and not to
+ * allow others to use your version of this file under the MPL, indicate
+ * your decision by deleting the provisions above and replace them with
+ * the notice and other provisions required by the LGPL License. If you do
+ * not delete the provisions above, a recipient may use your version of
+ * this file under either the MPL or the LGPL License."
+ *
+ */
+package org.icepdf.core.pobjects;
+
+import org.icepdf.core.PageImageCallback;
+import org.icepdf.core.util.Defs;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Renders a range of a document's pages on an executor and hands each image
+ * to a {@link PageImageCallback}, in page order or in the order the pages
+ * finish.  The images' rasters are pooled and reused for the following
+ * pages of the batch.
+ *
+ * @since 3.1
+ */
+class PageBatchRenderer {
+
+    private static final Logger logger =
+            Logger.getLogger(PageBatchRenderer.class.toString());
+
+    // number of threads of the default executor
+    private static int renderThreads;
+
+    static {
+        renderThreads = Defs.sysPropertyInt("org.icepdf.core.render.threads",
+                Runtime.getRuntime().availableProcessors());
+        if (renderThreads < 1) {
+            renderThreads = 1;
+        }
+    }
+
+    // executor used when none is given, created on first use
+    private static ExecutorService defaultExecutor;
+
+    private final Document document;
+    private final int renderHintType;
+    private final int pageBoundary;
+    private final float userRotation;
+    private final float userZoom;
+    private final boolean inPageOrder;
+    private final PageImageCallback callback;
+
+    // limits the pages rendered but not yet delivered, and so the rasters
+    private final Semaphore inFlight;
+    private CountDownLatch finished;
+
+    // idle rasters, by image size
+    private final HashMap<Dimension, ArrayList<BufferedImage>> rasters =
+            new HashMap<Dimension, ArrayList<BufferedImage>>();
+
+    // page order delivery, pages finished ahead of their turn wait here
+    private final HashMap<Integer, Object> finishedPages =
+            new HashMap<Integer, Object>();
+    private int nextPage;
+
+    PageBatchRenderer(Document document, int renderHintType, int pageBoundary,
+                      float userRotation, float userZoom, boolean inPageOrder,
+                      PageImageCallback callback) {
+        this.document = document;
+        this.renderHintType = renderHintType;
+        this.pageBoundary = pageBoundary;
+        this.userRotation = userRotation;
+        this.userZoom = userZoom;
+        this.inPageOrder = inPageOrder;
+        this.callback = callback;
+        inFlight = new Semaphore(renderThreads * 2);
+    }
+
+    /**
+     * Gets the shared executor used when a batch isn't given one, its
+     * threads are daemons so it never keeps the JVM alive.
+     */
+    static synchronized Executor getDefaultExecutor() {
+        if (defaultExecutor == null) {
+            defaultExecutor = Executors.newFixedThreadPool(renderThreads,
+                    new ThreadFactory() {
+                        private int count;
+
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable,
+                                    "ICEpdf page renderer " + (++count));
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+        }
+        return defaultExecutor;
+    }
+
+    /**
+     * Renders the pages and waits until every page has been handed to the
+     * callback.
+     *
+     * @param firstPage zero-based number of the first page.
+     * @param lastPage  zero-based number of the last page, inclusive.
+     * @param executor  executor the pages are rendered on.
+     * @throws InterruptedException if the calling thread is interrupted, the
+     *                              pages already submitted may still be
+     *                              handed to the callback.
+     */
+    void render(int firstPage, int lastPage, Executor executor)
+            throws InterruptedException {
+        nextPage = firstPage;
+        finished = new CountDownLatch(lastPage - firstPage + 1);
+        for (int i = firstPage; i <= lastPage; i++) {
+            inFlight.acquire();
+            final int pageNumber = i;
+            try {
+                executor.execute(new Runnable() {
+                    public void run() {
+                        renderPage(pageNumber);
+                    }
+                });
+            } catch (RuntimeException e) {
+                inFlight.release();
+                throw e;
+            }
+        }
+        finished.await();
+    }
+
+    private void renderPage(int pageNumber) {
+        Object result;
+        try {
+            result = paintPage(pageNumber);
+        } catch (Throwable e) {
+            logger.log(Level.FINE, "Error rendering page " + pageNumber, e);
+            result = e;
+        }
+        if (inPageOrder) {
+            deliverInPageOrder(pageNumber, result);
+        } else {
+            deliver(pageNumber, result);
+        }
+    }
+
+    private BufferedImage paintPage(int pageNumber) {
+        Page page = document.getPage(pageNumber);
+        try {
+            PDimension size = page.getSize(pageBoundary, userRotation, userZoom);
+            BufferedImage image = getRaster(
+                    (int) size.getWidth(), (int) size.getHeight());
+            Graphics g = image.createGraphics();
+            try {
+                page.paint(g, renderHintType, pageBoundary, userRotation, userZoom);
+            } finally {
+                g.dispose();
+            }
+            return image;
+        } finally {
+            document.releasePage(page);
+        }
+    }
+
+    /**
+     * Hands the pages to the callback in page order, the thread finishing
+     * the next page in turn delivers it along with any following pages that
+     * are already finished.
+     */
+    private void deliverInPageOrder(int pageNumber, Object result) {
+        synchronized (finishedPages) {
+            finishedPages.put(pageNumber, result);
+            while (finishedPages.containsKey(nextPage)) {
+                deliver(nextPage, finishedPages.remove(nextPage));
+                nextPage++;
+            }
+        }
+    }
+
+    private void deliver(int pageNumber, Object result) {
+        try {
+            if (result instanceof BufferedImage) {
+                BufferedImage image = (BufferedImage) result;
+                try {
+                    callback.pageRendered(pageNumber, image);
+                } finally {
+                    returnRaster(image);
+                }
+            } else {
+                callback.pageFailed(pageNumber, (Throwable) result);
+            }
+        } catch (Throwable e) {
+            logger.log(Level.FINE, "Error in page image callback.", e);
+        } finally {
+            inFlight.release();
+            finished.countDown();
+        }
+    }
+
+    /**
+     * Gets a cleared image of the given size, reusing an idle raster if
+     * there is one.
+     */
+    private BufferedImage getRaster(int width, int height) {
+        Dimension size = new Dimension(width, height);
+        BufferedImage image = null;
+        synchronized (rasters) {
+            ArrayList<BufferedImage> idle = rasters.get(size);
+            if (idle != null && !idle.isEmpty()) {
+                image = idle.remove(idle.size() - 1);
+            }
+        }
+        if (image == null) {
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+        // same state as a new image
+        Arrays.fill(((DataBufferInt) image.getRaster().getDataBuffer()).getData(), 0);
+        return image;
+    }
+
+    private void returnRaster(BufferedImage image) {
+        Dimension size = new Dimension(image.getWidth(), image.getHeight());
+        synchronized (rasters) {
+            ArrayList<BufferedImage> idle = rasters.get(size);
+            if (idle == null) {
+                idle = new ArrayList<BufferedImage>();
+                rasters.put(size, idle);
+            }
+            idle.add(image);
+        }
+    }
+}
@@ -34,6 +34,7 @@ package org.icepdf.core.pobjects;
 
 import org.icepdf.core.util.Library;
 
+import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.Vector;
 
@@ -60,6 +61,8 @@ public class PageTree extends Dictionary {
     private Vector kidsReferences;
     // vector of the pages associated with tree
     private Vector kidsPageAndPages;
+    // limit on nesting when collecting page references
+    private static final int MAX_PAGE_TREE_DEPTH = 256;
     // pointer to parent page tree
     private PageTree parent;
     // initiated flag
@@ -306,6 +309,90 @@ public class PageTree extends Dictionary {
         return null;
     }
 
+    /**
+     * Utility method for finding a page with its page number.  Until the
+     * page tree has been loaded, the root of a linearized document's page
+     * tree finds pages with the linearization hint tables, rather than
+     * loading the page tree nodes and pages before it.  Pages found without
+     * walking the tree are only returned if they belong to it.
+     *
+     * @param globalIndex
+     * @return
+     */
+    private Page getPageByIndex(int globalIndex) {
+        if (parent == null && entries.get("Parent") == null) {
+            Reference pageReference = library.getPageReference(globalIndex);
+            if (pageReference != null) {
+                Object page = library.getObject(pageReference);
+                if (page instanceof Page && isPageInTree((Page) page))
+                    return (Page) page;
+            }
+            Linearization linearization = library.getLinearization();
+            Catalog catalog = library.getCatalog();
+            if (linearization != null &&
+                    (catalog == null || !catalog.isPageTreeLoaded())) {
+                Page page = linearization.getPage(globalIndex);
+                if (page != null && isPageInTree(page))
+                    return page;
+            }
+        }
+        return getPagePotentiallyNotInitedByRecursiveIndex(globalIndex);
+    }
+
+    /**
+     * Checks that a page found without walking the page tree belongs to it,
+     * by following the page's Parent chain up to this page tree.
+     *
+     * @param page page to check.
+     * @return true if this page tree is an ancestor of the page.
+     */
+    boolean isPageInTree(Page page) {
+        Object node = library.getObject(page.getEntries(), "Parent");
+        for (int depth = 0; depth <= MAX_PAGE_TREE_DEPTH &&
+                node instanceof PageTree; depth++) {
+            if (node == this)
+                return true;
+            node = library.getObject(((PageTree) node).getEntries(), "Parent");
+        }
+        return false;
+    }
+
+    /**
+     * Gets the references of all of the pages under this page tree, in page
+     * order, loading every page tree node and page.
+     *
+     * @return page references, or null if the page tree is malformed.
+     */
+    public Reference[] getPageReferences() {
+        ArrayList<Reference> pageReferences = new ArrayList<Reference>(kidsCount);
+        if (!addPageReferences(pageReferences, 0) ||
+                pageReferences.size() != getNumberOfPages())
+            return null;
+        return pageReferences.toArray(new Reference[pageReferences.size()]);
+    }
+
+    private synchronized boolean addPageReferences(ArrayList<Reference> pageReferences,
+                                                   int depth) {
+        // page trees are shallow, a deep one is most likely a cycle
+        if (depth > MAX_PAGE_TREE_DEPTH)
+            return false;
+        init();
+        for (int i = 0; i < kidsReferences.size(); i++) {
+            if (!(kidsReferences.get(i) instanceof Reference))
+                return false;
+            Object pageOrPages = getPageOrPagesPotentiallyNotInitedFromReferenceAt(i);
+            if (pageOrPages instanceof Page) {
+                pageReferences.add((Reference) kidsReferences.get(i));
+            } else if (pageOrPages instanceof PageTree) {
+                if (!((PageTree) pageOrPages).addPageReferences(pageReferences, depth + 1))
+                    return false;
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * In a PDF file there is a root Pages object, which contains
      * children Page objects, as well as children PageTree objects,
@@ -343,7 +430,7 @@ public class PageTree extends Dictionary {
     public Page getPage(int pageNumber, Object user) {
         if (pageNumber < 0)
             return null;
-        Page p = getPagePotentiallyNotInitedByRecursiveIndex(pageNumber);
+        Page p = getPageByIndex(pageNumber);
         if (p != null) {
             // Add Page to cache, and lock it from getting disposed
             library.memoryManager.lock(user, p);
@@ -393,7 +480,7 @@ public class PageTree extends Dictionary {
      * @see #getPage
      */
     public void releasePage(int pageNumber, Object user) {
-        Page page = getPagePotentiallyNotInitedByRecursiveIndex(pageNumber);
+        Page page = getPageByIndex(pageNumber);
 
         // Release lock, allowing it to be disposed
         library.memoryManager.release(user, page);
@@ -186,7 +186,7 @@ public class Stream extends Dictionary {
      * @param memoryNeeded
      */
     private boolean checkMemory(int memoryNeeded) {
-        return library.memoryManager.checkMemory(memoryNeeded);
+        return library.memoryManager.checkMemory(library, memoryNeeded);
     }
 
     /**
@@ -208,8 +208,7 @@ public class Stream extends Dictionary {
         long streamLength = streamInput.getLength();
         int memoryNeeded = (int) streamLength;
         checkMemory(memoryNeeded);
-        streamInput.prepareForCurrentUse();
-        InputStream input = streamInput;
+        InputStream input = streamInput.getInputStreamForCurrentUse();
 
         int bufferSize = Math.min(Math.max((int) streamLength, 64), 16 * 1024);
         input = new java.io.BufferedInputStream(input, bufferSize);
@@ -1099,10 +1098,27 @@ public class Stream extends Dictionary {
 //System.out.println("alterRasterRGB2PColorSpace() colorSpace: " + colorSpace);
         if (colorSpace instanceof DeviceRGB)
             return;
-        float[] values = new float[3];
-        int[] rgbValues = new int[3];
         int width = wr.getWidth();
         int height = wr.getHeight();
+        if (colorSpace.getNumComponents() == 3) {
+            // convert a row at a time and write the rgb values back in place
+            int[] rowValues = new int[width * 3];
+            int[] argb = new int[width];
+            for (int y = 0; y < height; y++) {
+                wr.getPixels(0, y, width, 1, rowValues);
+                colorSpace.convertRow(rowValues, width, 255.0f, argb);
+                for (int x = 0, i = 0; x < width; x++) {
+                    int rgb = argb[x];
+                    rowValues[i++] = (rgb >> 16) & 0xFF;
+                    rowValues[i++] = (rgb >> 8) & 0xFF;
+                    rowValues[i++] = rgb & 0xFF;
+                }
+                wr.setPixels(0, y, width, 1, rowValues);
+            }
+            return;
+        }
+        float[] values = new float[3];
+        int[] rgbValues = new int[3];
         for (int y = 0; y < height; y++) {
             for (int x = 0; x < width; x++) {
                 wr.getPixel(x, y, rgbValues);
@@ -1264,19 +1280,25 @@ public class Stream extends Dictionary {
 
     private BufferedImage makeRGBABufferedImageFromImage(Image img) {
         BufferedImage ret = null;
-        int width = img.getWidth(null);
-        int height = img.getHeight(null);
+        // the toolkit's fetcher threads are shared by every rendering thread,
+        // the dimensions arrive well before the pixels so wait for all of them.
+        Toolkit toolkit = Toolkit.getDefaultToolkit();
+        toolkit.prepareImage(img, -1, -1, null);
+        int loaded = ImageObserver.ALLBITS | ImageObserver.FRAMEBITS;
+        int failed = ImageObserver.ERROR | ImageObserver.ABORT;
         int count = 0;
-        while (width < 0 || height < 0) {
+        while ((toolkit.checkImage(img, -1, -1, null) & (loaded | failed)) == 0) {
             try {
                 Thread.sleep(50L);
             } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                break;
             }
-            width = img.getWidth(null);
-            height = img.getHeight(null);
-            if (++count > 20)
+            if (++count > 200)
                 break;
         }
+        int width = img.getWidth(null);
+        int height = img.getHeight(null);
         if (width >= 0 && height >= 0) {
             checkMemory(width * height * 4); // RGBA
             ret = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
@@ -1900,9 +1922,6 @@ public class Stream extends Dictionary {
         // Max value used to represent a colour,  usually 255, min is 0
         int maxColourValue = ((1 << bitsPerColour) - 1);
 
-        int f[] = new int[colorSpaceCompCount];
-        float ff[] = new float[colorSpaceCompCount];
-
         // image mask from
         int imageMaskValue = ((Number) decode.elementAt(0)).intValue();
 
@@ -1963,101 +1982,78 @@ public class Stream extends Dictionary {
         }
 
         try {
+            // Colour spaces other then the device gray and rgb are converted
+            // a whole row at a time, so that the colour space can reuse its
+            // working arrays and skip over runs of the same colour.
+            boolean convertRows = !imageMask &&
+                    ((colorSpaceCompCount == 1 && !isDeviceGray) ||
+                            (colorSpaceCompCount == 3 && !isDeviceRGB) ||
+                            colorSpaceCompCount == 4);
+            int[] rowSamples = convertRows ?
+                    new int[width * colorSpaceCompCount] : null;
+            // if index 0 > index 1 then we have a need for a inversion
+            boolean invertIndex = colorSpaceCompCount == 1 &&
+                    decodeArray != null && decodeArray[0] > decodeArray[1];
+
             // Start encoding bit stream into an image,  we work one pixel at
             // a time,  and grap the need bit information for the images
             // colour space and bits per colour
             for (int y = 0; y < height; y++) {
 
-                for (int x = 0; x < width; x++) {
-
-                    // if image has mask apply it
-                    if (imageMask) {
+                if (convertRows) {
+                    for (int i = 0, max = rowSamples.length; i < max; i++) {
                         int bit = in.getBits(bitsPerColour);
-                        bit = (bit == imageMaskValue) ? fillRGB : 0x00000000;
-                        imageBits[x] = bit;
+                        // check decode array if a colour inversion is needed
+                        if (invertIndex) {
+                            bit = (bit == maxColourValue) ? 0x00000000 : maxColourValue;
+                        }
+                        rowSamples[i] = bit;
                     }
-                    // other wise start colour bit parsing
-                    else {
-                        // set some default values
-                        int red = 255;
-                        int blue = 255;
-                        int green = 255;
-                        int alpha = 255;
-
-                        // indexed colour
-                        if (colorSpaceCompCount == 1) {
+                    colorSpace.convertRow(rowSamples, width, maxColourValue, imageBits);
+                } else {
+                    for (int x = 0; x < width; x++) {
+
+                        // if image has mask apply it
+                        if (imageMask) {
+                            int bit = in.getBits(bitsPerColour);
+                            bit = (bit == imageMaskValue) ? fillRGB : 0x00000000;
+                            imageBits[x] = bit;
+                        }
+                        // device gray
+                        else if (colorSpaceCompCount == 1) {
                             // get value used for this bit
                             int bit = in.getBits(bitsPerColour);
                             // check decode array if a colour inversion is needed
-                            if (decodeArray != null) {
-                                // if index 0 > index 1 then we have a need for ainversion
-                                if (decodeArray[0] > decodeArray[1]) {
-                                    bit = (bit == maxColourValue) ? 0x00000000 : maxColourValue;
-                                }
+                            if (invertIndex) {
+                                bit = (bit == maxColourValue) ? 0x00000000 : maxColourValue;
                             }
-
-                            if (isDeviceGray) {
-                                if (bitsPerColour == 1)
-                                    bit = GRAY_1_BIT_INDEX_TO_RGB[bit];
-                                else if (bitsPerColour == 2)
-                                    bit = GRAY_2_BIT_INDEX_TO_RGB[bit];
-                                else if (bitsPerColour == 4)
-                                    bit = GRAY_4_BIT_INDEX_TO_RGB[bit];
-                                else if (bitsPerColour == 8) {
-                                    bit = ((bit << 24) |
-                                            (bit << 16) |
-                                            (bit << 8) |
-                                            bit);
-                                }
-                                imageBits[x] = bit;
-                            } else {
-                                f[0] = bit;
-                                colorSpace.normaliseComponentsToFloats(f, ff, maxColourValue);
-
-                                Color color = colorSpace.getColor(ff);
-                                imageBits[x] = color.getRGB();
+                            if (bitsPerColour == 1)
+                                bit = GRAY_1_BIT_INDEX_TO_RGB[bit];
+                            else if (bitsPerColour == 2)
+                                bit = GRAY_2_BIT_INDEX_TO_RGB[bit];
+                            else if (bitsPerColour == 4)
+                                bit = GRAY_4_BIT_INDEX_TO_RGB[bit];
+                            else if (bitsPerColour == 8) {
+                                bit = ((bit << 24) |
+                                        (bit << 16) |
+                                        (bit << 8) |
+                                        bit);
                             }
+                            imageBits[x] = bit;
                         }
-                        // normal RGB colour
+                        // normal RGB colour, we don't want the performance hit
+                        // of converting the pixels via the PColorSpace
                         else if (colorSpaceCompCount == 3) {
-                            // We can have an ICCBased color space that has 3 components,
-                            //  but where we can't assume it's RGB.
-                            // But, when it is DeviceRGB, we don't want the performance hit
-                            //  of converting the pixels via the PColorSpace, so we'll
-                            //  break this into the two cases
-                            if (isDeviceRGB) {
-                                red = in.getBits(bitsPerColour);
-                                green = in.getBits(bitsPerColour);
-                                blue = in.getBits(bitsPerColour);
-                                // combine the colour together
-                                imageBits[x] = (alpha << 24) | (red << 16) |
-                                        (green << 8) | blue;
-                            } else {
-                                for (int i = 0; i < colorSpaceCompCount; i++) {
-                                    f[i] = in.getBits(bitsPerColour);
-                                }
-                                PColorSpace.reverseInPlace(f);
-                                colorSpace.normaliseComponentsToFloats(f, ff, maxColourValue);
-                                Color color = colorSpace.getColor(ff);
-                                imageBits[x] = color.getRGB();
-                            }
-                        }
-                        // normal aRGB colour,  this could use some more
-                        // work for optimizing.
-                        else if (colorSpaceCompCount == 4) {
-                            for (int i = 0; i < colorSpaceCompCount; i++) {
-                                f[i] = in.getBits(bitsPerColour);
-                            }
-                            PColorSpace.reverseInPlace(f);
-                            colorSpace.normaliseComponentsToFloats(f, ff, maxColourValue);
-                            Color color = colorSpace.getColor(ff);
-                            imageBits[x] = color.getRGB();
+                            int red = in.getBits(bitsPerColour);
+                            int green = in.getBits(bitsPerColour);
+                            int blue = in.getBits(bitsPerColour);
+                            // combine the colour together
+                            imageBits[x] = (0xFF << 24) | (red << 16) |
+                                    (green << 8) | blue;
                         }
                         // else just set pixel with the default values
                         else {
-                            // compine the colour together
-                            imageBits[x] = (alpha << 24) | (red << 16) |
-                                    (green << 8) | blue;
+                            imageBits[x] = 0xFFFFFFFF;
                         }
                     }
                 }
@@ -0,0 +1,738 @@
+/*
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * "The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations under
+ * the License.
+ *
+ * The Original Code is ICEpdf 3.0 open source software code, released
+ * May 1st, 2009. The Initial Developer of the Original Code is ICEsoft
+ * Technologies Canada, Corp. Portions created by ICEsoft are Copyright (C)
+ * 2004-2009 ICEsoft Technologies Canada, Corp. All Rights Reserved.
+ *
+ * Contributor(s): _____________________.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"
+ * License), in which case the provisions of the LGPL License are
+ * applicable instead of those above. If you wish to allow use of your
+ * version of this file only under the terms of the LGPL License and not to
+ * allow others to use your version of this file under the MPL, indicate
+ * your decision by deleting the provisions above and replace them with
+ * the notice and other provisions required by the LGPL License. If you do
+ * not delete the provisions above, a recipient may use your version of
+ * this file under either the MPL or the LGPL License."
+ *
+ */
+package org.icepdf.core.pobjects;
+
+import org.icepdf.core.util.Defs;
+
+import java.awt.geom.Rectangle2D;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>The <code>TextIndex</code> class indexes the text of every page of a
+ * document, so a search finds its matches without extracting the text of
+ * each page again.  The index is built once per document, see
+ * {@link Document#getTextIndex()}, by a few background threads working on
+ * different pages.  The number of threads is set by the system property
+ * org.icepdf.core.textindex.threads, the number of processors by default.</p>
+ * <p/>
+ * <p>Searches are case insensitive and match within a text block, like the
+ * text returned by {@link Document#getPageText(int)}.  An inverted index of
+ * the words on each page narrows a search down to the pages holding all of
+ * its words before the text of those pages is matched.  A search made
+ * before the index is complete only covers the pages indexed so far.  The
+ * bounds of each match are worked out when asked for, from the positions of
+ * the page's characters, which are kept for the most recently used pages
+ * only, so indexing a page doesn't need them.</p>
+ * <p/>
+ * <p>The text of a document opened from a file can be stored on disk with
+ * the system property org.icepdf.core.textindex.persist=true, so the next
+ * time the file is opened its pages don't need to be extracted again.  Like
+ * an {@link IndexCache}, the stored text is only used if the file hasn't
+ * changed.  It is stored in the directory given by
+ * org.icepdf.core.textindex.directory, which defaults to an icepdf-index
+ * folder in java.io.tmpdir.  The text of encrypted documents isn't
+ * stored.</p>
+ *
+ * @since 3.1
+ */
+public class TextIndex {
+
+    private static final Logger logger =
+            Logger.getLogger(TextIndex.class.toString());
+
+    private static final int MAGIC = 0x49435854;
+    private static final int VERSION = 1;
+
+    // separates the text blocks of a page, so matches don't span blocks
+    private static final char BLOCK_SEPARATOR = '\u0000';
+
+    // pages whose character positions are kept
+    private static final int BOUNDS_CACHE_SIZE = 16;
+
+    private static final int[] NO_PAGES = new int[0];
+
+    private static int indexThreads;
+    private static boolean isPersistent;
+    private static File cacheDirectory;
+
+    static {
+        indexThreads = Defs.sysPropertyInt("org.icepdf.core.textindex.threads",
+                Runtime.getRuntime().availableProcessors());
+        if (indexThreads < 1) {
+            indexThreads = 1;
+        }
+        isPersistent = Defs.sysPropertyBoolean(
+                "org.icepdf.core.textindex.persist", false);
+        cacheDirectory = new File(Defs.sysProperty(
+                "org.icepdf.core.textindex.directory",
+                new File(System.getProperty("java.io.tmpdir"),
+                        "icepdf-index").getPath()));
+    }
+
+    private final Document document;
+    private final int pageCount;
+
+    // lower case text of each page, blocks split by BLOCK_SEPARATOR
+    private final String[] pageText;
+    // pages of each word, in page order
+    private HashMap<String, int[]> wordPages;
+
+    private final AtomicInteger nextPage = new AtomicInteger();
+    private final AtomicInteger pagesIndexed = new AtomicInteger();
+    private final CountDownLatch completed = new CountDownLatch(1);
+    private volatile boolean canceled;
+
+    // character bounds of recently searched pages, in access order
+    private final LinkedHashMap<Integer, Rectangle2D.Float[]> pageBounds =
+            new LinkedHashMap<Integer, Rectangle2D.Float[]>(
+                    BOUNDS_CACHE_SIZE * 2, 0.75f, true);
+
+    /**
+     * A match of a search.
+     */
+    public static class Hit {
+        private final TextIndex index;
+        private final int pageNumber;
+        private final int offset;
+        private final int length;
+
+        Hit(TextIndex index, int pageNumber, int offset, int length) {
+            this.index = index;
+            this.pageNumber = pageNumber;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /**
+         * @return zero-based number of the page the match is on.
+         */
+        public int getPageNumber() {
+            return pageNumber;
+        }
+
+        /**
+         * @return offset of the match in the page's indexed text.
+         */
+        public int getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return number of characters matched.
+         */
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * Gets the areas of the page covered by the match, one rectangle for
+         * each line the match is on, in the page's user space.  Use
+         * {@link Page#getPageTransform(int, float, float)} to map them to a
+         * view of the page.
+         *
+         * @return bounds of the match, empty if the text's position isn't
+         *         known.
+         */
+        public Rectangle2D.Float[] getBounds() {
+            return index.getBounds(this);
+        }
+    }
+
+    /**
+     * The matches of a search, which may only cover the pages indexed so
+     * far.
+     */
+    public static class SearchResult {
+        private final List<Hit> hits;
+        private final boolean complete;
+
+        SearchResult(List<Hit> hits, boolean complete) {
+            this.hits = hits;
+            this.complete = complete;
+        }
+
+        /**
+         * @return matches in page order, and in text order within a page.
+         */
+        public List<Hit> getHits() {
+            return hits;
+        }
+
+        /**
+         * @return true if every page was searched, false if the index wasn't
+         *         complete and only the pages indexed so far were searched.
+         */
+        public boolean isComplete() {
+            return complete;
+        }
+    }
+
+    TextIndex(Document document) {
+        this.document = document;
+        pageCount = document.getNumberOfPages();
+        pageText = new String[pageCount];
+    }
+
+    /**
+     * Starts indexing the pages on background threads, or loading the stored
+     * index of the document.
+     */
+    void start() {
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                build();
+            }
+        }, "ICEpdf text indexer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    private void build() {
+        try {
+            if (isPersistent && load()) {
+                pagesIndexed.set(pageCount);
+                return;
+            }
+            // this thread indexes pages along with the helpers
+            int threads = Math.max(1, Math.min(indexThreads, pageCount));
+            Thread[] helpers = new Thread[threads - 1];
+            for (int i = 0; i < helpers.length; i++) {
+                helpers[i] = new Thread(new Runnable() {
+                    public void run() {
+                        indexPages();
+                    }
+                }, "ICEpdf text indexer " + (i + 1));
+                helpers[i].setDaemon(true);
+                helpers[i].setPriority(Thread.MIN_PRIORITY);
+                helpers[i].start();
+            }
+            indexPages();
+            for (Thread helper : helpers) {
+                helper.join();
+            }
+            if (!canceled && isPersistent) {
+                store();
+            }
+        }
+        catch (InterruptedException e) {
+            canceled = true;
+        }
+        finally {
+            finish();
+        }
+    }
+
+    /**
+     * Stops indexing, called when the document is disposed.
+     */
+    void cancel() {
+        canceled = true;
+    }
+
+    private void indexPages() {
+        int pageNumber;
+        while (!canceled &&
+                (pageNumber = nextPage.getAndIncrement()) < pageCount) {
+            pageText[pageNumber] = toIndexText(extractText(pageNumber, null));
+            pagesIndexed.incrementAndGet();
+        }
+    }
+
+    private Vector<StringBuffer> extractText(int pageNumber,
+                                             Vector<Rectangle2D.Float> bounds) {
+        try {
+            Page page = document.getPage(pageNumber);
+            try {
+                // the graphics state is always followed, as collecting the
+                // positions does, since it may change the text
+                return bounds != null ? page.getText(bounds) :
+                        page.getText(true);
+            }
+            finally {
+                document.releasePage(page);
+            }
+        }
+        catch (Exception e) {
+            if (!canceled) {
+                logger.log(Level.FINE, "Error indexing text of page " +
+                        pageNumber, e);
+            }
+        }
+        return null;
+    }
+
+    // builds the word index once every page has its text
+    private void finish() {
+        if (!canceled) {
+            HashMap<String, int[]> words = new HashMap<String, int[]>();
+            HashMap<String, Integer> lastPage = new HashMap<String, Integer>();
+            HashMap<String, ArrayList<Integer>> pages =
+                    new HashMap<String, ArrayList<Integer>>();
+            for (int p = 0; p < pageCount; p++) {
+                String text = pageText[p];
+                if (text == null) {
+                    pageText[p] = text = "";
+                }
+                for (int start = 0, length = text.length(); start < length;) {
+                    if (!Character.isLetterOrDigit(text.charAt(start))) {
+                        start++;
+                        continue;
+                    }
+                    int end = start + 1;
+                    while (end < length &&
+                            Character.isLetterOrDigit(text.charAt(end))) {
+                        end++;
+                    }
+                    String word = text.substring(start, end);
+                    Integer page = p;
+                    if (!page.equals(lastPage.put(word, page))) {
+                        ArrayList<Integer> list = pages.get(word);
+                        if (list == null) {
+                            list = new ArrayList<Integer>(4);
+                            pages.put(word, list);
+                        }
+                        list.add(page);
+                    }
+                    start = end;
+                }
+            }
+            for (Map.Entry<String, ArrayList<Integer>> entry : pages.entrySet()) {
+                ArrayList<Integer> list = entry.getValue();
+                int[] array = new int[list.size()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = list.get(i);
+                }
+                words.put(entry.getKey(), array);
+            }
+            wordPages = words;
+        }
+        completed.countDown();
+    }
+
+    /**
+     * @return number of pages in the index.
+     */
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Gets the number of pages indexed so far, for showing the progress of
+     * the indexing.
+     *
+     * @return pages indexed.
+     */
+    public int getPagesIndexed() {
+        return pagesIndexed.get();
+    }
+
+    /**
+     * @return true once every page has been indexed.
+     */
+    public boolean isComplete() {
+        return completed.getCount() == 0;
+    }
+
+    /**
+     * Waits for the index to be completed.
+     *
+     * @param timeout longest time to wait in milliseconds.
+     * @return true if the index is complete.
+     * @throws InterruptedException if the calling thread is interrupted.
+     */
+    public boolean waitForCompletion(long timeout) throws InterruptedException {
+        return completed.await(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Finds every occurrence of the pattern, ignoring case, waiting at most
+     * the given time for the index to be completed.  If the index still
+     * isn't complete, only the pages indexed so far are searched, and the
+     * result says so.
+     *
+     * @param pattern text to search for.
+     * @param timeout longest time to wait for the index in milliseconds, 0
+     *                to search the pages indexed so far without waiting.
+     * @return matches in page order, and in text order within a page.
+     * @throws InterruptedException if the calling thread is interrupted.
+     */
+    public SearchResult search(String pattern, long timeout)
+            throws InterruptedException {
+        boolean complete = completed.await(timeout, TimeUnit.MILLISECONDS);
+        ArrayList<Hit> hits = new ArrayList<Hit>();
+        String text = toLowerCase(pattern);
+        int length = text.length();
+        if (canceled || length == 0) {
+            return new SearchResult(hits, complete);
+        }
+        // the word index is only built once every page is indexed
+        int[] pages = complete ? getCandidatePages(text) : null;
+        for (int i = 0, max = pages != null ? pages.length : pageCount;
+             i < max; i++) {
+            int pageNumber = pages != null ? pages[i] : i;
+            String page = pageText[pageNumber];
+            if (page == null) {
+                continue;
+            }
+            for (int offset = page.indexOf(text); offset >= 0;
+                 offset = page.indexOf(text, offset + length)) {
+                hits.add(new Hit(this, pageNumber, offset, length));
+            }
+        }
+        return new SearchResult(hits, complete);
+    }
+
+    /**
+     * Gets the pages that hold all of the pattern's words, the first and last
+     * of which may only be part of a word.
+     *
+     * @return pages in page order, or null if all pages must be searched.
+     */
+    private int[] getCandidatePages(String pattern) {
+        int[] pages = null;
+        // whole words first, they are simple look ups
+        for (int pass = 0; pass < 2; pass++) {
+            for (int start = 0, length = pattern.length(); start < length;) {
+                if (!Character.isLetterOrDigit(pattern.charAt(start))) {
+                    start++;
+                    continue;
+                }
+                int end = start + 1;
+                while (end < length &&
+                        Character.isLetterOrDigit(pattern.charAt(end))) {
+                    end++;
+                }
+                boolean partial = start == 0 || end == length;
+                if (partial == (pass == 1)) {
+                    String word = pattern.substring(start, end);
+                    int[] wordPages = partial ?
+                            getPartialWordPages(word, start == 0, end == length) :
+                            this.wordPages.get(word);
+                    pages = intersect(pages, wordPages != null ? wordPages : NO_PAGES);
+                    if (pages.length == 0) {
+                        return pages;
+                    }
+                }
+                start = end;
+            }
+        }
+        return pages;
+    }
+
+    private int[] getPartialWordPages(String part, boolean openStart,
+                                      boolean openEnd) {
+        boolean[] found = new boolean[pageCount];
+        int count = 0;
+        for (Map.Entry<String, int[]> entry : wordPages.entrySet()) {
+            String word = entry.getKey();
+            boolean matches = openStart && openEnd ? word.indexOf(part) >= 0 :
+                    openStart ? word.endsWith(part) : word.startsWith(part);
+            if (matches) {
+                for (int page : entry.getValue()) {
+                    if (!found[page]) {
+                        found[page] = true;
+                        count++;
+                    }
+                }
+            }
+        }
+        int[] pages = new int[count];
+        for (int p = 0, i = 0; i < count; p++) {
+            if (found[p]) {
+                pages[i++] = p;
+            }
+        }
+        return pages;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        if (a == null) {
+            return b;
+        }
+        int[] result = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length;) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        if (count < result.length) {
+            int[] trimmed = new int[count];
+            System.arraycopy(result, 0, trimmed, 0, count);
+            result = trimmed;
+        }
+        return result;
+    }
+
+    private Rectangle2D.Float[] getBounds(Hit hit) {
+        Rectangle2D.Float[] bounds = getPageBounds(hit.pageNumber);
+        if (bounds == null) {
+            return new Rectangle2D.Float[0];
+        }
+        ArrayList<Rectangle2D.Float> lines = new ArrayList<Rectangle2D.Float>();
+        Rectangle2D.Float line = null;
+        for (int i = hit.offset, max = hit.offset + hit.length; i < max; i++) {
+            Rectangle2D.Float glyph = bounds[i];
+            if (glyph == null) {
+                continue;
+            }
+            // glyphs overlapping vertically are on the same line
+            if (line != null && glyph.y < line.y + line.height &&
+                    line.y < glyph.y + glyph.height) {
+                line.add(glyph);
+            } else {
+                line = new Rectangle2D.Float(glyph.x, glyph.y,
+                        glyph.width, glyph.height);
+                lines.add(line);
+            }
+        }
+        return lines.toArray(new Rectangle2D.Float[lines.size()]);
+    }
+
+    // gets the bounds of each character of a page's indexed text
+    private Rectangle2D.Float[] getPageBounds(int pageNumber) {
+        Integer key = pageNumber;
+        synchronized (pageBounds) {
+            Rectangle2D.Float[] bounds = pageBounds.get(key);
+            if (bounds != null) {
+                return bounds;
+            }
+        }
+        Vector<Rectangle2D.Float> glyphs = new Vector<Rectangle2D.Float>();
+        Vector<StringBuffer> blocks = extractText(pageNumber, glyphs);
+        if (blocks == null) {
+            return null;
+        }
+        String text = pageText[pageNumber];
+        Rectangle2D.Float[] bounds = new Rectangle2D.Float[text.length()];
+        int next = 0;
+        int glyph = 0;
+        for (int i = 0, max = blocks.size(); i < max; i++) {
+            if (i > 0) {
+                next++;
+            }
+            for (int j = blocks.get(i).length(); j > 0; j--) {
+                if (next >= bounds.length || glyph >= glyphs.size()) {
+                    // the page no longer matches its index
+                    return null;
+                }
+                bounds[next++] = glyphs.get(glyph++);
+            }
+        }
+        synchronized (pageBounds) {
+            pageBounds.put(key, bounds);
+            if (pageBounds.size() > BOUNDS_CACHE_SIZE) {
+                Iterator<Integer> eldest = pageBounds.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        return bounds;
+    }
+
+    // joins a page's text blocks, in lower case
+    private static String toIndexText(Vector<StringBuffer> blocks) {
+        if (blocks == null) {
+            return "";
+        }
+        StringBuffer text = new StringBuffer();
+        for (int i = 0, max = blocks.size(); i < max; i++) {
+            if (i > 0) {
+                text.append(BLOCK_SEPARATOR);
+            }
+            text.append(blocks.get(i));
+        }
+        return toLowerCase(text.toString());
+    }
+
+    // lower case of each char, so the text's offsets don't change
+    private static String toLowerCase(String text) {
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Gets the document's file, if it was opened from a file and isn't
+     * encrypted.
+     */
+    private File getDocumentFile() {
+        try {
+            String location = document.getDocumentLocation();
+            if (location == null ||
+                    !location.equals(document.getDocumentOrigin()) ||
+                    document.getSecurityManager() != null) {
+                return null;
+            }
+            File file = new File(location);
+            return file.isFile() ? file : null;
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+
+    private boolean load() {
+        File file = getDocumentFile();
+        if (file == null) {
+            return false;
+        }
+        try {
+            File indexFile = getIndexFile(file);
+            if (!indexFile.isFile())
+                return false;
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(indexFile)));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                    return false;
+                if (!in.readUTF().equals(file.getCanonicalPath()) ||
+                        in.readLong() != file.length() ||
+                        in.readLong() != file.lastModified())
+                    return false;
+                byte[] hash = new byte[in.readUnsignedByte()];
+                in.readFully(hash);
+                if (!Arrays.equals(hash, IndexCache.getContentHash(file)) ||
+                        in.readInt() != pageCount)
+                    return false;
+                String[] text = new String[pageCount];
+                for (int i = 0; i < pageCount; i++) {
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    text[i] = new String(bytes, "UTF-8");
+                }
+                System.arraycopy(text, 0, pageText, 0, pageCount);
+                return true;
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch (Exception e) {
+            logger.log(Level.FINE, "Error loading text index of " + file, e);
+        }
+        return false;
+    }
+
+    private void store() {
+        File file = getDocumentFile();
+        if (file == null) {
+            return;
+        }
+        File tempFile = null;
+        try {
+            if (!cacheDirectory.isDirectory() && !cacheDirectory.mkdirs())
+                return;
+            File indexFile = getIndexFile(file);
+            // written to a temporary file first, so other processes opening
+            // the same file never see a partly written index
+            tempFile = File.createTempFile("icepdf", ".tmp", cacheDirectory);
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(file.getCanonicalPath());
+                out.writeLong(file.length());
+                out.writeLong(file.lastModified());
+                byte[] hash = IndexCache.getContentHash(file);
+                out.writeByte(hash.length);
+                out.write(hash);
+                out.writeInt(pageCount);
+                for (int i = 0; i < pageCount; i++) {
+                    byte[] bytes = (pageText[i] != null ? pageText[i] : "")
+                            .getBytes("UTF-8");
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+            }
+            finally {
+                out.close();
+            }
+            indexFile.delete();
+            if (tempFile.renameTo(indexFile))
+                tempFile = null;
+        }
+        catch (Exception e) {
+            logger.log(Level.FINE, "Error storing text index of " + file, e);
+        }
+        finally {
+            if (tempFile != null)
+                tempFile.delete();
+        }
+    }
+
+    private static File getIndexFile(File file)
+            throws IOException, NoSuchAlgorithmException {
+        MessageDigest md5 = MessageDigest.getInstance("MD5");
+        byte[] digest = md5.digest(file.getCanonicalPath().getBytes("UTF-8"));
+        StringBuffer name = new StringBuffer(digest.length * 2 + 4);
+        for (byte b : digest) {
+            name.append(Character.forDigit((b >> 4) & 0xF, 16));
+            name.append(Character.forDigit(b & 0xF, 16));
+        }
+        name.append(".txi");
+        return new File(cacheDirectory, name.toString());
+    }
+}
@@ -595,16 +595,23 @@ public class Annotation extends Dictionary {
 //Rectangle2D.Double newRect = deriveDrawingRectangle();
 //g.draw( newRect );
                 Form form = (Form) N;
-                form.init();
-                AffineTransform matrix = form.getMatrix();
+                // the form may be initialized by a content parser on
+                // another thread, take its shapes under the same lock.
+                AffineTransform matrix;
+                Shapes shapes;
+                synchronized (form) {
+                    form.init();
+                    matrix = form.getMatrix();
+                    shapes = form.getShapes();
+                }
                 if (matrix != null)
                     g.transform(matrix);
 //System.out.println("Form: " + form.getEntries());
 //String str = new String( form.getBytes() );
 //System.out.println( str );
-                Shapes shapes = form.getShapes();
 //System.out.println("Shapes: " + shapes + "  count: " + shapes.getShapesCount());
-                shapes.paint(g);
+                if (shapes != null)
+                    shapes.paint(g);
             }
         }
     }
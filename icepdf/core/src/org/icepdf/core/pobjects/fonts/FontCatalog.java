@@ -0,0 +1,321 @@
+/*
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * "The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations under
+ * the License.
+ *
+ * The Original Code is ICEpdf 3.0 open source software code, released
+ * May 1st, 2009. The Initial Developer of the Original Code is ICEsoft
+ * Technologies Canada, Corp. Portions created by ICEsoft are Copyright (C)
+ * 2004-2009 ICEsoft Technologies Canada, Corp. All Rights Reserved.
+ *
+ * Contributor(s): _____________________.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"
+ * License), in which case the provisions of the LGPL License are
+ * applicable instead of those above. If you wish to allow use of your
+ * version of this file only under the terms of the LGPL License and not to
+ * allow others to use your version of this file under the MPL, indicate
+ * your decision by deleting the provisions above and replace them with
+ * the notice and other provisions required by the LGPL License. If you do
+ * not delete the provisions above, a recipient may use your version of
+ * this file under either the MPL or the LGPL License."
+ *
+ */
+package org.icepdf.core.pobjects.fonts;
+
+import org.icepdf.core.util.Defs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>The <code>FontCatalog</code> class stores the fonts found by the
+ * FontManager's scan of the system font directories on disk, so the font
+ * programs don't have to be loaded again the next time the JVM starts.</p>
+ * <p/>
+ * <p>For every font file the catalog records the PS name, family, style and
+ * path of the font, or that the file isn't a readable font, along with the
+ * file's length and modification time.  A font file is only loaded again if
+ * its length or modification time has changed, and a directory is only
+ * listed again if its modification time has changed, which is the case when
+ * files have been added or removed.</p>
+ * <p/>
+ * <p>The catalog is disabled by default, and is enabled with the system
+ * property org.icepdf.core.fontcatalog.enabled=true.  The catalog is stored
+ * in the directory given by org.icepdf.core.fontcatalog.directory, which
+ * defaults to an icepdf-index folder in java.io.tmpdir.</p>
+ *
+ * @since 3.1
+ */
+class FontCatalog {
+
+    private static final Logger logger =
+            Logger.getLogger(FontCatalog.class.toString());
+
+    private static final int MAGIC = 0x49434643;
+    private static final int VERSION = 1;
+
+    private static boolean isEnabled;
+    private static File catalogFile;
+
+    static {
+        isEnabled = Defs.sysPropertyBoolean(
+                "org.icepdf.core.fontcatalog.enabled", false);
+        catalogFile = new File(Defs.sysProperty(
+                "org.icepdf.core.fontcatalog.directory",
+                new File(System.getProperty("java.io.tmpdir"),
+                        "icepdf-index").getPath()), "fonts.cat");
+    }
+
+    // true if the fonts were loaded with the font engine rather than awt
+    private boolean fontEngine;
+    // directories and font files found by the last scan, by path
+    private HashMap<String, DirectoryEntry> directories =
+            new HashMap<String, DirectoryEntry>();
+    private HashMap<String, FileEntry> files =
+            new HashMap<String, FileEntry>();
+    // directories and font files seen by the current scan
+    private HashMap<String, DirectoryEntry> scannedDirectories =
+            new HashMap<String, DirectoryEntry>();
+    private HashMap<String, FileEntry> scannedFiles =
+            new HashMap<String, FileEntry>();
+    private boolean isModified;
+
+    private FontCatalog(boolean fontEngine) {
+        this.fontEngine = fontEngine;
+    }
+
+    /**
+     * Indicates if the font catalog is enabled, by the system property
+     * org.icepdf.core.fontcatalog.enabled.
+     *
+     * @return true if system font scans should use the catalog.
+     */
+    static boolean isEnabled() {
+        return isEnabled;
+    }
+
+    /**
+     * Loads the stored catalog.  An empty catalog is returned if none has
+     * been stored, or it was stored for the other font loader.
+     *
+     * @param fontEngine true if fonts are loaded with the font engine.
+     * @return catalog of the last scan.
+     */
+    static FontCatalog load(boolean fontEngine) {
+        FontCatalog catalog = new FontCatalog(fontEngine);
+        if (!catalogFile.isFile()) {
+            return catalog;
+        }
+        try {
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(catalogFile)));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION ||
+                        in.readBoolean() != fontEngine)
+                    return catalog;
+                int directoryCount = in.readInt();
+                for (int i = 0; i < directoryCount; i++) {
+                    String path = in.readUTF();
+                    long lastModified = in.readLong();
+                    String[] names = new String[in.readInt()];
+                    for (int j = 0; j < names.length; j++) {
+                        names[j] = in.readUTF();
+                    }
+                    catalog.directories.put(path,
+                            new DirectoryEntry(lastModified, names));
+                }
+                int fileCount = in.readInt();
+                for (int i = 0; i < fileCount; i++) {
+                    String path = in.readUTF();
+                    long length = in.readLong();
+                    long lastModified = in.readLong();
+                    Object[] font = null;
+                    if (in.readBoolean()) {
+                        font = new Object[]{in.readUTF(), in.readUTF(),
+                                in.readInt(), path};
+                    }
+                    catalog.files.put(path,
+                            new FileEntry(length, lastModified, font));
+                }
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch (Exception e) {
+            logger.log(Level.FINE, "Error loading font catalog " + catalogFile, e);
+            catalog.directories.clear();
+            catalog.files.clear();
+        }
+        return catalog;
+    }
+
+    /**
+     * Lists the files of a font directory, from the catalog if the directory
+     * hasn't changed since the last scan.
+     *
+     * @param directory font directory.
+     * @return file names of the directory, null if it can't be listed.
+     */
+    String[] list(File directory) {
+        String path = directory.getAbsolutePath();
+        long lastModified = directory.lastModified();
+        DirectoryEntry entry = directories.get(path);
+        if (entry == null || entry.lastModified != lastModified) {
+            String[] names = directory.list();
+            if (names == null) {
+                return null;
+            }
+            entry = new DirectoryEntry(lastModified, names);
+            isModified = true;
+        }
+        scannedDirectories.put(path, entry);
+        return entry.names;
+    }
+
+    /**
+     * Indicates if a font file is recorded, and hasn't changed since.
+     *
+     * @param file font file.
+     * @return true if getFont() has the font of the file.
+     */
+    synchronized boolean isKnown(File file) {
+        FileEntry entry = files.get(file.getPath());
+        return entry != null && entry.length == file.length() &&
+                entry.lastModified == file.lastModified();
+    }
+
+    /**
+     * Gets the recorded font of a font file, and keeps it for the next scan.
+     *
+     * @param file font file, for which isKnown() is true.
+     * @return font data as kept by the FontManager, or null if the file isn't
+     *         a readable font.
+     */
+    synchronized Object[] getFont(File file) {
+        FileEntry entry = files.get(file.getPath());
+        scannedFiles.put(file.getPath(), entry);
+        return entry.font;
+    }
+
+    /**
+     * Records the font of a font file that has been loaded.
+     *
+     * @param file         font file.
+     * @param length       length of the file before it was loaded.
+     * @param lastModified modification time of the file before it was loaded.
+     * @param font         font data as kept by the FontManager, or null if
+     *                     the file isn't a readable font.
+     */
+    synchronized void putFont(File file, long length, long lastModified,
+                              Object[] font) {
+        scannedFiles.put(file.getPath(),
+                new FileEntry(length, lastModified, font));
+        isModified = true;
+    }
+
+    /**
+     * Stores the directories and font files of the current scan, replacing
+     * the stored catalog, if anything has changed since it was loaded.
+     */
+    synchronized void store() {
+        if (!isModified &&
+                scannedDirectories.size() == directories.size() &&
+                scannedFiles.size() == files.size()) {
+            return;
+        }
+        File tempFile = null;
+        try {
+            File directory = catalogFile.getParentFile();
+            if (!directory.isDirectory() && !directory.mkdirs())
+                return;
+            // written to a temporary file first, so other processes reading
+            // the catalog never see a partly written one
+            tempFile = File.createTempFile("icepdf", ".tmp", directory);
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeBoolean(fontEngine);
+                out.writeInt(scannedDirectories.size());
+                for (String path : scannedDirectories.keySet()) {
+                    DirectoryEntry entry = scannedDirectories.get(path);
+                    out.writeUTF(path);
+                    out.writeLong(entry.lastModified);
+                    out.writeInt(entry.names.length);
+                    for (String name : entry.names) {
+                        out.writeUTF(name);
+                    }
+                }
+                out.writeInt(scannedFiles.size());
+                for (String path : scannedFiles.keySet()) {
+                    FileEntry entry = scannedFiles.get(path);
+                    out.writeUTF(path);
+                    out.writeLong(entry.length);
+                    out.writeLong(entry.lastModified);
+                    out.writeBoolean(entry.font != null);
+                    if (entry.font != null) {
+                        out.writeUTF((String) entry.font[0]);
+                        out.writeUTF((String) entry.font[1]);
+                        out.writeInt((Integer) entry.font[2]);
+                    }
+                }
+            }
+            finally {
+                out.close();
+            }
+            catalogFile.delete();
+            if (tempFile.renameTo(catalogFile))
+                tempFile = null;
+        }
+        catch (IOException e) {
+            logger.log(Level.FINE, "Error storing font catalog " + catalogFile, e);
+        }
+        finally {
+            if (tempFile != null)
+                tempFile.delete();
+        }
+    }
+
+    private static class DirectoryEntry {
+        private long lastModified;
+        private String[] names;
+
+        private DirectoryEntry(long lastModified, String[] names) {
+            this.lastModified = lastModified;
+            this.names = names;
+        }
+    }
+
+    private static class FileEntry {
+        private long length;
+        private long lastModified;
+        private Object[] font;
+
+        private FileEntry(long length, long lastModified, Object[] font) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.font = font;
+        }
+    }
+}
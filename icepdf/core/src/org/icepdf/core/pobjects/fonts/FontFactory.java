@@ -37,6 +37,7 @@ import org.icepdf.core.pobjects.fonts.ofont.OFont;
 import org.icepdf.core.util.Defs;
 import org.icepdf.core.util.Library;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -110,13 +111,16 @@ public class FontFactory {
 
     private static boolean foundNFont;
 
+    // font files of embedded font programs, shared by all documents.
+    private FontFileCache fontFileCache = new FontFileCache();
+
 
     /**
      * <p>Returns a static instance of the FontManager class.</p>
      *
      * @return instance of the FontManager.
      */
-    public static FontFactory getInstance() {
+    public static synchronized FontFactory getInstance() {
         // make sure we have initialized the manager
         if (fontFactory == null) {
             fontFactory = new FontFactory();
@@ -151,9 +155,28 @@ public class FontFactory {
         return fontDictionary;
     }
 
+    /**
+     * Creates a font file from an embedded font program.  Font files are
+     * kept by a hash of the decoded font program, so documents embedding the
+     * same program share one font file.
+     *
+     * @param fontStream stream containing the font program.
+     * @param fontType   font type of the program.
+     * @return font file of the program, null if it couldn't be loaded.
+     */
     public FontFile createFontFile(Stream fontStream, int fontType) {
         FontFile fontFile = null;
-        if (foundFontEngine()) {
+        boolean fontEngine = foundFontEngine();
+        if (!fontEngine && !awtFontLoading) {
+            return null;
+        }
+        byte[] fontProgram = fontStream.getBytes();
+        Object cacheKey = fontFileCache.getKey(fontProgram, fontType);
+        fontFile = fontFileCache.get(cacheKey);
+        if (fontFile != null) {
+            return fontFile;
+        }
+        if (fontEngine) {
             try {
                 Class fontClass = getNFontClass(fontType);
                 if (fontClass != null) {
@@ -161,8 +184,8 @@ public class FontFactory {
                     Class[] bytArrayArg = {byte[].class};
                     Constructor fontClassConstructor =
                             fontClass.getDeclaredConstructor(bytArrayArg);
-                    Object[] fontStreamBytes = {fontStream.getBytes()};
-                    if (fontStream.getBytes().length > 0) {
+                    Object[] fontStreamBytes = {fontProgram};
+                    if (fontProgram.length > 0) {
                         fontFile = (FontFile) fontClassConstructor
                                 .newInstance(fontStreamBytes);
                     }
@@ -170,11 +193,11 @@ public class FontFactory {
             } catch (Throwable e) {
                 logger.log(Level.FINE, "Could not create instance oof font file " + fontType, e);
             }
-        } else if (awtFontLoading) {
+        } else {
             // see if the font file can be loaded with Java Fonts
             InputStream in = null;
             try {
-                in = fontStream.getInputStreamForDecodedStreamBytes();
+                in = new ByteArrayInputStream(fontProgram);
                 // disabling create font as it brings the JVM down a little too often. 
                 java.awt.Font javaFont = java.awt.Font.createFont(fontType, in);
                 if (javaFont != null) {
@@ -198,9 +221,67 @@ public class FontFactory {
                 }
             }
         }
+        fontFileCache.put(cacheKey, fontFile);
         return fontFile;
     }
 
+    /**
+     * Gets the number of embedded font programs whose font file was shared
+     * from the font cache.
+     *
+     * @return font cache hits.
+     */
+    public long getFontCacheHits() {
+        return fontFileCache.getHits();
+    }
+
+    /**
+     * Gets the number of embedded font programs that had to be loaded.
+     *
+     * @return font cache misses.
+     */
+    public long getFontCacheMisses() {
+        return fontFileCache.getMisses();
+    }
+
+    /**
+     * Gets the share of embedded font programs found in the font cache.
+     *
+     * @return font cache hit rate, between 0 and 1.
+     */
+    public float getFontCacheHitRate() {
+        long hits = fontFileCache.getHits();
+        long total = hits + fontFileCache.getMisses();
+        return total > 0 ? (float) hits / total : 0;
+    }
+
+    /**
+     * Gets the number of font files dropped from the font cache to keep
+     * within the byte limit.
+     *
+     * @return font cache evictions.
+     */
+    public long getFontCacheEvictions() {
+        return fontFileCache.getEvictions();
+    }
+
+    /**
+     * Gets the decoded bytes of the font programs kept in the font cache.
+     *
+     * @return font cache bytes.
+     */
+    public long getFontCacheBytes() {
+        return fontFileCache.getBytes();
+    }
+
+    /**
+     * Drops all the font files kept in the font cache and resets its
+     * statistics.
+     */
+    public void clearFontCache() {
+        fontFileCache.clear();
+    }
+
     public FontFile createFontFile(File file, int fontType) {
         FontFile fontFile = null;
         if (foundFontEngine()) {
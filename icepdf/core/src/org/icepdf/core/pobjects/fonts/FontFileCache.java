@@ -0,0 +1,213 @@
+/*
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * "The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations under
+ * the License.
+ *
+ * The Original Code is ICEpdf 3.0 open source software code, released
+ * May 1st, 2009. The Initial Developer of the Original Code is ICEsoft
+ * Technologies Canada, Corp. Portions created by ICEsoft are Copyright (C)
+ * 2004-2009 ICEsoft Technologies Canada, Corp. All Rights Reserved.
+ *
+ * Contributor(s): _____________________.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"
+ * License), in which case the provisions of the LGPL License are
+ * applicable instead of those above. If you wish to allow use of your
+ * version of this file only under the terms of the LGPL License and not to
+ * allow others to use your version of this file under the MPL, indicate
+ * your decision by deleting the provisions above and replace them with
+ * the notice and other provisions required by the LGPL License. If you do
+ * not delete the provisions above, a recipient may use your version of
+ * this file under either the MPL or the LGPL License."
+ *
+ */
+package org.icepdf.core.pobjects.fonts;
+
+import org.icepdf.core.util.Defs;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Process wide cache of the font files created from embedded font programs.
+ * Documents often embed the same font program, a subset font of an invoice
+ * template for example, so font files are kept by a hash of the decoded
+ * font program and the font type, and handed to every document embedding
+ * the same program.  The least recently used font files are dropped once
+ * the decoded bytes of the kept font programs exceed the limit.
+ *
+ * @since 3.1
+ */
+class FontFileCache {
+
+    private static final Logger logger =
+            Logger.getLogger(FontFileCache.class.toString());
+
+    // most decoded font program bytes kept, set by the system property
+    // org.icepdf.core.fontcache.maxBytes, 0 turns the cache off.
+    private static int maxFontBytes;
+
+    static {
+        maxFontBytes = Defs.sysPropertyInt(
+                "org.icepdf.core.fontcache.maxBytes", 16777216);
+    }
+
+    // font files in access order
+    private LinkedHashMap<Key, Entry> leastRecentlyUsed =
+            new LinkedHashMap<Key, Entry>(64, 0.75f, true);
+    private long fontBytes;
+    private long fontHits;
+    private long fontMisses;
+    private long fontEvictions;
+
+    /**
+     * Builds the cache key of a font program.
+     *
+     * @param fontProgram decoded bytes of the font program.
+     * @param fontType    font type the program is loaded as.
+     * @return key of the font program, or null if it can't be cached.
+     */
+    Object getKey(byte[] fontProgram, int fontType) {
+        if (maxFontBytes <= 0 || fontProgram == null ||
+                fontProgram.length == 0 || fontProgram.length > maxFontBytes) {
+            return null;
+        }
+        try {
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            return new Key(md5.digest(fontProgram), fontProgram.length, fontType);
+        }
+        catch (NoSuchAlgorithmException e) {
+            logger.log(Level.FINE, "Font programs can't be hashed.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Gets the font file kept for the given key.
+     *
+     * @param key key returned by getKey().
+     * @return kept font file, or null if none is kept for the key.
+     */
+    synchronized FontFile get(Object key) {
+        if (key == null) {
+            return null;
+        }
+        // get() moves the entry to the most recently used end
+        Entry entry = leastRecentlyUsed.get(key);
+        if (entry != null) {
+            fontHits++;
+            return entry.fontFile;
+        }
+        fontMisses++;
+        return null;
+    }
+
+    /**
+     * Keeps the font file created for the given key, and drops the least
+     * recently used font files to keep within the byte limit.
+     *
+     * @param key      key returned by getKey().
+     * @param fontFile font file created from the font program.
+     */
+    synchronized void put(Object key, FontFile fontFile) {
+        if (key == null || fontFile == null) {
+            return;
+        }
+        Key fontKey = (Key) key;
+        Entry previous = leastRecentlyUsed.put(fontKey, new Entry(fontFile, fontKey.length));
+        if (previous != null) {
+            fontBytes -= previous.size;
+        }
+        fontBytes += fontKey.length;
+        Iterator<Entry> eldest = leastRecentlyUsed.values().iterator();
+        // the font file just created is kept, even if it is over the limit
+        while (fontBytes > maxFontBytes && leastRecentlyUsed.size() > 1) {
+            Entry entry = eldest.next();
+            eldest.remove();
+            fontBytes -= entry.size;
+            fontEvictions++;
+        }
+    }
+
+    synchronized long getHits() {
+        return fontHits;
+    }
+
+    synchronized long getMisses() {
+        return fontMisses;
+    }
+
+    synchronized long getEvictions() {
+        return fontEvictions;
+    }
+
+    synchronized long getBytes() {
+        return fontBytes;
+    }
+
+    /**
+     * Drops all the kept font files and resets the statistics.
+     */
+    synchronized void clear() {
+        leastRecentlyUsed.clear();
+        fontBytes = 0;
+        fontHits = 0;
+        fontMisses = 0;
+        fontEvictions = 0;
+    }
+
+    /**
+     * Kept font file and the decoded size of its font program.
+     */
+    private static class Entry {
+        private FontFile fontFile;
+        private long size;
+
+        private Entry(FontFile fontFile, long size) {
+            this.fontFile = fontFile;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Hash, length and type of a font program.
+     */
+    private static class Key {
+        private byte[] hash;
+        private int length;
+        private int fontType;
+
+        private Key(byte[] hash, int length, int fontType) {
+            this.hash = hash;
+            this.length = length;
+            this.fontType = fontType;
+        }
+
+        public int hashCode() {
+            return (Arrays.hashCode(hash) * 31 + length) * 31 + fontType;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return length == k.length && fontType == k.fontType &&
+                    Arrays.equals(hash, k.hash);
+        }
+    }
+}
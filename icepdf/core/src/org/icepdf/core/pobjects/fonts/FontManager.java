@@ -37,6 +37,7 @@ import org.icepdf.core.util.FontUtil;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
@@ -60,6 +61,11 @@ import java.util.logging.Level;
  * speed up this process the method getFontProperties exports font data via a
  * Properties object.  The font Properties object can then be saved to disk or
  * be read back into the FontManager via the setFontProperties method.  </p>
+ * <p/>
+ * <p>Font programs are read by several threads, and with the system property
+ * org.icepdf.core.fontcatalog.enabled=true the fonts found are also recorded
+ * in an on disk catalog, so only font files and directories which have
+ * changed since are read again on the next start.</p>
  *
  * @since 2.0
  */
@@ -71,6 +77,19 @@ public class FontManager {
     // stores all font data
     private static ArrayList<Object[]> fontList;
 
+    // threads loading font programs while reading the system fonts, set by
+    // the system property org.icepdf.core.fontmanager.scanThreads
+    private static int scanThreads;
+
+    static {
+        scanThreads = Defs.sysPropertyInt(
+                "org.icepdf.core.fontmanager.scanThreads",
+                Runtime.getRuntime().availableProcessors());
+        if (scanThreads < 1) {
+            scanThreads = 1;
+        }
+    }
+
     // flags for detecting font decorations
     private static int PLAIN = 0xF0000001;
     private static int BOLD = 0xF0000010;
@@ -367,7 +386,6 @@ public class FontManager {
         }
 
         // Setup parameters
-        FontFile font;
         String path;
         StringBuffer fontPath;
         String fontName;
@@ -391,41 +409,133 @@ public class FontManager {
             logger.finer("Reading system fonts:");
         }
 
-        // Iterate through SYSTEM_FONT_PATHS and load all readable fonts
+        FontCatalog catalog = null;
+        if (FontCatalog.isEnabled()) {
+            catalog = FontCatalog.load(
+                    FontFactory.getInstance().foundFontEngine());
+        }
+
+        // Iterate through SYSTEM_FONT_PATHS and collect all readable files
+        ArrayList<String> fontFiles = new ArrayList<String>(256);
         for (int i = fontDirectories.length - 1; i >= 0; i--) {
             path = fontDirectories[i];
             // if the path is valid start reading fonts. 
             if (path != null) {
                 directory = new File(path);
                 if (directory.canRead()) {
-                    fontPaths = directory.list();
+                    fontPaths = catalog != null ?
+                            catalog.list(directory) : directory.list();
+                    if (fontPaths == null) {
+                        continue;
+                    }
                     for (int j = fontPaths.length - 1; j >= 0; j--) {
                         fontName = fontPaths[j];
                         fontPath = new StringBuffer(25);
                         fontPath.append(directory.getAbsolutePath()).append(
                                 File.separatorChar).append(fontName);
-                        if (logger.isLoggable(Level.FINER)){
-                            logger.finer("Trying to load font file: " + fontPath);
-                        }
-                        // try loading the font
-                        font = buildFont(fontPath.toString());
-                        // if a readable font was found
-                        if (font != null) {
-                            // normalize name
-                            fontName = font.getName().toLowerCase();
-                            // Add new font data to the font list
-                            fontList.add(new Object[]{font.getName().toLowerCase(), // original PS name
-                                    FontUtil.normalizeString(font.getFamily()), // family name
-                                    guessFontStyle(fontName), // weight and decorations, mainly bold,italic
-                                    fontPath.toString()});  // path to font on OS
-                            if (logger.isLoggable(Level.FINER)) {
-                                logger.finer("Adding system font: " + font.getName() + " " + fontPath.toString());
-                            }
-                        }
+                        fontFiles.add(fontPath.toString());
                     }
                 }
             }
         }
+
+        // load the font files, the font data is added in the order of the
+        // files so font lookups don't depend on which thread loaded a font.
+        Object[][] fonts = scanFonts(fontFiles, catalog);
+        for (Object[] fontData : fonts) {
+            if (fontData != null) {
+                fontList.add(fontData);
+                if (logger.isLoggable(Level.FINER)) {
+                    logger.finer("Adding system font: " + fontData[0] + " " + fontData[3]);
+                }
+            }
+        }
+        if (catalog != null) {
+            catalog.store();
+        }
+    }
+
+    /**
+     * Loads the font data of the given font files, using several threads as
+     * most of the time is spent reading the font programs.
+     *
+     * @param fontFiles paths of the font files.
+     * @param catalog   catalog of the last scan, null if it isn't used.
+     * @return font data of each file, null entries for files which aren't
+     *         readable fonts.
+     */
+    private Object[][] scanFonts(final List<String> fontFiles,
+                                 final FontCatalog catalog) {
+        final Object[][] fonts = new Object[fontFiles.size()][];
+        final AtomicInteger nextFile = new AtomicInteger();
+        Runnable scanner = new Runnable() {
+            public void run() {
+                int i;
+                while ((i = nextFile.getAndIncrement()) < fonts.length) {
+                    fonts[i] = loadFontData(fontFiles.get(i), catalog);
+                }
+            }
+        };
+        int threads = Math.max(1, Math.min(scanThreads, fonts.length));
+        Thread[] helpers = new Thread[threads - 1];
+        for (int i = 0; i < helpers.length; i++) {
+            helpers[i] = new Thread(scanner, "ICEpdf font scanner");
+            helpers[i].setDaemon(true);
+            helpers[i].start();
+        }
+        scanner.run();
+        // the helpers finish their current file, so wait for them even if
+        // this thread is interrupted.
+        boolean interrupted = false;
+        for (Thread helper : helpers) {
+            while (helper.isAlive()) {
+                try {
+                    helper.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return fonts;
+    }
+
+    /**
+     * Gets the font data of a font file, from the catalog if the file hasn't
+     * changed since the last scan, otherwise by loading the font program.
+     *
+     * @param fontPath path of the font file.
+     * @param catalog  catalog of the last scan, null if it isn't used.
+     * @return font data, or null if the file isn't a readable font.
+     */
+    private Object[] loadFontData(String fontPath, FontCatalog catalog) {
+        File file = new File(fontPath);
+        if (catalog != null && catalog.isKnown(file)) {
+            return catalog.getFont(file);
+        }
+        long length = file.length();
+        long lastModified = file.lastModified();
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer("Trying to load font file: " + fontPath);
+        }
+        // try loading the font
+        FontFile font = buildFont(fontPath);
+        Object[] fontData = null;
+        // if a readable font was found
+        if (font != null) {
+            // normalize name
+            String fontName = font.getName().toLowerCase();
+            fontData = new Object[]{fontName, // original PS name
+                    FontUtil.normalizeString(font.getFamily()), // family name
+                    guessFontStyle(fontName), // weight and decorations, mainly bold,italic
+                    fontPath};  // path to font on OS
+        }
+        if (catalog != null) {
+            catalog.putFont(file, length, lastModified, fontData);
+        }
+        return fontData;
     }
 
     /**
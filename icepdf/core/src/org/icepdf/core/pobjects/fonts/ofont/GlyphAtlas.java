@@ -0,0 +1,276 @@
+/*
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * "The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations under
+ * the License.
+ *
+ * The Original Code is ICEpdf 3.0 open source software code, released
+ * May 1st, 2009. The Initial Developer of the Original Code is ICEsoft
+ * Technologies Canada, Corp. Portions created by ICEsoft are Copyright (C)
+ * 2004-2009 ICEsoft Technologies Canada, Corp. All Rights Reserved.
+ *
+ * Contributor(s): _____________________.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"
+ * License), in which case the provisions of the LGPL License are
+ * applicable instead of those above. If you wish to allow use of your
+ * version of this file only under the terms of the LGPL License and not to
+ * allow others to use your version of this file under the MPL, indicate
+ * your decision by deleting the provisions above and replace them with
+ * the notice and other provisions required by the LGPL License. If you do
+ * not delete the provisions above, a recipient may use your version of
+ * this file under either the MPL or the LGPL License."
+ *
+ */
+package org.icepdf.core.pobjects.fonts.ofont;
+
+import org.icepdf.core.util.Defs;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>Bitmaps of small glyphs, so text at screen sizes is drawn by copying
+ * pixels rather than by filling outlines.  A bitmap is keyed by the glyph's
+ * outline, which identifies the font, size and character, the device scale
+ * quantized to a few significant bits, the position of the glyph within a
+ * pixel in quarter pixel steps, the fill colour and the antialiasing hint.</p>
+ * <p/>
+ * <p>Only glyphs filled with a colour, through a transform without rotation
+ * or shear and with a source over composite, can be drawn from the cache;
+ * for anything else {@link #draw} returns false and the caller fills the
+ * outline.  The cache is shared by all documents and bounded by the
+ * system property org.icepdf.core.glyphAtlas.maxBytes.</p>
+ *
+ * @since 3.1
+ */
+class GlyphAtlas {
+
+    // subpixel positions per pixel on each axis
+    private static final int SUBPIXEL_STEPS = 4;
+
+    // most glyphs kept, including the ones found to be too large
+    private static final int MAX_GLYPHS = 16384;
+
+    // low mantissa bits of the scale ignored, within 1 part in 8192.
+    private static final int SCALE_MASK = ~0x3FF;
+
+    // most bytes of glyph bitmaps kept.
+    private static long maxBytes;
+
+    // glyphs taller or wider than this, in pixels, are filled from outlines.
+    private static int maxGlyphSize;
+
+    static {
+        maxBytes = Defs.sysPropertyInt(
+                "org.icepdf.core.glyphAtlas.maxBytes", 4194304);
+        maxGlyphSize = Defs.sysPropertyInt(
+                "org.icepdf.core.glyphAtlas.maxGlyphSize", 48);
+    }
+
+    // marks glyphs too large to cache, so their bounds are found only once
+    private static final Bitmap TOO_LARGE = new Bitmap(null, 0, 0);
+
+    // bitmaps in access order and the bytes they hold
+    private static final LinkedHashMap<Key, Bitmap> bitmaps =
+            new LinkedHashMap<Key, Bitmap>(1024, 0.75f, true);
+    private static long bytes;
+
+    private GlyphAtlas() {
+    }
+
+    /**
+     * Draws the glyph outline at <var>x</var>, <var>y</var> from a cached
+     * bitmap, creating the bitmap if need be.
+     *
+     * @param g       graphics context to draw to.
+     * @param outline glyph outline at the origin, which must never change.
+     * @param x       x coordinate of the glyph origin in user space.
+     * @param y       y coordinate of the glyph origin in user space.
+     * @return true if the glyph was drawn, false if the outline must be
+     *         filled instead.
+     */
+    static boolean draw(Graphics2D g, Shape outline, float x, float y) {
+        Paint paint = g.getPaint();
+        if (!(paint instanceof Color)) {
+            return false;
+        }
+        Composite composite = g.getComposite();
+        if (!(composite instanceof AlphaComposite) ||
+                ((AlphaComposite) composite).getRule() != AlphaComposite.SRC_OVER) {
+            return false;
+        }
+        AffineTransform transform = g.getTransform();
+        if (transform.getShearX() != 0 || transform.getShearY() != 0) {
+            return false;
+        }
+
+        // device position of the glyph origin, split into whole pixels and
+        // a subpixel step
+        double deviceX = transform.getScaleX() * x + transform.getTranslateX();
+        double deviceY = transform.getScaleY() * y + transform.getTranslateY();
+        int pixelX = (int) Math.floor(deviceX);
+        int pixelY = (int) Math.floor(deviceY);
+        int stepX = (int) Math.round((deviceX - pixelX) * SUBPIXEL_STEPS);
+        int stepY = (int) Math.round((deviceY - pixelY) * SUBPIXEL_STEPS);
+        if (stepX == SUBPIXEL_STEPS) {
+            pixelX++;
+            stepX = 0;
+        }
+        if (stepY == SUBPIXEL_STEPS) {
+            pixelY++;
+            stepY = 0;
+        }
+
+        Key key = new Key(outline,
+                Float.floatToIntBits((float) transform.getScaleX()) & SCALE_MASK,
+                Float.floatToIntBits((float) transform.getScaleY()) & SCALE_MASK,
+                stepX, stepY, ((Color) paint).getRGB(),
+                g.getRenderingHint(RenderingHints.KEY_ANTIALIASING));
+        Bitmap bitmap;
+        synchronized (bitmaps) {
+            bitmap = bitmaps.get(key);
+        }
+        if (bitmap == null) {
+            bitmap = createBitmap(g, key, (Color) paint);
+            synchronized (bitmaps) {
+                if (bitmaps.put(key, bitmap) == null) {
+                    bytes += bitmap.getSize();
+                    Iterator<Bitmap> eldest = bitmaps.values().iterator();
+                    while ((bytes > maxBytes || bitmaps.size() > MAX_GLYPHS) &&
+                            eldest.hasNext()) {
+                        bytes -= eldest.next().getSize();
+                        eldest.remove();
+                    }
+                }
+            }
+        }
+        if (bitmap.image == null) {
+            return false;
+        }
+
+        // copy the pixels in device space
+        g.setTransform(new AffineTransform());
+        g.drawImage(bitmap.image, pixelX + bitmap.left, pixelY + bitmap.top, null);
+        g.setTransform(transform);
+        return true;
+    }
+
+    private static Bitmap createBitmap(Graphics2D g, Key key, Color color) {
+        float scaleX = Float.intBitsToFloat(key.scaleX);
+        float scaleY = Float.intBitsToFloat(key.scaleY);
+        double offsetX = (double) key.stepX / SUBPIXEL_STEPS;
+        double offsetY = (double) key.stepY / SUBPIXEL_STEPS;
+
+        AffineTransform glyphTransform = new AffineTransform(
+                scaleX, 0, 0, scaleY, offsetX, offsetY);
+        Rectangle2D bounds = glyphTransform.createTransformedShape(
+                key.outline.getBounds2D()).getBounds2D();
+        if (bounds.getWidth() > maxGlyphSize || bounds.getHeight() > maxGlyphSize) {
+            return TOO_LARGE;
+        }
+        // a pixel of margin for antialiasing and stroke normalization
+        int left = (int) Math.floor(bounds.getMinX()) - 1;
+        int top = (int) Math.floor(bounds.getMinY()) - 1;
+        int width = (int) Math.ceil(bounds.getMaxX()) - left + 1;
+        int height = (int) Math.ceil(bounds.getMaxY()) - top + 1;
+
+        BufferedImage image = new BufferedImage(
+                width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D glyphGraphics = image.createGraphics();
+        glyphGraphics.setRenderingHints(g.getRenderingHints());
+        glyphGraphics.setColor(color);
+        glyphGraphics.translate(-left, -top);
+        glyphGraphics.transform(glyphTransform);
+        glyphGraphics.fill(key.outline);
+        glyphGraphics.dispose();
+        return new Bitmap(image, left, top);
+    }
+
+    /**
+     * A glyph's pixels and their offset from the glyph origin.
+     */
+    private static class Bitmap {
+
+        private final BufferedImage image;
+        private final int left;
+        private final int top;
+
+        private Bitmap(BufferedImage image, int left, int top) {
+            this.image = image;
+            this.left = left;
+            this.top = top;
+        }
+
+        private long getSize() {
+            return image != null ? image.getWidth() * image.getHeight() * 4L : 0;
+        }
+    }
+
+    /**
+     * Identifies the bitmap of a glyph drawn at a scale, subpixel position
+     * and colour.
+     */
+    private static class Key {
+
+        private final Shape outline;
+        private final int scaleX;
+        private final int scaleY;
+        private final int stepX;
+        private final int stepY;
+        private final int rgb;
+        private final Object antialiasing;
+        private final int hash;
+
+        private Key(Shape outline, int scaleX, int scaleY, int stepX, int stepY,
+                    int rgb, Object antialiasing) {
+            this.outline = outline;
+            this.scaleX = scaleX;
+            this.scaleY = scaleY;
+            this.stepX = stepX;
+            this.stepY = stepY;
+            this.rgb = rgb;
+            this.antialiasing = antialiasing;
+            int h = System.identityHashCode(outline);
+            h = h * 31 + scaleX;
+            h = h * 31 + scaleY;
+            h = h * 31 + stepX * SUBPIXEL_STEPS + stepY;
+            h = h * 31 + rgb;
+            hash = h;
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return outline == key.outline && scaleX == key.scaleX &&
+                    scaleY == key.scaleY && stepX == key.stepX &&
+                    stepY == key.stepY && rgb == key.rgb &&
+                    antialiasing == key.antialiasing;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * "The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations under
+ * the License.
+ *
+ * The Original Code is ICEpdf 3.0 open source software code, released
+ * May 1st, 2009. The Initial Developer of the Original Code is ICEsoft
+ * Technologies Canada, Corp. Portions created by ICEsoft are Copyright (C)
+ * 2004-2009 ICEsoft Technologies Canada, Corp. All Rights Reserved.
+ *
+ * Contributor(s): _____________________.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"
+ * License), in which case the provisions of the LGPL License are
+ * applicable instead of those above. If you wish to allow use of your
+ * version of this file only under the terms of the LGPL License and not to
+ * allow others to use your version of this file under the MPL, indicate
+ * your decision by deleting the provisions above and replace them with
+ * the notice and other provisions required by the LGPL License. If you do
+ * not delete the provisions above, a recipient may use your version of
+ * this file under either the MPL or the LGPL License."
+ *
+ */
+package org.icepdf.core.pobjects.fonts.ofont;
+
+import org.icepdf.core.util.Defs;
+
+import java.awt.Font;
+import java.awt.Shape;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>Glyph outlines of an OFont, positioned at the origin and keyed by
+ * character code.  The cache is shared by all the fonts derived from one
+ * another at different sizes and transforms, while they keep the same
+ * encoding, so every text operator of a page reuses the outlines built for
+ * the first.</p>
+ * <p/>
+ * <p>Outlines are kept for the most recently used sizes of the font.  The
+ * first 256 character codes are looked up by index, other codes of a size
+ * are kept in least recently used order up to a bound.  The cache can be
+ * read and filled by many painting threads at once.</p>
+ *
+ * @since 3.1
+ */
+class GlyphCache {
+
+    // most sizes of a font kept, set by the system property
+    // org.icepdf.core.glyphCache.maxSizes
+    private static int maxSizes;
+
+    // most outlines kept per size for codes above 255, set by the system
+    // property org.icepdf.core.glyphCache.maxGlyphs
+    private static int maxGlyphs;
+
+    static {
+        maxSizes = Defs.sysPropertyInt(
+                "org.icepdf.core.glyphCache.maxSizes", 8);
+        maxGlyphs = Defs.sysPropertyInt(
+                "org.icepdf.core.glyphCache.maxGlyphs", 512);
+    }
+
+    // glyphs of each size, keyed by the awt font, in access order
+    private final LinkedHashMap<Font, Glyphs> sizes =
+            new LinkedHashMap<Font, Glyphs>(16, 0.75f, true) {
+                protected boolean removeEldestEntry(Map.Entry<Font, Glyphs> eldest) {
+                    return size() > maxSizes;
+                }
+            };
+
+    /**
+     * Gets the outlines of the given awt font, which are created if
+     * need be.
+     *
+     * @param awtFont font at the size and transform of the outlines.
+     * @return outlines of the font.
+     */
+    Glyphs getGlyphs(Font awtFont) {
+        synchronized (sizes) {
+            Glyphs glyphs = sizes.get(awtFont);
+            if (glyphs == null) {
+                glyphs = new Glyphs();
+                sizes.put(awtFont, glyphs);
+            }
+            return glyphs;
+        }
+    }
+
+    /**
+     * Outlines of one size of a font.
+     */
+    static class Glyphs {
+
+        private final AtomicReferenceArray<Shape> latin =
+                new AtomicReferenceArray<Shape>(256);
+
+        private final LinkedHashMap<Character, Shape> others =
+                new LinkedHashMap<Character, Shape>(16, 0.75f, true) {
+                    protected boolean removeEldestEntry(Map.Entry<Character, Shape> eldest) {
+                        return size() > maxGlyphs;
+                    }
+                };
+
+        /**
+         * Gets the outline of the character.
+         *
+         * @param ech character code.
+         * @return outline at the origin, null if it isn't cached.
+         */
+        Shape get(char ech) {
+            if (ech < 256) {
+                return latin.get(ech);
+            }
+            synchronized (others) {
+                return others.get(ech);
+            }
+        }
+
+        /**
+         * Caches the outline of the character, the outline must not be
+         * changed once added.
+         *
+         * @param ech     character code.
+         * @param outline outline at the origin.
+         */
+        void put(char ech, Shape outline) {
+            if (ech < 256) {
+                latin.set(ech, outline);
+            } else {
+                synchronized (others) {
+                    others.put(ech, outline);
+                }
+            }
+        }
+    }
+}
@@ -36,6 +36,7 @@ import org.icepdf.core.pobjects.fonts.CMap;
 import org.icepdf.core.pobjects.fonts.Encoding;
 import org.icepdf.core.pobjects.fonts.FontFile;
 import org.icepdf.core.pobjects.graphics.TextState;
+import org.icepdf.core.util.GraphicsRenderingHints;
 
 import java.awt.*;
 import java.awt.Font;
@@ -47,7 +48,7 @@ import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.util.Map;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
@@ -66,7 +67,12 @@ public class OFont implements FontFile {
             new Rectangle2D.Double(0.0, 0.0, 1.0, 1.0);
 
     // text layout map, very expensive to create, so we'll cache them.
-    private HashMap<String, Point2D.Float> echarAdvanceCache;
+    private ConcurrentHashMap<String, Point2D.Float> echarAdvanceCache;
+
+    // glyph outlines shared by the fonts derived with the same encoding,
+    // and the outlines of this font's size, found on first use.
+    private GlyphCache glyphCache;
+    private volatile GlyphCache.Glyphs glyphs;
 
     protected float[] widths;
     protected Map<Integer, Float> cidWidths;
@@ -82,11 +88,13 @@ public class OFont implements FontFile {
     public OFont(Font awtFont) {
         this.awtFont = awtFont;
         maxCharBounds = new Rectangle2D.Double();
-        this.echarAdvanceCache = new HashMap<String, Point2D.Float>(256);
+        this.echarAdvanceCache = new ConcurrentHashMap<String, Point2D.Float>(256);
+        this.glyphCache = new GlyphCache();
     }
 
     private OFont(OFont font) {
         this.echarAdvanceCache = font.echarAdvanceCache;
+        this.glyphCache = font.glyphCache;
         this.awtFont = font.awtFont;
         this.encoding = font.encoding;
         this.toUnicode = font.toUnicode;
@@ -102,7 +110,10 @@ public class OFont implements FontFile {
 
     public FontFile deriveFont(Encoding encoding, CMap toUnicode) {
         OFont font = new OFont(this);
-        this.echarAdvanceCache.clear();
+        // the advances depend on the encoding, the font file may also be
+        // shared with other documents, so they aren't shared
+        font.echarAdvanceCache = new ConcurrentHashMap<String, Point2D.Float>(256);
+        font.glyphCache = new GlyphCache();
         font.encoding = encoding;
         font.toUnicode = toUnicode;
         return font;
@@ -111,26 +122,28 @@ public class OFont implements FontFile {
     public FontFile deriveFont(float[] widths, int firstCh, float missingWidth,
                                float ascent, float descent, char[] diff) {
         OFont font = new OFont(this);
-        this.echarAdvanceCache.clear();
+        font.echarAdvanceCache = new ConcurrentHashMap<String, Point2D.Float>(256);
         font.missingWidth = this.missingWidth;
         font.firstCh = firstCh;
         font.ascent = ascent;
         font.descent = descent;
         font.widths = widths;
         font.cMap = diff;
+        font.glyphCache = new GlyphCache();
         return font;
     }
 
     public FontFile deriveFont(Map<Integer, Float> widths, int firstCh, float missingWidth,
                                float ascent, float descent, char[] diff) {
         OFont font = new OFont(this);
-        this.echarAdvanceCache.clear();
+        font.echarAdvanceCache = new ConcurrentHashMap<String, Point2D.Float>(256);
         font.missingWidth = this.missingWidth;
         font.firstCh = firstCh;
         font.ascent = ascent;
         font.descent = descent;
         font.cidWidths = widths;
         font.cMap = diff;
+        font.glyphCache = new GlyphCache();
         return font;
     }
 
@@ -324,6 +337,12 @@ public class OFont implements FontFile {
     public void drawEstring(Graphics2D g, String displayText, float x, float y,
                             long layout, int mode, Color strokecolor) {
 
+        // single glyphs are drawn from the outline cache
+        if (displayText.length() == 1) {
+            drawEchar(g, displayText.charAt(0), x, y, mode, strokecolor);
+            return;
+        }
+
         displayText = toUnicode(displayText);
         FontRenderContext frc = new FontRenderContext(new AffineTransform(), true, true);
         GlyphVector glyphVector = awtFont.createGlyphVector(frc, displayText);
@@ -340,6 +359,62 @@ public class OFont implements FontFile {
 
     }
 
+    /**
+     * Draws the character <var>ech</var> at <var>x</var>, <var>y</var>, the
+     * same as a one character <code>drawEstring</code> but without building a
+     * string, the glyph is drawn from the outline cache.
+     */
+    public void drawEchar(Graphics2D g, char ech, float x, float y,
+                          int mode, Color strokecolor) {
+
+        Shape outline = getEcharOutline(ech);
+
+        // small, upright, filled glyphs are copied from cached bitmaps when
+        // the graphics context allows it.
+        if (TextState.MODE_FILL == mode || TextState.MODE_FILL_ADD == mode) {
+            if (g.getRenderingHint(GraphicsRenderingHints.KEY_GLYPH_CACHE) ==
+                    GraphicsRenderingHints.VALUE_GLYPH_CACHE_ON &&
+                    GlyphAtlas.draw(g, outline, x, y)) {
+                return;
+            }
+        }
+
+        AffineTransform base = g.getTransform();
+        g.translate(x, y);
+        if (TextState.MODE_FILL == mode || TextState.MODE_FILL_STROKE == mode ||
+                TextState.MODE_FILL_ADD == mode || TextState.MODE_FILL_STROKE_ADD == mode) {
+            g.fill(outline);
+        }
+        if (TextState.MODE_STROKE == mode || TextState.MODE_FILL_STROKE == mode ||
+                TextState.MODE_STROKE_ADD == mode || TextState.MODE_FILL_STROKE_ADD == mode) {
+            g.draw(outline);
+        }
+        g.setTransform(base);
+    }
+
+    /**
+     * Gets the outline of the glyph drawn for the character, at the origin.
+     * Outlines are built once per size of the font and cached.
+     *
+     * @param ech character code to find the outline of.
+     * @return outline of the glyph, which must not be changed.
+     */
+    private Shape getEcharOutline(char ech) {
+        GlyphCache.Glyphs glyphs = this.glyphs;
+        if (glyphs == null) {
+            glyphs = glyphCache.getGlyphs(awtFont);
+            this.glyphs = glyphs;
+        }
+        Shape outline = glyphs.get(ech);
+        if (outline == null) {
+            String displayText = toUnicode(String.valueOf(ech));
+            FontRenderContext frc = new FontRenderContext(new AffineTransform(), true, true);
+            GlyphVector glyphVector = awtFont.createGlyphVector(frc, displayText);
+            outline = glyphVector.getOutline();
+            glyphs.put(ech, outline);
+        }
+        return outline;
+    }
 
     public String toUnicode(String displayText) {
         // Check string for displayable Glyphs,  try and substitute any failed ones
@@ -0,0 +1,307 @@
+/*
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * "The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations under
+ * the License.
+ *
+ * The Original Code is ICEpdf 3.0 open source software code, released
+ * May 1st, 2009. The Initial Developer of the Original Code is ICEsoft
+ * Technologies Canada, Corp. Portions created by ICEsoft are Copyright (C)
+ * 2004-2009 ICEsoft Technologies Canada, Corp. All Rights Reserved.
+ *
+ * Contributor(s): _____________________.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"
+ * License), in which case the provisions of the LGPL License are
+ * applicable instead of those above. If you wish to allow use of your
+ * version of this file only under the terms of the LGPL License and not to
+ * allow others to use your version of this file under the MPL, indicate
+ * your decision by deleting the provisions above and replace them with
+ * the notice and other provisions required by the LGPL License. If you do
+ * not delete the provisions above, a recipient may use your version of
+ * this file under either the MPL or the LGPL License."
+ *
+ */
+package org.icepdf.core.pobjects.graphics;
+
+import org.icepdf.core.util.Defs;
+
+import java.util.Random;
+
+/**
+ * <p>Precomputed colour conversion for image samples of 8 bits or less, used
+ * by {@link PColorSpace#convertRow} for colour spaces that are expensive to
+ * evaluate per pixel, such as ICC profiles and tint transform functions.</p>
+ * <p/>
+ * <p>Single component spaces get an exact table with one entry per sample
+ * value.  Spaces of two to four components get a grid of exact values at
+ * evenly spaced sample values, and samples in between are found by multilinear
+ * interpolation.  A grid is checked against the exact conversion when it is
+ * built and is not used if it is out by more than the system property
+ * org.icepdf.core.colorLut.maxError, in 8 bit levels on any channel.  The
+ * grid sizes are set by org.icepdf.core.colorLut.gridPoints, for two and three
+ * components, and org.icepdf.core.colorLut.gridPoints4 for four.</p>
+ *
+ * @since 3.1
+ */
+class ColorLookupTable {
+
+    // number of points a grid is checked at against the exact conversion
+    private static final int CHECK_POINTS = 1024;
+
+    private static boolean enabled;
+
+    private static int maxError;
+
+    private static int gridPoints;
+
+    private static int gridPoints4;
+
+    static {
+        enabled = Defs.sysPropertyBoolean(
+                "org.icepdf.core.colorLut.enabled", true);
+        maxError = Defs.sysPropertyInt(
+                "org.icepdf.core.colorLut.maxError", 2);
+        gridPoints = Defs.sysPropertyInt(
+                "org.icepdf.core.colorLut.gridPoints", 17);
+        gridPoints4 = Defs.sysPropertyInt(
+                "org.icepdf.core.colorLut.gridPoints4", 9);
+    }
+
+    // largest sample value the table was built for
+    private int maxValue;
+    private int numComponents;
+    // false if the grid was not accurate enough, or can't be built
+    private boolean usable;
+
+    // exact values for one component, else grid values
+    private int[] table;
+    // for each sample value, the grid cell it falls in and its offset within
+    // the cell from 0 to 1
+    private int[] cell;
+    private float[] weight;
+    // grid index step for each component, in sample order
+    private int[] strides;
+
+    private ColorLookupTable(int maxValue, int numComponents) {
+        this.maxValue = maxValue;
+        this.numComponents = numComponents;
+    }
+
+    /**
+     * Lookup tables can be turned off with the system property
+     * org.icepdf.core.colorLut.enabled.
+     *
+     * @return true if lookup tables may be used.
+     */
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Gets the number of exact conversions needed to build a table, so the
+     * caller can hold off until it has converted enough pixels to make it
+     * worth while.
+     *
+     * @param numComponents number of colour components.
+     * @param maxValue      largest sample value.
+     * @return number of exact conversions done by build.
+     */
+    static int getBuildCost(int numComponents, int maxValue) {
+        if (numComponents == 1) {
+            return maxValue + 1;
+        }
+        int points = getGridPoints(numComponents, maxValue);
+        long cost = 1;
+        for (int i = 0; i < numComponents; i++) {
+            cost *= points;
+        }
+        return (int) Math.min(cost + CHECK_POINTS, Integer.MAX_VALUE);
+    }
+
+    private static int getGridPoints(int numComponents, int maxValue) {
+        int points = numComponents == 4 ? gridPoints4 : gridPoints;
+        return Math.max(2, Math.min(points, maxValue + 1));
+    }
+
+    /**
+     * Builds a table for the colour space from its exact conversion.
+     *
+     * @param colorSpace colour space to convert with.
+     * @param maxValue   largest sample value, at most 255.
+     * @return new table, which may not be usable.
+     */
+    static ColorLookupTable build(PColorSpace colorSpace, int maxValue) {
+        int n = colorSpace.getNumComponents();
+        ColorLookupTable lut = new ColorLookupTable(maxValue, n);
+        if (n < 1 || n > 4) {
+            return lut;
+        }
+        int[] in = new int[n];
+        float[] f = new float[n];
+        int[] samples = new int[n];
+        if (n == 1) {
+            int[] table = new int[maxValue + 1];
+            for (int v = 0; v <= maxValue; v++) {
+                samples[0] = v;
+                table[v] = convert(colorSpace, samples, maxValue, in, f);
+            }
+            lut.table = table;
+            lut.usable = true;
+            return lut;
+        }
+
+        // grid points on whole sample values, so the exact conversion
+        // sees the same values it would for image data
+        int points = getGridPoints(n, maxValue);
+        int[] nodes = new int[points];
+        for (int i = 0; i < points; i++) {
+            nodes[i] = Math.round(i * maxValue / (float) (points - 1));
+        }
+        int[] cell = new int[maxValue + 1];
+        float[] weight = new float[maxValue + 1];
+        for (int v = 0, c = 0; v <= maxValue; v++) {
+            while (c < points - 2 && nodes[c + 1] <= v) {
+                c++;
+            }
+            cell[v] = c;
+            weight[v] = (v - nodes[c]) / (float) (nodes[c + 1] - nodes[c]);
+        }
+        int[] strides = new int[n];
+        int size = 1;
+        for (int j = n - 1; j >= 0; j--) {
+            strides[j] = size;
+            size *= points;
+        }
+        int[] table = new int[size];
+        for (int index = 0; index < size; index++) {
+            for (int j = 0; j < n; j++) {
+                samples[j] = nodes[(index / strides[j]) % points];
+            }
+            table[index] = convert(colorSpace, samples, maxValue, in, f);
+        }
+        lut.table = table;
+        lut.cell = cell;
+        lut.weight = weight;
+        lut.strides = strides;
+
+        // check the grid where it is furthest from its points
+        Random random = new Random(maxValue);
+        int[] argb = new int[1];
+        for (int i = 0; i < CHECK_POINTS; i++) {
+            for (int j = 0; j < n; j++) {
+                int c = random.nextInt(points - 1);
+                samples[j] = (nodes[c] + nodes[c + 1] + random.nextInt(2)) / 2;
+            }
+            int exact = convert(colorSpace, samples, maxValue, in, f);
+            lut.interpolateRow(samples, 1, argb);
+            if (difference(exact, argb[0]) > maxError) {
+                return lut;
+            }
+        }
+        lut.usable = true;
+        return lut;
+    }
+
+    /**
+     * @return largest sample value the table was built for.
+     */
+    int getMaxValue() {
+        return maxValue;
+    }
+
+    /**
+     * Converts a row of samples with the table.
+     *
+     * @param samples interleaved colour samples, none above getMaxValue().
+     * @param count   number of pixels in the row.
+     * @param argb    receives the count converted pixels.
+     * @return false if the table is not usable and nothing was converted.
+     */
+    boolean convertRow(int[] samples, int count, int[] argb) {
+        if (!usable) {
+            return false;
+        }
+        if (numComponents == 1) {
+            int[] table = this.table;
+            for (int i = 0; i < count; i++) {
+                argb[i] = table[samples[i]];
+            }
+        } else {
+            interpolateRow(samples, count, argb);
+        }
+        return true;
+    }
+
+    private void interpolateRow(int[] samples, int count, int[] argb) {
+        int n = numComponents;
+        int corners = 1 << n;
+        float[] w = new float[n];
+        for (int i = 0, pos = 0; i < count; i++, pos += n) {
+            if (i > 0 && PColorSpace.isRepeatedPixel(samples, pos, n)) {
+                argb[i] = argb[i - 1];
+                continue;
+            }
+            int base = 0;
+            for (int j = 0; j < n; j++) {
+                int v = samples[pos + j];
+                base += cell[v] * strides[j];
+                w[j] = weight[v];
+            }
+            float r = 0, g = 0, b = 0;
+            for (int corner = 0; corner < corners; corner++) {
+                float cw = 1;
+                int index = base;
+                for (int j = 0; j < n; j++) {
+                    if ((corner & (1 << j)) != 0) {
+                        cw *= w[j];
+                        index += strides[j];
+                    } else {
+                        cw *= 1 - w[j];
+                    }
+                }
+                if (cw == 0) {
+                    continue;
+                }
+                int rgb = table[index];
+                r += cw * ((rgb >> 16) & 0xFF);
+                g += cw * ((rgb >> 8) & 0xFF);
+                b += cw * (rgb & 0xFF);
+            }
+            argb[i] = 0xFF000000 |
+                    ((int) (r + 0.5f) << 16) |
+                    ((int) (g + 0.5f) << 8) |
+                    (int) (b + 0.5f);
+        }
+    }
+
+    // exact conversion of one pixel, samples in image order
+    private static int convert(PColorSpace colorSpace, int[] samples,
+                               int maxValue, int[] in, float[] f) {
+        int n = samples.length;
+        for (int j = 0; j < n; j++) {
+            in[n - 1 - j] = samples[j];
+        }
+        colorSpace.normaliseComponentsToFloats(in, f, maxValue);
+        return colorSpace.getRGB(f);
+    }
+
+    private static int difference(int rgb1, int rgb2) {
+        int max = 0;
+        for (int shift = 0; shift <= 16; shift += 8) {
+            int d = Math.abs(((rgb1 >> shift) & 0xFF) - ((rgb2 >> shift) & 0xFF));
+            if (d > max) {
+                max = d;
+            }
+        }
+        return max;
+    }
+}
@@ -65,6 +65,33 @@ public class DeviceCMYK extends PColorSpace {
         return alternative2(f);
     }
 
+    public int getRGB(float[] f) {
+        return alternative2RGB(f[3], f[2], f[1], f[0]);
+    }
+
+    /**
+     * Converts a row of cmyk samples straight to packed rgb values, the
+     * samples are already in c, m, y, k order so no reversing is needed.
+     *
+     * @param samples interleaved cmyk samples.
+     * @param count   number of pixels in the row.
+     * @param maxval  largest possible sample value.
+     * @param argb    receives the count converted pixels.
+     */
+    public void convertRow(int[] samples, int count, float maxval, int[] argb) {
+        for (int i = 0, pos = 0; i < count; i++, pos += 4) {
+            if (i > 0 && isRepeatedPixel(samples, pos, 4)) {
+                argb[i] = argb[i - 1];
+                continue;
+            }
+            argb[i] = alternative2RGB(
+                    ((float) samples[pos]) / maxval,
+                    ((float) samples[pos + 1]) / maxval,
+                    ((float) samples[pos + 2]) / maxval,
+                    ((float) samples[pos + 3]) / maxval);
+        }
+    }
+
     /**
      * Ah yes the many possible ways to go from cmyk to rgb.  Everybody has
      * an opinion but no one has the solution that is 100%
@@ -228,11 +255,21 @@ public class DeviceCMYK extends PColorSpace {
      * @return valid rgb colour object.
      */
     private static Color alternative2(float[] f) {
-        float inCyan = f[3];
-        float inMagenta = f[2];
-        float inYellow = f[1];
-        float inBlack = f[0];
+        return new Color(alternative2RGB(f[3], f[2], f[1], f[0]));
+    }
 
+    /**
+     * Packed rgb form of alternative2, rounded the same way as
+     * <code>new Color(float, float, float)</code>.
+     *
+     * @param inCyan    cyan component between 0.0 and 1.0
+     * @param inMagenta magenta component between 0.0 and 1.0
+     * @param inYellow  yellow component between 0.0 and 1.0
+     * @param inBlack   black component between 0.0 and 1.0
+     * @return packed argb value of the colour.
+     */
+    private static int alternative2RGB(float inCyan, float inMagenta,
+                                       float inYellow, float inBlack) {
         double c, m, y, aw, ac, am, ay, ar, ag, ab;
         c = Math.min(1.0, inCyan + inBlack);
         m = Math.min(1.0, inMagenta + inBlack);
@@ -249,7 +286,14 @@ public class DeviceCMYK extends PColorSpace {
         float outGreen = (float) (aw + 0.6196 * ac + ay + 0.5176 * ag);
         float outBlue = (float) (aw + 0.7804 * ac + 0.5412 * am + 0.0667 * ar + 0.2118 * ag + 0.4863 * ab);
 
-        return new Color(outRed, outGreen, outBlue);
+        return 0xFF000000 |
+                (clamp((int) (outRed * 255 + 0.5)) << 16) |
+                (clamp((int) (outGreen * 255 + 0.5)) << 8) |
+                clamp((int) (outBlue * 255 + 0.5));
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
     }
 
 }
@@ -106,6 +106,30 @@ public class DeviceN extends PColorSpace {
         }
         return alternate.getColor(reverse(y));
     }
+
+    /**
+     * @param f
+     * @return packed ARGB value of the colour.
+     */
+    public int getRGB(float[] f) {
+        if (func == null) {
+            float y[] = new float[alternate.getNumComponents()];
+            for (int i = 0; i < Math.min(y.length, f.length); i++) {
+                y[i] = f[i];
+            }
+            return alternate.getRGB(y);
+        }
+        float y[] = func.calculate(f);
+        reverseInPlace(y);
+        if (colorspaces[0] != null) {
+            return colorspaces[0].getRGB(y);
+        }
+        return alternate.getRGB(y);
+    }
+
+    boolean isLookupTableWorthwhile() {
+        return func != null;
+    }
 }
 
 
@@ -0,0 +1,994 @@
+/*
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * "The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations under
+ * the License.
+ *
+ * The Original Code is ICEpdf 3.0 open source software code, released
+ * May 1st, 2009. The Initial Developer of the Original Code is ICEsoft
+ * Technologies Canada, Corp. Portions created by ICEsoft are Copyright (C)
+ * 2004-2009 ICEsoft Technologies Canada, Corp. All Rights Reserved.
+ *
+ * Contributor(s): _____________________.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"
+ * License), in which case the provisions of the LGPL License are
+ * applicable instead of those above. If you wish to allow use of your
+ * version of this file only under the terms of the LGPL License and not to
+ * allow others to use your version of this file under the MPL, indicate
+ * your decision by deleting the provisions above and replace them with
+ * the notice and other provisions required by the LGPL License. If you do
+ * not delete the provisions above, a recipient may use your version of
+ * this file under either the MPL or the LGPL License."
+ *
+ */
+package org.icepdf.core.pobjects.graphics;
+
+import org.icepdf.core.pobjects.Page;
+import org.icepdf.core.util.Defs;
+import org.icepdf.core.util.GraphicsRenderingHints;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.HashMap;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>A compact, append only record of the drawing commands parsed from a
+ * content stream.  Each command is an opcode byte with a single int operand,
+ * geometric paths are flattened into shared segment and coordinate arrays,
+ * and colours, strokes, transforms, composites and paints are deduplicated
+ * into tables, so a page costs a fraction of the objects it took when every
+ * command was an element of a Vector.</p>
+ * <p/>
+ * <p>Commands are published through a volatile count, so the list can be
+ * replayed to a Graphics2D by any number of threads without a lock and
+ * without testing the type of each element.</p>
+ * <p/>
+ * <p>When the graphics context has the {@link GraphicsRenderingHints#KEY_DRAFT}
+ * hint on, shading and pattern fills are skipped and images larger than
+ * "org.icepdf.core.draft.maxImageSize" pixels are replaced by a grey box.</p>
+ * <p/>
+ * <p>Only the area of the clip the list is painted with is painted, which for
+ * a tile of a page is the tile.  Text, images and nested lists falling
+ * outside of it are skipped by comparing their device space bounds, so a
+ * tile doesn't cost as much as the whole page.</p>
+ *
+ * @since 3.1
+ */
+public class DisplayList {
+
+    private static final Logger logger =
+            Logger.getLogger(DisplayList.class.toString());
+
+    // opcodes, the operand of each is an index into the matching table
+    private static final byte OP_PATH_NON_ZERO = 0;
+    private static final byte OP_PATH_EVEN_ODD = 1;
+    private static final byte OP_SHAPE = 2;
+    private static final byte OP_FILL = 3;
+    private static final byte OP_DRAW = 4;
+    private static final byte OP_CLIP = 5;
+    private static final byte OP_NO_CLIP = 6;
+    private static final byte OP_COLOR = 7;
+    private static final byte OP_PAINT = 8;
+    private static final byte OP_STROKE = 9;
+    private static final byte OP_TRANSFORM = 10;
+    private static final byte OP_COMPOSITE = 11;
+    private static final byte OP_TEXT = 12;
+    private static final byte OP_IMAGE = 13;
+    private static final byte OP_SHAPES = 14;
+
+    // images with more pixels are not drawn by draft rendering
+    private static long maxDraftImageSize;
+
+    // device pixels added around the painted area, for antialiasing and
+    // hairlines, whose bounds don't include their width
+    private static final int AREA_MARGIN = 2;
+
+    // images are drawn into the unit square of their transform
+    private static final Rectangle2D UNIT_SQUARE = new Rectangle(0, 0, 1, 1);
+
+    static {
+        maxDraftImageSize = Defs.sysPropertyInt(
+                "org.icepdf.core.draft.maxImageSize", 4194304);
+    }
+
+    // number of published commands, written last by the appending thread
+    private volatile int size;
+
+    private byte[] ops;
+    private int[] operands;
+
+    // flattened paths, per path the segment offset, segment count and
+    // coordinate offset, plus its bounds as x, y, width and height.
+    private int pathCount;
+    private int[] paths;
+    private float[] pathBounds;
+    private int segmentCount;
+    private byte[] segments;
+    private int coordinateCount;
+    private float[] coordinates;
+
+    private Table<Shape> shapes;
+    private Table<Color> colors;
+    private Table<Paint> paints;
+    private Table<Stroke> strokes;
+    private Table<AffineTransform> transforms;
+    private Table<Composite> composites;
+    private Table<TextSprite> texts;
+    private Table<Image> images;
+    private Table<Shapes> children;
+
+    // index of the values already in the deduplicated tables, only needed
+    // while the list is being built.
+    private HashMap<Object, Integer> interned;
+
+    // bounds of everything the list paints, relative to the transform it is
+    // painted with, set once the list is complete, null if not known.
+    private volatile Rectangle2D bounds;
+
+    public DisplayList() {
+        ops = new byte[256];
+        operands = new int[256];
+        paths = new int[48];
+        pathBounds = new float[64];
+        segments = new byte[256];
+        coordinates = new float[512];
+        shapes = new Table<Shape>();
+        colors = new Table<Color>();
+        paints = new Table<Paint>();
+        strokes = new Table<Stroke>();
+        transforms = new Table<AffineTransform>();
+        composites = new Table<Composite>();
+        texts = new Table<TextSprite>();
+        images = new Table<Image>();
+        children = new Table<Shapes>();
+        interned = new HashMap<Object, Integer>();
+    }
+
+    /**
+     * Gets the number of commands in the list.
+     *
+     * @return number of commands.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Appends a shape, which becomes the current shape of following fill,
+     * draw and clip commands.  GeneralPaths are copied into the list, any
+     * other shape is kept as is.
+     *
+     * @param shape shape to append.
+     */
+    public void addShape(Shape shape) {
+        if (shape instanceof GeneralPath) {
+            GeneralPath path = (GeneralPath) shape;
+            append(path.getWindingRule() == PathIterator.WIND_EVEN_ODD ?
+                    OP_PATH_EVEN_ODD : OP_PATH_NON_ZERO, addPath(path));
+        } else {
+            append(OP_SHAPE, shapes.add(shape));
+        }
+    }
+
+    public void addFill() {
+        append(OP_FILL, 0);
+    }
+
+    public void addDraw() {
+        append(OP_DRAW, 0);
+    }
+
+    public void addClip() {
+        append(OP_CLIP, 0);
+    }
+
+    public void addNoClip() {
+        append(OP_NO_CLIP, 0);
+    }
+
+    /**
+     * Appends a paint, colours and other paints are kept in separate tables
+     * and both are deduplicated.
+     *
+     * @param paint paint to append.
+     */
+    public void addPaint(Paint paint) {
+        if (paint instanceof Color) {
+            append(OP_COLOR, intern(colors, (Color) paint));
+        } else {
+            append(OP_PAINT, intern(paints, paint));
+        }
+    }
+
+    public void addStroke(Stroke stroke) {
+        append(OP_STROKE, intern(strokes, stroke));
+    }
+
+    /**
+     * Appends a transform which is concatenated to the base transform of the
+     * graphics context when replayed.
+     *
+     * @param transform transform to append, it must not be changed afterwards.
+     */
+    public void addTransform(AffineTransform transform) {
+        append(OP_TRANSFORM, intern(transforms, transform));
+    }
+
+    public void addComposite(Composite composite) {
+        append(OP_COMPOSITE, intern(composites, composite));
+    }
+
+    public void addText(TextSprite text) {
+        append(OP_TEXT, texts.add(text));
+    }
+
+    public void addImage(Image image) {
+        append(OP_IMAGE, images.add(image));
+    }
+
+    public void addShapes(Shapes child) {
+        append(OP_SHAPES, children.add(child));
+    }
+
+    /**
+     * Gets an estimate of the bytes retained by the list, its arrays, text
+     * and the lists of nested shapes.  Images are left to the owning Shapes.
+     *
+     * @return estimated size in bytes.
+     */
+    public long getMemorySize() {
+        long memorySize = ops.length + operands.length * 4 +
+                paths.length * 4 + pathBounds.length * 4 +
+                segments.length + coordinates.length * 4;
+        memorySize += (shapes.values.length + colors.values.length +
+                paints.values.length + strokes.values.length +
+                transforms.values.length + composites.values.length +
+                texts.values.length + images.values.length +
+                children.values.length) * 4;
+        for (int i = 0; i < texts.count; i++) {
+            memorySize += texts.get(i).getMemorySize();
+        }
+        for (int i = 0; i < children.count; i++) {
+            memorySize += children.get(i).getDisplayList().getMemorySize();
+        }
+        return memorySize;
+    }
+
+    /**
+     * Gets the first colour added to the list.
+     *
+     * @return first colour, null if no colour was added.
+     */
+    public Color getFirstColor() {
+        return colors.count > 0 ? colors.get(0) : null;
+    }
+
+    /**
+     * Releases the growth slack of the arrays and the lookup used for
+     * deduplication, called once parsing of the content is complete.
+     */
+    public void trimToSize() {
+        int count = size;
+        byte[] trimmedOps = new byte[count];
+        System.arraycopy(ops, 0, trimmedOps, 0, count);
+        int[] trimmedOperands = new int[count];
+        System.arraycopy(operands, 0, trimmedOperands, 0, count);
+        int[] trimmedPaths = new int[pathCount * 3];
+        System.arraycopy(paths, 0, trimmedPaths, 0, trimmedPaths.length);
+        float[] trimmedBounds = new float[pathCount * 4];
+        System.arraycopy(pathBounds, 0, trimmedBounds, 0, trimmedBounds.length);
+        byte[] trimmedSegments = new byte[segmentCount];
+        System.arraycopy(segments, 0, trimmedSegments, 0, segmentCount);
+        float[] trimmedCoordinates = new float[coordinateCount];
+        System.arraycopy(coordinates, 0, trimmedCoordinates, 0, coordinateCount);
+        ops = trimmedOps;
+        operands = trimmedOperands;
+        paths = trimmedPaths;
+        pathBounds = trimmedBounds;
+        segments = trimmedSegments;
+        coordinates = trimmedCoordinates;
+        shapes.trimToSize();
+        colors.trimToSize();
+        paints.trimToSize();
+        strokes.trimToSize();
+        transforms.trimToSize();
+        composites.trimToSize();
+        texts.trimToSize();
+        images.trimToSize();
+        children.trimToSize();
+        interned = new HashMap<Object, Integer>();
+        bounds = computeBounds(count);
+        // republish the trimmed arrays
+        size = count;
+    }
+
+    /**
+     * Gets the bounds of everything the list paints, relative to the
+     * transform the list is painted with.
+     *
+     * @return bounds of the list, null if the list isn't complete or its
+     *         bounds aren't known.
+     */
+    Rectangle2D getBounds() {
+        return bounds;
+    }
+
+    /**
+     * Works out the bounds of the painting commands, strokes are assumed
+     * to be no wider than their line width.
+     *
+     * @return bounds of the list, null if they aren't known.
+     */
+    private Rectangle2D computeBounds(int count) {
+        Rectangle2D listBounds = null;
+        Rectangle2D shapeBounds = null;
+        AffineTransform transform = new AffineTransform();
+        float lineWidth = 1;
+        for (int i = 0; i < count; i++) {
+            Rectangle2D paintBounds = null;
+            switch (ops[i]) {
+                case OP_PATH_NON_ZERO:
+                case OP_PATH_EVEN_ODD:
+                    shapeBounds = new Rectangle2D.Float(
+                            pathBounds[operands[i] * 4],
+                            pathBounds[operands[i] * 4 + 1],
+                            pathBounds[operands[i] * 4 + 2],
+                            pathBounds[operands[i] * 4 + 3]);
+                    break;
+                case OP_SHAPE:
+                    shapeBounds = shapes.get(operands[i]).getBounds2D();
+                    break;
+                case OP_FILL:
+                    paintBounds = shapeBounds;
+                    break;
+                case OP_DRAW:
+                    if (shapeBounds != null) {
+                        paintBounds = new Rectangle2D.Double(
+                                shapeBounds.getX() - lineWidth,
+                                shapeBounds.getY() - lineWidth,
+                                shapeBounds.getWidth() + lineWidth * 2,
+                                shapeBounds.getHeight() + lineWidth * 2);
+                    }
+                    break;
+                case OP_STROKE:
+                    Stroke stroke = strokes.get(operands[i]);
+                    if (!(stroke instanceof BasicStroke)) {
+                        return null;
+                    }
+                    BasicStroke basicStroke = (BasicStroke) stroke;
+                    // miter joins can reach past half the line width
+                    lineWidth = basicStroke.getLineWidth() *
+                            Math.max(1, basicStroke.getMiterLimit()) / 2;
+                    break;
+                case OP_TRANSFORM:
+                    transform = transforms.get(operands[i]);
+                    break;
+                case OP_TEXT:
+                    paintBounds = texts.get(operands[i]).getBounds();
+                    if (paintBounds == null) {
+                        return null;
+                    }
+                    break;
+                case OP_IMAGE:
+                    paintBounds = UNIT_SQUARE;
+                    break;
+                case OP_SHAPES:
+                    paintBounds = children.get(operands[i])
+                            .getDisplayList().getBounds();
+                    if (paintBounds == null) {
+                        return null;
+                    }
+                    break;
+            }
+            if (paintBounds != null) {
+                paintBounds = transformBounds(transform, paintBounds);
+                if (listBounds == null) {
+                    listBounds = paintBounds;
+                } else {
+                    listBounds.add(paintBounds);
+                }
+            }
+        }
+        return listBounds;
+    }
+
+    /**
+     * Disposes the text, images and child shapes referenced by the list and
+     * empties it.
+     */
+    public void dispose() {
+        size = 0;
+        for (int i = 0; i < texts.count; i++) {
+            texts.get(i).dispose();
+        }
+        for (int i = 0; i < images.count; i++) {
+            images.get(i).flush();
+        }
+        for (int i = 0; i < children.count; i++) {
+            children.get(i).dispose();
+        }
+        shapes.clear();
+        colors.clear();
+        paints.clear();
+        strokes.clear();
+        transforms.clear();
+        composites.clear();
+        texts.clear();
+        images.clear();
+        children.clear();
+        interned.clear();
+        pathCount = 0;
+        segmentCount = 0;
+        coordinateCount = 0;
+    }
+
+    /**
+     * Replays the commands to the graphics context.
+     *
+     * @param g          graphics context to paint to.
+     * @param page       page notified of the painting progress, can be null.
+     * @param paintDelay minimum time in milliseconds between notifications.
+     */
+    public void paint(Graphics2D g, Page page, long paintDelay) {
+        Rectangle2D area = null;
+        Shape clip = g.getClip();
+        if (clip != null) {
+            area = transformBounds(g.getTransform(), clip.getBounds2D());
+        }
+        paint(g, page, paintDelay, area);
+    }
+
+    /**
+     * Replays the commands to the graphics context, skipping text, images
+     * and nested lists outside of the area being painted.
+     *
+     * @param g          graphics context to paint to.
+     * @param page       page notified of the painting progress, can be null.
+     * @param paintDelay minimum time in milliseconds between notifications.
+     * @param area       device space area being painted, null for all of it.
+     */
+    void paint(Graphics2D g, Page page, long paintDelay, Rectangle2D area) {
+        if (area != null) {
+            area = new Rectangle2D.Double(area.getX() - AREA_MARGIN,
+                    area.getY() - AREA_MARGIN,
+                    area.getWidth() + AREA_MARGIN * 2,
+                    area.getHeight() + AREA_MARGIN * 2);
+        }
+        // read the count before any of the arrays it publishes
+        int count = size;
+        byte[] ops = this.ops;
+        int[] operands = this.operands;
+
+        Shape shape = null;
+        Rectangle2D shapeBounds = null;
+        AffineTransform base = new AffineTransform(g.getTransform());
+        AffineTransform af = new AffineTransform();
+        Shape clip = g.getClip();
+        Area clipArea = new Area(g.getClip());
+
+        // draft rendering skips fills with shading or pattern paints
+        boolean isDraft = g.getRenderingHint(GraphicsRenderingHints.KEY_DRAFT) ==
+                GraphicsRenderingHints.VALUE_DRAFT_ON;
+        boolean isPaintSkipped = false;
+
+        long currentTime;
+        long lastPaintTime = System.currentTimeMillis();
+        boolean painted;
+        try {
+            for (int i = 0; i < count; i++) {
+                painted = false;
+                switch (ops[i]) {
+                    case OP_PATH_NON_ZERO:
+                    case OP_PATH_EVEN_ODD:
+                        shape = new PathShape(operands[i],
+                                ops[i] == OP_PATH_EVEN_ODD ?
+                                        PathIterator.WIND_EVEN_ODD :
+                                        PathIterator.WIND_NON_ZERO);
+                        shapeBounds = shape.getBounds2D();
+                        break;
+                    case OP_SHAPE:
+                        shape = shapes.get(operands[i]);
+                        shapeBounds = shape.getBounds2D();
+                        break;
+                    case OP_FILL:
+                        if (!isPaintSkipped && clipArea.intersects(shapeBounds)) {
+                            g.fill(shape);
+                            painted = true;
+                        }
+                        break;
+                    case OP_DRAW:
+                        if (!isPaintSkipped &&
+                                (shape.intersects(clipArea.getBounds2D()) ||
+                                (shapeBounds.getWidth() < 1.0 ||
+                                        shapeBounds.getHeight() < 1.0))) {
+                            g.draw(shape);
+                            painted = true;
+                        }
+                        break;
+                    case OP_CLIP:
+                        // Capture the current af for the page
+                        af.setTransform(g.getTransform());
+                        // Set the transform to the base, which is fact where the page
+                        // lies in the viewport, very dynamic.
+                        g.setTransform(base);
+                        // apply the clip, which is always the initial paper size,
+                        g.setClip(clip);
+                        // apply the af, which places the clip in the correct location
+                        g.setTransform(af);
+                        if (shape != null) {
+                            g.clip(shape);
+                        }
+                        clipArea = new Area(g.getClip());
+                        break;
+                    case OP_NO_CLIP:
+                        af.setTransform(g.getTransform());
+                        g.setTransform(base);
+                        g.setClip(clip);
+                        g.setTransform(af);
+                        clipArea = new Area(g.getClip());
+                        break;
+                    case OP_COLOR:
+                        g.setPaint(colors.get(operands[i]));
+                        isPaintSkipped = false;
+                        break;
+                    case OP_PAINT:
+                        if (isDraft) {
+                            isPaintSkipped = true;
+                        } else {
+                            g.setPaint(paints.get(operands[i]));
+                        }
+                        break;
+                    case OP_STROKE:
+                        g.setStroke(strokes.get(operands[i]));
+                        break;
+                    case OP_TRANSFORM:
+                        af.setTransform(base);
+                        af.concatenate(transforms.get(operands[i]));
+                        g.setTransform(af);
+                        // update current clip shape
+                        if (g.getClip() != null) {
+                            clipArea = new Area(g.getClip());
+                        }
+                        break;
+                    case OP_COMPOSITE:
+                        g.setComposite(composites.get(operands[i]));
+                        break;
+                    case OP_TEXT:
+                        TextSprite text = texts.get(operands[i]);
+                        if (isInArea(g, area, text.getBounds()) &&
+                                text.intersects(clipArea)) {
+                            text.paint(g);
+                            painted = true;
+                        }
+                        break;
+                    case OP_IMAGE:
+                        if (isInArea(g, area, UNIT_SQUARE) &&
+                                clipArea.intersects(0, 0, 1, 1)) {
+                            Image image = images.get(operands[i]);
+                            if (isDraft && isDraftSkipped(image)) {
+                                paintImagePlaceholder(g);
+                            } else {
+                                painted = paintImage(g, image);
+                            }
+                        }
+                        break;
+                    case OP_SHAPES:
+                        Shapes child = children.get(operands[i]);
+                        if (isInArea(g, area, child.getDisplayList().getBounds())) {
+                            child.paintNested(g, page, area);
+                        }
+                        break;
+                }
+                // Send a PaintPage Event to listeners
+                if (painted && page != null) {
+                    currentTime = System.currentTimeMillis();
+                    if (currentTime - lastPaintTime > paintDelay) {
+                        lastPaintTime = currentTime;
+                        page.notifyPaintPageListeners();
+                    }
+                }
+            }
+            // not pretty, but avoid any problems which disposing a page in the middle
+            // of a paint.
+        }
+        catch (NoSuchElementException e) {
+            // eat any errors.
+        }
+        catch (Exception e) {
+            logger.log(Level.FINE, "Error painting shapes.", e);
+        }
+    }
+
+    /**
+     * Tests if bounds in the current user space of the graphics context may
+     * fall in the device space area being painted.
+     *
+     * @param g      graphics context being painted to.
+     * @param area   device space area being painted, null for all of it.
+     * @param bounds bounds in user space, null if they aren't known.
+     * @return false only if the bounds are known to be outside the area.
+     */
+    private static boolean isInArea(Graphics2D g, Rectangle2D area,
+                                    Rectangle2D bounds) {
+        if (area == null || bounds == null) {
+            return true;
+        }
+        Rectangle2D deviceBounds = transformBounds(g.getTransform(), bounds);
+        // compared inclusively, as the bounds of a straight line can be empty
+        return deviceBounds.getMaxX() >= area.getX() &&
+                deviceBounds.getX() <= area.getMaxX() &&
+                deviceBounds.getMaxY() >= area.getY() &&
+                deviceBounds.getY() <= area.getMaxY();
+    }
+
+    /**
+     * Gets the bounds of a rectangle mapped by a transform.
+     */
+    private static Rectangle2D transformBounds(AffineTransform transform,
+                                               Rectangle2D bounds) {
+        double[] corners = {
+                bounds.getX(), bounds.getY(),
+                bounds.getMaxX(), bounds.getY(),
+                bounds.getX(), bounds.getMaxY(),
+                bounds.getMaxX(), bounds.getMaxY()};
+        transform.transform(corners, 0, corners, 0, 4);
+        double minX = corners[0], maxX = corners[0];
+        double minY = corners[1], maxY = corners[1];
+        for (int i = 2; i < 8; i += 2) {
+            minX = Math.min(minX, corners[i]);
+            maxX = Math.max(maxX, corners[i]);
+            minY = Math.min(minY, corners[i + 1]);
+            maxY = Math.max(maxY, corners[i + 1]);
+        }
+        return new Rectangle2D.Double(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    /**
+     * Draws an image into the unit square of the current transform.
+     *
+     * @return true if the image was slow enough to draw that listeners should
+     *         be notified, only the case for the low memory fallback.
+     */
+    private static boolean paintImage(Graphics2D g, Image image) {
+        try {
+            g.drawImage(image, 0, 0, 1, 1, null);
+        }
+        catch (OutOfMemoryError memErr) {
+            // If we have a large image and if we're scaling it down,
+            //  then that tends to make a memory spike.
+            // So, lets try redrawing it with the crappiest interpolation
+            //  setting, which uses the least memory
+            int width = image.getWidth(null);
+            int height = image.getHeight(null);
+            if (width >= 600 && height >= 600) {
+                AffineTransform at = g.getTransform();
+                int scaleX = (int) at.getScaleX();
+                int scaleY = (int) at.getScaleX();
+                if (scaleX < width || scaleY < height) {
+                    RenderingHints renderingHints = g.getRenderingHints();
+                    Object oldInterpolation = renderingHints.get(RenderingHints.KEY_INTERPOLATION);
+                    try {
+                        renderingHints.put(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+                        g.setRenderingHints(renderingHints);
+                        g.drawImage(image, 0, 0, 1, 1, null);
+                    }
+                    finally {
+                        renderingHints.put(RenderingHints.KEY_INTERPOLATION, oldInterpolation);
+                        g.setRenderingHints(renderingHints);
+                    }
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if an image is too large to be drawn by draft rendering.
+     */
+    private static boolean isDraftSkipped(Image image) {
+        int width = image.getWidth(null);
+        int height = image.getHeight(null);
+        return (long) width * height > maxDraftImageSize;
+    }
+
+    /**
+     * Fills the unit square of the current transform, in place of an image.
+     */
+    private static void paintImagePlaceholder(Graphics2D g) {
+        Paint paint = g.getPaint();
+        g.setColor(Color.lightGray);
+        g.fill(new Rectangle(0, 0, 1, 1));
+        g.setPaint(paint);
+    }
+
+    private void append(byte op, int operand) {
+        int count = size;
+        if (count == ops.length) {
+            int capacity = Math.max(count * 2, 64);
+            byte[] newOps = new byte[capacity];
+            System.arraycopy(ops, 0, newOps, 0, count);
+            int[] newOperands = new int[capacity];
+            System.arraycopy(operands, 0, newOperands, 0, count);
+            ops = newOps;
+            operands = newOperands;
+        }
+        ops[count] = op;
+        operands[count] = operand;
+        size = count + 1;
+    }
+
+    private <T> int intern(Table<T> table, T value) {
+        Integer index = interned.get(value);
+        if (index == null) {
+            index = table.add(value);
+            interned.put(value, index);
+        }
+        return index;
+    }
+
+    /**
+     * Copies the segments of the path into the list.
+     *
+     * @return index of the path.
+     */
+    private int addPath(GeneralPath path) {
+        int segmentStart = segmentCount;
+        int coordinateStart = coordinateCount;
+        float[] point = new float[6];
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+        for (PathIterator it = path.getPathIterator(null); !it.isDone(); it.next()) {
+            int type = it.currentSegment(point);
+            int points = pointCount(type);
+            if (segmentCount == segments.length) {
+                byte[] newSegments = new byte[Math.max(segmentCount * 2, 64)];
+                System.arraycopy(segments, 0, newSegments, 0, segmentCount);
+                segments = newSegments;
+            }
+            if (coordinateCount + 6 > coordinates.length) {
+                float[] newCoordinates =
+                        new float[Math.max(coordinates.length * 2, 128)];
+                System.arraycopy(coordinates, 0, newCoordinates, 0, coordinateCount);
+                coordinates = newCoordinates;
+            }
+            segments[segmentCount++] = (byte) type;
+            for (int i = 0; i < points * 2; i += 2) {
+                float x = point[i];
+                float y = point[i + 1];
+                coordinates[coordinateCount++] = x;
+                coordinates[coordinateCount++] = y;
+                if (x < minX) minX = x;
+                if (x > maxX) maxX = x;
+                if (y < minY) minY = y;
+                if (y > maxY) maxY = y;
+            }
+        }
+        if (minX > maxX) {
+            // empty path
+            minX = maxX = minY = maxY = 0;
+        }
+        if (pathCount * 3 == paths.length) {
+            int capacity = Math.max(pathCount * 2, 16);
+            int[] newPaths = new int[capacity * 3];
+            System.arraycopy(paths, 0, newPaths, 0, pathCount * 3);
+            float[] newBounds = new float[capacity * 4];
+            System.arraycopy(pathBounds, 0, newBounds, 0, pathCount * 4);
+            paths = newPaths;
+            pathBounds = newBounds;
+        }
+        paths[pathCount * 3] = segmentStart;
+        paths[pathCount * 3 + 1] = segmentCount - segmentStart;
+        paths[pathCount * 3 + 2] = coordinateStart;
+        pathBounds[pathCount * 4] = minX;
+        pathBounds[pathCount * 4 + 1] = minY;
+        pathBounds[pathCount * 4 + 2] = maxX - minX;
+        pathBounds[pathCount * 4 + 3] = maxY - minY;
+        return pathCount++;
+    }
+
+    private static int pointCount(int segmentType) {
+        switch (segmentType) {
+            case PathIterator.SEG_MOVETO:
+            case PathIterator.SEG_LINETO:
+                return 1;
+            case PathIterator.SEG_QUADTO:
+                return 2;
+            case PathIterator.SEG_CUBICTO:
+                return 3;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Growable array of the objects referenced by one kind of command.
+     */
+    private static class Table<T> {
+        private Object[] values = new Object[16];
+        private int count;
+
+        int add(T value) {
+            if (count == values.length) {
+                Object[] newValues = new Object[Math.max(count * 2, 16)];
+                System.arraycopy(values, 0, newValues, 0, count);
+                values = newValues;
+            }
+            values[count] = value;
+            return count++;
+        }
+
+        @SuppressWarnings("unchecked")
+        T get(int index) {
+            return (T) values[index];
+        }
+
+        void trimToSize() {
+            Object[] trimmed = new Object[count];
+            System.arraycopy(values, 0, trimmed, 0, count);
+            values = trimmed;
+        }
+
+        void clear() {
+            values = new Object[16];
+            count = 0;
+        }
+    }
+
+    /**
+     * Read only view of a flattened path, it is created for each replay of
+     * the path and iterates the list's arrays directly.
+     */
+    private class PathShape implements Shape {
+        private final byte[] segments;
+        private final float[] coordinates;
+        private final int segmentStart;
+        private final int segmentEnd;
+        private final int coordinateStart;
+        private final int windingRule;
+        private final Rectangle2D.Float bounds;
+        private GeneralPath path;
+
+        PathShape(int index, int windingRule) {
+            segments = DisplayList.this.segments;
+            coordinates = DisplayList.this.coordinates;
+            int[] paths = DisplayList.this.paths;
+            float[] pathBounds = DisplayList.this.pathBounds;
+            segmentStart = paths[index * 3];
+            segmentEnd = segmentStart + paths[index * 3 + 1];
+            coordinateStart = paths[index * 3 + 2];
+            this.windingRule = windingRule;
+            bounds = new Rectangle2D.Float(
+                    pathBounds[index * 4], pathBounds[index * 4 + 1],
+                    pathBounds[index * 4 + 2], pathBounds[index * 4 + 3]);
+        }
+
+        public Rectangle getBounds() {
+            return bounds.getBounds();
+        }
+
+        public Rectangle2D getBounds2D() {
+            return (Rectangle2D) bounds.clone();
+        }
+
+        public boolean contains(double x, double y) {
+            return getPath().contains(x, y);
+        }
+
+        public boolean contains(Point2D p) {
+            return getPath().contains(p);
+        }
+
+        public boolean intersects(double x, double y, double w, double h) {
+            // bounds of a straight line can be empty, so compare inclusively
+            if (x + w < bounds.x || y + h < bounds.y ||
+                    x > bounds.x + bounds.width || y > bounds.y + bounds.height) {
+                return false;
+            }
+            // a path with a segment entirely inside the rectangle intersects it
+            if (segmentEnd - segmentStart > 1 &&
+                    x < bounds.x && y < bounds.y &&
+                    x + w > bounds.x + bounds.width &&
+                    y + h > bounds.y + bounds.height) {
+                return true;
+            }
+            return getPath().intersects(x, y, w, h);
+        }
+
+        public boolean intersects(Rectangle2D r) {
+            return intersects(r.getX(), r.getY(), r.getWidth(), r.getHeight());
+        }
+
+        public boolean contains(double x, double y, double w, double h) {
+            return getPath().contains(x, y, w, h);
+        }
+
+        public boolean contains(Rectangle2D r) {
+            return getPath().contains(r);
+        }
+
+        public PathIterator getPathIterator(AffineTransform at) {
+            return new SegmentIterator(at);
+        }
+
+        public PathIterator getPathIterator(AffineTransform at, double flatness) {
+            return getPath().getPathIterator(at, flatness);
+        }
+
+        /**
+         * Builds a GeneralPath for the geometric tests the arrays can't
+         * answer, only needed for the odd clip or stroke test.
+         */
+        private GeneralPath getPath() {
+            if (path == null) {
+                path = new GeneralPath(windingRule, segmentEnd - segmentStart);
+                path.append(new SegmentIterator(null), false);
+            }
+            return path;
+        }
+
+        private class SegmentIterator implements PathIterator {
+            private final AffineTransform transform;
+            private int segment = segmentStart;
+            private int coordinate = coordinateStart;
+
+            SegmentIterator(AffineTransform transform) {
+                this.transform = transform;
+            }
+
+            public int getWindingRule() {
+                return windingRule;
+            }
+
+            public boolean isDone() {
+                return segment >= segmentEnd;
+            }
+
+            public void next() {
+                coordinate += pointCount(segments[segment]) * 2;
+                segment++;
+            }
+
+            public int currentSegment(float[] coords) {
+                int type = segments[segment];
+                int points = pointCount(type);
+                if (transform != null) {
+                    transform.transform(coordinates, coordinate, coords, 0, points);
+                } else {
+                    System.arraycopy(coordinates, coordinate, coords, 0, points * 2);
+                }
+                return type;
+            }
+
+            public int currentSegment(double[] coords) {
+                int type = segments[segment];
+                int points = pointCount(type);
+                if (transform != null) {
+                    transform.transform(coordinates, coordinate, coords, 0, points);
+                } else {
+                    for (int i = 0; i < points * 2; i++) {
+                        coords[i] = coordinates[coordinate + i];
+                    }
+                }
+                return type;
+            }
+        }
+    }
+}
@@ -58,7 +58,7 @@ public class ICCBased extends PColorSpace {
     ColorSpace colorSpace;
 
     private float[] lastInput;
-    private Color lastOutput;
+    private int lastOutput;
 
     /**
      * @param l
@@ -117,55 +117,7 @@ public class ICCBased extends PColorSpace {
         init();
         if (colorSpace != null) {
             try {
-                synchronized (this) {
-                    // We cache the previous inputs and output, since images
-                    //   tend to have long runs of the same color
-                    if (lastOutput != null && lastInput != null &&
-                            f != null && lastInput.length == f.length) {
-                        boolean matches = true;
-                        int num = lastInput.length;
-                        for (int i = num - 1; i >= 0; i--) {
-                            if (f[i] != lastInput[i]) {
-                                matches = false;
-                                break;
-                            }
-                        }
-                        if (matches)
-                            return lastOutput;
-                    }
-
-                    int n = colorSpace.getNumComponents();
-                    // Get the reverse of f, and only take n values
-                    // Might as well limit the bounds while we're at it
-                    float[] fvalue = new float[n];
-                    int toCopy = n;
-                    int fLength = f.length;
-                    if (fLength < toCopy) ;
-                    toCopy = fLength;
-                    for (int i = 0; i < toCopy; i++) {
-                        float curr = f[fLength - 1 - i];
-                        if (curr < 0.0f)
-                            curr = 0.0f;
-                        else if (curr > 1.0f)
-                            curr = 1.0f;
-                        fvalue[i] = curr;
-                    }
-                    float[] frgbvalue = colorSpace.toRGB(fvalue);
-                    int value = (0xFF000000) |
-                            ((((int) (frgbvalue[0] * 255)) & 0xFF) << 16) |
-                            ((((int) (frgbvalue[1] * 255)) & 0xFF) << 8) |
-                            ((((int) (frgbvalue[2] * 255)) & 0xFF) << 0);
-                    Color c = new Color(value);
-
-                    // Update the cache
-                    if (lastInput == null || lastInput.length != fLength)
-                        lastInput = new float[fLength];
-                    for (int i = fLength - 1; i >= 0; i--)
-                        lastInput[i] = f[i];
-                    lastOutput = c;
-
-                    return c;
-                }
+                return new Color(toRGB(f));
                 /*
                 Color c = new Color( colorSpace,reverse(f), 1 );
                 return new Color(
@@ -180,6 +132,118 @@ public class ICCBased extends PColorSpace {
         return alternate.getColor(f);
     }
 
+    public int getRGB(float[] f) {
+        init();
+        if (colorSpace != null) {
+            try {
+                return toRGB(f);
+            } catch (Exception e) {
+                logger.log(Level.FINE, "Error getting ICCBased colour", e);
+            }
+        }
+        return alternate.getRGB(f);
+    }
+
+    /**
+     * Converts a row of samples through the colour profile, taking the lock
+     * once for the whole row rather than once per pixel.
+     *
+     * @param samples interleaved colour samples.
+     * @param count   number of pixels in the row.
+     * @param maxval  largest possible sample value.
+     * @param argb    receives the count converted pixels.
+     */
+    public void convertRow(int[] samples, int count, float maxval, int[] argb) {
+        init();
+        if (colorSpace != null &&
+                convertRowFromLookupTable(samples, count, maxval, argb)) {
+            return;
+        }
+        if (colorSpace != null) {
+            try {
+                float[] fvalue = new float[colorSpace.getNumComponents()];
+                synchronized (this) {
+                    for (int i = 0, pos = 0; i < count; i++, pos += numcomp) {
+                        if (i > 0 && isRepeatedPixel(samples, pos, numcomp)) {
+                            argb[i] = argb[i - 1];
+                            continue;
+                        }
+                        // samples are in profile order already, only
+                        // normalise and limit the bounds
+                        for (int j = 0; j < numcomp; j++) {
+                            float curr = ((float) samples[pos + j]) / maxval;
+                            if (curr < 0.0f)
+                                curr = 0.0f;
+                            else if (curr > 1.0f)
+                                curr = 1.0f;
+                            fvalue[j] = curr;
+                        }
+                        argb[i] = packRGB(colorSpace.toRGB(fvalue));
+                    }
+                }
+                return;
+            } catch (Exception e) {
+                logger.log(Level.FINE, "Error getting ICCBased colour", e);
+            }
+        }
+        super.convertRow(samples, count, maxval, argb);
+    }
+
+    boolean isLookupTableWorthwhile() {
+        return true;
+    }
+
+    private synchronized int toRGB(float[] f) {
+        // We cache the previous inputs and output, since images
+        //   tend to have long runs of the same color
+        if (lastInput != null && f != null && lastInput.length == f.length) {
+            boolean matches = true;
+            int num = lastInput.length;
+            for (int i = num - 1; i >= 0; i--) {
+                if (f[i] != lastInput[i]) {
+                    matches = false;
+                    break;
+                }
+            }
+            if (matches)
+                return lastOutput;
+        }
+
+        int n = colorSpace.getNumComponents();
+        // Get the reverse of f, and only take n values
+        // Might as well limit the bounds while we're at it
+        float[] fvalue = new float[n];
+        int toCopy = n;
+        int fLength = f.length;
+        if (fLength < toCopy) ;
+        toCopy = fLength;
+        for (int i = 0; i < toCopy; i++) {
+            float curr = f[fLength - 1 - i];
+            if (curr < 0.0f)
+                curr = 0.0f;
+            else if (curr > 1.0f)
+                curr = 1.0f;
+            fvalue[i] = curr;
+        }
+        int value = packRGB(colorSpace.toRGB(fvalue));
+
+        // Update the cache
+        if (lastInput == null || lastInput.length != fLength)
+            lastInput = new float[fLength];
+        for (int i = fLength - 1; i >= 0; i--)
+            lastInput[i] = f[i];
+        lastOutput = value;
+
+        return value;
+    }
+
+    private static int packRGB(float[] frgbvalue) {
+        return (0xFF000000) |
+                ((((int) (frgbvalue[0] * 255)) & 0xFF) << 16) |
+                ((((int) (frgbvalue[1] * 255)) & 0xFF) << 8) |
+                ((((int) (frgbvalue[2] * 255)) & 0xFF) << 0);
+    }
+
     /**
      * @return
      */
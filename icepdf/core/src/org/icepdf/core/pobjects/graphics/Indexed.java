@@ -50,7 +50,7 @@ public class Indexed extends PColorSpace {
     byte[] colors = {
             -1, -1, -1, 0, 0, 0
     };
-    private boolean inited = false;
+    private volatile boolean inited = false;
     private Color[] cols;
 
     /**
@@ -104,12 +104,19 @@ public class Indexed extends PColorSpace {
         if (inited) {
             return;
         }
-        inited = true;
+        buildColorTable();
+    }
 
+    // colour spaces are shared between pages, the table is built once and
+    // only marked as ready after it is complete.
+    private synchronized void buildColorTable() {
+        if (inited) {
+            return;
+        }
         int numCSComps = colorSpace.getNumComponents();
         int b1[] = new int[numCSComps];
         float f1[] = new float[numCSComps];
-        cols = new Color[hival + 1];
+        Color[] cols = new Color[hival + 1];
         for (int j = 0; j <= hival; j++) {
             for (int i = 0; i < numCSComps; i++) {
                 b1[numCSComps - 1 - i] = 0xFF & ((int) colors[j * numCSComps + i]);
@@ -117,6 +124,8 @@ public class Indexed extends PColorSpace {
             colorSpace.normaliseComponentsToFloats(b1, f1, 255.0f);
             cols[j] = colorSpace.getColor(f1);
         }
+        this.cols = cols;
+        inited = true;
     }
 
     /**
@@ -131,6 +140,24 @@ public class Indexed extends PColorSpace {
         return cols[index];
     }
 
+    /**
+     * Looks up a row of colour indexes in the colour table.
+     *
+     * @param samples colour indexes, one per pixel.
+     * @param count   number of pixels in the row.
+     * @param maxval  largest possible sample value.
+     * @param argb    receives the count converted pixels.
+     */
+    public void convertRow(int[] samples, int count, float maxval, int[] argb) {
+        init();
+        Color[] cols = this.cols;
+        int last = cols.length - 1;
+        for (int i = 0; i < count; i++) {
+            int index = (int) ((((float) samples[i]) / maxval) * last);
+            argb[i] = cols[index].getRGB();
+        }
+    }
+
     public Color[] accessColorTable() {
         return cols;
     }
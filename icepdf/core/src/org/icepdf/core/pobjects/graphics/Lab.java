@@ -139,6 +139,14 @@ public class Lab extends PColorSpace {
      * @return
      */
     public Color getColor(float[] f) {
+        return new Color(getRGB(f));
+    }
+
+    /**
+     * @param f
+     * @return packed ARGB value of the colour.
+     */
+    public int getRGB(float[] f) {
         double cie_b = f[0];
         double cie_a = f[1];
         double cie_L = f[2];
@@ -174,6 +182,6 @@ public class Lab extends PColorSpace {
         ir = Math.max(0, Math.min(255, ir));
         ig = Math.max(0, Math.min(255, ig));
         ib = Math.max(0, Math.min(255, ib));
-        return new Color(ir, ig, ib);
+        return 0xFF000000 | (ir << 16) | (ig << 8) | ib;
     }
 }
@@ -51,6 +51,12 @@ public abstract class PColorSpace extends Dictionary {
     private static final Logger logger =
             Logger.getLogger(PColorSpace.class.toString());
 
+    // table convertRow uses for 8 bit image data, see isLookupTableWorthwhile
+    private volatile ColorLookupTable lookupTable;
+    // pixels converted without a table, the table is only built once it
+    // would have saved more conversions than it takes to build
+    private volatile int exactPixels;
+
     /**
      * @return
      */
@@ -168,6 +174,112 @@ public abstract class PColorSpace extends Dictionary {
             out[i] = (((float) in[i]) / maxval);
     }
 
+    /**
+     * Gets the packed sRGB value of the given colour, the same value as
+     * <code>getColor(f).getRGB()</code>.  Colour spaces that can work out the
+     * value directly override this so that no Color is created per sample.
+     *
+     * @param f colour components, reversed and normalised as for getColor.
+     * @return packed ARGB value of the colour.
+     */
+    public int getRGB(float[] f) {
+        return getColor(f).getRGB();
+    }
+
+    /**
+     * Converts a row of image samples to packed ARGB values.  The samples are
+     * interleaved in the order they are read from the image data,
+     * getNumComponents() per pixel, and range from 0 to maxval.  The result is
+     * the same as reversing and normalising each pixel and calling getColor,
+     * but the working arrays are shared by the whole row and a run of equal
+     * pixels is only converted once.
+     *
+     * @param samples interleaved colour samples, at least count *
+     *                getNumComponents() long.
+     * @param count   number of pixels in the row.
+     * @param maxval  largest possible sample value, 255 for 8 bit samples.
+     * @param argb    receives the count converted pixels.
+     */
+    public void convertRow(int[] samples, int count, float maxval, int[] argb) {
+        if (convertRowFromLookupTable(samples, count, maxval, argb)) {
+            return;
+        }
+        int n = getNumComponents();
+        int[] in = new int[n];
+        float[] f = new float[n];
+        for (int i = 0, pos = 0; i < count; i++, pos += n) {
+            if (i > 0 && isRepeatedPixel(samples, pos, n)) {
+                argb[i] = argb[i - 1];
+                continue;
+            }
+            for (int j = 0; j < n; j++) {
+                in[n - 1 - j] = samples[pos + j];
+            }
+            normaliseComponentsToFloats(in, f, maxval);
+            argb[i] = getRGB(f);
+        }
+    }
+
+    /**
+     * Colour spaces that are costly to evaluate per pixel return true, so
+     * that convertRow converts 8 bit image data with a ColorLookupTable.
+     *
+     * @return true if a lookup table should be used for image data.
+     */
+    boolean isLookupTableWorthwhile() {
+        return false;
+    }
+
+    /**
+     * Converts a row of samples with this colour space's lookup table, building
+     * the table once enough pixels have been converted to pay for it.
+     *
+     * @param samples interleaved colour samples.
+     * @param count   number of pixels in the row.
+     * @param maxval  largest possible sample value.
+     * @param argb    receives the count converted pixels.
+     * @return true if the row was converted, false if it must be converted
+     *         exactly.
+     */
+    boolean convertRowFromLookupTable(int[] samples, int count, float maxval,
+                                      int[] argb) {
+        int max = (int) maxval;
+        if (max != maxval || max < 1 || max > 255 ||
+                !isLookupTableWorthwhile() || !ColorLookupTable.isEnabled()) {
+            return false;
+        }
+        ColorLookupTable table = lookupTable;
+        if (table == null || table.getMaxValue() != max) {
+            int converted = exactPixels + count;
+            if (converted < ColorLookupTable.getBuildCost(getNumComponents(), max)) {
+                exactPixels = converted;
+                return false;
+            }
+            table = ColorLookupTable.build(this, max);
+            lookupTable = table;
+            exactPixels = 0;
+        }
+        return table.convertRow(samples, count, argb);
+    }
+
+    /**
+     * Checks if the pixel starting at pos has the same samples as the pixel
+     * before it.
+     *
+     * @param samples interleaved colour samples.
+     * @param pos     offset of the pixel's first sample, must be at least n.
+     * @param n       number of samples per pixel.
+     * @return true if the two pixels are equal.
+     */
+    static boolean isRepeatedPixel(int[] samples, int pos, int n) {
+        for (int j = 0; j < n; j++) {
+            if (samples[pos + j] != samples[pos - n + j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * @param f
      * @return
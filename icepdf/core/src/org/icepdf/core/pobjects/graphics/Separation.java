@@ -150,4 +150,43 @@ public class Separation extends PColorSpace {
         float y[] = tintTransform.calculate(components);
         return alternate.getColor(reverse(y));
     }
+
+    /**
+     * Gets the packed RGB value of the tint without creating a Color.
+     *
+     * @param components array of component colour data
+     * @return packed ARGB value composed from the components array.
+     */
+    public int getRGB(float[] components) {
+        if (namedColor != null) {
+            return namedColor.getRGB();
+        }
+        if (tintTransform == null) {
+            float colour = components[0];
+            float[] alternateColour = new float[alternate.getNumComponents()];
+            for (int i = 0, max = alternate.getNumComponents(); i < max; i++) {
+                alternateColour[i] = colour;
+            }
+            return alternate.getRGB(alternateColour);
+        }
+        float y[] = tintTransform.calculate(components);
+        reverseInPlace(y);
+        return alternate.getRGB(y);
+    }
+
+    public void convertRow(int[] samples, int count, float maxval, int[] argb) {
+        // a resolved named colour is the same for every tint
+        if (namedColor != null) {
+            int rgb = namedColor.getRGB();
+            for (int i = 0; i < count; i++) {
+                argb[i] = rgb;
+            }
+            return;
+        }
+        super.convertRow(samples, count, maxval, argb);
+    }
+
+    boolean isLookupTableWorthwhile() {
+        return tintTransform != null;
+    }
 }
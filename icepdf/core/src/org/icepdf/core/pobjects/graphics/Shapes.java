@@ -38,10 +38,12 @@ import org.icepdf.core.views.swing.PageViewComponentImpl;
 
 import java.awt.*;
 import java.awt.geom.AffineTransform;
-import java.awt.geom.Area;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
 import java.util.Enumeration;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
-import java.util.NoSuchElementException;
 import java.util.Vector;
 import java.util.logging.Logger;
 import java.util.logging.Level;
@@ -49,7 +51,8 @@ import java.util.logging.Level;
 /**
  * <p>The Shapes class hold all object that are parsed from a Page's content
  * streams.  These contained object make up a pages graphics stack which can
- * be interated through to paint a page's content.<p>
+ * be interated through to paint a page's content.  The stack is recorded in
+ * a compact {@link DisplayList}.<p>
  * <p/>
  * <p>This class is genearlly only used by the Content parser during content
  * parsing.  The class also stores points to the images found in the content
@@ -73,14 +76,9 @@ public class Shapes {
     }
 
     // Graphics stack for a page's content.
-    protected Vector<Object> shapes = new Vector<Object>(1000, 50);
+    private DisplayList displayList = new DisplayList();
     // Vector of images found a page.
     private Vector<Image> images = new Vector<Image>();
-    // last colour used during the painting process, avoid unnecessary additions
-    // to the stack.
-    private Color lastColor;
-    // last basic stroke used, avoids unnecessary additions to the stack
-    private BasicStroke lastBasicStroke;
 
     // the collection of objects listening for page paint events
     private Page parentPage;
@@ -99,22 +97,6 @@ public class Shapes {
         }
     }
 
-    /**
-     * Classes used to make the paint process a little easier, when poping object
-     * off the stack.
-     */
-    class Draw {
-    }
-
-    class Fill {
-    }
-
-    class Clip {
-    }
-
-    class NoClip {
-    }
-
     public Shapes() {
 
     }
@@ -125,11 +107,7 @@ public class Shapes {
      * @return number of shapes on the stack
      */
     public int getShapesCount() {
-        if (shapes != null) {
-            return shapes.size();
-        } else {
-            return 0;
-        }
+        return displayList.size();
     }
 
     public void setPageParent(Page parent) {
@@ -141,40 +119,23 @@ public class Shapes {
      */
     public void dispose() {
         Enumeration imageContent = images.elements();
-        //System.out.println("   Shapes Images vector size " + images.size());
-        Object tmp;
         Image image;
         while (imageContent.hasMoreElements()) {
-            tmp = imageContent.nextElement();
-            if (tmp instanceof Image) {
-                //System.out.println("  -------------> Found images");
-                image = (Image) tmp;
-                image.flush();
-            }
+            image = (Image) imageContent.nextElement();
+            image.flush();
         }
         // one more try to free up some memory
         images.clear();
 
-        //System.out.println("   Shapes Shapes vector  size " + images.size());
-        Enumeration shapeContent = shapes.elements();
-        while (shapeContent.hasMoreElements()) {
-            tmp = shapeContent.nextElement();
-            if (tmp instanceof Image) {
-                //System.out.println("  -------------> Found images");
-                image = (Image) tmp;
-                image.flush();
-            } else if (tmp instanceof TextSprite) {
-                ((TextSprite) tmp).dispose();
-            } else if (tmp instanceof Shapes) {
-                ((Shapes) tmp).dispose();
-            } else {
-                //System.out.println("  -------------> Found other " + shapes.size());
-                //tmp = null;
-            }
-        }
-        shapes.clear();
-        //shapes = null;
+        displayList.dispose();
+    }
 
+    /**
+     * Releases the unused capacity of the graphics stack, called once
+     * parsing of the content stream is complete.
+     */
+    public void trimToSize() {
+        displayList.trimToSize();
     }
 
     /**
@@ -208,27 +169,36 @@ public class Shapes {
                 scalledImage = image;
             }
             images.addElement(scalledImage);
-            shapes.add(scalledImage);
-            return;
+            displayList.addImage(scalledImage);
         }
-
         // this allows us to capture images from an xObject.  We unwrap
         // the images from the xobject shapes vector, otherwise we have no
-        // way to extract them. 
-        if (o instanceof Vector) {
+        // way to extract them.
+        else if (o instanceof Vector) {
             Vector tmp = (Vector) o;
             Iterator iterator = tmp.iterator();
             Object tmpImage;
             while (iterator.hasNext()) {
                 tmpImage = iterator.next();
                 if (tmpImage instanceof Image) {
-                    images.addElement((Image)tmpImage);
+                    images.addElement((Image) tmpImage);
                 }
             }
+        } else if (o instanceof TextSprite) {
+            displayList.addText((TextSprite) o);
+        } else if (o instanceof Shape) {
+            displayList.addShape((Shape) o);
+        } else if (o instanceof AffineTransform) {
+            displayList.addTransform((AffineTransform) o);
+        } else if (o instanceof AlphaComposite) {
+            displayList.addComposite((AlphaComposite) o);
+        } else if (o instanceof Paint) {
+            displayList.addPaint((Paint) o);
+        } else if (o instanceof Stroke) {
+            displayList.addStroke((Stroke) o);
+        } else if (o instanceof Shapes) {
+            displayList.addShapes((Shapes) o);
         }
-
-        shapes.add(o);
-
     }
 
     /**
@@ -236,7 +206,7 @@ public class Shapes {
      * object the current geometric shape is drawn.
      */
     public void addDrawCommand() {
-        shapes.add(new Draw());
+        displayList.addDraw();
     }
 
     /**
@@ -244,7 +214,7 @@ public class Shapes {
      * object the current geometric shape is filled with the current fill colour.
      */
     public void addFillCommand() {
-        shapes.add(new Fill());
+        displayList.addFill();
     }
 
     /**
@@ -253,14 +223,63 @@ public class Shapes {
      * clip shape.
      */
     public void addClipCommand() {
-        shapes.add(new Clip());
+        displayList.addClip();
     }
 
     /**
      * Adds a new no clip command to the graphics stack.
      */
     public void addNoClipCommand() {
-        shapes.add(new NoClip());
+        displayList.addNoClip();
+    }
+
+    /**
+     * Gets an estimate of the bytes retained by the graphics stack, including
+     * the images found on the page.
+     *
+     * @return estimated size in bytes.
+     */
+    public long getMemorySize() {
+        long memorySize = displayList.getMemorySize();
+        // the same image can be painted more then once
+        IdentityHashMap<Image, Image> counted = new IdentityHashMap<Image, Image>();
+        Object[] pageImages = images.toArray();
+        for (int i = 0; i < pageImages.length; i++) {
+            Image image = (Image) pageImages[i];
+            if (counted.put(image, image) == null) {
+                memorySize += getImageSize(image);
+            }
+        }
+        return memorySize;
+    }
+
+    /**
+     * Gets the size of an image's pixel data, decoded images are almost
+     * always BufferedImages whose data buffer gives the exact size.
+     */
+    private static long getImageSize(Image image) {
+        if (image instanceof BufferedImage) {
+            DataBuffer dataBuffer =
+                    ((BufferedImage) image).getRaster().getDataBuffer();
+            return (long) dataBuffer.getSize() * dataBuffer.getNumBanks() *
+                    DataBuffer.getDataTypeSize(dataBuffer.getDataType()) / 8;
+        }
+        int width = image.getWidth(null);
+        int height = image.getHeight(null);
+        return width > 0 && height > 0 ? (long) width * height * 4 : 0;
+    }
+
+    DisplayList getDisplayList() {
+        return displayList;
+    }
+
+    /**
+     * Gets the first colour on the graphics stack.
+     *
+     * @return first colour, null if the stack has no colour.
+     */
+    Color getFirstColor() {
+        return displayList.getFirstColor();
     }
 
     /**
@@ -268,8 +287,8 @@ public class Shapes {
      *
      * @param g graphics context to paint to.
      */
-    public synchronized void paint(Graphics2D g) {
-        paint(g, null);
+    public void paint(Graphics2D g) {
+        paint(g, parentPage, null);
     }
 
     /**
@@ -277,180 +296,35 @@ public class Shapes {
      *
      * @param g graphics context to paint to.
      */
-    public synchronized void paint(Graphics2D g, PageViewComponentImpl.PagePainter pagePainter) {
-
-        Shape shape = null;
-        AffineTransform base = new AffineTransform(g.getTransform());
-        Shape clip = g.getClip();
-
-//        int rule = AlphaComposite.SRC_OVER;
-//        float alpha = 1.0f;
-//        g.setComposite(AlphaComposite.getInstance(rule, alpha));
-
-        Object nextShape;
-        Area clipArea = new Area(g.getClip());
-//        System.out.println("Shapes vector  size " + shapes.size() + " " + currentClip);
-//        long startTime = System.currentTimeMillis();
-        long currentTime;
-        long lastPaintTime = System.currentTimeMillis();
+    public void paint(Graphics2D g, PageViewComponentImpl.PagePainter pagePainter) {
+        paint(g, parentPage, pagePainter);
+    }
 
-//        int paintCount = 0;
-        Enumeration shapesEnumeration = shapes.elements();
-        try {
-            while (shapesEnumeration.hasMoreElements() ||
-                    (pagePainter != null && pagePainter.isStopPaintingRequested())) {
-
-//                if (pagePainter != null && pagePainter.isStopPaintingRequested()){
-//                    break;
-//                }
-
-                nextShape = shapesEnumeration.nextElement();
-
-                if (nextShape instanceof TextSprite) {
-                    if (((TextSprite) nextShape).intersects(clipArea)) {
-                        ((TextSprite) nextShape).paint(g);
-                        // Send a PaintPage Event to listeners
-                        currentTime = System.currentTimeMillis();
-                        if (currentTime - lastPaintTime > paintDelay) {
-//                            paintCount++;
-                            lastPaintTime = currentTime;
-                            parentPage.notifyPaintPageListeners();
-                        }
-                    }
-                } else if (nextShape instanceof Shape) {
-                    shape = (Shape) nextShape;
-                } else if (nextShape instanceof Fill) {
-                    if (clipArea.intersects(shape.getBounds2D())) {
-                        g.fill(shape);
-                        // Send a PaintPage Event to listeners
-                        currentTime = System.currentTimeMillis();
-                        if (currentTime - lastPaintTime > paintDelay) {
-//                            paintCount++;
-                            lastPaintTime = currentTime;
-                            parentPage.notifyPaintPageListeners();
-                        }
-                    }
-                } else if (nextShape instanceof AffineTransform) {
-                    AffineTransform af = new AffineTransform(base);
-                    af.concatenate((AffineTransform) nextShape);
-                    g.setTransform(af);
-                    // update current clip shape
-                    if (g.getClip() != null)
-                        clipArea = new Area(g.getClip());
-                } else if (nextShape instanceof AlphaComposite) {
-                    g.setComposite((AlphaComposite) nextShape);
-                } else if (nextShape instanceof Paint) {
-                    g.setPaint((Paint) nextShape);
-                } else if (nextShape instanceof Clip) {
-                    // Capture the current af for the
-                    //  page
-                    AffineTransform af = new AffineTransform(g.getTransform());
-                    // Set the transform to the base, which is fact where the page
-                    // lies in the viewport, very dynamic.
-                    g.setTransform(base);
-                    // apply the clip, which is always the initial paper size,
-                    g.setClip(clip);
-                    // apply the af, which places the clip in the correct location
-                    g.setTransform(af);
-                    if (shape != null) {
-                        // clip outline
-                        //                    g.setComposite(AlphaComposite.getInstance(rule, 1.0f));
-                        //                    Color tmp = g.getColor();
-                        //                    g.setColor(Color.red);
-                        //                    g.draw(shape);
-                        //                    g.setColor(tmp);
-                        //                    g.setComposite(AlphaComposite.getInstance(rule, alpha));
-                        // apply the new clip
-                        g.clip(shape);
-                    }
-                    // update clip
-                    clipArea = new Area(g.getClip());
-                } else if (nextShape instanceof Draw) {
-                    if (shape.intersects(clipArea.getBounds2D()) ||
-                            (shape.getBounds2D().getWidth() < 1.0 ||
-                                    shape.getBounds2D().getHeight() < 1.0)) {
-                        g.draw(shape);
-                        // Send a PaintPage Event to listeners
-                        currentTime = System.currentTimeMillis();
-                        if (currentTime - lastPaintTime > paintDelay) {
-//                            paintCount++;
-                            lastPaintTime = currentTime;
-                            parentPage.notifyPaintPageListeners();
-                        }
-                    }
-                } else if (nextShape instanceof NoClip) {
-                    AffineTransform af = new AffineTransform(g.getTransform());
-                    g.setTransform(base);
-                    g.setClip(clip);
-                    g.setTransform(af);
-                    clipArea = new Area(g.getClip());
-                } else if (nextShape instanceof Stroke) {
-                    g.setStroke((Stroke) nextShape);
-                } else if (nextShape instanceof Image) {
-                    Image tmpImage = (Image) nextShape;
-                    if (clipArea.intersects(0, 0, 1, 1)) {
-                        try {
-                            g.drawImage(tmpImage, 0, 0, 1, 1, null);
-                        }
-                        catch (OutOfMemoryError memErr) {
-                            // If we have a large image and if we're scaling it down,
-                            //  then that tends to make a memory spike.
-                            // So, lets try redrawing it with the crappiest interpolation
-                            //  setting, which uses the least memory
-                            int width = tmpImage.getWidth(null);
-                            int height = tmpImage.getHeight(null);
-                            if (width >= 600 && height >= 600) {
-                                AffineTransform at = g.getTransform();
-                                int scaleX = (int) at.getScaleX();
-                                int scaleY = (int) at.getScaleX();
-                                if (scaleX < width || scaleY < height) {
-                                    RenderingHints renderingHints = g.getRenderingHints();
-                                    Object oldInterpolation = renderingHints.get(RenderingHints.KEY_INTERPOLATION);
-                                    try {
-                                        renderingHints.put(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
-                                        g.setRenderingHints(renderingHints);
-                                        g.drawImage(tmpImage, 0, 0, 1, 1, null);
-                                    }
-                                    finally {
-                                        renderingHints.put(RenderingHints.KEY_INTERPOLATION, oldInterpolation);
-                                        g.setRenderingHints(renderingHints);
-                                        currentTime = System.currentTimeMillis();
-                                        // Send a PaintPage Event to listeners
-                                        if (currentTime - lastPaintTime > paintDelay) {
-//                                            paintCount++;
-                                            lastPaintTime = currentTime;
-                                            parentPage.notifyPaintPageListeners();
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-                } else if (nextShape instanceof Shapes) {
-                    ((Shapes) nextShape).setPageParent(parentPage);
-                    ((Shapes) nextShape).paint(g);
-                    ((Shapes) nextShape).setPageParent(null);
-                } else if (nextShape instanceof Color) {
-                    g.setColor((Color) nextShape);
-                }
-//                else if (Debug.ex){
-//                    Debug.p("Found unhandled Shapes Operand ");
-//                }
-            }
-            // not pretty, but avoid any problems which disposing a page in the middle
-            // of a paint.
-        }
-        catch (NoSuchElementException e) {
-            // eat any errors. 
-        }
-        catch (Exception e) {
-            logger.log(Level.FINE, "Error painting shapes.", e);
-        }
-//        System.out.println("Paint Count " + paintCount);
+    /**
+     * Paint the graphics stack to the graphics context.  The stack is
+     * replayed without a lock, so a page can be painted by several threads
+     * at once.
+     *
+     * @param g           graphics context to paint to.
+     * @param page        page whose paint listeners are notified of the
+     *                    progress, can be null.
+     * @param pagePainter painter of the page, can be null.
+     */
+    public void paint(Graphics2D g, Page page,
+                      PageViewComponentImpl.PagePainter pagePainter) {
+        displayList.paint(g, page, paintDelay);
+    }
 
-//        long stopTime = System.currentTimeMillis();
-//        long elapsedTime = stopTime - startTime;
-//            System.out.println("Paint Time: " + elapsedTime );
+    /**
+     * Paints the graphics stack as part of the display list of another
+     * stack, only painting what falls in the given area.
+     *
+     * @param g    graphics context to paint to.
+     * @param page page whose paint listeners are notified, can be null.
+     * @param area device space area being painted, null for all of it.
+     */
+    void paintNested(Graphics2D g, Page page, Rectangle2D area) {
+        displayList.paint(g, page, paintDelay, area);
     }
 
 // Dangerous method
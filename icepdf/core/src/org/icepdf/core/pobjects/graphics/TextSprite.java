@@ -33,6 +33,7 @@
 package org.icepdf.core.pobjects.graphics;
 
 import org.icepdf.core.pobjects.fonts.FontFile;
+import org.icepdf.core.pobjects.fonts.ofont.OFont;
 import org.icepdf.core.util.Defs;
 
 import java.awt.*;
@@ -56,8 +57,9 @@ public class TextSprite {
     private final static boolean OPTIMIZED_DRAWING_ENABLED =
             Defs.booleanProperty("org.icepdf.core.text.optimized", true);
 
-    // private Vector textObjects;
-    private float[][] textObjects;
+    // glyph x and y coordinates, two entries per character
+    private float[] positions;
+    private char[] characters;
     private int count;
     // stroke color
     private Color strokeColor;
@@ -76,7 +78,8 @@ public class TextSprite {
      * @param size size of the font in user space
      */
     public TextSprite(FontFile font, int size) {
-        textObjects = new float[size][3];
+        positions = new float[size * 2];
+        characters = new char[size];
         this.font = font;
         bounds = new Rectangle2D.Float();
     }
@@ -91,9 +94,9 @@ public class TextSprite {
      * @param width     width of character from font.
      */
     public void addText(char character, float x, float y, float width) {
-        textObjects[count][0] = x;
-        textObjects[count][1] = y;
-        textObjects[count][2] = (int) character;
+        positions[count * 2] = x;
+        positions[count * 2 + 1] = y;
+        characters[count] = character;
 
         // keep track of the text total bound, important for shapes painting.
         // IMPORTANT: where working in Java Coordinates with any of the Font bounds
@@ -145,9 +148,9 @@ public class TextSprite {
     }
 
     public String toString() {
-        StringBuffer text = new StringBuffer(textObjects.length);
-        for (int i = 0, max = textObjects.length; i < max; i++) {
-            text.append(textObjects[i][2]);
+        StringBuffer text = new StringBuffer(characters.length);
+        for (int i = 0, max = characters.length; i < max; i++) {
+            text.append((float) characters[i]);
         }
         return text.toString();
     }
@@ -162,6 +165,12 @@ public class TextSprite {
      * @return list of all CharSprites contained in this TextSprite.
      */
     public float[][] getTextObjects() {
+        float[][] textObjects = new float[characters.length][3];
+        for (int i = 0; i < characters.length; i++) {
+            textObjects[i][0] = positions[i * 2];
+            textObjects[i][1] = positions[i * 2 + 1];
+            textObjects[i][2] = characters[i];
+        }
         return textObjects;
     }
 
@@ -171,7 +180,17 @@ public class TextSprite {
      * @return size of font in user space.
      */
     public int getSize() {
-        return textObjects.length;
+        return characters.length;
+    }
+
+    /**
+     * Gets an estimate of the bytes retained by this TextSprite.
+     *
+     * @return estimated size in bytes.
+     */
+    public long getMemorySize() {
+        char[] characters = this.characters;
+        return characters != null ? 64 + characters.length * 10 : 64;
     }
 
     /**
@@ -186,19 +205,30 @@ public class TextSprite {
         // draw bounding box.
 //        drawBoundBox(g2d);
 
-        for (int i = textObjects.length - 1; i >= 0; i--) {
+        // other font engines only implement the FontFile interface
+        OFont ofont = font instanceof OFont ? (OFont) font : null;
+
+        for (int i = characters.length - 1; i >= 0; i--) {
 
             // draw glyph box
-//            drawGyphBox(g2d, (char)textObjects[i][2],
-//                        textObjects[i][0], textObjects[i][1],
+//            drawGyphBox(g2d, characters[i],
+//                        positions[i * 2], positions[i * 2 + 1],
 //                        oldGraphics);
 
             // draw glyph
-            font.drawEstring(g2d,
-                    String.valueOf((char) textObjects[i][2]),
-                    textObjects[i][0],
-                    textObjects[i][1],
-                    FontFile.LAYOUT_NONE, rmode, strokeColor);
+            if (ofont != null) {
+                ofont.drawEchar(g2d,
+                        characters[i],
+                        positions[i * 2],
+                        positions[i * 2 + 1],
+                        rmode, strokeColor);
+            } else {
+                font.drawEstring(g2d,
+                        String.valueOf(characters[i]),
+                        positions[i * 2],
+                        positions[i * 2 + 1],
+                        FontFile.LAYOUT_NONE, rmode, strokeColor);
+            }
         }
 
     }
@@ -281,11 +311,23 @@ public class TextSprite {
         return !OPTIMIZED_DRAWING_ENABLED || shape.intersects(bounds);
     }
 
+    /**
+     * Gets the bounds of the text in user space, used to skip text outside
+     * of the area being painted.
+     *
+     * @return bounds of the text, or null if optimized drawing is turned off
+     *         and the bounds shouldn't be relied on.
+     */
+    Rectangle2D.Float getBounds() {
+        return OPTIMIZED_DRAWING_ENABLED ? bounds : null;
+    }
+
     /**
      * Dispose this TextSprite Object.
      */
     public void dispose() {
-        textObjects = null;
+        positions = null;
+        characters = null;
         strokeColor = null;
         font = null;
     }
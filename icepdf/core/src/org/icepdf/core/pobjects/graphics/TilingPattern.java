@@ -223,11 +223,9 @@ public class TilingPattern extends Stream implements Pattern {
     public Color getFirstColor() {
         // find and cache first colour found in stack
         if (shapes != null && unColored == null) {
-            for (int i = 0, max = shapes.shapes.size(); i < max; i++) {
-                if (shapes.shapes.get(i) instanceof Color) {
-                    unColored = (Color) shapes.shapes.get(i);
-                    return unColored;
-                }
+            unColored = shapes.getFirstColor();
+            if (unColored != null) {
+                return unColored;
             }
         }
         // if now shapes then we go with black.  
@@ -240,9 +238,10 @@ public class TilingPattern extends Stream implements Pattern {
     }
 
     /**
-     *
+     * Parses the pattern's content stream, patterns are shared between pages
+     * so only one thread does the work.
      */
-    public void init() {
+    public synchronized void init() {
 
         if (inited) {
             return;
@@ -43,13 +43,13 @@ import java.awt.*;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Enumeration;
 import java.util.Hashtable;
-import java.util.Stack;
 import java.util.Vector;
 import java.util.logging.Logger;
 import java.util.logging.Level;
@@ -79,10 +79,21 @@ public class ContentParser {
     // is encountered so that extract text is easier to manipulate.
     private int textBlockIndex = 0;
 
+    // if not null, text extraction adds the user space bounds of each
+    // extracted character, or null for characters that aren't glyphs.
+    private Vector<Rectangle2D.Float> extractedTextBounds;
+
+    // if true, text extraction follows the q, Q and cm operators, as it
+    // does when collecting the bounds of the extracted characters.
+    private boolean followGraphicsState;
+
     // TextBlock affine transform can be altered by the "cm" operand an thus
     // the text base affine transform must be accessible outside the parsTtext method
     private AffineTransform textBlockBase;
 
+    // reused for the operands of each text block
+    private OperandStack textStack;
+
     /**
      * @param l PDF library master object.
      * @param r resources
@@ -189,8 +200,8 @@ public class ContentParser {
         // test case for progress bar
         parser = new Parser(source);
 
-        // stack to help with the parse
-        Stack<Object> stack = new Stack<Object>();
+        // operand stack to help with the parse
+        OperandStack stack = new OperandStack();
 
 //        long startTime = System.currentTimeMillis();
         try {
@@ -199,29 +210,26 @@ public class ContentParser {
             // multiple subpaths.
             GeneralPath geometricPath = null;
 
-            // loop through each token returned form the parser
-            Object tok;
+            // loop through each operator returned from the parser, the
+            // names, numbers and everything else are collected on the
+            // operand stack for the operator to use
+            Lexer lexer = parser.getLexer();
             while (true) {
 
                 if (Thread.interrupted()) {
                     throw new InterruptedException("ContentParser thread interrupted");
                 }
 
-                tok = parser.getStreamObject();
-
-                // add any names and numbers and every thing else on the
-                // stack for future reference
-                if (!(tok instanceof String)) {
-                    stack.push(tok);
-                } else {
+                switch (nextOperator(parser, lexer, stack)) {
 
                     // Append a straight line segment from the current point to the
                     // point (x, y). The new current point is (x, y).
-                    if (tok.equals(PdfOps.l_TOKEN)) {
+                    case PdfOps.l_OP: {
 //                        collectTokenFrequency(PdfOps.l_TOKEN);
-                        float y = ((Number) stack.pop()).floatValue();
-                        float x = ((Number) stack.pop()).floatValue();
+                        float y = stack.popFloat();
+                        float x = stack.popFloat();
                         geometricPath.lineTo(x, y);
+                        break;
                     }
 
                     // Begin a new subpath by moving the current point to
@@ -229,63 +237,65 @@ public class ContentParser {
                     // the previous path construction operator in the current path
                     // was also m, the new m overrides it; no vestige of the
                     // previous m operation remains in the path.
-                    else if (tok.equals(PdfOps.m_TOKEN)) {
+                    case PdfOps.m_OP: {
 //                        collectTokenFrequency(PdfOps.m_TOKEN);
                         if (geometricPath == null) {
                             geometricPath = new GeneralPath();
                         }
-                        float y = ((Number) stack.pop()).floatValue();
-                        float x = ((Number) stack.pop()).floatValue();
+                        float y = stack.popFloat();
+                        float x = stack.popFloat();
                         geometricPath.moveTo(x, y);
+                        break;
                     }
 
                     // Append a cubic Bezier curve to the current path. The curve
                     // extends from the current point to the point (x3, y3), using
                     // (x1, y1) and (x2, y2) as the Bezier control points.
                     // The new current point is (x3, y3).
-                    else if (tok.equals(PdfOps.c_TOKEN)) {
+                    case PdfOps.c_OP: {
 //                        collectTokenFrequency(PdfOps.c_TOKEN);
-                        float y3 = ((Number) stack.pop()).floatValue();
-                        float x3 = ((Number) stack.pop()).floatValue();
-                        float y2 = ((Number) stack.pop()).floatValue();
-                        float x2 = ((Number) stack.pop()).floatValue();
-                        float y1 = ((Number) stack.pop()).floatValue();
-                        float x1 = ((Number) stack.pop()).floatValue();
+                        float y3 = stack.popFloat();
+                        float x3 = stack.popFloat();
+                        float y2 = stack.popFloat();
+                        float x2 = stack.popFloat();
+                        float y1 = stack.popFloat();
+                        float x1 = stack.popFloat();
                         geometricPath.curveTo(x1, y1, x2, y2, x3, y3);
+                        break;
                     }
 
                     // Stroke the path
-                    else if (tok.equals(PdfOps.S_TOKEN)) {
+                    case PdfOps.S_OP:
 //                        collectTokenFrequency(PdfOps.S_TOKEN);
                         if (geometricPath != null) {
                             commonStroke(shapes, geometricPath);
                             geometricPath = null;
                         }
-                    }
+                        break;
 
                     // Font selection
-                    else if (tok.equals(PdfOps.Tf_TOKEN)) {
+                    case PdfOps.Tf_OP:
                         consume_Tf(graphicState, stack, resources);
-                    }
+                        break;
 
                     // Begin a text object, initializing the text matrix, Tm, and
                     // the text line matrix, Tlm, to the identity matrix. Text
                     // objects cannot be nested; a second BT cannot appear before
                     // an ET.
-                    else if (tok.equals(PdfOps.BT_TOKEN)) {
+                    case PdfOps.BT_OP:
 //                        collectTokenFrequency(PdfOps.BT_TOKEN);
                         // set graphics state alpha back to 1.0f for text
                         setAlpha(shapes, 1.0f);
                         // start parseText, which parses until ET is reached
                         parseText(parser, shapes, false, null);
-                    }
+                        break;
 
                     // Fill the path, using the nonzero winding number rule to
                     // determine the region to fill (see "Nonzero Winding
                     // Number Rule" ). Any subpaths that are open are implicitly
                     // closed before being filled. f or F
-                    else if (tok.equals(PdfOps.F_TOKEN) ||
-                            tok.equals(PdfOps.f_TOKEN)) {
+                    case PdfOps.F_OP:
+                    case PdfOps.f_OP:
 //                        collectTokenFrequency(PdfOps.F_TOKEN);
 //                        collectTokenFrequency(PdfOps.f_TOKEN);
                         if (geometricPath != null) {
@@ -293,18 +303,19 @@ public class ContentParser {
                             commonFill(shapes, geometricPath);
                         }
                         geometricPath = null;
-                    }
+                        break;
 
                     // Saves Graphics State, should copy the entire  graphics state onto
                     // the graphicsState object's stack
-                    else if (tok.equals(PdfOps.q_TOKEN)) {
+                    case PdfOps.q_OP:
                         graphicState = consume_q(graphicState);
-                    }
+                        break;
+
                     // Restore Graphics State, should restore teh entire graphics state
                     // to its former value by popping it from the stack
-                    else if (tok.equals(PdfOps.Q_TOKEN)) {
+                    case PdfOps.Q_OP:
                         graphicState = consume_Q(graphicState, shapes);
-                    }
+                        break;
 
                     // Append a rectangle to the current path as a complete subpath,
                     // with lower-left corner (x, y) and dimensions width and height
@@ -314,27 +325,28 @@ public class ContentParser {
                     //       (x + width) (y + height) l
                     //        x (y + height) l
                     //        h
-                    else if (tok.equals(PdfOps.re_TOKEN)) {
+                    case PdfOps.re_OP: {
 //                        collectTokenFrequency(PdfOps.re_TOKEN);
                         if (geometricPath == null) {
                             geometricPath = new GeneralPath();
                         }
-                        float h = ((Number) stack.pop()).floatValue();
-                        float w = ((Number) stack.pop()).floatValue();
-                        float y = ((Number) stack.pop()).floatValue();
-                        float x = ((Number) stack.pop()).floatValue();
+                        float h = stack.popFloat();
+                        float w = stack.popFloat();
+                        float y = stack.popFloat();
+                        float x = stack.popFloat();
                         geometricPath.moveTo(x, y);
                         geometricPath.lineTo(x + w, y);
                         geometricPath.lineTo(x + w, y + h);
                         geometricPath.lineTo(x, y + h);
                         geometricPath.lineTo(x, y);
+                        break;
                     }
 
                     // Modify the current transformation matrix (CTM) by concatenating the
                     // specified matrix
-                    else if (tok.equals(PdfOps.cm_TOKEN)) {
+                    case PdfOps.cm_OP:
                         consume_cm(graphicState, stack, inTextBlock, textBlockBase);
-                    }
+                        break;
 
                     // Close the current sub path by appending a straight line segment
                     // from the current point to the starting point of the sub path.
@@ -343,12 +355,12 @@ public class ContentParser {
                     // even if the new segment begins at the endpoint reached by the
                     // h operation. If the current subpath is already closed,
                     // h does nothing.
-                    else if (tok.equals(PdfOps.h_TOKEN)) {
+                    case PdfOps.h_OP:
 //                        collectTokenFrequency(PdfOps.h_TOKEN);
                         if (geometricPath != null) {
                             geometricPath.closePath();
                         }
-                    }
+                        break;
 
                     // Begin a marked-content sequence with an associated property
                     // list, terminated by a balancing EMC operator. tag is a name
@@ -356,16 +368,16 @@ public class ContentParser {
                     // properties is either an inline dictionary containing the
                     // property list or a name object associated with it in the
                     // Properties sub dictionary of the current resource dictionary
-                    else if (tok.equals(PdfOps.BDC_TOKEN)) {
+                    case PdfOps.BDC_OP:
 //                        collectTokenFrequency(PdfOps.BDC_TOKEN);
                         stack.pop(); // properties
                         stack.pop(); // name
-                    }
+                        break;
 
                     // End a marked-content sequence begun by a BMC or BDC operator.
-                    else if (tok.equals(PdfOps.EMC_TOKEN)) {
+                    case PdfOps.EMC_OP:
 //                        collectTokenFrequency(PdfOps.EMC_TOKEN);
-                    }
+                        break;
 
                     /**
                      * External Object (XObject) a graphics object whose contents
@@ -389,7 +401,7 @@ public class ContentParser {
                     // associated value must be a stream whose Type entry, if
                     // present, is XObject. The effect of Do depends on the value of
                     // the XObject's Subtype entry, which may be Image , Form, or PS
-                    else if (tok.equals(PdfOps.Do_TOKEN)) {
+                    case PdfOps.Do_OP: {
 //                        collectTokenFrequency(PdfOps.Do_TOKEN);
                         String xobjectName = ((Name) (stack.pop())).getName();
                         // Form XObject
@@ -401,34 +413,38 @@ public class ContentParser {
                             // of the current graphics state for the new content stream
                             Form formXObject = resources.getForm(xobjectName);
                             if (formXObject != null) {
-                                // init formXobject
-                                formXObject.setGraphicsState(new GraphicsState(graphicState));
-                                // according to spec the formXObject might not have
-                                // resources reference as a result we pass in the current
-                                // one in the hope that any resources can be found.
-                                formXObject.setParentResources(resources);
-                                formXObject.init();
-                                // 2.) concatenate matrix entry with the current CTM
-                                AffineTransform af =
-                                        new AffineTransform(graphicState.getCTM());
-                                af.concatenate(formXObject.getMatrix());
-                                shapes.add(af);
-                                // 3.) Clip according to the form BBox entry
-                                if (graphicState.getClip() != null) {
-                                    shapes.add(formXObject.getBBox().createIntersection(
-                                            graphicState.getClip().getBounds2D()));
-                                } else {
-                                    shapes.add(formXObject.getBBox());
-                                }
-                                shapes.addClipCommand();
-                                // 4.) Paint the graphics objects in font stream.
-                                shapes.add(formXObject.getShapes());
-                                // makes sure we add xobject images so we can extract them.
-                                if (formXObject.getShapes() != null) {
-                                    shapes.add(formXObject.getShapes().getImages());
+                                // the form is shared by every page using it, so one
+                                // parser at a time sets it up and takes its shapes
+                                synchronized (formXObject) {
+                                    // init formXobject
+                                    formXObject.setGraphicsState(new GraphicsState(graphicState));
+                                    // according to spec the formXObject might not have
+                                    // resources reference as a result we pass in the current
+                                    // one in the hope that any resources can be found.
+                                    formXObject.setParentResources(resources);
+                                    formXObject.init();
+                                    // 2.) concatenate matrix entry with the current CTM
+                                    AffineTransform af =
+                                            new AffineTransform(graphicState.getCTM());
+                                    af.concatenate(formXObject.getMatrix());
+                                    shapes.add(af);
+                                    // 3.) Clip according to the form BBox entry
+                                    if (graphicState.getClip() != null) {
+                                        shapes.add(formXObject.getBBox().createIntersection(
+                                                graphicState.getClip().getBounds2D()));
+                                    } else {
+                                        shapes.add(formXObject.getBBox());
+                                    }
+                                    shapes.addClipCommand();
+                                    // 4.) Paint the graphics objects in font stream.
+                                    shapes.add(formXObject.getShapes());
+                                    // makes sure we add xobject images so we can extract them.
+                                    if (formXObject.getShapes() != null) {
+                                        shapes.add(formXObject.getShapes().getImages());
+                                    }
+                                    shapes.addNoClipCommand();
+                                    formXObject.completed();
                                 }
-                                shapes.addNoClipCommand();
-                                formXObject.completed();
                             }
                             //  5.) Restore the saved graphics state
                             graphicState = graphicState.restore();
@@ -447,11 +463,12 @@ public class ContentParser {
                                 graphicState.set(af);
                             }
                         }
+                        break;
                     }
 
                     // Fill the path, using the even-odd rule to determine the
                     // region to fill
-                    else if (tok.equals(PdfOps.f_STAR_TOKEN)) {
+                    case PdfOps.f_STAR_OP:
 //                        collectTokenFrequency(PdfOps.f_STAR_TOKEN);
                         if (geometricPath != null) {
                             // need to apply pattern..
@@ -459,36 +476,36 @@ public class ContentParser {
                             commonFill(shapes, geometricPath);
                         }
                         geometricPath = null;
-                    }
+                        break;
 
                     // Sets the specified parameters in the graphics state.  The gs operand
                     // points to a name resource which should be a an ExtGState object.
                     // The graphics state parameters in the ExtGState must be concatenated
                     // with the the current graphics state.
-                    else if (tok.equals(PdfOps.gs_TOKEN)) {
+                    case PdfOps.gs_OP:
                         consume_gs(graphicState, stack, resources);
-                    }
+                        break;
 
                     // End the path object without filling or stroking it. This
                     // operator is a "path-painting no-op," used primarily for the
                     // side effect of changing the current clipping path
-                    else if (tok.equals(PdfOps.n_TOKEN)) {
+                    case PdfOps.n_OP:
 //                        collectTokenFrequency(PdfOps.n_TOKEN);
                         //graphicState.setClip(geometricPath);
                         // clipping path outlines are visible when this is set to null;
                         geometricPath = null;
-                    }
+                        break;
 
                     // Set the line width in the graphics state
-                    else if (tok.equals(PdfOps.w_TOKEN) ||
-                            tok.equals(PdfOps.LW_TOKEN)) {
+                    case PdfOps.w_OP:
+                    case PdfOps.LW_OP:
                         consume_w(graphicState, stack, shapes);
-                    }
+                        break;
 
                     // Modify the current clipping path by intersecting it with the
                     // current path, using the nonzero winding number rule to
                     // determine which regions lie inside the clipping path.
-                    else if (tok.equals(PdfOps.W_TOKEN)) {
+                    case PdfOps.W_OP:
 //                        collectTokenFrequency(PdfOps.W_TOKEN);
                         if (geometricPath != null) {
                             geometricPath.setWindingRule(GeneralPath.WIND_NON_ZERO);
@@ -496,19 +513,19 @@ public class ContentParser {
                             graphicState.setClip(geometricPath);
                         }
 
-                    }
+                        break;
 
                     // Fill Color with ColorSpace
-                    else if (tok.equals(PdfOps.sc_TOKEN) ||
-                            tok.equals(PdfOps.scn_TOKEN)) {
+                    case PdfOps.sc_OP:
+                    case PdfOps.scn_OP:
                         consume_sc(graphicState, stack, library, resources);
-                    }
+                        break;
 
                     // Close, fill, and then stroke the path, using the nonzero
                     // winding number rule to determine the region to fill. This
                     // operator has the same effect as the sequence h B. See also
                     // "Special Path-Painting Considerations"
-                    else if (tok.equals(PdfOps.b_TOKEN)) {
+                    case PdfOps.b_OP:
 //                        collectTokenFrequency(PdfOps.b_TOKEN);
                         if (geometricPath != null) {
                             geometricPath.setWindingRule(GeneralPath.WIND_NON_ZERO);
@@ -517,59 +534,59 @@ public class ContentParser {
                             commonFill(shapes, geometricPath);
                         }
                         geometricPath = null;
-                    }
+                        break;
 
                     // Same as K, but for non-stroking operations.
-                    else if (tok.equals(PdfOps.k_TOKEN)) { // Fill Color CMYK
+                    case PdfOps.k_OP: // Fill Color CMYK
                         consume_k(graphicState, stack, library, resources);
-                    }
+                        break;
 
                     // Same as g but for none stroking operations
-                    else if (tok.equals(PdfOps.g_TOKEN)) {
+                    case PdfOps.g_OP:
                         consume_g(graphicState, stack, library, resources);
-                    }
+                        break;
 
                     // Sets the flatness tolerance in the graphics state, NOT SUPPORTED
                     // flatness is a number in the range 0 to 100, a value of 0 specifies
                     // the default tolerance
-                    else if (tok.equals(PdfOps.i_TOKEN)) {
+                    case PdfOps.i_OP:
                         consume_i(stack);
-                    }
+                        break;
 
                     // Miter Limit
-                    else if (tok.equals(PdfOps.M_TOKEN)) {
+                    case PdfOps.M_OP:
                         consume_M(graphicState, stack, shapes);
-                    }
+                        break;
 
                     // Set the line cap style of the graphic state, related to Line Join
                     // style
-                    else if (tok.equals(PdfOps.J_TOKEN)) {
+                    case PdfOps.J_OP:
                         consume_J(graphicState, stack, shapes);
-                    }
+                        break;
 
                     // Same as RG, but for non-stroking operations.
-                    else if (tok.equals(PdfOps.rg_TOKEN)) { // Fill Color RGB
+                    case PdfOps.rg_OP: // Fill Color RGB
                         consume_rg(graphicState, stack, library, resources);
-                    }
+                        break;
 
                     // Sets the line dash pattern in the graphics state. A normal line
                     // is [] 0.  See Graphics State -> Line dash patter for more information
                     // in the PDF Reference.  Java 2d uses the same notation so there
                     // is not much work to be done other then parsing the data.
-                    else if (tok.equals(PdfOps.d_TOKEN)) {
+                    case PdfOps.d_OP:
                         consume_d(graphicState, stack, shapes);
-                    }
+                        break;
 
                     // Append a cubic Bezier curve to the current path. The curve
                     // extends from the current point to the point (x3, y3), using
                     // the current point and (x2, y2) as the Bezier control points.
                     // The new current point is (x3, y3).
-                    else if (tok.equals(PdfOps.v_TOKEN)) {
+                    case PdfOps.v_OP: {
 //                        collectTokenFrequency(PdfOps.v_TOKEN);
-                        float y3 = ((Number) stack.pop()).floatValue();
-                        float x3 = ((Number) stack.pop()).floatValue();
-                        float y2 = ((Number) stack.pop()).floatValue();
-                        float x2 = ((Number) stack.pop()).floatValue();
+                        float y3 = stack.popFloat();
+                        float x3 = stack.popFloat();
+                        float y2 = stack.popFloat();
+                        float x2 = stack.popFloat();
                         geometricPath.curveTo(
                                 (float) geometricPath.getCurrentPoint().getX(),
                                 (float) geometricPath.getCurrentPoint().getY(),
@@ -577,36 +594,38 @@ public class ContentParser {
                                 y2,
                                 x3,
                                 y3);
+                        break;
                     }
 
                     // Set the line join style in the graphics state
-                    else if (tok.equals(PdfOps.j_TOKEN)) {
+                    case PdfOps.j_OP:
                         consume_j(graphicState, stack, shapes);
-                    }
+                        break;
 
                     // Append a cubic Bezier curve to the current path. The curve
                     // extends from the current point to the point (x3, y3), using
                     // (x1, y1) and (x3, y3) as the Bezier control points.
                     // The new current point is (x3, y3).
-                    else if (tok.equals(PdfOps.y_TOKEN)) {
+                    case PdfOps.y_OP: {
 //                        collectTokenFrequency(PdfOps.y_TOKEN);
-                        float y3 = ((Number) stack.pop()).floatValue();
-                        float x3 = ((Number) stack.pop()).floatValue();
-                        float y1 = ((Number) stack.pop()).floatValue();
-                        float x1 = ((Number) stack.pop()).floatValue();
+                        float y3 = stack.popFloat();
+                        float x3 = stack.popFloat();
+                        float y1 = stack.popFloat();
+                        float x1 = stack.popFloat();
                         geometricPath.curveTo(x1, y1, x3, y3, x3, y3);
+                        break;
                     }
 
                     // Same as CS, but for nonstroking operations.
-                    else if (tok.equals(PdfOps.cs_TOKEN)) {
+                    case PdfOps.cs_OP:
                         consume_cs(graphicState, stack, resources);
-                    }
+                        break;
 
                     // Color rendering intent in the graphics state
-                    else if (tok.equals(PdfOps.ri_TOKEN)) {
+                    case PdfOps.ri_OP:
 //                        collectTokenFrequency(PdfOps.ri_TOKEN);
                         stack.pop();
-                    }
+                        break;
 
                     // Set the color to use for stroking operations in a device, CIE-based
                     // (other than ICCBased), or Indexed color space. The number of operands
@@ -616,10 +635,10 @@ public class ContentParser {
                     //   - For DeviceRGB, CalRGB, and Lab color spaces, three operands are
                     //     required (n = 3).
                     //   - For DeviceCMYK, four operands are required (n = 4).
-                    else if (tok.equals(PdfOps.SC_TOKEN) ||
-                            tok.equals(PdfOps.SCN_TOKEN)) { // Stroke Color with ColorSpace
+                    case PdfOps.SC_OP:
+                    case PdfOps.SCN_OP: // Stroke Color with ColorSpace
                         consume_SC(graphicState, stack, library, resources);
-                    }
+                        break;
 
                     // Fill and then stroke the path, using the nonzero winding
                     // number rule to determine the region to fill. This produces
@@ -628,7 +647,7 @@ public class ContentParser {
                     // however, that the fillingand stroking portions of the
                     // operation consult different values of several graphics state
                     // parameters, such as the current color.
-                    else if (tok.equals(PdfOps.B_TOKEN)) {
+                    case PdfOps.B_OP:
 //                        collectTokenFrequency(PdfOps.B_TOKEN);
                         if (geometricPath != null) {
                             geometricPath.setWindingRule(GeneralPath.WIND_NON_ZERO);
@@ -636,7 +655,7 @@ public class ContentParser {
                             commonFill(shapes, geometricPath);
                         }
                         geometricPath = null;
-                    }
+                        break;
 
                     // Set the stroking color space to DeviceCMYK (or the DefaultCMYK color
                     // space; see "Default Color Spaces" on page 227) and set the color to
@@ -644,48 +663,49 @@ public class ContentParser {
                     // 0.0 (zero concentration) and 1.0 (maximum concentration). The
                     // behavior of this operator is affected by the overprint mode
                     // (see Section 4.5.6, "Overprint Control").
-                    else if (tok.equals(PdfOps.K_TOKEN)) { // Stroke Color CMYK
+                    case PdfOps.K_OP: // Stroke Color CMYK
                         consume_K(graphicState, stack, library, resources);
-                    }
+                        break;
 
                     /**
                      * Type3 operators, update the text state with data from these operands
                      */
-                    else if (tok.equals(PdfOps.d0_TOKEN)) {
+                    case PdfOps.d0_OP: {
 //                        collectTokenFrequency(PdfOps.d0_TOKEN);
                         // save the stack
                         graphicState = graphicState.save();
                         // need two pops to get  Wx and Wy data
-                        float y = ((Number) stack.pop()).floatValue();
-                        float x = ((Number) stack.pop()).floatValue();
+                        float y = stack.popFloat();
+                        float x = stack.popFloat();
                         TextState textState = graphicState.getTextState();
                         textState.setType3HorizontalDisplacement(new Point.Float(x, y));
+                        break;
                     }
 
                     // Close and stroke the path. This operator has the same effect
                     // as the sequence h S.
-                    else if (tok.equals(PdfOps.s_TOKEN)) {
+                    case PdfOps.s_OP:
 //                        collectTokenFrequency(PdfOps.s_TOKEN);
                         if (geometricPath != null) {
                             geometricPath.closePath();
                             commonStroke(shapes, geometricPath);
                             geometricPath = null;
                         }
-                    }
+                        break;
 
                     // Set the stroking color space to DeviceGray (or the DefaultGray color
                     // space; see "Default Color Spaces" ) and set the gray level to use for
                     // stroking operations. gray is a number between 0.0 (black)
                     // and 1.0 (white).
-                    else if (tok.equals(PdfOps.G_TOKEN)) {
+                    case PdfOps.G_OP:
                         consume_G(graphicState, stack, library, resources);
-                    }
+                        break;
 
                     // Close, fill, and then stroke the path, using the even-odd
                     // rule to determine the region to fill. This operator has the
                     // same effect as the sequence h B*. See also "Special
                     // Path-Painting Considerations"
-                    else if (tok.equals(PdfOps.b_STAR_TOKEN)) {
+                    case PdfOps.b_STAR_OP:
 //                        collectTokenFrequency(PdfOps.b_STAR_TOKEN);
                         if (geometricPath != null) {
                             geometricPath.setWindingRule(GeneralPath.WIND_EVEN_ODD);
@@ -694,15 +714,15 @@ public class ContentParser {
                             commonFill(shapes, geometricPath);
                         }
                         geometricPath = null;
-                    }
+                        break;
 
                     // Set the stroking color space to DeviceRGB (or the DefaultRGB color
                     // space; see "Default Color Spaces" on page 227) and set the color to
                     // use for stroking operations. Each operand must be a number between
                     // 0.0 (minimum intensity) and 1.0 (maximum intensity).
-                    else if (tok.equals(PdfOps.RG_TOKEN)) { // Stroke Color RGB
+                    case PdfOps.RG_OP: // Stroke Color RGB
                         consume_RG(graphicState, stack, library, resources);
-                    }
+                        break;
 
                     // Set the current color space to use for stroking operations. The
                     // operand name must be a name object. If the color space is one that
@@ -730,32 +750,35 @@ public class ContentParser {
                     //     1.0 for all colorants. </li>
                     // <li>In a Pattern color space, the initial color is a pattern object
                     //     that causes nothing to be painted. </li>
-                    else if (tok.equals(PdfOps.CS_TOKEN)) {
+                    case PdfOps.CS_OP:
                         consume_CS(graphicState, stack, resources);
-                    } else if (tok.equals(PdfOps.d1_TOKEN)) {
+                        break;
+
+                    case PdfOps.d1_OP: {
 //                        collectTokenFrequency(PdfOps.d1_TOKEN);
                         // save the stack
                         graphicState = graphicState.save();
                         // need two pops to get  Wx and Wy data
-                        float x2 = ((Number) stack.pop()).floatValue();
-                        float y2 = ((Number) stack.pop()).floatValue();
-                        float x1 = ((Number) stack.pop()).floatValue();
-                        float y1 = ((Number) stack.pop()).floatValue();
-                        float y = ((Number) stack.pop()).floatValue();
-                        float x = ((Number) stack.pop()).floatValue();
+                        float x2 = stack.popFloat();
+                        float y2 = stack.popFloat();
+                        float x1 = stack.popFloat();
+                        float y1 = stack.popFloat();
+                        float y = stack.popFloat();
+                        float x = stack.popFloat();
                         TextState textState = graphicState.getTextState();
                         textState.setType3HorizontalDisplacement(
                                 new Point2D.Float(x, y));
                         textState.setType3BBox(new PRectangle(
                                 new Point2D.Float(x1, y1),
                                 new Point2D.Float(x2, y2)));
+                        break;
                     }
 
                     // Fill and then stroke the path, using the even-odd rule to
                     // determine the region to fill. This operator produces the same
                     // result as B, except that the path is filled as if with f*
                     // instead of f. See also "Special Path-Painting Considerations"
-                    else if (tok.equals(PdfOps.B_STAR_TOKEN)) {
+                    case PdfOps.B_STAR_OP:
 //                        collectTokenFrequency(PdfOps.B_STAR_TOKEN);
                         if (geometricPath != null) {
                             geometricPath.setWindingRule(GeneralPath.WIND_EVEN_ODD);
@@ -763,47 +786,48 @@ public class ContentParser {
                             commonFill(shapes, geometricPath);
                         }
                         geometricPath = null;
-                    }
+                        break;
 
                     // Begin a marked-content sequence terminated by a balancing EMC
                     // operator.tag is a name object indicating the role or
                     // significance of the sequence.
-                    else if (tok.equals(PdfOps.BMC_TOKEN)) {
+                    case PdfOps.BMC_OP:
 //                        collectTokenFrequency(PdfOps.BMC_TOKEN);
                         stack.pop();
-                    }
+                        break;
 
                     // Begin an inline image object
-                    else if (tok.equals(PdfOps.BI_TOKEN)) {
+                    case PdfOps.BI_OP:
 //                        collectTokenFrequency(PdfOps.BI_TOKEN);
                         // start parsing image object, which leads to ID and EI
                         // tokends.
                         //    ID - Begin in the image data for an inline image object
                         //    EI - End an inline image object
                         parseInlineImage(parser, shapes);
-                    }
+                        break;
 
                     // Begin a compatibility section. Unrecognized operators
                     // (along with their operands) will be ignored without error
                     // until the balancing EX operator is encountered.
-                    else if (tok.equals(PdfOps.BX_TOKEN)) {
+                    case PdfOps.BX_OP:
 //                        collectTokenFrequency(PdfOps.BX_TOKEN);
-                    }
+                        break;
+
                     // End a compatibility section begun by a balancing BX operator.
-                    else if (tok.equals(PdfOps.EX_TOKEN)) {
+                    case PdfOps.EX_OP:
 //                        collectTokenFrequency(PdfOps.EX_TOKEN);
-                    }
+                        break;
 
                     // Modify the current clipping path by intersecting it with the
                     // current path, using the even-odd rule to determine which
                     // regions lie inside the clipping path.
-                    else if (tok.equals(PdfOps.W_STAR_TOKEN)) {
+                    case PdfOps.W_STAR_OP:
                         if (geometricPath != null) {
                             geometricPath.setWindingRule(GeneralPath.WIND_EVEN_ODD);
                             geometricPath.closePath();
                             graphicState.setClip(geometricPath);
                         }
-                    }
+                        break;
 
                     /**
                      * Single marked-content point
@@ -814,20 +838,21 @@ public class ContentParser {
                     // containing the property list or a name object associated with
                     // it in the Properties subdictionary of the current resource
                     // dictionary.
-                    else if (tok.equals(PdfOps.DP_TOKEN)) {
+                    case PdfOps.DP_OP:
 //                        collectTokenFrequency(PdfOps.DP_TOKEN);
                         stack.pop(); // properties
                         stack.pop(); // name
-                    }
+                        break;
+
                     // Designate a marked-content point. tag is a name object
                     // indicating the role or significance of the point.
-                    else if (tok.equals(PdfOps.MP_TOKEN)) {
+                    case PdfOps.MP_OP:
 //                        collectTokenFrequency(PdfOps.MP_TOKEN);
                         stack.pop();
-                    }
+                        break;
 
                     // shading operator.
-                    else if (tok.equals(PdfOps.sh_TOKEN)) {
+                    case PdfOps.sh_OP: {
 //                        collectTokenFrequency(PdfOps.sh_TOKEN);
                         Object o = stack.peek();
                         // if a name then we are dealing with a pattern.
@@ -845,6 +870,7 @@ public class ContentParser {
 
                             }
                         }
+                        break;
                     }
 
                     /**
@@ -852,29 +878,34 @@ public class ContentParser {
                      * outside of text blocks, this should cover these cases.
                      */
                     // Character Spacing
-                    else if (tok.equals(PdfOps.Tc_TOKEN)) {
+                    case PdfOps.Tc_OP:
                         consume_Tc(graphicState, stack);
-                    }
+                        break;
+
                     // Word spacing
-                    else if (tok.equals(PdfOps.Tw_TOKEN)) {
+                    case PdfOps.Tw_OP:
                         consume_Tw(graphicState, stack);
-                    }
+                        break;
+
                     // Text leading
-                    else if (tok.equals(PdfOps.TL_TOKEN)) {
+                    case PdfOps.TL_OP:
                         consume_TL(graphicState, stack);
-                    }
+                        break;
+
                     // Rendering mode
-                    else if (tok.equals(PdfOps.Tr_TOKEN)) {
+                    case PdfOps.Tr_OP:
                         consume_Tr(graphicState, stack);
-                    }
+                        break;
+
                     // Horizontal scaling
-                    else if (tok.equals(PdfOps.Tz_TOKEN)) {
+                    case PdfOps.Tz_OP:
                         consume_Tz(graphicState, stack);
-                    }
+                        break;
+
                     // Text rise
-                    else if (tok.equals(PdfOps.Ts_TOKEN)) {
+                    case PdfOps.Ts_OP:
                         consume_Ts(graphicState, stack);
-                    }
+                        break;
                 }
             }
         }
@@ -899,6 +930,8 @@ public class ContentParser {
                 logger.fine("STACK=" + tmp);
             }
         }
+        // the display list is complete, drop its growth slack
+        shapes.trimToSize();
         return shapes;
     }
 
@@ -921,37 +954,40 @@ public class ContentParser {
 //        long startTime = System.currentTimeMillis();
         try {
 
-            // loop through each token returned form the parser
-            Object tok = parser.getStreamObject();
-            Stack<Object> stack = new Stack<Object>();
-            while (tok != null) {
-
-                // add any names and numbers and every thing else on the
-                // stack for future reference
-                if (tok instanceof String) {
-
-                    if (tok.equals(PdfOps.BT_TOKEN)) {
-                        // start parseText, which parses until ET is reached
-                        parseText(parser, shapes, true, extractedText);
-                        // This is the end of a text block, for text extraction purposes it is marked
-                        textBlockIndex++;
-                        // free up some memory along the way. we don't need
-                        // a full stack consume Tf tokens.
-                        stack.clear();
-                    }
-                    // for malformed core docs we need to consume any font
-                    // to ensure we can result toUnicode values.
-                    else if (tok.equals(PdfOps.Tf_TOKEN)) {
-                        consume_Tf(graphicState, stack, resources);
+            // loop through each operator returned form the parser, names
+            // and numbers and every thing else are collected on the stack
+            Lexer lexer = parser.getLexer();
+            OperandStack stack = new OperandStack();
+            while (true) {
+                int operator = nextOperator(parser, lexer, stack);
+
+                if (operator == PdfOps.BT_OP) {
+                    // start parseText, which parses until ET is reached
+                    parseText(parser, shapes, true, extractedText);
+                    // This is the end of a text block, for text extraction purposes it is marked
+                    textBlockIndex++;
+                    // free up some memory along the way. we don't need
+                    // a full stack consume Tf tokens.
+                    stack.clear();
+                }
+                // for malformed core docs we need to consume any font
+                // to ensure we can result toUnicode values.
+                else if (operator == PdfOps.Tf_OP) {
+                    consume_Tf(graphicState, stack, resources);
+                    stack.clear();
+                }
+                // character positions need the CTM
+                else if (followGraphicsState) {
+                    if (operator == PdfOps.q_OP) {
+                        graphicState = consume_q(graphicState);
+                    } else if (operator == PdfOps.Q_OP) {
+                        graphicState = consume_Q(graphicState, shapes);
+                    } else if (operator == PdfOps.cm_OP) {
+                        consume_cm(graphicState, stack, inTextBlock, textBlockBase);
                         stack.clear();
                     }
-                } else {
-                    stack.push(tok);
                 }
-                tok = parser.getStreamObject();
             }
-            // clear our temporary stack. 
-            stack.clear();
         } catch (IOException e) {
             // eat the result as it a normal occurrence
             logger.finer("End of Content Stream");
@@ -962,6 +998,50 @@ public class ContentParser {
         return extractedText;
     }
 
+    /**
+     * Extracts text like {@link #parseTextBlocks(InputStream)} and collects the
+     * position of every extracted character.  The bounds vector gets one
+     * entry per character of the returned text blocks, taken in order, with
+     * the glyph's bounds in user space or null for the spaces and line breaks
+     * added between runs of text.
+     *
+     * @param source     content stream source.
+     * @param textBounds vector the character bounds are added to.
+     * @return vector where each entry is the text extracted from a text block.
+     */
+    public Vector<StringBuffer> parseTextBlocks(InputStream source,
+                                                Vector<Rectangle2D.Float> textBounds) {
+        extractedTextBounds = textBounds;
+        followGraphicsState = textBounds != null;
+        try {
+            return parseTextBlocks(source);
+        } finally {
+            extractedTextBounds = null;
+            followGraphicsState = false;
+        }
+    }
+
+    /**
+     * Extracts text like {@link #parseTextBlocks(InputStream)}, optionally
+     * following the q, Q and cm operators as
+     * {@link #parseTextBlocks(InputStream, Vector)} does, so the text is the
+     * same as the text extracted with character positions without the cost
+     * of working out the position of every character.
+     *
+     * @param source              content stream source.
+     * @param followGraphicsState true to follow the q, Q and cm operators.
+     * @return vector where each entry is the text extracted from a text block.
+     */
+    public Vector<StringBuffer> parseTextBlocks(InputStream source,
+                                                boolean followGraphicsState) {
+        this.followGraphicsState = followGraphicsState;
+        try {
+            return parseTextBlocks(source);
+        } finally {
+            this.followGraphicsState = false;
+        }
+    }
+
     /**
      * Adds extracted text to the this object for central storage.
      *
@@ -969,6 +1049,16 @@ public class ContentParser {
      */
     public final void addExtractedText(Vector<StringBuffer> textObjects,
                                        StringBuffer s) {
+        addExtractedText(textObjects, s, null);
+    }
+
+    private void addExtractedText(Vector<StringBuffer> textObjects,
+                                  StringBuffer s, Rectangle2D.Float bounds) {
+        if (extractedTextBounds != null) {
+            for (int i = s.length(); i > 0; i--) {
+                extractedTextBounds.add(bounds);
+            }
+        }
 
         // check if the the vector is empty
         if (textObjects.isEmpty()) {
@@ -988,6 +1078,29 @@ public class ContentParser {
         }
     }
 
+    /**
+     * Gets the bounds of a glyph in user space, from its position and advance
+     * in text space and the font's ascent and descent.
+     */
+    private Rectangle2D.Float getGlyphBounds(FontFile font, float x, float y,
+                                             float advance) {
+        float ascent = (float) font.getAscent();
+        float descent = (float) font.getDescent();
+        if (ascent + descent <= 0) {
+            ascent = font.getSize();
+            descent = 0;
+        }
+        // text space is flipped, so the ascent is above y
+        Rectangle2D.Float glyph = new Rectangle2D.Float(
+                Math.min(x, x + advance), y - ascent,
+                Math.abs(advance), ascent + descent);
+        Rectangle2D bounds = graphicState.getCTM()
+                .createTransformedShape(glyph).getBounds2D();
+        return new Rectangle2D.Float((float) bounds.getX(),
+                (float) bounds.getY(), (float) bounds.getWidth(),
+                (float) bounds.getHeight());
+    }
+
     /**
      * Parses Text found with in a BT block.
      *
@@ -1001,8 +1114,12 @@ public class ContentParser {
     void parseText(Parser parser, Shapes shapes,
                    boolean extractText, Vector<StringBuffer> extractedText)
             throws IOException {
-        Object nextToken;
-        Stack stack = new Stack();
+        // the text block's operands are kept apart from the page's
+        if (textStack == null) {
+            textStack = new OperandStack();
+        }
+        OperandStack stack = textStack;
+        stack.clear();
         inTextBlock = true;
         float shift = 0;
         // keeps track of previous text placement so that Compatibility and
@@ -1017,16 +1134,16 @@ public class ContentParser {
         graphicState.getTextState().tlmatrix = new AffineTransform();
         graphicState.scale(1, -1);
 
-        // start parsing of the BT block
-        nextToken = parser.getStreamObject();
-        while (!nextToken.equals("ET")) { // ET - end text object
-            // add names to the stack, save for later parsing, colour state
-            // and graphics state (includes font).
-
-            if (nextToken instanceof String) {
+        // start parsing of the BT block, names are added to the stack and
+        // saved for later parsing, colour state and graphics state
+        // (includes font).
+        Lexer lexer = parser.getLexer();
+        int operator = nextOperator(parser, lexer, stack);
+        while (operator != PdfOps.ET_OP) { // ET - end text object
+            switch (operator) {
 
                 // Normal text token, string, hex
-                if (nextToken.equals(PdfOps.Tj_TOKEN)) {
+                case PdfOps.Tj_OP: {
 //                    collectTokenFrequency(PdfOps.Tj_TOKEN);
                     Object tjValue = stack.pop();
                     StringObject stringObject;
@@ -1054,26 +1171,27 @@ public class ContentParser {
                     if (extractText) {
                         addExtractedText(extractedText, new StringBuffer(" "));
                     }
+                    break;
                 }
 
                 // Character Spacing
-                else if (nextToken.equals(PdfOps.Tc_TOKEN)) {
+                case PdfOps.Tc_OP:
 //                    collectTokenFrequency(PdfOps.Tc_TOKEN);
-                    graphicState.getTextState().cspace = ((Number) stack.pop()).floatValue();
-                }
+                    graphicState.getTextState().cspace = stack.popFloat();
+                    break;
 
                 // Word spacing
-                else if (nextToken.equals(PdfOps.Tw_TOKEN)) {
+                case PdfOps.Tw_OP:
 //                    collectTokenFrequency(PdfOps.Tw_TOKEN);
-                    graphicState.getTextState().wspace = ((Number) stack.pop()).floatValue();
-                }
+                    graphicState.getTextState().wspace = stack.popFloat();
+                    break;
 
                 // move to the start of he next line, offset from the start of the
                 // current line by (tx,ty)*tx
-                else if (nextToken.equals(PdfOps.Td_TOKEN)) {
+                case PdfOps.Td_OP: {
 //                    collectTokenFrequency(PdfOps.Td_TOKEN);
-                    float y = ((Number) stack.pop()).floatValue();
-                    float x = ((Number) stack.pop()).floatValue();
+                    float y = stack.popFloat();
+                    float x = stack.popFloat();
                     graphicState.translate(-shift, 0);
                     shift = 0;
                     previousAdvance = 0;
@@ -1083,6 +1201,7 @@ public class ContentParser {
                     if (extractText) {
                         addExtractedText(extractedText, new StringBuffer("\n"));
                     }
+                    break;
                 }
 
                 /**
@@ -1091,17 +1210,17 @@ public class ContentParser {
                  *        |f3 f4 0|
                  *        |f5 f6 0|
                  */
-                else if (nextToken.equals(PdfOps.Tm_TOKEN)) {
+                case PdfOps.Tm_OP: {
 //                    collectTokenFrequency(PdfOps.Tm_TOKEN);
                     shift = 0;
                     previousAdvance = 0;
                     advance.setLocation(0, 0);
-                    float f6 = ((Number) stack.pop()).floatValue();
-                    float f5 = ((Number) stack.pop()).floatValue();
-                    float f4 = ((Number) stack.pop()).floatValue();
-                    float f3 = ((Number) stack.pop()).floatValue();
-                    float f2 = ((Number) stack.pop()).floatValue();
-                    float f1 = ((Number) stack.pop()).floatValue();
+                    float f6 = stack.popFloat();
+                    float f5 = stack.popFloat();
+                    float f4 = stack.popFloat();
+                    float f3 = stack.popFloat();
+                    float f2 = stack.popFloat();
+                    float f1 = stack.popFloat();
                     AffineTransform af = new AffineTransform(textBlockBase);
                     graphicState.getTextState().tmatrix = new AffineTransform(f1, f2, f3, f4, f5, f6);
                     af.concatenate(graphicState.getTextState().tmatrix);
@@ -1112,15 +1231,16 @@ public class ContentParser {
 //                        if (graphicState.getTextState().tmatrix.getTranslateY() != textBlockBase.getTranslateY() )
 //                        addExtractedText(extractedText, new StringBuffer("\n"));
 //                    }
+                    break;
                 }
 
                 // Font selection
-                else if (nextToken.equals(PdfOps.Tf_TOKEN)) {
+                case PdfOps.Tf_OP:
                     consume_Tf(graphicState, stack, resources);
-                }
+                    break;
 
                 // TJ marks a vector, where.......
-                else if (nextToken.equals(PdfOps.TJ_TOKEN)) {
+                case PdfOps.TJ_OP: {
 //                    collectTokenFrequency(PdfOps.TJ_TOKEN);
 
                     // apply text scaling
@@ -1166,14 +1286,15 @@ public class ContentParser {
                     if (extractText) {
                         addExtractedText(extractedText, new StringBuffer(" "));
                     }
+                    break;
                 }
 
                 // Move to the start of the next line, offset from the start of the
                 // current line by (tx,ty)
-                else if (nextToken.equals(PdfOps.TD_TOKEN)) {
+                case PdfOps.TD_OP: {
 //                    collectTokenFrequency(PdfOps.TD_TOKEN);
-                    float y = ((Number) stack.pop()).floatValue();
-                    float x = ((Number) stack.pop()).floatValue();
+                    float y = stack.popFloat();
+                    float x = stack.popFloat();
                     graphicState.translate(-shift, 0);
                     shift = 0;
                     previousAdvance = 0;
@@ -1183,33 +1304,35 @@ public class ContentParser {
                     if (extractText) {
                         addExtractedText(extractedText, new StringBuffer("\n"));
                     }
+                    break;
                 }
 
                 // Text leading
-                else if (nextToken.equals(PdfOps.TL_TOKEN)) {
+                case PdfOps.TL_OP:
 //                    collectTokenFrequency(PdfOps.TL_TOKEN);
-                    graphicState.getTextState().leading = ((Number) stack.pop()).floatValue();
-                }
+                    graphicState.getTextState().leading = stack.popFloat();
+                    break;
 
                 // Saves Graphics State, should copy the entire  graphics state onto
                 // the graphicsState object's stack
-                else if (nextToken.equals(PdfOps.q_TOKEN)) {
+                case PdfOps.q_OP:
                     graphicState = consume_q(graphicState);
-                }
+                    break;
+
                 // Restore Graphics State, should restore teh entire graphics state
                 // to its former value by popping it from the stack
-                else if (nextToken.equals(PdfOps.Q_TOKEN)) {
+                case PdfOps.Q_OP:
                     graphicState = consume_Q(graphicState, shapes);
-                }
+                    break;
 
                 // Modify the current transformation matrix (CTM) by concatenating the
                 // specified matrix
-                else if (nextToken.equals(PdfOps.cm_TOKEN)) {
+                case PdfOps.cm_OP:
                     consume_cm(graphicState, stack, inTextBlock, textBlockBase);
-                }
+                    break;
 
                 // Move to the start of the next line
-                else if (nextToken.equals(PdfOps.T_STAR_TOKEN)) {
+                case PdfOps.T_STAR_OP:
 //                    collectTokenFrequency(PdfOps.T_STAR_TOKEN);
                     graphicState.translate(-shift, 0);
                     shift = 0;
@@ -1219,98 +1342,94 @@ public class ContentParser {
                     if (extractText) {
                         addExtractedText(extractedText, new StringBuffer("\n"));
                     }
-                } else if (nextToken.equals(PdfOps.BDC_TOKEN)) {
+                    break;
+
+                case PdfOps.BDC_OP:
 //                    collectTokenFrequency(PdfOps.BDC_TOKEN);
                     stack.pop();
                     stack.pop();
-                } else if (nextToken.equals(PdfOps.EMC_TOKEN)) {
+                    break;
+
+                case PdfOps.EMC_OP:
 //                    collectTokenFrequency(PdfOps.EMC_TOKEN);
-                }
+                    break;
 
                 // Sets the specifed parameters in the graphics state.  The gs operand
                 // points to a name resource which should be a an ExtGState object.
                 // The graphics state paramaters in the ExtGState must be concatenated
                 // with the the current graphics state.
-                else if (nextToken.equals(PdfOps.gs_TOKEN)) {
+                case PdfOps.gs_OP:
                     consume_gs(graphicState, stack, resources);
-                }
+                    break;
 
                 // Set the line width in the graphics state
-                else if (nextToken.equals(PdfOps.w_TOKEN) ||
-                        nextToken.equals(PdfOps.LW_TOKEN)) {
+                case PdfOps.w_OP:
+                case PdfOps.LW_OP:
                     consume_w(graphicState, stack, shapes);
-                }
+                    break;
 
                 // Fill Color with ColorSpace
-                else if (nextToken.equals(PdfOps.sc_TOKEN) ||
-                        nextToken.equals(PdfOps.scn_TOKEN)) {
+                case PdfOps.sc_OP:
+                case PdfOps.scn_OP:
                     consume_sc(graphicState, stack, library, resources);
-                }
+                    break;
 
                 // Same as K, but for nonstroking operations.
-                else if (nextToken.equals(PdfOps.k_TOKEN)) { // Fill Color CMYK
+                case PdfOps.k_OP: // Fill Color CMYK
                     consume_k(graphicState, stack, library, resources);
-                }
+                    break;
 
                 // Same as g but for none stroking operations
-                else if (nextToken.equals(PdfOps.g_TOKEN)) {
+                case PdfOps.g_OP:
                     consume_g(graphicState, stack, library, resources);
-                }
+                    break;
 
                 // Sets the flatness tolerance in the graphics state, NOT SUPPORTED
                 // flatness is a number in the range 0 to 100, a value of 0 specifies
                 // the default tolerance
-                else if (nextToken.equals(PdfOps.i_TOKEN)) {
+                case PdfOps.i_OP:
                     consume_i(stack);
-                }
+                    break;
 
                 // Miter Limit
-                else if (nextToken.equals(PdfOps.M_TOKEN)) {
+                case PdfOps.M_OP:
                     consume_M(graphicState, stack, shapes);
-                }
+                    break;
 
                 // Set the line cap style of the graphic state, related to Line Join
                 // style
-                else if (nextToken.equals(PdfOps.J_TOKEN)) {
+                case PdfOps.J_OP:
                     consume_J(graphicState, stack, shapes);
-                }
+                    break;
 
                 // Same as RG, but for nonstroking operations.
-                else if (nextToken.equals(PdfOps.rg_TOKEN)) { // Fill Color RGB
+                case PdfOps.rg_OP: // Fill Color RGB
                     consume_rg(graphicState, stack, library, resources);
-                }
-
-                // Sets the line dash pattern in the graphics state. A normal line
-                // is [] 0.  See Graphics State -> Line dash patter for more information
-                // in the PDF Reference.  Java 2d uses the same notation so there
-                // is not much work to be done other then parsing the data.
-                else if (nextToken.equals(PdfOps.d_TOKEN)) {
-                    consume_d(graphicState, stack, shapes);
-                }
+                    break;
 
                 // Sets the line dash pattern in the graphics state. A normal line
                 // is [] 0.  See Graphics State -> Line dash patter for more information
                 // in the PDF Reference.  Java 2d uses the same notation so there
                 // is not much work to be done other then parsing the data.
-                else if (nextToken.equals(PdfOps.d_TOKEN)) {
+                case PdfOps.d_OP:
                     consume_d(graphicState, stack, shapes);
-                }
+                    break;
 
                 // Set the line join style in the graphics state
-                else if (nextToken.equals(PdfOps.j_TOKEN)) {
+                case PdfOps.j_OP:
                     consume_j(graphicState, stack, shapes);
-                }
+                    break;
 
                 // Same as CS, but for nonstroking operations.
-                else if (nextToken.equals(PdfOps.cs_TOKEN)) {
+                case PdfOps.cs_OP:
                     consume_cs(graphicState, stack, resources);
-                }
+                    break;
 
                 // Set the color rendering intent in the graphics state
-                else if (nextToken.equals("ri")) {
+                case PdfOps.ri_OP:
 //                    collectTokenFrequency(PdfOps.ri_TOKEN);
                     stack.pop();
-                }
+                    break;
 
                 // Set the color to use for stroking operations in a device, CIE-based
                 // (other than ICCBased), or Indexed color space. The number of operands
@@ -1320,10 +1439,10 @@ public class ContentParser {
                 //   - For DeviceRGB, CalRGB, and Lab color spaces, three operands are
                 //     required (n = 3).
                 //   - For DeviceCMYK, four operands are required (n = 4).
-                else if (nextToken.equals(PdfOps.SC_TOKEN) ||
-                        nextToken.equals(PdfOps.SCN_TOKEN)) { // Stroke Color with ColorSpace
+                case PdfOps.SC_OP:
+                case PdfOps.SCN_OP: // Stroke Color with ColorSpace
                     consume_SC(graphicState, stack, library, resources);
-                }
+                    break;
 
                 // Set the stroking color space to DeviceCMYK (or the DefaultCMYK color
                 // space; see "Default Color Spaces" on page 227) and set the color to
@@ -1331,60 +1450,64 @@ public class ContentParser {
                 // 0.0 (zero concentration) and 1.0 (maximum concentration). The
                 // behavior of this operator is affected by the overprint mode
                 // (see Section 4.5.6, "Overprint Control").
-                else if (nextToken.equals(PdfOps.K_TOKEN)) { // Stroke Color CMYK
+                case PdfOps.K_OP: // Stroke Color CMYK
                     consume_K(graphicState, stack, library, resources);
-                }
+                    break;
 
                 // Set the stroking color space to DeviceGray (or the DefaultGray color
                 // space; see "Default Color Spaces" ) and set the gray level to use for
                 // stroking operations. gray is a number between 0.0 (black)
                 // and 1.0 (white).
-                else if (nextToken.equals(PdfOps.G_TOKEN)) {
+                case PdfOps.G_OP:
                     consume_G(graphicState, stack, library, resources);
-                }
+                    break;
 
                 // Set the stroking color space to DeviceRGB (or the DefaultRGB color
                 // space; see "Default Color Spaces" on page 227) and set the color to
                 // use for stroking operations. Each operand must be a number between
                 // 0.0 (minimum intensity) and 1.0 (maximum intensity).
-                else if (nextToken.equals(PdfOps.RG_TOKEN)) { // Stroke Color RGB
+                case PdfOps.RG_OP: // Stroke Color RGB
                     consume_RG(graphicState, stack, library, resources);
-                } else if (nextToken.equals(PdfOps.CS_TOKEN)) {
+                    break;
+
+                case PdfOps.CS_OP:
                     consume_CS(graphicState, stack, resources);
-                }
+                    break;
 
                 // Rendering mode
-                else if (nextToken.equals(PdfOps.Tr_TOKEN)) {
+                case PdfOps.Tr_OP:
 //                    collectTokenFrequency(PdfOps.Tr_TOKEN);
-                    graphicState.getTextState().rmode = (int) ((Number) stack.pop()).floatValue();
-                }
+                    graphicState.getTextState().rmode = (int) stack.popFloat();
+                    break;
 
                 // Horizontal scalling
-                else if (nextToken.equals(PdfOps.Tz_TOKEN)) {
+                case PdfOps.Tz_OP:
 //                    collectTokenFrequency(PdfOps.Tz_TOKEN);
                     consume_Tz(graphicState, stack);
-                }
+                    break;
 
                 // Text rise
-                else if (nextToken.equals(PdfOps.Ts_TOKEN)) {
+                case PdfOps.Ts_OP:
 //                    collectTokenFrequency(PdfOps.Ts_TOKEN);
-                    graphicState.getTextState().trise = ((Number) stack.pop()).floatValue();
-                }
+                    graphicState.getTextState().trise = stack.popFloat();
+                    break;
 
                 /**
                  * Begin a compatibility section. Unrecognized operators (along with
                  * their operands) will be ignored without error until the balancing
                  * EX operator is encountered.
                  */
-                else if (nextToken.equals(PdfOps.BX_TOKEN)) {
+                case PdfOps.BX_OP:
 //                    collectTokenFrequency(PdfOps.BX_TOKEN);
-                }
-//                 End a compatibility section begun by a balancing BX operator.
-                else if (nextToken.equals(PdfOps.EX_TOKEN)) {
+                    break;
+
+                //                 End a compatibility section begun by a balancing BX operator.
+                case PdfOps.EX_OP:
 //                    collectTokenFrequency(PdfOps.EX_TOKEN);
-                }
+                    break;
+
                 // Move to the next line and show a text string.
-                else if (nextToken.equals(PdfOps.SINGLE_QUOTE_TOKEN)) {
+                case PdfOps.SINGLE_QUOTE_OP: {
 //                    collectTokenFrequency(PdfOps.SINGLE_QUOTE_TOKEN);
                     graphicState.translate(-shift, graphicState.getTextState().leading);
 
@@ -1409,18 +1532,20 @@ public class ContentParser {
                     if (extractText) {
                         addExtractedText(extractedText, new StringBuffer("\n"));
                     }
+                    break;
                 }
+
                 /**
                  * Move to the next line and show a text string, using aw as the
                  * word spacing and ac as the character spacing (setting the
                  * corresponding parameters in the text state). aw and ac are
                  * numbers expressed in unscaled text space units.
                  */
-                else if (nextToken.equals(PdfOps.DOUBLE_QUOTE__TOKEN)) {
+                case PdfOps.DOUBLE_QUOTE_OP: {
 //                    collectTokenFrequency(PdfOps.DOUBLE_QUOTE__TOKEN);
                     StringObject stringObject = (StringObject) stack.pop();
-                    graphicState.getTextState().cspace = ((Number) stack.pop()).floatValue();
-                    graphicState.getTextState().wspace = ((Number) stack.pop()).floatValue();
+                    graphicState.getTextState().cspace = stack.popFloat();
+                    graphicState.getTextState().wspace = stack.popFloat();
                     graphicState.translate(-shift, graphicState.getTextState().leading);
 
                     // apply text scaling
@@ -1442,16 +1567,10 @@ public class ContentParser {
                     if (extractText) {
                         addExtractedText(extractedText, new StringBuffer("\n"));
                     }
+                    break;
                 }
-
-
-            }
-            // push everything else on the stack for consumptions
-            else {
-                stack.push(nextToken);
             }
-
-            nextToken = parser.getStreamObject();
+            operator = nextOperator(parser, lexer, stack);
         }
         // add a cr when we get to the end of a text block
         if (extractText) {
@@ -1469,6 +1588,48 @@ public class ContentParser {
         inTextBlock = false;
     }
 
+    /**
+     * Reads tokens up to the next operator, pushing its operands onto the
+     * stack.  Numbers go onto the stack as primitives, arrays and dictionaries
+     * are parsed into Vectors and Hashtables.
+     *
+     * @param parser parser of the content stream.
+     * @param lexer  lexer of the parser.
+     * @param stack  operand stack.
+     * @return operator code of the next operator, see {@link PdfOps}, or
+     *         PdfOps.NO_OP for an unknown operator or stray delimiter.
+     * @throws IOException end of content stream is found
+     */
+    private static int nextOperator(Parser parser, Lexer lexer,
+                                    OperandStack stack) throws IOException {
+        while (true) {
+            switch (lexer.nextToken()) {
+                case Lexer.TOKEN_INTEGER:
+                    stack.pushInteger(lexer.getIntValue());
+                    break;
+                case Lexer.TOKEN_REAL:
+                    stack.pushReal(lexer.getFloatValue());
+                    break;
+                case Lexer.TOKEN_NAME:
+                    stack.push(lexer.getName());
+                    break;
+                case Lexer.TOKEN_ARRAY_START:
+                case Lexer.TOKEN_DICTIONARY_START:
+                    stack.push(parser.getStreamObject(lexer.getKeyword()));
+                    break;
+                case Lexer.TOKEN_LITERAL_STRING:
+                case Lexer.TOKEN_HEX_STRING:
+                    stack.push(parser.getTokenObject());
+                    break;
+                case Lexer.TOKEN_KEYWORD:
+                    return lexer.getOperator();
+                default:
+                    // comments and unbalanced delimiters
+                    return PdfOps.NO_OP;
+            }
+        }
+    }
+
     void parseInlineImage(Parser p, Shapes shapes) throws IOException {
         try {
             //int width = 0, height = 0, bitspercomponent = 0;
@@ -1548,32 +1709,32 @@ public class ContentParser {
         }
     }
 
-    private static void consume_G(GraphicsState graphicState, Stack stack,
+    private static void consume_G(GraphicsState graphicState, OperandStack stack,
                                   Library library, Resources resources) {
 //        collectTokenFrequency(PdfOps.G_TOKEN);
-        float gray = ((Number) stack.pop()).floatValue();
+        float gray = stack.popFloat();
         // Stroke Color Gray
         graphicState.setStrokeColorSpace(
                 PColorSpace.getColorSpace(library, new Name("DeviceGray")));
         graphicState.setStrokeColor(new Color(gray, gray, gray));
     }
 
-    private static void consume_g(GraphicsState graphicState, Stack stack,
+    private static void consume_g(GraphicsState graphicState, OperandStack stack,
                                   Library library, Resources resources) {
 //        collectTokenFrequency(PdfOps.g_TOKEN);
-        float gray = ((Number) stack.pop()).floatValue();
+        float gray = stack.popFloat();
         // Fill Color Gray
         graphicState.setFillColorSpace(
                 PColorSpace.getColorSpace(library, new Name("DeviceGray")));
         graphicState.setFillColor(new Color(gray, gray, gray));
     }
 
-    private static void consume_RG(GraphicsState graphicState, Stack stack,
+    private static void consume_RG(GraphicsState graphicState, OperandStack stack,
                                    Library library, Resources resources) {
 //        collectTokenFrequency(PdfOps.RG_TOKEN);
-        float b = ((Number) stack.pop()).floatValue();
-        float gg = ((Number) stack.pop()).floatValue();
-        float r = ((Number) stack.pop()).floatValue();
+        float b = stack.popFloat();
+        float gg = stack.popFloat();
+        float r = stack.popFloat();
         b = Math.max(0.0f, Math.min(1.0f, b));
         gg = Math.max(0.0f, Math.min(1.0f, gg));
         r = Math.max(0.0f, Math.min(1.0f, r));
@@ -1583,12 +1744,12 @@ public class ContentParser {
         graphicState.setStrokeColor(new Color(r, gg, b));
     }
 
-    private static void consume_rg(GraphicsState graphicState, Stack stack,
+    private static void consume_rg(GraphicsState graphicState, OperandStack stack,
                                    Library library, Resources resources) {
 //        collectTokenFrequency(PdfOps.rg_TOKEN);
-        float b = ((Number) stack.pop()).floatValue();
-        float gg = ((Number) stack.pop()).floatValue();
-        float r = ((Number) stack.pop()).floatValue();
+        float b = stack.popFloat();
+        float gg = stack.popFloat();
+        float r = stack.popFloat();
         b = Math.max(0.0f, Math.min(1.0f, b));
         gg = Math.max(0.0f, Math.min(1.0f, gg));
         r = Math.max(0.0f, Math.min(1.0f, r));
@@ -1598,13 +1759,13 @@ public class ContentParser {
         graphicState.setFillColor(new Color(r, gg, b));
     }
 
-    private static void consume_K(GraphicsState graphicState, Stack stack,
+    private static void consume_K(GraphicsState graphicState, OperandStack stack,
                                   Library library, Resources resources) {
 //        collectTokenFrequency(PdfOps.K_TOKEN);
-        float k = ((Number) stack.pop()).floatValue();
-        float y = ((Number) stack.pop()).floatValue();
-        float m = ((Number) stack.pop()).floatValue();
-        float c = ((Number) stack.pop()).floatValue();
+        float k = stack.popFloat();
+        float y = stack.popFloat();
+        float m = stack.popFloat();
+        float c = stack.popFloat();
 //        float r = 0, gg = 0, b = 0;
 //        if ((c + k) <= 1.0)
 //            r = 1 - (c + k);
@@ -1621,13 +1782,13 @@ public class ContentParser {
         graphicState.setStrokeColor(pColorSpace.getColor(PColorSpace.reverse(new float[]{c, m, y, k})));
     }
 
-    private static void consume_k(GraphicsState graphicState, Stack stack,
+    private static void consume_k(GraphicsState graphicState, OperandStack stack,
                                   Library library, Resources resources) {
 //        collectTokenFrequency(PdfOps.k_TOKEN);
-        float k = ((Number) stack.pop()).floatValue();
-        float y = ((Number) stack.pop()).floatValue();
-        float m = ((Number) stack.pop()).floatValue();
-        float c = ((Number) stack.pop()).floatValue();
+        float k = stack.popFloat();
+        float y = stack.popFloat();
+        float m = stack.popFloat();
+        float c = stack.popFloat();
 //        float r = 0, gg = 0, b = 0;
 //        if ((c + k) <= 1.0)
 //            r = 1 - (c + k);
@@ -1645,7 +1806,7 @@ public class ContentParser {
         graphicState.setFillColor(pColorSpace.getColor(PColorSpace.reverse(new float[]{c, m, y, k})));
     }
 
-    private static void consume_CS(GraphicsState graphicState, Stack stack, Resources resources) {
+    private static void consume_CS(GraphicsState graphicState, OperandStack stack, Resources resources) {
 //        collectTokenFrequency(PdfOps.CS_TOKEN);
         Name n = (Name) stack.pop();
         // Fill Color ColorSpace, resources call uses factory call to PColorSpace.getColorSpace
@@ -1653,7 +1814,7 @@ public class ContentParser {
         graphicState.setStrokeColorSpace(resources.getColorSpace(n));
     }
 
-    private static void consume_cs(GraphicsState graphicState, Stack stack, Resources resources) {
+    private static void consume_cs(GraphicsState graphicState, OperandStack stack, Resources resources) {
 //        collectTokenFrequency(PdfOps.cs_TOKEN);
         Name n = (Name) stack.pop();
         // Fill Color ColorSpace, resources call uses factory call to PColorSpace.getColorSpace
@@ -1661,7 +1822,7 @@ public class ContentParser {
         graphicState.setFillColorSpace(resources.getColorSpace(n));
     }
 
-    private static void consume_SC(GraphicsState graphicState, Stack stack,
+    private static void consume_SC(GraphicsState graphicState, OperandStack stack,
                                    Library library, Resources resources) {
 //        collectTokenFrequency(PdfOps.SC_TOKEN);
 //        collectTokenFrequency(PdfOps.SCN_TOKEN);
@@ -1698,9 +1859,9 @@ public class ContentParser {
                     // next calculate the colour based ont he space and c1..Cn
                     float colour[] = new float[compLength];
                     // peek and pop all of the colour floats
-                    while (!stack.isEmpty() && stack.peek() instanceof Number &&
+                    while (!stack.isEmpty() && stack.isNumber() &&
                             nCount < compLength) {
-                        colour[nCount] = ((Number) stack.pop()).floatValue();
+                        colour[nCount] = stack.popFloat();
                         nCount++;
                     }
                     tilingPattern.setUnColored(
@@ -1723,9 +1884,9 @@ public class ContentParser {
             int compLength = 4;
             float colour[] = new float[compLength];
             // peek and pop all of the colour floats
-            while (!stack.isEmpty() && stack.peek() instanceof Number &&
+            while (!stack.isEmpty() && stack.isNumber() &&
                     nCount < compLength) {
-                colour[nCount] = ((Number) stack.pop()).floatValue();
+                colour[nCount] = stack.popFloat();
                 nCount++;
             }
 
@@ -1743,7 +1904,7 @@ public class ContentParser {
     }
 
 
-    private static void consume_sc(GraphicsState graphicState, Stack stack,
+    private static void consume_sc(GraphicsState graphicState, OperandStack stack,
                                    Library library, Resources resources) {
 //        collectTokenFrequency(PdfOps.sc_TOKEN);
 //        collectTokenFrequency(PdfOps.scn_TOKEN);
@@ -1780,9 +1941,9 @@ public class ContentParser {
                     // next calculate the colour based ont he space and c1..Cn
                     float colour[] = new float[compLength];
                     // peek and pop all of the colour floats
-                    while (!stack.isEmpty() && stack.peek() instanceof Number &&
+                    while (!stack.isEmpty() && stack.isNumber() &&
                             nCount < compLength) {
-                        colour[nCount] = ((Number) stack.pop()).floatValue();
+                        colour[nCount] = stack.popFloat();
                         nCount++;
                     }
                     // fill colour to be used when painting. 
@@ -1804,9 +1965,9 @@ public class ContentParser {
             int compLength = 4;
             float colour[] = new float[compLength];
             // peek and pop all of the colour floats
-            while (!stack.isEmpty() && stack.peek() instanceof Number &&
+            while (!stack.isEmpty() && stack.isNumber() &&
                     nCount < compLength) {
-                colour[nCount] = ((Number) stack.pop()).floatValue();
+                colour[nCount] = stack.popFloat();
                 nCount++;
             }
 
@@ -1847,15 +2008,15 @@ public class ContentParser {
         return graphicState;
     }
 
-    private static void consume_cm(GraphicsState graphicState, Stack stack,
+    private static void consume_cm(GraphicsState graphicState, OperandStack stack,
                                    boolean inTextBlock, AffineTransform textBlockBase) {
 //        collectTokenFrequency(PdfOps.cm_TOKEN);
-        float f = ((Number) stack.pop()).floatValue();
-        float e = ((Number) stack.pop()).floatValue();
-        float d = ((Number) stack.pop()).floatValue();
-        float c = ((Number) stack.pop()).floatValue();
-        float b = ((Number) stack.pop()).floatValue();
-        float a = ((Number) stack.pop()).floatValue();
+        float f = stack.popFloat();
+        float e = stack.popFloat();
+        float d = stack.popFloat();
+        float c = stack.popFloat();
+        float b = stack.popFloat();
+        float a = stack.popFloat();
         if (!inTextBlock) {
             // get the current CTM
             AffineTransform af = new AffineTransform(graphicState.getCTM());
@@ -1871,15 +2032,15 @@ public class ContentParser {
         }
     }
 
-    private static void consume_i(Stack stack) {
+    private static void consume_i(OperandStack stack) {
 //        collectTokenFrequency(PdfOps.i_TOKEN);
         stack.pop();
     }
 
-    private static void consume_J(GraphicsState graphicState, Stack stack, Shapes shapes) {
+    private static void consume_J(GraphicsState graphicState, OperandStack stack, Shapes shapes) {
 //        collectTokenFrequency(PdfOps.J_TOKEN);
         // get the value from the stack
-        graphicState.setLineCap((int) (((Number) stack.pop()).floatValue()));
+        graphicState.setLineCap((int) (stack.popFloat()));
         // Butt cap, stroke is squared off at the endpoint of the path
         // there is no projection beyond the end of the path
         if (graphicState.getLineCap() == 0) {
@@ -1901,13 +2062,13 @@ public class ContentParser {
         setStroke(shapes, graphicState);
     }
 
-    private static void consume_d(GraphicsState graphicState, Stack stack, Shapes shapes) {
+    private static void consume_d(GraphicsState graphicState, OperandStack stack, Shapes shapes) {
 //        collectTokenFrequency(PdfOps.d_TOKEN);
         float dashPhase;
         float[] dashArray;
         try {
             // pop dashPhase off the stack
-            dashPhase = ((Number) stack.pop()).floatValue();
+            dashPhase = stack.popFloat();
             // pop the dashVector of the stack
             Vector dashVector = (Vector) stack.pop();
             // if the dash vector size is zero we have a default none dashed
@@ -1938,10 +2099,10 @@ public class ContentParser {
         setStroke(shapes, graphicState);
     }
 
-    private static void consume_j(GraphicsState graphicState, Stack stack, Shapes shapes) {
+    private static void consume_j(GraphicsState graphicState, OperandStack stack, Shapes shapes) {
 //        collectTokenFrequency(PdfOps.j_TOKEN);
         // grab the value
-        graphicState.setLineJoin((int) (((Number) stack.pop()).floatValue()));
+        graphicState.setLineJoin((int) (stack.popFloat()));
         // Miter Join - the outer edges of the strokes for the two
         // segments are extended until they meet at an angle, like a picture
         // frame
@@ -1963,20 +2124,20 @@ public class ContentParser {
         setStroke(shapes, graphicState);
     }
 
-    private static void consume_w(GraphicsState graphicState, Stack stack, Shapes shapes) {
+    private static void consume_w(GraphicsState graphicState, OperandStack stack, Shapes shapes) {
 //        collectTokenFrequency(PdfOps.w_TOKEN);
 //        collectTokenFrequency(PdfOps.LW_TOKEN);
-        graphicState.setLineWidth(((Number) stack.pop()).floatValue());
+        graphicState.setLineWidth(stack.popFloat());
         setStroke(shapes, graphicState);
     }
 
-    private static void consume_M(GraphicsState graphicState, Stack stack, Shapes shapes) {
+    private static void consume_M(GraphicsState graphicState, OperandStack stack, Shapes shapes) {
 //        collectTokenFrequency(PdfOps.M_TOKEN);
-        graphicState.setMiterLimit(((Number) stack.pop()).floatValue());
+        graphicState.setMiterLimit(stack.popFloat());
         setStroke(shapes, graphicState);
     }
 
-    private static void consume_gs(GraphicsState graphicState, Stack stack, Resources resources) {
+    private static void consume_gs(GraphicsState graphicState, OperandStack stack, Resources resources) {
 //        collectTokenFrequency(PdfOps.gs_TOKEN);
         Object gs = stack.pop();
         if (gs instanceof Name) {
@@ -1989,11 +2150,11 @@ public class ContentParser {
         }
     }
 
-    private static void consume_Tf(GraphicsState graphicState, Stack stack, Resources resources) {
+    private static void consume_Tf(GraphicsState graphicState, OperandStack stack, Resources resources) {
 //        collectTokenFrequency(PdfOps.Tf_TOKEN);
         //graphicState.translate(-shift,0);
         //shift=0;
-        float size = ((Number) stack.pop()).floatValue();
+        float size = stack.popFloat();
         Name name2 = (Name) stack.pop();
         // build the new font and initialize it.
         graphicState.getTextState().font = resources.getFont(name2.getName());
@@ -2001,12 +2162,12 @@ public class ContentParser {
                 graphicState.getTextState().font.getFont().deriveFont(size);
     }
 
-    private static void consume_Tc(GraphicsState graphicState, Stack stack) {
+    private static void consume_Tc(GraphicsState graphicState, OperandStack stack) {
 //        collectTokenFrequency(PdfOps.Tc_TOKEN);
-        graphicState.getTextState().cspace = ((Number) stack.pop()).floatValue();
+        graphicState.getTextState().cspace = stack.popFloat();
     }
 
-    private static void consume_Tz(GraphicsState graphicState, Stack stack) {
+    private static void consume_Tz(GraphicsState graphicState, OperandStack stack) {
 //        collectTokenFrequency(PdfOps.Tz_TOKEN);
         Object ob = stack.pop();
         if (ob instanceof Number) {
@@ -2016,24 +2177,24 @@ public class ContentParser {
         }
     }
 
-    private static void consume_Tw(GraphicsState graphicState, Stack stack) {
+    private static void consume_Tw(GraphicsState graphicState, OperandStack stack) {
 //        collectTokenFrequency(PdfOps.Tw_TOKEN);
-        graphicState.getTextState().wspace = ((Number) stack.pop()).floatValue();
+        graphicState.getTextState().wspace = stack.popFloat();
     }
 
-    private static void consume_Tr(GraphicsState graphicState, Stack stack) {
+    private static void consume_Tr(GraphicsState graphicState, OperandStack stack) {
 //        collectTokenFrequency(PdfOps.Tr_TOKEN);
-        graphicState.getTextState().rmode = (int) ((Number) stack.pop()).floatValue();
+        graphicState.getTextState().rmode = (int) stack.popFloat();
     }
 
-    private static void consume_TL(GraphicsState graphicState, Stack stack) {
+    private static void consume_TL(GraphicsState graphicState, OperandStack stack) {
 //        collectTokenFrequency(PdfOps.TL_TOKEN);
-        graphicState.getTextState().leading = ((Number) stack.pop()).floatValue();
+        graphicState.getTextState().leading = stack.popFloat();
     }
 
-    private static void consume_Ts(GraphicsState graphicState, Stack stack) {
+    private static void consume_Ts(GraphicsState graphicState, OperandStack stack) {
 //        collectTokenFrequency(PdfOps.Ts_TOKEN);
-        graphicState.getTextState().trise = ((Number) stack.pop()).floatValue();
+        graphicState.getTextState().trise = stack.popFloat();
     }
 
     /**
@@ -2143,15 +2304,22 @@ public class ContentParser {
                 // check char value from the unicode mpa and if not we just use the character code. 
                 int charValue = isToUnicode ? textState.currentfont.getToUnicode()
                         .toSelector(unmodifiedDisplayText.charAt(i)) : currentChar;
+                Rectangle2D.Float bounds = null;
+                if (extractedTextBounds != null) {
+                    bounds = getGlyphBounds(currentFont, currentX, currentY,
+                            newAdvanceX);
+                }
                 // add regular ascii
                 if (charValue <= 255) {
                     addExtractedText(extractedTextVector,
-                            new StringBuffer(String.valueOf((char) charValue)));
+                            new StringBuffer(String.valueOf((char) charValue)),
+                            bounds);
                 }
                 // add Unicode
                 else {
                     addExtractedText(extractedTextVector,
-                            new StringBuffer("\\U" + Integer.toHexString(charValue)));
+                            new StringBuffer("\\U" + Integer.toHexString(charValue)),
+                            bounds);
                 }
             }
 
@@ -0,0 +1,424 @@
+/*
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * "The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations under
+ * the License.
+ *
+ * The Original Code is ICEpdf 3.0 open source software code, released
+ * May 1st, 2009. The Initial Developer of the Original Code is ICEsoft
+ * Technologies Canada, Corp. Portions created by ICEsoft are Copyright (C)
+ * 2004-2009 ICEsoft Technologies Canada, Corp. All Rights Reserved.
+ *
+ * Contributor(s): _____________________.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"
+ * License), in which case the provisions of the LGPL License are
+ * applicable instead of those above. If you wish to allow use of your
+ * version of this file only under the terms of the LGPL License and not to
+ * allow others to use your version of this file under the MPL, indicate
+ * your decision by deleting the provisions above and replace them with
+ * the notice and other provisions required by the LGPL License. If you do
+ * not delete the provisions above, a recipient may use your version of
+ * this file under either the MPL or the LGPL License."
+ *
+ */
+package org.icepdf.core.util;
+
+import org.icepdf.core.pobjects.Form;
+import org.icepdf.core.pobjects.Resources;
+import org.icepdf.core.pobjects.graphics.DeviceCMYK;
+import org.icepdf.core.pobjects.graphics.DeviceGray;
+import org.icepdf.core.pobjects.graphics.DeviceRGB;
+import org.icepdf.core.pobjects.graphics.GraphicsState;
+import org.icepdf.core.pobjects.graphics.PColorSpace;
+import org.icepdf.core.pobjects.graphics.Shapes;
+import org.icepdf.core.pobjects.graphics.TextState;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the parsed Shapes of the document's Form XObjects, so a form drawn
+ * on many pages, or many times on one page, is only parsed once for each
+ * graphics state it is drawn with.
+ * <p/>
+ * A form's content stream starts with a new CTM and no clip, so its Shapes
+ * only depend on the form, the resources it is parsed with and the drawing
+ * attributes of the graphics state that invokes it, which together make up
+ * the key of a cache entry.  A form's Shapes are only kept once they are
+ * asked for a second time, and the least recently used ones are dropped
+ * once their estimated size exceeds the limit, or when the MemoryManager
+ * finds that memory is low.
+ *
+ * @since 3.1
+ */
+public class FormCache implements MemoryManagerDelegate {
+
+    // most bytes of form shapes kept by a document, set by the system
+    // property org.icepdf.core.formcache.maxBytes
+    private static int maxFormBytes;
+
+    // number of form uses remembered while waiting for a second use.
+    private static final int MAX_SEEN = 1024;
+
+    static {
+        maxFormBytes = Defs.sysPropertyInt(
+                "org.icepdf.core.formcache.maxBytes", 8388608);
+    }
+
+    private Library library;
+    // form shapes in access order, with their estimated sizes
+    private LinkedHashMap<Key, Entry> leastRecentlyUsed;
+    // keys that have been parsed once, but not kept yet
+    private LinkedHashMap<Key, Key> seen;
+    private long formBytes;
+    private long formHits;
+    private long formMisses;
+    private long formEvictions;
+
+    public FormCache(Library library) {
+        this.library = library;
+        leastRecentlyUsed = new LinkedHashMap<Key, Entry>(64, 0.75f, true);
+        seen = new LinkedHashMap<Key, Key>(64, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Key, Key> eldest) {
+                return size() > MAX_SEEN;
+            }
+        };
+    }
+
+    /**
+     * Builds the cache key of a form drawn with the given graphics state.
+     *
+     * @param form          form being drawn.
+     * @param resources     resources the form content is parsed with, when the
+     *                      form has none of its own, otherwise null.
+     * @param graphicsState graphics state the form content is parsed with.
+     * @return key for the form shapes, or null if they can't be cached.
+     */
+    public Object getKey(Form form, Resources resources,
+                         GraphicsState graphicsState) {
+        if (maxFormBytes <= 0 || form == null) {
+            return null;
+        }
+        return new Key(form, resources, graphicsState);
+    }
+
+    /**
+     * Gets the shapes kept for the given key.
+     *
+     * @param key key returned by getKey().
+     * @return kept shapes, or null if none are kept for the key.
+     */
+    public synchronized Shapes get(Object key) {
+        if (key == null || leastRecentlyUsed == null) {
+            return null;
+        }
+        // get() moves the entry to the most recently used end
+        Entry entry = leastRecentlyUsed.get(key);
+        if (entry != null) {
+            formHits++;
+            return entry.shapes;
+        }
+        formMisses++;
+        return null;
+    }
+
+    /**
+     * Records the shapes parsed for the given key.  They are kept if the key
+     * has been parsed before and memory isn't low, and the least recently
+     * used shapes are dropped to keep within the byte limit.
+     *
+     * @param key    key returned by getKey().
+     * @param shapes shapes parsed for the key.
+     * @return true, if the shapes are kept; false, otherwise.
+     */
+    public synchronized boolean put(Object key, Shapes shapes) {
+        if (key == null || shapes == null || leastRecentlyUsed == null) {
+            return false;
+        }
+        Key formKey = (Key) key;
+        // a form that is only drawn once gains nothing from being kept
+        if (seen.remove(formKey) == null) {
+            seen.put(formKey, formKey);
+            return false;
+        }
+        long size = shapes.getMemorySize();
+        if (size > maxFormBytes ||
+                (library.memoryManager != null &&
+                        library.memoryManager.isLowMemory())) {
+            return false;
+        }
+        Entry previous = leastRecentlyUsed.put(formKey, new Entry(shapes, size));
+        if (previous != null) {
+            formBytes -= previous.size;
+        }
+        formBytes += size;
+        Iterator<Entry> eldest = leastRecentlyUsed.values().iterator();
+        while (formBytes > maxFormBytes && eldest.hasNext()) {
+            Entry entry = eldest.next();
+            eldest.remove();
+            formBytes -= entry.size;
+            formEvictions++;
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of form draws whose shapes were kept.
+     *
+     * @return form cache hits.
+     */
+    public synchronized long getFormHits() {
+        return formHits;
+    }
+
+    /**
+     * Gets the number of form draws that had to parse the form content.
+     *
+     * @return form cache misses.
+     */
+    public synchronized long getFormMisses() {
+        return formMisses;
+    }
+
+    /**
+     * Gets the number of form shapes dropped, to keep within the byte limit,
+     * or when memory was low.
+     *
+     * @return form cache evictions.
+     */
+    public synchronized long getFormEvictions() {
+        return formEvictions;
+    }
+
+    /**
+     * Gets the estimated number of bytes of form shapes currently kept.
+     *
+     * @return form shape bytes.
+     */
+    public synchronized long getFormBytes() {
+        return formBytes;
+    }
+
+    public synchronized boolean reduceMemory(int reductionPolicy) {
+        if (leastRecentlyUsed == null)
+            return false;
+        int lruSize = leastRecentlyUsed.size();
+        int numToDo = 0;
+        if (reductionPolicy == MemoryManagerDelegate.REDUCE_AGGRESSIVELY) {
+            numToDo = lruSize;
+        } else if (reductionPolicy == MemoryManagerDelegate.REDUCE_SOMEWHAT) {
+            if (lruSize > 5)
+                numToDo = lruSize * 50 / 100;
+            else if (lruSize > 0)
+                numToDo = 1;
+        }
+        Iterator<Entry> eldest = leastRecentlyUsed.values().iterator();
+        for (int i = 0; i < numToDo && eldest.hasNext(); i++) {
+            Entry entry = eldest.next();
+            eldest.remove();
+            formBytes -= entry.size;
+            formEvictions++;
+        }
+        return numToDo > 0;
+    }
+
+    /**
+     * Get the documents library object.
+     *
+     * @return documents library object.
+     */
+    public Library getLibrary() {
+        return library;
+    }
+
+    /**
+     * Drops all the kept form shapes.  The shapes themselves aren't disposed
+     * as pages may still be painting them.
+     */
+    public synchronized void dispose() {
+        if (leastRecentlyUsed != null) {
+            leastRecentlyUsed.clear();
+            leastRecentlyUsed = null;
+        }
+        seen.clear();
+        formBytes = 0;
+    }
+
+    /**
+     * Kept shapes and their estimated size.
+     */
+    private static class Entry {
+        private Shapes shapes;
+        private long size;
+
+        private Entry(Shapes shapes, long size) {
+            this.shapes = shapes;
+            this.size = size;
+        }
+    }
+
+    /**
+     * The form, resources and graphics state attributes which the parsed
+     * shapes of a form depend on.  The CTM and clip aren't part of it as
+     * the content parser resets both for a form.  Extended graphics states
+     * are folded into the line, alpha and overprint attributes by the time
+     * a form is parsed, so they are covered too.  Colour spaces, fonts and
+     * resources are compared by identity, as the library hands out one
+     * instance of each, other than the device colour spaces.
+     */
+    private static class Key {
+        private Form form;
+        private Resources resources;
+        private int lineCap;
+        private float lineWidth;
+        private int lineJoin;
+        private float miterLimit;
+        private float[] dashArray;
+        private float dashPhase;
+        private int fillColor;
+        private int strokeColor;
+        private float fillAlpha;
+        private float strokeAlpha;
+        private Object fillColorSpace;
+        private Object strokeColorSpace;
+        private int overprintMode;
+        private boolean overprintStroking;
+        private boolean overprintOther;
+        // text state
+        private float cspace;
+        private float wspace;
+        private float hScalling;
+        private float leading;
+        private float tsize;
+        private int rmode;
+        private float trise;
+        private double[] tmatrix = new double[6];
+        private double[] tlmatrix = new double[6];
+        private Object font;
+        private Object currentfont;
+        private int hash;
+
+        private Key(Form form, Resources resources,
+                    GraphicsState graphicsState) {
+            this.form = form;
+            this.resources = resources;
+            lineCap = graphicsState.getLineCap();
+            lineWidth = graphicsState.getLineWidth();
+            lineJoin = graphicsState.getLineJoin();
+            miterLimit = graphicsState.getMiterLimit();
+            dashArray = graphicsState.getDashArray();
+            dashPhase = graphicsState.getDashPhase();
+            fillColor = graphicsState.getFillColor().getRGB();
+            strokeColor = graphicsState.getStrokeColor().getRGB();
+            // the parser writes the inherited alpha into the form's shapes
+            fillAlpha = graphicsState.getFillAlpha();
+            strokeAlpha = graphicsState.getStrokeAlpha();
+            fillColorSpace = getColorSpaceKey(graphicsState.getFillColorSpace());
+            strokeColorSpace = getColorSpaceKey(graphicsState.getStrokeColorSpace());
+            overprintMode = graphicsState.getOverprintMode();
+            overprintStroking = graphicsState.isOverprintStroking();
+            overprintOther = graphicsState.isOverprintOther();
+            TextState textState = graphicsState.getTextState();
+            cspace = textState.cspace;
+            wspace = textState.wspace;
+            hScalling = textState.hScalling;
+            leading = textState.leading;
+            tsize = textState.tsize;
+            rmode = textState.rmode;
+            trise = textState.trise;
+            textState.tmatrix.getMatrix(tmatrix);
+            textState.tlmatrix.getMatrix(tlmatrix);
+            font = textState.font;
+            // the copied graphics state holds a derived copy of the font
+            // file, so the font file of the font itself is compared.
+            currentfont = textState.font != null ?
+                    textState.font.getFont() : null;
+
+            int h = System.identityHashCode(form);
+            h = 31 * h + System.identityHashCode(resources);
+            h = 31 * h + lineCap;
+            h = 31 * h + Float.floatToIntBits(lineWidth);
+            h = 31 * h + lineJoin;
+            h = 31 * h + Float.floatToIntBits(miterLimit);
+            h = 31 * h + Arrays.hashCode(dashArray);
+            h = 31 * h + Float.floatToIntBits(dashPhase);
+            h = 31 * h + fillColor;
+            h = 31 * h + strokeColor;
+            h = 31 * h + Float.floatToIntBits(fillAlpha);
+            h = 31 * h + Float.floatToIntBits(strokeAlpha);
+            h = 31 * h + System.identityHashCode(fillColorSpace);
+            h = 31 * h + System.identityHashCode(strokeColorSpace);
+            h = 31 * h + Float.floatToIntBits(tsize);
+            h = 31 * h + rmode;
+            h = 31 * h + System.identityHashCode(font);
+            hash = h;
+        }
+
+        /**
+         * Device colour spaces hold no state but are created anew by each
+         * content stream, so they are compared by class.
+         */
+        private static Object getColorSpaceKey(PColorSpace colorSpace) {
+            if (colorSpace instanceof DeviceGray ||
+                    colorSpace instanceof DeviceRGB ||
+                    colorSpace instanceof DeviceCMYK) {
+                return colorSpace.getClass();
+            }
+            return colorSpace;
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return hash == k.hash &&
+                    form == k.form &&
+                    resources == k.resources &&
+                    lineCap == k.lineCap &&
+                    lineWidth == k.lineWidth &&
+                    lineJoin == k.lineJoin &&
+                    miterLimit == k.miterLimit &&
+                    Arrays.equals(dashArray, k.dashArray) &&
+                    dashPhase == k.dashPhase &&
+                    fillColor == k.fillColor &&
+                    strokeColor == k.strokeColor &&
+                    fillAlpha == k.fillAlpha &&
+                    strokeAlpha == k.strokeAlpha &&
+                    fillColorSpace == k.fillColorSpace &&
+                    strokeColorSpace == k.strokeColorSpace &&
+                    overprintMode == k.overprintMode &&
+                    overprintStroking == k.overprintStroking &&
+                    overprintOther == k.overprintOther &&
+                    cspace == k.cspace &&
+                    wspace == k.wspace &&
+                    hScalling == k.hScalling &&
+                    leading == k.leading &&
+                    tsize == k.tsize &&
+                    rmode == k.rmode &&
+                    trise == k.trise &&
+                    Arrays.equals(tmatrix, k.tmatrix) &&
+                    Arrays.equals(tlmatrix, k.tlmatrix) &&
+                    font == k.font &&
+                    currentfont == k.currentfont;
+        }
+    }
+}
@@ -59,6 +59,63 @@ public class GraphicsRenderingHints {
      */
     public static final int PRINT = 2;
 
+    /**
+     * Constant used to specify rendering hints for fast, low quality previews.
+     * Anti-aliasing is off, images are drawn with nearest neighbour
+     * interpolation, and the KEY_DRAFT hint is on.
+     *
+     * @since 3.1
+     */
+    public static final int DRAFT = 3;
+
+    /**
+     * Rendering hint key which allows small glyphs to be drawn from cached
+     * bitmaps, rather than filling their outlines, when the glyph is not
+     * rotated or stroked.  Only the SCREEN hints have it, so printing always
+     * draws outlines.
+     *
+     * @since 3.1
+     */
+    public static final RenderingHints.Key KEY_GLYPH_CACHE = new Key(0);
+
+    /**
+     * Glyph cache hint value, glyphs are drawn from cached bitmaps when they can be.
+     *
+     * @since 3.1
+     */
+    public static final Object VALUE_GLYPH_CACHE_ON = "Glyph bitmap cache on";
+
+    /**
+     * Glyph cache hint value, glyphs are always drawn from their outlines.
+     *
+     * @since 3.1
+     */
+    public static final Object VALUE_GLYPH_CACHE_OFF = "Glyph bitmap cache off";
+
+    /**
+     * Rendering hint key which makes a page skip the costly parts of its
+     * content: shading and pattern fills are left out and images larger
+     * than the system property "org.icepdf.core.draft.maxImageSize", in
+     * pixels, are replaced by a grey box.  Only the DRAFT hints have it.
+     *
+     * @since 3.1
+     */
+    public static final RenderingHints.Key KEY_DRAFT = new Key(1);
+
+    /**
+     * Draft hint value, the costly parts of a page's content are skipped.
+     *
+     * @since 3.1
+     */
+    public static final Object VALUE_DRAFT_ON = "Draft rendering on";
+
+    /**
+     * Draft hint value, all of a page's content is painted.
+     *
+     * @since 3.1
+     */
+    public static final Object VALUE_DRAFT_OFF = "Draft rendering off";
+
     /**
      * Gets the singleton representation of this object.
      *
@@ -82,21 +139,23 @@ public class GraphicsRenderingHints {
     }
 
     /**
-     * Gets the rendering hints for either the SCREEN or PRINT mode.
+     * Gets the rendering hints for either the SCREEN, PRINT or DRAFT mode.
      *
-     * @param hintType SCREEN or PRINT, if incorrectly specified PRINT settings
-     *                 are returned.
+     * @param hintType SCREEN, PRINT or DRAFT, if incorrectly specified PRINT
+     *                 settings are returned.
      * @return RenderingHints used by Java2D graphics context.
      */
     public RenderingHints getRenderingHints(final int hintType) {
         if (hintType == SCREEN)
             return (RenderingHints) screenHints.clone();
+        else if (hintType == DRAFT)
+            return (RenderingHints) draftHints.clone();
         else
             return (RenderingHints) printHints.clone();
     }
 
     public Color getPageBackgroundColor(final int hintType) {
-        if (hintType == SCREEN)
+        if (hintType == SCREEN || hintType == DRAFT)
             return screenBackground;
         else
             return printBackground;
@@ -205,6 +264,14 @@ public class GraphicsRenderingHints {
                 screenStrokeControl = RenderingHints.VALUE_STROKE_PURE;
             }
         }
+        property = Defs.sysProperty("org.icepdf.core.screen.glyphCache");
+        if (property != null) {
+            if (property.equalsIgnoreCase("VALUE_GLYPH_CACHE_ON")) {
+                screenGlyphCache = VALUE_GLYPH_CACHE_ON;
+            } else if (property.equalsIgnoreCase("VALUE_GLYPH_CACHE_OFF")) {
+                screenGlyphCache = VALUE_GLYPH_CACHE_OFF;
+            }
+        }
         property = Defs.sysProperty("org.icepdf.core.screen.background");
         if (property != null) {
             if (property.equalsIgnoreCase("VALUE_DRAW_WHITE_BACKGROUND")) {
@@ -224,6 +291,21 @@ public class GraphicsRenderingHints {
         screenHints.put(RenderingHints.KEY_INTERPOLATION, screenInterPolation);
         screenHints.put(RenderingHints.KEY_RENDERING, screenRendering);
         screenHints.put(RenderingHints.KEY_STROKE_CONTROL, screenStrokeControl);
+        screenHints.put(KEY_GLYPH_CACHE, screenGlyphCache);
+
+        // draft hints are fixed, they favour speed everywhere
+        draftHints = new RenderingHints(
+                RenderingHints.KEY_ALPHA_INTERPOLATION, RenderingHints.VALUE_ALPHA_INTERPOLATION_SPEED);
+        draftHints.put(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+        draftHints.put(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+        draftHints.put(RenderingHints.KEY_COLOR_RENDERING, RenderingHints.VALUE_COLOR_RENDER_SPEED);
+        draftHints.put(RenderingHints.KEY_DITHERING, RenderingHints.VALUE_DITHER_DISABLE);
+        draftHints.put(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_OFF);
+        draftHints.put(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        draftHints.put(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
+        draftHints.put(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        draftHints.put(KEY_GLYPH_CACHE, VALUE_GLYPH_CACHE_ON);
+        draftHints.put(KEY_DRAFT, VALUE_DRAFT_ON);
 
 
         // grab System properties for print rendering attributes
@@ -443,6 +525,11 @@ public class GraphicsRenderingHints {
      * The default value is VALUE_STROKE_NORMALIZE
      */
     Object screenStrokeControl = RenderingHints.VALUE_STROKE_NORMALIZE;
+    /**
+     * This hint controls if small glyphs are drawn from cached bitmaps.
+     * The default value is VALUE_GLYPH_CACHE_ON
+     */
+    Object screenGlyphCache = VALUE_GLYPH_CACHE_ON;
     /**
      * This hints controls if the Page will paint a white background before drawing itself.
      * The default value is Color.white
@@ -452,4 +539,22 @@ public class GraphicsRenderingHints {
 
     private RenderingHints screenHints;
     private RenderingHints printHints;
+    private RenderingHints draftHints;
+
+    /**
+     * Keys of the rendering hints added by ICEpdf.
+     */
+    private static class Key extends RenderingHints.Key {
+
+        private Key(int privateKey) {
+            super(privateKey);
+        }
+
+        public boolean isCompatibleValue(Object value) {
+            if (intKey() == 1) {
+                return value == VALUE_DRAFT_ON || value == VALUE_DRAFT_OFF;
+            }
+            return value == VALUE_GLYPH_CACHE_ON || value == VALUE_GLYPH_CACHE_OFF;
+        }
+    }
 }
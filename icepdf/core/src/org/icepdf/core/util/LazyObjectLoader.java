@@ -32,10 +32,14 @@
  */
 package org.icepdf.core.util;
 
+import org.icepdf.core.io.PositionalInput;
 import org.icepdf.core.io.SeekableInput;
 import org.icepdf.core.pobjects.*;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -48,17 +52,36 @@ public class LazyObjectLoader implements MemoryManagerDelegate {
     private static final Logger logger =
             Logger.getLogger(LazyObjectLoader.class.toString());
 
+    // size of the reads used to find object headers, and the number of bytes
+    // kept from one read to the next so a header can span reads.
+    private static final int SCAN_BUFFER_SIZE = 65536;
+    private static final int SCAN_OVERLAP = 64;
+
+    // most decoded object stream bytes kept by a document, set by the
+    // system property org.icepdf.core.objectstreamcache.maxBytes
+    private static int maxObjectStreamBytes;
+
+    static {
+        maxObjectStreamBytes = Defs.sysPropertyInt(
+                "org.icepdf.core.objectstreamcache.maxBytes", 8388608);
+    }
+
     private Library library;
     private SeekableInput m_SeekableInput;
     private CrossReference m_CrossReference;
-    protected ArrayList<ObjectStream> leastRecentlyUsed; // ArrayList<ObjectStream>
+    // decoded object streams in access order, with their decoded sizes
+    protected LinkedHashMap<ObjectStream, Integer> leastRecentlyUsed;
     private final Object leastRectlyUsedLock = new Object();
+    private long objectStreamBytes;
+    private long objectStreamHits;
+    private long objectStreamMisses;
+    private long objectStreamEvictions;
 
     public LazyObjectLoader(Library lib, SeekableInput seekableInput, CrossReference xref) {
         library = lib;
         m_SeekableInput = seekableInput;
         m_CrossReference = xref;
-        leastRecentlyUsed = new ArrayList<ObjectStream>(256);
+        leastRecentlyUsed = new LinkedHashMap<ObjectStream, Integer>(256, 0.75f, true);
     }
 
     public boolean loadObject(Reference reference) {
@@ -72,6 +95,8 @@ public class LazyObjectLoader implements MemoryManagerDelegate {
         if (entry instanceof CrossReference.UsedEntry) {
             try {
                 if (m_SeekableInput != null) {
+                    // only blocks for inputs with a single owning Thread,
+                    // positional inputs give each Thread its own cursor
                     m_SeekableInput.beginThreadAccess();
                     CrossReference.UsedEntry usedEntry = (CrossReference.UsedEntry) entry;
                     long position = usedEntry.getFilePositionOfObject();
@@ -99,12 +124,8 @@ public class LazyObjectLoader implements MemoryManagerDelegate {
                 Reference objectStreamRef = new Reference(objectStreamsObjectNumber, 0);
                 ObjectStream objectStream = (ObjectStream) library.getObject(objectStreamRef);
                 if (objectStream != null) {
-                    synchronized (leastRectlyUsedLock) {
-                        leastRecentlyUsed.remove(objectStream);
-                        leastRecentlyUsed.add(objectStream);
-                    }
-
                     gotSomething = objectStream.loadObject(library, objectIndex);
+                    cacheObjectStream(objectStream);
                 }
             }
             catch (Exception e) {
@@ -115,6 +136,87 @@ public class LazyObjectLoader implements MemoryManagerDelegate {
         return gotSomething;
     }
 
+    /**
+     * Records the use of an object stream, which is now decoded, and disposes
+     * of the decoded data of the least recently used object streams once the
+     * decoded bytes of all of them exceed the limit.
+     *
+     * @param objectStream object stream that was used.
+     */
+    private void cacheObjectStream(ObjectStream objectStream) {
+        synchronized (leastRectlyUsedLock) {
+            if (leastRecentlyUsed == null)
+                return;
+            // get() moves the object stream to the most recently used end
+            if (leastRecentlyUsed.get(objectStream) != null) {
+                objectStreamHits++;
+                return;
+            }
+            objectStreamMisses++;
+            int size = objectStream.getDecodedLength();
+            leastRecentlyUsed.put(objectStream, size);
+            objectStreamBytes += size;
+            Iterator<Map.Entry<ObjectStream, Integer>> eldest =
+                    leastRecentlyUsed.entrySet().iterator();
+            // the object stream just used is kept, even if it is over the limit
+            while (objectStreamBytes > maxObjectStreamBytes &&
+                    leastRecentlyUsed.size() > 1) {
+                Map.Entry<ObjectStream, Integer> entry = eldest.next();
+                eldest.remove();
+                objectStreamBytes -= entry.getValue();
+                objectStreamEvictions++;
+                entry.getKey().dispose(true);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of compressed object loads whose object stream was
+     * already decoded.
+     *
+     * @return object stream cache hits.
+     */
+    public long getObjectStreamHits() {
+        synchronized (leastRectlyUsedLock) {
+            return objectStreamHits;
+        }
+    }
+
+    /**
+     * Gets the number of compressed object loads that had to decode their
+     * object stream.
+     *
+     * @return object stream cache misses.
+     */
+    public long getObjectStreamMisses() {
+        synchronized (leastRectlyUsedLock) {
+            return objectStreamMisses;
+        }
+    }
+
+    /**
+     * Gets the number of decoded object streams disposed of, to keep within
+     * the decoded byte limit, or when memory was low.
+     *
+     * @return object stream cache evictions.
+     */
+    public long getObjectStreamEvictions() {
+        synchronized (leastRectlyUsedLock) {
+            return objectStreamEvictions;
+        }
+    }
+
+    /**
+     * Gets the number of decoded object stream bytes currently kept.
+     *
+     * @return decoded object stream bytes.
+     */
+    public long getObjectStreamBytes() {
+        synchronized (leastRectlyUsedLock) {
+            return objectStreamBytes;
+        }
+    }
+
     public boolean haveEntry(Reference reference) {
         if (reference == null || m_CrossReference == null)
             return false;
@@ -149,13 +251,208 @@ public class LazyObjectLoader implements MemoryManagerDelegate {
         return trailer;
     }
 
+    /**
+     * Loads the object at the given file position, without a cross-reference
+     * entry, as is needed for the hint stream of a linearized file.
+     *
+     * @param position byte offset of the object in the PDF file.
+     * @return the object, or null if it could not be loaded.
+     */
+    public Object loadObjectAtPosition(long position) {
+        Object obj = null;
+        try {
+            if (m_SeekableInput != null) {
+                m_SeekableInput.beginThreadAccess();
+                long savedPosition = m_SeekableInput.getAbsolutePosition();
+                m_SeekableInput.seekAbsolute(position);
+                Parser parser = new Parser(m_SeekableInput);
+                obj = parser.getObject(library);
+                if (obj instanceof PObject)
+                    obj = ((PObject) obj).getObject();
+                m_SeekableInput.seekAbsolute(savedPosition);
+            }
+        }
+        catch (Exception e) {
+            logger.log(Level.FINE,
+                    "Error loading object at position: " + position, e);
+        }
+        finally {
+            if (m_SeekableInput != null)
+                m_SeekableInput.endThreadAccess();
+        }
+        return obj;
+    }
+
+    /**
+     * Finds the headers of a run of sequentially numbered objects in a range
+     * of the file, and adds their positions to the cross-reference, so they
+     * can be loaded without the cross-reference section that describes them.
+     * Objects that can't be found, such as ones stored in object streams, are
+     * left to the regular cross-reference lookup.
+     *
+     * @param position          byte offset of the range in the PDF file.
+     * @param length            length of the range.
+     * @param firstObjectNumber number of the first object, or -1 if it is to
+     *                          be taken from the first object header found.
+     * @param objectCount       number of objects in the range.
+     * @return number of the first object, or -1 if no object was found.
+     */
+    public int loadObjectPositions(long position, long length,
+                                   int firstObjectNumber, int objectCount) {
+        if (m_SeekableInput == null || m_CrossReference == null)
+            return -1;
+        int firstFound = -1;
+        int expected = firstObjectNumber;
+        int found = 0;
+        long end = position + length;
+        byte[] buffer = new byte[(int) Math.min(SCAN_BUFFER_SIZE, length)];
+        long bufferStart = position;
+        try {
+            while (found < objectCount && bufferStart < end) {
+                int count = readFully(m_SeekableInput, bufferStart, buffer,
+                        (int) Math.min(buffer.length, end - bufferStart));
+                if (count <= 0)
+                    break;
+                for (int i = 0; i < count && found < objectCount; i++) {
+                    // headers start at a line, or at least after whitespace
+                    if (i == 0 ? bufferStart != position :
+                            !Parser.isWhitespace((char) buffer[i - 1]))
+                        continue;
+                    int[] header = parseObjectHeader(buffer, i, count);
+                    if (header == null ||
+                            (expected >= 0 && header[0] != expected))
+                        continue;
+                    if (firstFound < 0)
+                        firstFound = header[0];
+                    m_CrossReference.addHintedEntry(
+                            header[0], bufferStart + i, header[1]);
+                    expected = header[0] + 1;
+                    found++;
+                }
+                if (bufferStart + count >= end || count <= SCAN_OVERLAP)
+                    break;
+                bufferStart += count - SCAN_OVERLAP;
+            }
+        }
+        catch (Exception e) {
+            logger.log(Level.FINE,
+                    "Error finding objects at position: " + position, e);
+        }
+        return firstFound;
+    }
+
+    /**
+     * Finds the header of every object in the file, and adds its position to
+     * the index, which rebuilds the cross-reference of a file whose
+     * cross-reference is broken.  Later definitions of an object replace
+     * earlier ones, as with incremental updates.  Objects stored in object
+     * streams aren't found.
+     *
+     * @param in    input of the whole file.
+     * @param index index to add the object positions to.
+     * @throws IOException if the file can't be read.
+     */
+    public static void scanObjectPositions(SeekableInput in,
+                                           CrossReferenceIndex index)
+            throws IOException {
+        byte[] buffer = new byte[SCAN_BUFFER_SIZE];
+        long bufferStart = 0;
+        // headers starting in the overlap were already found by the last read
+        int scanStart = 0;
+        while (true) {
+            int count = readFully(in, bufferStart, buffer, buffer.length);
+            if (count <= 0)
+                break;
+            for (int i = scanStart; i < count; i++) {
+                if (i > 0 && !Parser.isWhitespace((char) buffer[i - 1]))
+                    continue;
+                int[] header = parseObjectHeader(buffer, i, count);
+                if (header != null)
+                    index.addUsedEntry(header[0], bufferStart + i, header[1]);
+            }
+            if (count < buffer.length)
+                break;
+            bufferStart += count - SCAN_OVERLAP;
+            scanStart = 1;
+        }
+    }
+
+    /**
+     * Parses an "objectNumber generationNumber obj" header.
+     *
+     * @return object and generation numbers, or null if there is no header.
+     */
+    private static int[] parseObjectHeader(byte[] buffer, int offset, int count) {
+        int[] header = new int[2];
+        int i = offset;
+        for (int field = 0; field < 2; field++) {
+            int start = i;
+            long value = 0;
+            while (i < count && buffer[i] >= '0' && buffer[i] <= '9' &&
+                    value <= Integer.MAX_VALUE) {
+                value = value * 10 + (buffer[i] - '0');
+                i++;
+            }
+            if (i == start || i >= count || value > Integer.MAX_VALUE ||
+                    !Parser.isWhitespace((char) buffer[i]))
+                return null;
+            while (i < count && Parser.isWhitespace((char) buffer[i]))
+                i++;
+            header[field] = (int) value;
+        }
+        if (i + 3 >= count || buffer[i] != 'o' || buffer[i + 1] != 'b' ||
+                buffer[i + 2] != 'j')
+            return null;
+        char next = (char) buffer[i + 3];
+        if (!Parser.isWhitespace(next) && !Parser.isDelimiter(next))
+            return null;
+        return header;
+    }
+
+    private static int readFully(SeekableInput in, long position,
+                                 byte[] buffer, int length)
+            throws IOException {
+        if (in instanceof PositionalInput) {
+            PositionalInput input = (PositionalInput) in;
+            int total = 0;
+            while (total < length) {
+                int read = input.read(position + total, buffer, total,
+                        length - total);
+                if (read < 0)
+                    break;
+                total += read;
+            }
+            return total;
+        }
+        try {
+            in.beginThreadAccess();
+            long savedPosition = in.getAbsolutePosition();
+            in.seekAbsolute(position);
+            int total = 0;
+            while (total < length) {
+                int read = in.read(buffer, total, length - total);
+                if (read < 0)
+                    break;
+                total += read;
+            }
+            in.seekAbsolute(savedPosition);
+            return total;
+        }
+        finally {
+            in.endThreadAccess();
+        }
+    }
+
     public void dispose() {
         library = null;
         m_SeekableInput = null;
         m_CrossReference = null;
-        if (leastRecentlyUsed != null) {
-            leastRecentlyUsed.clear();
-            leastRecentlyUsed = null;
+        synchronized (leastRectlyUsedLock) {
+            if (leastRecentlyUsed != null) {
+                leastRecentlyUsed.clear();
+                leastRecentlyUsed = null;
+            }
+            objectStreamBytes = 0;
         }
     }
 
@@ -167,6 +464,8 @@ public class LazyObjectLoader implements MemoryManagerDelegate {
     public boolean reduceMemory(int reductionPolicy) {
         int numToDo = 0;
         synchronized (leastRectlyUsedLock) {
+            if (leastRecentlyUsed == null)
+                return false;
             int lruSize = leastRecentlyUsed.size();
             if (reductionPolicy == MemoryManagerDelegate.REDUCE_AGGRESSIVELY) {
                 numToDo = lruSize * 75 / 100;
@@ -177,10 +476,14 @@ public class LazyObjectLoader implements MemoryManagerDelegate {
                     numToDo = 1;
             }
 //System.out.println("LazyObjectLoader.reduceMemory()  reductionPolicy: " + reductionPolicy + ",  numToDo: " + numToDo + ",  lruSize: " + lruSize);
-            for (int i = 0; i < numToDo; i++) {
-                ObjectStream objStm = leastRecentlyUsed.remove(0);
-                if (objStm != null)
-                    objStm.dispose(true);
+            Iterator<Map.Entry<ObjectStream, Integer>> eldest =
+                    leastRecentlyUsed.entrySet().iterator();
+            for (int i = 0; i < numToDo && eldest.hasNext(); i++) {
+                Map.Entry<ObjectStream, Integer> entry = eldest.next();
+                eldest.remove();
+                objectStreamBytes -= entry.getValue();
+                objectStreamEvictions++;
+                entry.getKey().dispose(true);
             }
         }
         return numToDo > 0;
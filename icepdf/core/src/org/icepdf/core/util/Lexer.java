@@ -0,0 +1,890 @@
+/*
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * "The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations under
+ * the License.
+ *
+ * The Original Code is ICEpdf 3.0 open source software code, released
+ * May 1st, 2009. The Initial Developer of the Original Code is ICEsoft
+ * Technologies Canada, Corp. Portions created by ICEsoft are Copyright (C)
+ * 2004-2009 ICEsoft Technologies Canada, Corp. All Rights Reserved.
+ *
+ * Contributor(s): _____________________.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"
+ * License), in which case the provisions of the LGPL License are
+ * applicable instead of those above. If you wish to allow use of your
+ * version of this file only under the terms of the LGPL License and not to
+ * allow others to use your version of this file under the MPL, indicate
+ * your decision by deleting the provisions above and replace them with
+ * the notice and other provisions required by the LGPL License. If you do
+ * not delete the provisions above, a recipient may use your version of
+ * this file under either the MPL or the LGPL License."
+ *
+ */
+package org.icepdf.core.util;
+
+import org.icepdf.core.io.SeekableInput;
+import org.icepdf.core.pobjects.Name;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>The <code>Lexer</code> splits PDF data into tokens.  It reads its source
+ * through a byte[] window, rather than a byte at a time, and scans tokens
+ * directly in the window.  Numbers are parsed straight into primitives, names
+ * are interned through a fixed size name table, and keywords are returned as
+ * operator codes, see {@link PdfOps}, so the numbers, names and operators
+ * which make up most object and content streams are read without
+ * allocating anything.</p>
+ * <p/>
+ * <p>The Lexer is also an InputStream over the same window, with cheap
+ * mark() and reset(), for the data between tokens, such as stream and inline
+ * image data.  When reading from a SeekableInput the window reads ahead of
+ * the SeekableInput's position, so {@link #sync()} must be called before
+ * anyone else uses the SeekableInput.</p>
+ * <p/>
+ * <p>A Lexer is not thread safe, it belongs to the Thread parsing its
+ * source.</p>
+ *
+ * @since 3.1
+ */
+public class Lexer extends InputStream {
+
+    private static final Logger logger =
+            Logger.getLogger(Lexer.class.toString());
+
+    /**
+     * An integer, see {@link #getIntValue()}.
+     */
+    public static final int TOKEN_INTEGER = 1;
+    /**
+     * A real number, see {@link #getFloatValue()}.
+     */
+    public static final int TOKEN_REAL = 2;
+    /**
+     * A name, see {@link #getName()}.
+     */
+    public static final int TOKEN_NAME = 3;
+    /**
+     * A literal string, see {@link #getStringBuffer()}.
+     */
+    public static final int TOKEN_LITERAL_STRING = 4;
+    /**
+     * A hexadecimal string, see {@link #getStringBuffer()}.
+     */
+    public static final int TOKEN_HEX_STRING = 5;
+    /**
+     * The start of an array, '['.
+     */
+    public static final int TOKEN_ARRAY_START = 6;
+    /**
+     * The end of an array, ']'.
+     */
+    public static final int TOKEN_ARRAY_END = 7;
+    /**
+     * The start of a dictionary, '&lt;&lt;'.
+     */
+    public static final int TOKEN_DICTIONARY_START = 8;
+    /**
+     * The end of a dictionary, '&gt;&gt;'.
+     */
+    public static final int TOKEN_DICTIONARY_END = 9;
+    /**
+     * A comment, see {@link #getKeyword()}.
+     */
+    public static final int TOKEN_COMMENT = 10;
+    /**
+     * Any other sequence of regular characters, such as an operator, see
+     * {@link #getOperator()} and {@link #getKeyword()}.
+     */
+    public static final int TOKEN_KEYWORD = 11;
+
+    private static final int WINDOW_SIZE = 8192;
+
+    private static final byte REGULAR = 0;
+    private static final byte WHITESPACE = 1;
+    private static final byte DELIMITER = 2;
+    private static final byte[] CHARACTER_CLASSES = new byte[256];
+
+    // names which are longer than this are rare, and are not interned
+    private static final int MAX_INTERNED_NAME_LENGTH = 32;
+    // must be a power of two
+    private static final int NAME_TABLE_SIZE = 2048;
+    private static final NameEntry[] nameTable = new NameEntry[NAME_TABLE_SIZE];
+
+    // perfect hash of the operators, sized so that no two share a slot
+    private static final int[] operatorTable;
+    private static final int operatorTableMask;
+
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        CHARACTER_CLASSES[' '] = WHITESPACE;
+        CHARACTER_CLASSES['\t'] = WHITESPACE;
+        CHARACTER_CLASSES['\r'] = WHITESPACE;
+        CHARACTER_CLASSES['\n'] = WHITESPACE;
+        CHARACTER_CLASSES['\f'] = WHITESPACE;
+        String delimiters = "[]()<>{}/%";
+        for (int i = 0; i < delimiters.length(); i++) {
+            CHARACTER_CLASSES[delimiters.charAt(i)] = DELIMITER;
+        }
+
+        // find the smallest table in which every operator has its own slot,
+        // so a keyword can be looked up with a single comparison
+        int[] table = null;
+        for (int size = 64; table == null; size <<= 1) {
+            table = new int[size];
+            Arrays.fill(table, PdfOps.NO_OP);
+            for (int op = 0; op < PdfOps.getOperatorCount(); op++) {
+                String token = PdfOps.getOperatorToken(op);
+                int hash = 0;
+                for (int i = 0; i < token.length(); i++) {
+                    hash = 31 * hash + token.charAt(i);
+                }
+                int slot = mix(hash) & (size - 1);
+                if (table[slot] != PdfOps.NO_OP) {
+                    table = null;
+                    break;
+                }
+                table[slot] = op;
+            }
+        }
+        operatorTable = table;
+        operatorTableMask = table.length - 1;
+
+        POWERS_OF_TEN[0] = 1.0;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10.0;
+        }
+    }
+
+    private InputStream m_in;
+    private SeekableInput m_seekable;
+
+    // the window, bytes [m_pos, m_count) have not been read yet
+    private byte[] m_buffer;
+    private int m_pos;
+    private int m_count;
+    private int m_markPos = -1;
+    private int m_markLimit;
+    // start of the token being scanned, which must stay in the window
+    private int m_tokenStart = -1;
+    // position in the source of the start of the window
+    private long m_windowPosition;
+    // a SeekableInput's position is only read when the window is first filled
+    private boolean m_positioned;
+
+    // the current token
+    private int m_tokenType;
+    private int m_intValue;
+    private float m_floatValue;
+    private Name m_name;
+    private int m_operator;
+    private String m_keyword;
+    private StringBuffer m_string;
+
+    /**
+     * Creates a Lexer for the given stream, starting at its current position.
+     *
+     * @param in source of PDF data.
+     */
+    public Lexer(InputStream in) {
+        m_in = in;
+        m_buffer = new byte[WINDOW_SIZE];
+        m_positioned = true;
+    }
+
+    /**
+     * Creates a Lexer for the given SeekableInput, starting at its current
+     * position.  The Lexer reads ahead of the SeekableInput's position, see
+     * {@link #sync()}.
+     *
+     * @param in source of PDF data.
+     */
+    public Lexer(SeekableInput in) {
+        m_in = in.getInputStream();
+        m_seekable = in;
+        m_buffer = new byte[WINDOW_SIZE];
+    }
+
+    /**
+     * Reads the next token.  The value of the token is available from the
+     * getters until the next token is read.
+     *
+     * @return type of the token, one of the TOKEN_ constants.
+     * @throws IOException if an I/O error occurs, or there are no more
+     *                     tokens.
+     */
+    public int nextToken() throws IOException {
+        m_name = null;
+        m_keyword = null;
+        m_string = null;
+        m_operator = PdfOps.NO_OP;
+        m_tokenStart = -1;
+
+        // strip all white space characters
+        int c;
+        do {
+            c = read();
+            if (c < 0) {
+                throw new IOException();
+            }
+        }
+        while (CHARACTER_CLASSES[c] == WHITESPACE);
+
+        // keep the first character in the window, in case peeking refills it
+        m_tokenStart = m_pos - 1;
+        switch (c) {
+            case '[':
+                return setToken(TOKEN_ARRAY_START, "[");
+            case ']':
+                return setToken(TOKEN_ARRAY_END, "]");
+            case '%':
+                return readComment();
+            case '(':
+                return readLiteralString();
+            case '<':
+                if (peek() == '<') {
+                    m_pos++;
+                    return setToken(TOKEN_DICTIONARY_START, "<<");
+                }
+                return readHexString();
+            case '>':
+                if (peek() == '>') {
+                    m_pos++;
+                    return setToken(TOKEN_DICTIONARY_END, ">>");
+                }
+                break;
+        }
+        return readRegularToken();
+    }
+
+    /**
+     * @return type of the current token.
+     */
+    public int getTokenType() {
+        return m_tokenType;
+    }
+
+    /**
+     * @return value of the current {@link #TOKEN_INTEGER} token.
+     */
+    public int getIntValue() {
+        return m_intValue;
+    }
+
+    /**
+     * @return value of the current {@link #TOKEN_INTEGER} or
+     *         {@link #TOKEN_REAL} token.
+     */
+    public float getFloatValue() {
+        return m_floatValue;
+    }
+
+    /**
+     * Gets the current {@link #TOKEN_NAME} token.  Names are shared, so the
+     * same name is usually returned as the same instance.
+     *
+     * @return current name.
+     */
+    public Name getName() {
+        return m_name;
+    }
+
+    /**
+     * Gets the operator code of the current {@link #TOKEN_KEYWORD} token.
+     *
+     * @return operator code, or {@link PdfOps#NO_OP} if the keyword isn't a
+     *         known operator.
+     */
+    public int getOperator() {
+        return m_operator;
+    }
+
+    /**
+     * Gets the text of the current token, for tokens which aren't a number,
+     * name or string.  Known operators and delimiters return the constants
+     * of {@link PdfOps}.
+     *
+     * @return text of the current token.
+     */
+    public String getKeyword() {
+        return m_keyword;
+    }
+
+    /**
+     * Gets the contents of the current {@link #TOKEN_LITERAL_STRING} or
+     * {@link #TOKEN_HEX_STRING} token, including its delimiters.  A new
+     * buffer is created for every string token.
+     *
+     * @return contents of the current string.
+     */
+    public StringBuffer getStringBuffer() {
+        return m_string;
+    }
+
+    /**
+     * Gets the position of the next byte to be read.  For a SeekableInput
+     * this is the absolute position, otherwise it's the number of bytes
+     * read from the stream.
+     *
+     * @return position of the next byte.
+     * @throws IOException if an I/O error occurs.
+     */
+    public long getAbsolutePosition() throws IOException {
+        if (!m_positioned) {
+            return m_seekable.getAbsolutePosition();
+        }
+        return m_windowPosition + m_pos;
+    }
+
+    /**
+     * Moves to the given position of a SeekableInput.  Positions within the
+     * window are reached without any I/O.
+     *
+     * @param position absolute position to move to.
+     * @throws IOException if an I/O error occurs.
+     */
+    public void seekAbsolute(long position) throws IOException {
+        if (m_positioned &&
+                position >= m_windowPosition &&
+                position <= m_windowPosition + m_count) {
+            m_pos = (int) (position - m_windowPosition);
+        } else {
+            m_seekable.seekAbsolute(position);
+            clearWindow();
+        }
+    }
+
+    /**
+     * Moves the SeekableInput back to the position of the next byte to be
+     * read, undoing any reading ahead, and empties the window.  Has no effect
+     * for other streams.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public void sync() throws IOException {
+        if (m_seekable != null && m_positioned) {
+            m_seekable.seekAbsolute(m_windowPosition + m_pos);
+            clearWindow();
+        }
+    }
+
+    //
+    // InputStream implementation
+    //
+
+    public int read() throws IOException {
+        if (m_pos >= m_count && !fill()) {
+            return -1;
+        }
+        return m_buffer[m_pos++] & 0xFF;
+    }
+
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length <= 0) {
+            return 0;
+        }
+        int total = 0;
+        while (total < length) {
+            if (m_pos >= m_count && !fill()) {
+                break;
+            }
+            int n = Math.min(length - total, m_count - m_pos);
+            System.arraycopy(m_buffer, m_pos, buffer, offset + total, n);
+            m_pos += n;
+            total += n;
+        }
+        return total > 0 ? total : -1;
+    }
+
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        long skipped = Math.min(n, (long) (m_count - m_pos));
+        m_pos += (int) skipped;
+        while (skipped < n && fill()) {
+            int step = (int) Math.min(n - skipped, (long) (m_count - m_pos));
+            m_pos += step;
+            skipped += step;
+        }
+        return skipped;
+    }
+
+    public int available() throws IOException {
+        return (m_count - m_pos) + m_in.available();
+    }
+
+    public void mark(int readLimit) {
+        m_markPos = m_pos;
+        m_markLimit = readLimit;
+    }
+
+    public void reset() throws IOException {
+        if (m_markPos < 0) {
+            throw new IOException("Resetting to invalid mark");
+        }
+        m_pos = m_markPos;
+    }
+
+    public boolean markSupported() {
+        return true;
+    }
+
+    public void close() throws IOException {
+        m_in.close();
+    }
+
+    //
+    // Token scanning
+    //
+
+    private int setToken(int type, String keyword) {
+        m_tokenStart = -1;
+        m_tokenType = type;
+        m_keyword = keyword;
+        return type;
+    }
+
+    private int peek() throws IOException {
+        if (m_pos >= m_count && !fill()) {
+            return -1;
+        }
+        return m_buffer[m_pos] & 0xFF;
+    }
+
+    /**
+     * Comments run to the end of the line, the end of line is consumed.
+     */
+    private int readComment() throws IOException {
+        int end;
+        while (true) {
+            if (m_pos >= m_count && !fill()) {
+                end = m_count;
+                break;
+            }
+            int c = m_buffer[m_pos++];
+            if (c == '\r' || c == '\n') {
+                end = m_pos - 1;
+                break;
+            }
+        }
+        String comment = toString(m_tokenStart, end);
+        m_tokenStart = -1;
+        return setToken(TOKEN_COMMENT, comment);
+    }
+
+    /**
+     * Scans a run of regular characters.  A token ending in a carriage return
+     * or line feed leaves it to be read, as stream data follows the
+     * "stream" keyword's end of line.
+     */
+    private int readRegularToken() throws IOException {
+        int end;
+        boolean endOfInput = false;
+        while (true) {
+            if (m_pos >= m_count && !fill()) {
+                end = m_count;
+                endOfInput = true;
+                break;
+            }
+            int c = m_buffer[m_pos] & 0xFF;
+            byte characterClass = CHARACTER_CLASSES[c];
+            if (characterClass == WHITESPACE) {
+                end = m_pos;
+                if (c != '\r' && c != '\n') {
+                    m_pos++;
+                }
+                break;
+            } else if (characterClass == DELIMITER) {
+                end = m_pos;
+                break;
+            }
+            m_pos++;
+        }
+        int start = m_tokenStart;
+        m_tokenStart = -1;
+
+        // an unterminated token at the end of the data is only a keyword
+        if (!endOfInput) {
+            if (m_buffer[start] == '/') {
+                m_name = internName(start + 1, end);
+                m_tokenType = TOKEN_NAME;
+                return TOKEN_NAME;
+            }
+            int type = parseNumber(start, end);
+            if (type != 0) {
+                m_tokenType = type;
+                return type;
+            }
+        }
+        return readKeyword(start, end);
+    }
+
+    private int readKeyword(int start, int end) {
+        m_operator = lookupOperator(start, end);
+        String keyword = m_operator != PdfOps.NO_OP ?
+                PdfOps.getOperatorToken(m_operator) : toString(start, end);
+        return setToken(TOKEN_KEYWORD, keyword);
+    }
+
+    /**
+     * Parses the common forms of numbers, [+-]digits[.digits], without
+     * allocating, and anything else which looks like a number the way
+     * Integer.valueOf() and Float.valueOf() would.
+     *
+     * @return TOKEN_INTEGER, TOKEN_REAL, or 0 if the token isn't a number.
+     */
+    private int parseNumber(int start, int end) {
+        int first = m_buffer[start];
+        if (!((first >= '0' && first <= '9') ||
+                first == '-' || first == '+' || first == '.')) {
+            return 0;
+        }
+        int i = start;
+        boolean negative = false;
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int significantDigits = 0;
+        int digits = 0;
+        int scale = -1;
+        boolean simple = true;
+        for (; i < end; i++) {
+            int c = m_buffer[i];
+            if (c >= '0' && c <= '9') {
+                digits++;
+                if (mantissa != 0 || c != '0') {
+                    significantDigits++;
+                }
+                if (significantDigits <= 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                }
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else if (c == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                simple = false;
+            }
+        }
+        if (simple) {
+            if (digits == 0) {
+                return 0;
+            }
+            if (scale < 0) {
+                if (significantDigits <= 18) {
+                    long value = negative ? -mantissa : mantissa;
+                    if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                        m_intValue = (int) value;
+                        m_floatValue = (float) value;
+                        return TOKEN_INTEGER;
+                    }
+                }
+                // too big for an int
+                return 0;
+            }
+            if (significantDigits <= 15 && scale < POWERS_OF_TEN.length) {
+                double value = mantissa / POWERS_OF_TEN[scale];
+                m_floatValue = (float) (negative ? -value : value);
+                return TOKEN_REAL;
+            }
+        }
+        return parseNumber(toString(start, end));
+    }
+
+    private int parseNumber(String token) {
+        boolean foundDigit = false;
+        boolean foundDecimal = false;
+        for (int i = token.length() - 1; i >= 0; i--) {
+            char c = token.charAt(i);
+            if (c == '.')
+                foundDecimal = true;
+            else if (c >= '0' && c <= '9')
+                foundDigit = true;
+        }
+        // Only bother trying to interpret as a number if contains a digit
+        // somewhere, to reduce NumberFormatExceptions
+        if (foundDigit) {
+            try {
+                if (foundDecimal) {
+                    m_floatValue = Float.parseFloat(token);
+                    return TOKEN_REAL;
+                } else {
+                    m_intValue = Integer.parseInt(token);
+                    m_floatValue = m_intValue;
+                    return TOKEN_INTEGER;
+                }
+            }
+            catch (NumberFormatException e) {
+                // not a number after all
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Literal strings keep their parentheses, escape sequences are decoded.
+     */
+    private int readLiteralString() throws IOException {
+        m_tokenStart = -1;
+        StringBuffer string = new StringBuffer();
+        string.append('(');
+        int parenthesisCount = 0;
+        while (true) {
+            int c = read();
+            if (c < 0) {
+                return setToken(TOKEN_KEYWORD, string.toString());
+            }
+            char currentChar = (char) c;
+            if (currentChar == '(') {
+                parenthesisCount++;
+            } else if (currentChar == ')') {
+                if (parenthesisCount == 0) {
+                    string.append(currentChar);
+                    break;
+                }
+                parenthesisCount--;
+            } else if (currentChar == '\\') {
+                /**
+                 * The escape sequences can be as follows:
+                 *   \n  - line feed (LF)
+                 *   \r  - Carriage return (CR)
+                 *   \t  - Horizontal tab  (HT)
+                 *   \b  - backspace (BS)
+                 *   \f  - form feed (FF)
+                 *   \(  - left parenthesis
+                 *   \)  - right parenthesis
+                 *   \\  - backslash
+                 *   \ddd - character code ddd (octal)
+                 */
+                currentChar = (char) read();
+                if (currentChar >= '0' && currentChar <= '9') {
+                    // octals have a max size of 3 digits
+                    boolean octal = currentChar <= '7';
+                    int charNumber = currentChar - '0';
+                    for (int i = 0; i < 2; i++) {
+                        int next = peek();
+                        if (next < '0' || next > '9') {
+                            break;
+                        }
+                        m_pos++;
+                        octal &= next <= '7';
+                        charNumber = charNumber * 8 + (next - '0');
+                    }
+                    currentChar = octal ? (char) charNumber : 0;
+                } else if (currentChar == 't') {
+                    currentChar = '\t';
+                } else if (currentChar == 'r') {
+                    currentChar = '\r';
+                } else if (currentChar == 'n') {
+                    currentChar = '\n';
+                } else if (currentChar == 'b') {
+                    currentChar = '\b';
+                } else if (currentChar == 'f') {
+                    currentChar = '\f';
+                } else if (currentChar == 13) {
+                    // a '\' at the end of a line splits the string
+                    continue;
+                } else if (currentChar != '(' && currentChar != ')' &&
+                        currentChar != '\\') {
+                    if (logger.isLoggable(Level.FINE)) {
+                        logger.fine("C=" + ((int) currentChar));
+                    }
+                }
+            }
+            string.append(currentChar);
+        }
+        m_string = string;
+        m_tokenType = TOKEN_LITERAL_STRING;
+        return TOKEN_LITERAL_STRING;
+    }
+
+    /**
+     * Hexadecimal strings keep their angle brackets and any white space.
+     */
+    private int readHexString() throws IOException {
+        m_tokenStart = -1;
+        StringBuffer string = new StringBuffer();
+        string.append('<');
+        while (true) {
+            int c = read();
+            if (c < 0) {
+                return setToken(TOKEN_KEYWORD, string.toString());
+            }
+            string.append((char) c);
+            if (c == '>') {
+                break;
+            }
+        }
+        m_string = string;
+        m_tokenType = TOKEN_HEX_STRING;
+        return TOKEN_HEX_STRING;
+    }
+
+    //
+    // Tables
+    //
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 7) ^ (hash >>> 16);
+    }
+
+    private int hash(int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + (m_buffer[i] & 0xFF);
+        }
+        return mix(hash);
+    }
+
+    private int lookupOperator(int start, int end) {
+        int length = end - start;
+        int op = operatorTable[hash(start, end) & operatorTableMask];
+        if (op == PdfOps.NO_OP) {
+            return op;
+        }
+        String token = PdfOps.getOperatorToken(op);
+        if (token.length() != length) {
+            return PdfOps.NO_OP;
+        }
+        for (int i = 0; i < length; i++) {
+            if (token.charAt(i) != (m_buffer[start + i] & 0xFF)) {
+                return PdfOps.NO_OP;
+            }
+        }
+        return op;
+    }
+
+    /**
+     * Names are interned through a direct mapped table, a name replaces any
+     * other name in its slot, so the table never grows.  Entries are
+     * immutable, so the table can be shared by every Thread without locking.
+     */
+    private Name internName(int start, int end) {
+        int length = end - start;
+        if (length > MAX_INTERNED_NAME_LENGTH) {
+            return new Name(toString(start, end));
+        }
+        int slot = hash(start, end) & (NAME_TABLE_SIZE - 1);
+        NameEntry entry = nameTable[slot];
+        if (entry != null && entry.matches(m_buffer, start, length)) {
+            return entry.name;
+        }
+        byte[] bytes = new byte[length];
+        System.arraycopy(m_buffer, start, bytes, 0, length);
+        Name name = new Name(toString(start, end));
+        nameTable[slot] = new NameEntry(bytes, name);
+        return name;
+    }
+
+    private String toString(int start, int end) {
+        char[] chars = new char[end - start];
+        for (int i = start; i < end; i++) {
+            chars[i - start] = (char) (m_buffer[i] & 0xFF);
+        }
+        return new String(chars);
+    }
+
+    //
+    // Window management
+    //
+
+    private void clearWindow() {
+        m_pos = 0;
+        m_count = 0;
+        m_markPos = -1;
+        m_positioned = m_seekable == null;
+        m_windowPosition = 0;
+    }
+
+    /**
+     * Reads more of the source into the window.  Read bytes are discarded,
+     * except for those from the mark, or the start of the token being
+     * scanned, on.
+     *
+     * @return false if there is no more data.
+     */
+    private boolean fill() throws IOException {
+        if (!m_positioned) {
+            m_windowPosition = m_seekable.getAbsolutePosition();
+            m_positioned = true;
+        }
+        if (m_markPos >= 0 && m_pos - m_markPos > m_markLimit) {
+            m_markPos = -1;
+        }
+        int keep = m_pos;
+        if (m_markPos >= 0 && m_markPos < keep) {
+            keep = m_markPos;
+        }
+        if (m_tokenStart >= 0 && m_tokenStart < keep) {
+            keep = m_tokenStart;
+        }
+        if (keep > 0) {
+            System.arraycopy(m_buffer, keep, m_buffer, 0, m_count - keep);
+            m_count -= keep;
+            m_pos -= keep;
+            if (m_markPos >= 0) {
+                m_markPos -= keep;
+            }
+            if (m_tokenStart >= 0) {
+                m_tokenStart -= keep;
+            }
+            m_windowPosition += keep;
+        }
+        if (m_count == m_buffer.length) {
+            byte[] buffer = new byte[m_buffer.length * 2];
+            System.arraycopy(m_buffer, 0, buffer, 0, m_count);
+            m_buffer = buffer;
+        }
+        int n;
+        do {
+            n = m_in.read(m_buffer, m_count, m_buffer.length - m_count);
+        }
+        while (n == 0);
+        if (n < 0) {
+            return false;
+        }
+        m_count += n;
+        return true;
+    }
+
+    private static class NameEntry {
+        final byte[] bytes;
+        final Name name;
+
+        NameEntry(byte[] bytes, Name name) {
+            this.bytes = bytes;
+            this.name = name;
+        }
+
+        boolean matches(byte[] buffer, int start, int length) {
+            if (bytes.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (bytes[i] != buffer[start + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
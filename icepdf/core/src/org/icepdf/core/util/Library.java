@@ -60,11 +60,17 @@ public class Library {
 
     // new incremental file loader class.
     private LazyObjectLoader m_LazyObjectLoader;
+    // parsed shapes of the document's forms, created on first use.
+    private FormCache formCache;
 
     private ConcurrentHashMap<Reference, Object> refs =
             new ConcurrentHashMap<Reference, Object>(1024);
     private ConcurrentHashMap<Reference, ICCBased> lookupReference2ICCBased =
             new ConcurrentHashMap<Reference, ICCBased>(256);
+    // locks of the objects being lazily loaded, so threads asking for the
+    // same object wait for one instance rather than each parsing their own.
+    private ConcurrentHashMap<Reference, Object> loadingLocks =
+            new ConcurrentHashMap<Reference, Object>();
 
     // Instead of keeping Names names, Dictionary dests, we keep
     //   a reference to the Catalog, which actually owns them
@@ -72,12 +78,57 @@ public class Library {
 
     // centrally locate these objects for later clean up.
     public MemoryManager memoryManager;
+    // pool of the document's pages, created on first use unless shared
+    private MemoryPool memoryPool;
     public CacheManager cacheManager;
     public SecurityManager securityManager;
 
+    // linearization parameters, if the document is linearized.
+    private Linearization linearization;
+    // references of every page in page order, if they are already known.
+    private Reference[] pageReferences;
+
     private boolean isEncrypted = false;
     private boolean isLinearTraversal = false;
 
+    /**
+     * Gets the memory pool holding the document's pages.
+     *
+     * @return memory pool of the document.
+     */
+    public synchronized MemoryPool getMemoryPool() {
+        if (memoryPool == null) {
+            memoryPool = memoryManager.createMemoryPool();
+        }
+        return memoryPool;
+    }
+
+    /**
+     * Sets the memory pool to hold the document's pages, so several
+     * documents can share the limits of one pool.  Must be set before any
+     * page is loaded.
+     *
+     * @param memoryPool memory pool for the document.
+     */
+    public synchronized void setMemoryPool(MemoryPool memoryPool) {
+        this.memoryPool = memoryPool;
+        memoryManager.registerMemoryPool(memoryPool);
+    }
+
+    /**
+     * Gets the cache of parsed Form XObject shapes of the document.
+     *
+     * @return form cache of the document.
+     */
+    public synchronized FormCache getFormCache() {
+        if (formCache == null) {
+            formCache = new FormCache(this);
+            if (memoryManager != null)
+                memoryManager.registerMemoryManagerDelegate(formCache);
+        }
+        return formCache;
+    }
+
     /**
      * Sets a document loader for the library.
      *
@@ -89,6 +140,51 @@ public class Library {
             memoryManager.registerMemoryManagerDelegate(m_LazyObjectLoader);
     }
 
+    /**
+     * Sets the linearization parameters of a linearized document, which allow
+     * its pages to be found without walking the page tree.
+     *
+     * @param linearization linearization dictionary, null if the document
+     *                      isn't linearized.
+     */
+    public void setLinearization(Linearization linearization) {
+        this.linearization = linearization;
+    }
+
+    /**
+     * Gets the linearization parameters of the document.
+     *
+     * @return linearization dictionary, null if the document isn't
+     *         linearized.
+     */
+    public Linearization getLinearization() {
+        return linearization;
+    }
+
+    /**
+     * Sets the references of every page in page order, such as those stored
+     * by an IndexCache, which allow pages to be found without walking the
+     * page tree.
+     *
+     * @param pageReferences page references, null if they aren't known.
+     */
+    public void setPageReferences(Reference[] pageReferences) {
+        this.pageReferences = pageReferences;
+    }
+
+    /**
+     * Gets the reference of a page, if the page references are known.
+     *
+     * @param pageIndex zero-based page index.
+     * @return page reference, null if it isn't known.
+     */
+    public Reference getPageReference(int pageIndex) {
+        Reference[] pages = pageReferences;
+        if (pages == null || pageIndex < 0 || pageIndex >= pages.length)
+            return null;
+        return pages[pageIndex];
+    }
+
     /**
      * Gets the document's trailer.
      *
@@ -101,6 +197,38 @@ public class Library {
         return m_LazyObjectLoader.loadTrailer(position);
     }
 
+    /**
+     * Gets the object at the given file position, which doesn't need to be
+     * described by a cross-reference entry.
+     *
+     * @param position byte offset of the object in the PDF file.
+     * @return object found at the position, null if there is none.
+     */
+    public Object getObjectByFilePosition(long position) {
+        if (m_LazyObjectLoader == null)
+            return null;
+        return m_LazyObjectLoader.loadObjectAtPosition(position);
+    }
+
+    /**
+     * Locates a run of sequentially numbered objects in a range of the file,
+     * so that they can be loaded without the cross-reference section that
+     * describes them.
+     *
+     * @param position          byte offset of the range in the PDF file.
+     * @param length            length of the range.
+     * @param firstObjectNumber number of the first object, or -1 if unknown.
+     * @param objectCount       number of objects in the range.
+     * @return number of the first object found, or -1 if none was found.
+     */
+    public int addObjectPositions(long position, long length,
+                                  int firstObjectNumber, int objectCount) {
+        if (m_LazyObjectLoader == null)
+            return -1;
+        return m_LazyObjectLoader.loadObjectPositions(
+                position, length, firstObjectNumber, objectCount);
+    }
+
     /**
      * Gets the object specified by the reference.
      *
@@ -113,10 +241,8 @@ public class Library {
         while (true) {
             ob = refs.get(reference);
             if (ob == null && m_LazyObjectLoader != null) {
-                if ( m_LazyObjectLoader.loadObject(reference)) {
-                    ob = refs.get(reference);
-//                    printObjectDebug(ob);
-                }
+                ob = loadObject(reference);
+//                printObjectDebug(ob);
             }
 
             if (ob == null)
@@ -128,6 +254,33 @@ public class Library {
         return ob;
     }
 
+    /**
+     * Loads the object from the file, a thread asking for an object already
+     * being loaded waits and gets the same instance.
+     *
+     * @param reference reference of the object to load.
+     * @return the loaded object, or null if it could not be loaded.
+     */
+    private Object loadObject(Reference reference) {
+        Object lock = new Object();
+        Object existing = loadingLocks.putIfAbsent(reference, lock);
+        if (existing != null) {
+            lock = existing;
+        }
+        try {
+            synchronized (lock) {
+                Object ob = refs.get(reference);
+                if (ob == null && m_LazyObjectLoader.loadObject(reference)) {
+                    ob = refs.get(reference);
+                }
+                return ob;
+            }
+        }
+        finally {
+            loadingLocks.remove(reference, lock);
+        }
+    }
+
     /**
      * Utility method for displaying debug info related to PDF object loading.
      *
@@ -405,9 +558,7 @@ public class Library {
         while (true) {
             Object ob = refs.get(reference);
             if (ob == null && m_LazyObjectLoader != null) {
-                if (m_LazyObjectLoader.loadObject(reference)) {
-                    ob = refs.get(reference);
-                }
+                ob = loadObject(reference);
             }
             if (ob == null)
                 return null;
@@ -419,7 +570,10 @@ public class Library {
             } else if (ob instanceof Hashtable) {
                 Hashtable ht = (Hashtable) ob;
                 Resources resources = new Resources(this, ht);
-                addObject(resources, reference);
+                // keep the instance of any thread that got here first
+                if (!refs.replace(reference, ob, resources)) {
+                    continue;
+                }
                 return resources;
             }
             break;
@@ -587,5 +741,13 @@ public class Library {
         if (m_LazyObjectLoader != null) {
             m_LazyObjectLoader.dispose();
         }
+        synchronized (this) {
+            if (formCache != null) {
+                formCache.dispose();
+                formCache = null;
+            }
+        }
+        linearization = null;
+        pageReferences = null;
     }
 }
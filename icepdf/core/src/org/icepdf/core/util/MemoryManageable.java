@@ -47,6 +47,15 @@ public interface MemoryManageable {
      */
     public void reduceMemory();
 
+    /**
+     * Gets an estimate of the bytes retained by the implementing class that
+     * a call to reduceMemory() would release.  The memory manager uses it to
+     * keep the managed objects within their budget.
+     *
+     * @return estimated size in bytes, 0 if nothing is retained.
+     */
+    public long getMemorySize();
+
     /**
      * Get the document's library object.
      *
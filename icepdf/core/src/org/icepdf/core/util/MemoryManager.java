@@ -32,7 +32,13 @@
  */
 package org.icepdf.core.util;
 
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
@@ -42,6 +48,13 @@ import java.util.logging.Level;
  * occur, the <code>MemoryManager</code> is asked if it can allocate the needed amount of memory.
  * If there is not enough memory available, the <code>MemoryManager</code> will purge the
  * cache to try and free the requested amount of memory.
+ * <p/>
+ * The managed objects of each document are kept in the document's
+ * {@link MemoryPool}, which has its own least recently used list and limits.
+ * The bytes retained by all the pools are kept within a global budget by
+ * releasing the least recently used objects of the pools that retain the
+ * most.  The garbage collector is never invoked explicitly, memory that
+ * is released is reclaimed by the next collection the JVM runs on its own.
  */
 public class MemoryManager {
 
@@ -56,6 +69,44 @@ public class MemoryManager {
      */
     protected final Runtime runtime = Runtime.getRuntime();
 
+    // heap memory pools, the source of the heap use after collections
+    private static final MemoryPoolMXBean[] heapPools;
+
+    static {
+        ArrayList pools = new ArrayList(); // ArrayList<MemoryPoolMXBean>
+        try {
+            Iterator iterator = ManagementFactory.getMemoryPoolMXBeans().iterator();
+            while (iterator.hasNext()) {
+                MemoryPoolMXBean pool = (MemoryPoolMXBean) iterator.next();
+                if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                    pools.add(pool);
+                }
+            }
+        } catch (Throwable e) {
+            logger.log(Level.FINE, "Heap memory pools not available.");
+            pools.clear();
+        }
+        heapPools = (MemoryPoolMXBean[]) pools.toArray(
+                new MemoryPoolMXBean[pools.size()]);
+    }
+
+    // collectors of the heap, their collection counts tell when the heap
+    // use after the last collection has been measured again
+    private static final GarbageCollectorMXBean[] collectors;
+
+    static {
+        GarbageCollectorMXBean[] beans;
+        try {
+            List list = ManagementFactory.getGarbageCollectorMXBeans();
+            beans = (GarbageCollectorMXBean[]) list.toArray(
+                    new GarbageCollectorMXBean[list.size()]);
+        } catch (Throwable e) {
+            logger.log(Level.FINE, "Garbage collector beans not available.");
+            beans = new GarbageCollectorMXBean[0];
+        }
+        collectors = beans;
+    }
+
     /**
      * The minimum amount of free memory at which the memory manager will force
      * a purge of the cached pageTree.  This value can be set by the system
@@ -84,8 +135,35 @@ public class MemoryManager {
      */
     protected int maxSize;
 
-    protected WeakHashMap locked; // WeakHashMap< Object user, HashSet<MemoryManageable> >
-    protected ArrayList leastRecentlyUsed; // ArrayList<MemoryManageable>
+    /**
+     * The maximum number of bytes the managed objects of all documents may
+     * retain before the least recently used are released, this value can be
+     * set by the system property org.icepdf.core.memoryBudget.  A value of
+     * 0 (zero) means it will not be used.
+     */
+    protected long maxRetainedBytes;
+
+    /**
+     * The maximum number of bytes the managed objects of one document may
+     * retain, this value can be set by the system property
+     * org.icepdf.core.documentMemoryBudget.  A value of 0 (zero) means it
+     * will not be used.
+     */
+    protected long maxDocumentRetainedBytes;
+
+    /**
+     * Pools of the open documents, documents may share a pool.
+     */
+    protected Map pools; // Map<MemoryPool, Boolean>
+
+    // bytes retained by all the pools, kept up to date by the pools
+    private final AtomicLong retainedBytes = new AtomicLong();
+
+    // bytes released since the last garbage collection, which the heap use
+    // measured then still counts as used
+    private final AtomicLong releasedBytes = new AtomicLong();
+    // number of garbage collections when releasedBytes was last reset
+    private volatile long collectionCount = -1;
 
     protected long cumulativeDurationManagingMemory;
     protected long cumulativeDurationNotManagingMemory;
@@ -100,7 +178,7 @@ public class MemoryManager {
      *
      * @param memoryMangaer <code>MemoryManager</code> object to point to.
      */
-    public static void setInstance(MemoryManager memoryMangaer) {
+    public static synchronized void setInstance(MemoryManager memoryMangaer) {
         instance = memoryMangaer;
     }
 
@@ -110,7 +188,7 @@ public class MemoryManager {
      *
      * @return the current <code>MemoryManager</code> object org.icepdf.core.minMemory
      */
-    public static MemoryManager getInstance() {
+    public static synchronized MemoryManager getInstance() {
         if (instance == null) {
             instance = new MemoryManager();
         }
@@ -123,7 +201,7 @@ public class MemoryManager {
     protected MemoryManager() {
         // get min system meory
         try {
-            int t = parse("org.icepdf.core.minMemory");
+            long t = parse("org.icepdf.core.minMemory");
             if (t > 0) {
                 minMemory = t;
             }
@@ -138,49 +216,132 @@ public class MemoryManager {
 
         maxSize = Defs.sysPropertyInt("org.icepdf.core.maxSize", 0);
 
+        // by default the managed objects may retain half of the heap
+        maxRetainedBytes = maxMemory / 2;
+        try {
+            long t = parse("org.icepdf.core.memoryBudget");
+            if (t >= 0) {
+                maxRetainedBytes = t;
+            }
+        } catch (NumberFormatException e) {
+            logger.warning("Error reading org.icepdf.core.memoryBudget, " +
+                    "using the default of half the heap");
+        }
+        try {
+            long t = parse("org.icepdf.core.documentMemoryBudget");
+            if (t > 0) {
+                maxDocumentRetainedBytes = t;
+            }
+        } catch (NumberFormatException e) {
+            logger.warning("Error reading org.icepdf.core.documentMemoryBudget, " +
+                    "no per document budget is used");
+        }
 
-        locked = new WeakHashMap();
-        leastRecentlyUsed = new ArrayList(256);
+        pools = Collections.synchronizedMap(new WeakHashMap());
         delegates = new ArrayList(64);
     }
 
-    public synchronized void lock(Object user, MemoryManageable mm) {
-        if (user == null || mm == null)
-            return;
-//System.out.println("+-+ MM.lock()    user: " + user + ", mm: " + mm);
-        HashSet inUse = (HashSet) locked.get(user);
-        if (inUse == null) {
-            inUse = new HashSet(256);
-            locked.put(user, inUse);
+    /**
+     * Creates a pool for the objects of a document, with the default
+     * document limits, and places it under this manager's global budget.
+     *
+     * @return new pool.
+     */
+    public MemoryPool createMemoryPool() {
+        MemoryPool pool = new MemoryPool(maxDocumentRetainedBytes, maxSize);
+        registerMemoryPool(pool);
+        return pool;
+    }
+
+    /**
+     * Places a pool under this manager's global budget.
+     *
+     * @param pool pool to register.
+     */
+    public void registerMemoryPool(MemoryPool pool) {
+        pools.put(pool, Boolean.TRUE);
+        pool.setMemoryManager(this);
+    }
+
+    /**
+     * Adds to the bytes retained by all the pools, called by the pools as
+     * their objects change size or leave them.
+     */
+    void addRetainedBytes(long delta) {
+        retainedBytes.addAndGet(delta);
+    }
+
+    /**
+     * Records bytes released by the pools, they count as free until the
+     * next garbage collection.
+     */
+    void addReleasedBytes(long bytes) {
+        if (updateCollectionCount()) {
+            releasedBytes.addAndGet(bytes);
         }
-        inUse.add(mm);
-
-        leastRecentlyUsed.remove(mm);
-        leastRecentlyUsed.add(mm);
-
-        if (maxSize > 0) {
-            int numUsed = leastRecentlyUsed.size();
-            int numUsedMoreThanShould = numUsed - maxSize;
-            if (numUsedMoreThanShould > 0) {
-//System.out.println("+-+ MM.lock()      numUsedMoreThanShould: " + numUsedMoreThanShould + ", maxSize: " + maxSize + ", numUsed: " + numUsed);
-                int numToDo = Math.max(purgeSize, numUsedMoreThanShould);
-                int numDone = reduceMemory(numToDo);
+    }
+
+    /**
+     * Gets the bytes released since the last garbage collection.
+     */
+    private long getReleasedBytes() {
+        return updateCollectionCount() ? releasedBytes.get() : 0;
+    }
+
+    /**
+     * Resets the released bytes once a garbage collection has run.
+     *
+     * @return false if collections can't be counted, the released bytes
+     *         aren't tracked then.
+     */
+    private boolean updateCollectionCount() {
+        long count = 0;
+        for (int i = 0; i < collectors.length; i++) {
+            long collections = collectors[i].getCollectionCount();
+            if (collections > 0) {
+                count += collections;
             }
         }
+        if (collectors.length == 0) {
+            return false;
+        }
+        if (count != collectionCount) {
+            collectionCount = count;
+            releasedBytes.set(0);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the pools under this manager's global budget.
+     */
+    private MemoryPool[] getMemoryPools() {
+        synchronized (pools) {
+            return (MemoryPool[]) pools.keySet().toArray(
+                    new MemoryPool[pools.size()]);
+        }
+    }
+
+    private static MemoryPool getMemoryPool(MemoryManageable mm) {
+        Library library = mm.getLibrary();
+        return library != null ? library.getMemoryPool() : null;
     }
 
-    public synchronized void release(Object user, MemoryManageable mm) {
+    public void lock(Object user, MemoryManageable mm) {
         if (user == null || mm == null)
             return;
-//System.out.println("+-+ MM.release() user: " + user + ", mm: " + mm);
-        HashSet inUse = (HashSet) locked.get(user);
-        if (inUse != null) {
-            boolean removed = inUse.remove(mm);
-            // remove locked reference if it no longer holds any mm objects.
-            if (inUse.size() == 0) {
-                locked.remove(user);
-            }
-//if( removed ) System.out.println("+-+ MM.release() mm was removed");
+        MemoryPool pool = getMemoryPool(mm);
+        if (pool != null) {
+            pool.lock(user, mm);
+        }
+    }
+
+    public void release(Object user, MemoryManageable mm) {
+        if (user == null || mm == null)
+            return;
+        MemoryPool pool = getMemoryPool(mm);
+        if (pool != null) {
+            pool.release(user, mm);
         }
     }
 
@@ -189,91 +350,31 @@ public class MemoryManager {
             delegates.add(delegate);
     }
 
-    public synchronized void releaseAllByLibrary(Library library) {
-//System.out.println("+-+ MM.releaseAllByLibrary() library: " + library);
+    public void releaseAllByLibrary(Library library) {
         if (library == null)
             return;
 
         // Remove every MemoryManageable whose Library is library
-        // Go in reverse order, so removals won't affect indexing
-        for (int i = leastRecentlyUsed.size() - 1; i >= 0; i--) {
-            MemoryManageable mm = (MemoryManageable) leastRecentlyUsed.get(i);
-//System.out.println("+-+ MM.releaseAllByLibrary() LRU " + i + " of " + leastRecentlyUsed.size() + "  mm: " + mm);
-            Library lib = mm.getLibrary();
-            if (lib == null) {
-//System.out.println("*** MM.releaseAllByLibrary() mm.getLibrary() was null");
-                continue;
-            }
-//System.out.println("+-+ MM.releaseAllByLibrary() lib: " + lib + ",  lib == library (remove mm): " + lib.equals(library));
-            if (lib.equals(library)) {
-                leastRecentlyUsed.remove(i);
-            }
-        }
+        library.getMemoryPool().releaseAllByLibrary(library);
 
-        // Go through every user, and looks at the MemoryManageable(s)
-        //   that it's locking
-        ArrayList usersToRemove = new ArrayList(); // ArrayList<Object>
-        Set entries = locked.entrySet();
-        Iterator entryIterator = entries.iterator();
-        while (entryIterator.hasNext()) {
-            Map.Entry entry = (Map.Entry) entryIterator.next();
-            Object user = entry.getKey();
-//System.out.println("+-+ MM.releaseAllByLibrary() user: " + user);
-            HashSet inUse = (HashSet) entry.getValue();
-            if (inUse != null) {
-                // Remove every MemoryManageable whose Library is library
-                ArrayList mmsToRemove = new ArrayList(); // ArrayList<MemoryManageable>
-                Iterator mms = inUse.iterator();
-                while (mms.hasNext()) {
-                    MemoryManageable mm = (MemoryManageable) mms.next();
-//System.out.println("+-+ MM.releaseAllByLibrary()   mm: " + mm);
-                    if (mm != null) {
-                        Library lib = mm.getLibrary();
-                        if (lib == null) {
-//System.out.println("*** MM.releaseAllByLibrary()   mm.getLibrary() was null");
-                            continue;
-                        }
-//System.out.println("+-+ MM.releaseAllByLibrary()   lib: " + lib + ",  lib == library (remove mm): " + lib.equals(library));
-                        if (lib.equals(library)) {
-                            mmsToRemove.add(mm);
-                        }
-                    }
-                }
-                for (int i = 0; i < mmsToRemove.size(); i++)
-                    inUse.remove(mmsToRemove.get(i));
-                mmsToRemove.clear();
-
-                // If the user has no more MemoryManageable(s)
-                //   locked, then remove it as well.
-                // We don't immediately remove it, since the
-                //   iterators are fail-fast. Instead, mark them
-                //   for removal, and do it after iterating
-                if (inUse.size() == 0) {
-//System.out.println("+-+ MM.releaseAllByLibrary() remove user: " + user);
-                    usersToRemove.add(user);
-                }
-            }
-        }
-        for (int i = 0; i < usersToRemove.size(); i++)
-            locked.remove(usersToRemove.get(i));
-        usersToRemove.clear();
-
-        for (int i = delegates.size() - 1; i >= 0; i--) {
-            MemoryManagerDelegate mmd = (MemoryManagerDelegate) delegates.get(i);
-            boolean shouldRemove = false;
-            if (mmd == null)
-                shouldRemove = true;
-            else {
-                Library lib = mmd.getLibrary();
-                if (lib == null)
+        synchronized (this) {
+            for (int i = delegates.size() - 1; i >= 0; i--) {
+                MemoryManagerDelegate mmd = (MemoryManagerDelegate) delegates.get(i);
+                boolean shouldRemove = false;
+                if (mmd == null)
                     shouldRemove = true;
                 else {
-                    if (lib.equals(library))
+                    Library lib = mmd.getLibrary();
+                    if (lib == null)
                         shouldRemove = true;
+                    else {
+                        if (lib.equals(library))
+                            shouldRemove = true;
+                    }
                 }
+                if (shouldRemove)
+                    delegates.remove(i);
             }
-            if (shouldRemove)
-                delegates.remove(i);
         }
     }
 
@@ -282,20 +383,26 @@ public class MemoryManager {
      * @return If potentially reduced some memory
      */
     protected synchronized boolean reduceMemory() {
-        int numToDo = purgeSize;
-
-        int aggressive = 0;
-        int lruSize = leastRecentlyUsed.size();
-        if (percentageDurationManagingMemory > 15 || lruSize > 100)
-            aggressive = lruSize * 60 / 100;
-        else if (lruSize > 50)
-            aggressive = lruSize * 50 / 100;
-        else if (lruSize > 20)
-            aggressive = lruSize * 40 / 100;
-        if (aggressive > numToDo)
-            numToDo = aggressive;
-
-        int numDone = reduceMemory(numToDo);
+        MemoryPool[] memoryPools = getMemoryPools();
+        int numDone = 0;
+        int numToDo = 0;
+        for (int i = 0; i < memoryPools.length; i++) {
+            int poolToDo = purgeSize;
+
+            int aggressive = 0;
+            int lruSize = memoryPools[i].size();
+            if (percentageDurationManagingMemory > 15 || lruSize > 100)
+                aggressive = lruSize * 60 / 100;
+            else if (lruSize > 50)
+                aggressive = lruSize * 50 / 100;
+            else if (lruSize > 20)
+                aggressive = lruSize * 40 / 100;
+            if (aggressive > poolToDo)
+                poolToDo = aggressive;
+
+            numToDo += poolToDo;
+            numDone += memoryPools[i].reduceMemory(poolToDo);
+        }
 
         boolean delegatesReduced = false;
         if (numDone == 0)
@@ -306,42 +413,113 @@ public class MemoryManager {
         return ((numDone > 0) || delegatesReduced);
     }
 
-    protected int reduceMemory(int numToDo) {
-//System.out.println("+-+ MM.reduceMemory() numToDo: " + numToDo + ", LRU size: " + leastRecentlyUsed.size());
-        int numDone = 0;
-        try {
-            int leastRecentlyUsedIndex = 0;
-            while (numDone < numToDo && leastRecentlyUsedIndex < leastRecentlyUsed.size()) {
-//System.out.println("+-+ MM.reduceMemory()   index: " + leastRecentlyUsedIndex + ", size: " + leastRecentlyUsed.size());
-                MemoryManageable mm =
-                        (MemoryManageable) leastRecentlyUsed.get(leastRecentlyUsedIndex);
-//System.out.println("+-+ MM.reduceMemory()   isLocked: " + isLocked(mm) + ", mm: " + mm);
-                if (!isLocked(mm)) {
-                    mm.reduceMemory();
-                    numDone++;
-                    leastRecentlyUsed.remove(leastRecentlyUsedIndex);
-                } else
-                    leastRecentlyUsedIndex++;
+    /**
+     * Releases objects of the pools that retain the most first, so a
+     * document that has taken more than its share of the memory gives it
+     * back before the others, until the given number of bytes have been
+     * released.
+     *
+     * @param bytesToFree number of bytes to release.
+     * @param memoryPools the pools.
+     * @param retained    bytes retained by each pool, updated as released.
+     * @return number of bytes released.
+     */
+    protected long reduceMemoryBytes(long bytesToFree,
+                                     MemoryPool[] memoryPools, long[] retained) {
+        long bytesFreed = 0;
+        boolean[] exhausted = new boolean[memoryPools.length];
+        while (bytesFreed < bytesToFree) {
+            // find the largest pool, and the size of the runner up
+            int largest = -1;
+            long next = 0;
+            for (int i = 0; i < memoryPools.length; i++) {
+                if (exhausted[i]) {
+                    continue;
+                }
+                if (largest < 0 || retained[i] > retained[largest]) {
+                    if (largest >= 0) {
+                        next = Math.max(next, retained[largest]);
+                    }
+                    largest = i;
+                } else {
+                    next = Math.max(next, retained[i]);
+                }
             }
+            if (largest < 0) {
+                break;
+            }
+            // bring the largest pool down to the runner up
+            long target = Math.min(bytesToFree - bytesFreed,
+                    Math.max(retained[largest] - next, 1));
+            long freed = memoryPools[largest].reduceMemoryBytes(target);
+            if (freed <= 0) {
+                exhausted[largest] = true;
+            }
+            retained[largest] -= freed;
+            bytesFreed += freed;
         }
-        catch (Exception e) {
-            logger.log(Level.FINE, "Problem while reducing memory",e);
+        return bytesFreed;
+    }
+
+    /**
+     * Releases objects until the library's pool, and the bytes about to be
+     * allocated for it, fit within the pool's budget, and the pools all
+     * together fit within the global budget.
+     *
+     * @param library library about to allocate, can be null.
+     * @param bytes   number of bytes about to be allocated.
+     * @return number of bytes released.
+     */
+    protected long reduceMemoryToBudget(Library library, int bytes) {
+        long bytesFreed = 0;
+        if (library != null) {
+            bytesFreed += library.getMemoryPool().reduceMemoryToBudget(bytes);
         }
-//System.out.println("+-+ MM.reduceMemory()   managing: " + cumulativeDurationManagingMemory + ", not: " + cumulativeDurationNotManagingMemory + "      managing: " + percentageDurationManagingMemory + "%");
-        return numDone;
-    }
-
-    protected synchronized boolean isLocked(MemoryManageable mm) {
-        Set entries = locked.entrySet();
-        Iterator entryIterator = entries.iterator();
-        // this can get pretty inefficient if locked is large
-        while (entryIterator.hasNext()) {
-            Map.Entry entry = (Map.Entry) entryIterator.next();
-            HashSet inUse = (HashSet) entry.getValue();
-            if (inUse != null && inUse.contains(mm))
-                return true;
+        if (maxRetainedBytes > 0) {
+            long excess = retainedBytes.get() + bytes - maxRetainedBytes;
+            if (excess > 0) {
+                MemoryPool[] memoryPools = getMemoryPools();
+                long[] retained = new long[memoryPools.length];
+                for (int i = 0; i < memoryPools.length; i++) {
+                    retained[i] = memoryPools[i].getRetainedBytes();
+                }
+                bytesFreed += reduceMemoryBytes(excess, memoryPools, retained);
+            }
         }
-        return false;
+        return bytesFreed;
+    }
+
+    /**
+     * Gets the bytes retained by the managed objects of all pools.
+     *
+     * @return estimated retained bytes.
+     */
+    public long getRetainedBytes() {
+        return retainedBytes.get();
+    }
+
+    /**
+     * Sets the maximum number of bytes the managed objects of all documents
+     * may retain, 0 for no limit.
+     */
+    public void setMaxRetainedBytes(long bytes) {
+        maxRetainedBytes = bytes;
+    }
+
+    public long getMaxRetainedBytes() {
+        return maxRetainedBytes;
+    }
+
+    /**
+     * Sets the maximum number of bytes the managed objects of one document
+     * may retain, 0 for no limit.  Applies to the pools created afterwards.
+     */
+    public void setMaxDocumentRetainedBytes(long bytes) {
+        maxDocumentRetainedBytes = bytes;
+    }
+
+    public long getMaxDocumentRetainedBytes() {
+        return maxDocumentRetainedBytes;
     }
 
     protected synchronized boolean reduceMemoryWithDelegates(boolean aggressively) {
@@ -360,29 +538,39 @@ public class MemoryManager {
 
 
     /**
-     * Utility method to parse memory values specified by the k, K, m or M and
-     * return the corresponding number of bytes.
+     * Utility method to parse memory values specified by the k, K, m, M, g or
+     * G and return the corresponding number of bytes.
      *
      * @param memoryValue memory value to parse
-     * @return the number of bytes
+     * @return the number of bytes, -1 if the property isn't set
+     * @throws NumberFormatException if the value isn't a number of bytes
      */
-    private final static int parse(String memoryValue) {
+    private final static long parse(String memoryValue) {
         String s = Defs.sysProperty(memoryValue);
         if (s == null) {
             return -1;
         }
-        int mult = 1;
+        s = s.trim();
+        if (s.length() == 0) {
+            throw new NumberFormatException("Empty memory value");
+        }
+        long mult = 1;
         char c = s.charAt(s.length() - 1);
         if (c == 'k' || c == 'K') {
-            mult = 1024;
-            s = s.substring(0, s.length() - 1);
+            mult = 1024L;
+        } else if (c == 'm' || c == 'M') {
+            mult = 1024L * 1024;
+        } else if (c == 'g' || c == 'G') {
+            mult = 1024L * 1024 * 1024;
         }
-        if (c == 'm' || c == 'M') {
-            mult = 1024 * 1024;
+        if (mult > 1) {
             s = s.substring(0, s.length() - 1);
         }
-
-        return mult * Integer.parseInt(s);
+        long value = Long.parseLong(s);
+        if (value > Long.MAX_VALUE / mult) {
+            throw new NumberFormatException("Memory value too large: " + s);
+        }
+        return mult * value;
     }
 
     /**
@@ -432,54 +620,44 @@ public class MemoryManager {
     /**
      * Will return true if the system is not in a low memory
      * condition after allocation of specified number of bytes.
+     * The heap is measured as it is, garbage that hasn't been collected
+     * yet is counted as used.
      */
-    private boolean canAllocate(int bytes, boolean doGC) {
-        long mem = runtime.freeMemory();
-
-        // Enough memory?
-        if ((mem - bytes) > minMemory) {
-            return true;
-        }
+    private boolean canAllocate(long bytes) {
+        return getShortfall(bytes) <= 0;
+    }
 
-        // Do we allow the heap to grow?
-        long total = runtime.totalMemory();
+    /**
+     * Gets the number of bytes missing to allocate the specified number of
+     * bytes and still keep minMemory free, allowing the heap to grow to
+     * maxMemory.  Objects released since the last collection count as free,
+     * otherwise every check until the next collection would see the same
+     * shortfall and release more.
+     */
+    private long getShortfall(long bytes) {
+        long used = getUsedMemory();
+        long available = Math.max(maxMemory, runtime.totalMemory()) - used +
+                Math.min(getReleasedBytes(), used);
+        return bytes + minMemory - available;
+    }
 
-        if (maxMemory > total) {
-            mem += maxMemory - total;
-            if ((mem - bytes) > minMemory) {
-                return true;
+    /**
+     * Gets the heap in use.  Garbage doesn't count, so where the JVM reports
+     * it, the heap used right after the last collection is taken instead
+     * of the current use.
+     */
+    private long getUsedMemory() {
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        long collectedUsed = 0;
+        for (int i = 0; i < heapPools.length; i++) {
+            MemoryUsage usage = heapPools[i].getCollectionUsage();
+            if (usage == null) {
+                return used;
             }
+            collectedUsed += usage.getUsed();
         }
-
-        // This is so that checkMemory() can try to clear out
-        //  some cached pages _before_ running the garbage collector,
-        //  which saves a lot of CPU
-        if (!doGC)
-            return false;
-
-        // Nope, try GC
-        System.gc();
-        mem = runtime.freeMemory();
-
-        // Enough memory?
-        if ((mem - bytes) > minMemory) {
-            return true;
-        }
-
-
-        // Nope, try heavy GC
-        System.runFinalization();
-        System.gc();
-        mem = runtime.freeMemory();
-
-        // Enough memory?
-        if ((mem - bytes) > minMemory) {
-            return true;
-        }
-
-        // We are low on memory!
-        //System.out.println("Failed -not enough Available Memory " + mem);
-        return false;
+        return heapPools.length > 0 && collectedUsed > 0 ?
+                Math.min(used, collectedUsed) : used;
     }
 
     /**
@@ -490,32 +668,50 @@ public class MemoryManager {
      * and free up the memory it has allocated.
      */
     public boolean isLowMemory() {
-        return !canAllocate(0, true);
+        return !canAllocate(0);
     }
 
     /**
+     * Keeps the managed objects within their budget and, if the heap is short
+     * of the memory needed, releases the least recently used objects.  The
+     * garbage collector isn't invoked, released objects are counted as free.
+     *
      * @param memoryNeeded
      * @return true if it's sure we can allocate memoryNeeded number of bytes
      */
     public boolean checkMemory(int memoryNeeded) {
+        return checkMemory(null, memoryNeeded);
+    }
+
+    /**
+     * Keeps the library's pool within its budget, then checks the memory
+     * needed as {@link #checkMemory(int)} does.
+     *
+     * @param library      library about to allocate, can be null.
+     * @param memoryNeeded
+     * @return true if it's sure we can allocate memoryNeeded number of bytes
+     */
+    public boolean checkMemory(Library library, int memoryNeeded) {
         long beginTime = System.currentTimeMillis();
-        int count = 0;
-        // try and allocate memory, but quit after ten tries.
-        while (!canAllocate((int) memoryNeeded, count > 0)) {
-            // cache files on memory check
-            boolean reducedSomething = reduceMemory();
-            if (!reducedSomething && count > 0) {
-                finishedMemoryProcessing(beginTime);
-                return false;
+        reduceMemoryToBudget(library, memoryNeeded);
+        // the bytes just released are already counted as free
+        long shortfall = getShortfall(memoryNeeded);
+        boolean canAllocate = shortfall <= 0;
+        if (!canAllocate) {
+            MemoryPool[] memoryPools = getMemoryPools();
+            long[] retained = new long[memoryPools.length];
+            for (int i = 0; i < memoryPools.length; i++) {
+                retained[i] = memoryPools[i].getRetainedBytes();
             }
-            count++;
-            if (count > 10) {
-                finishedMemoryProcessing(beginTime);
-                return false;
+            long bytesFreed = reduceMemoryBytes(shortfall, memoryPools, retained);
+            canAllocate = bytesFreed >= shortfall;
+            if (!canAllocate) {
+                // the pages weren't enough, or their size isn't known
+                canAllocate = reduceMemory();
             }
         }
         finishedMemoryProcessing(beginTime);
-        return true;
+        return canAllocate;
     }
 
     private void finishedMemoryProcessing(long beginTime) {
@@ -0,0 +1,459 @@
+/*
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * "The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations under
+ * the License.
+ *
+ * The Original Code is ICEpdf 3.0 open source software code, released
+ * May 1st, 2009. The Initial Developer of the Original Code is ICEsoft
+ * Technologies Canada, Corp. Portions created by ICEsoft are Copyright (C)
+ * 2004-2009 ICEsoft Technologies Canada, Corp. All Rights Reserved.
+ *
+ * Contributor(s): _____________________.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"
+ * License), in which case the provisions of the LGPL License are
+ * applicable instead of those above. If you wish to allow use of your
+ * version of this file only under the terms of the LGPL License and not to
+ * allow others to use your version of this file under the MPL, indicate
+ * your decision by deleting the provisions above and replace them with
+ * the notice and other provisions required by the LGPL License. If you do
+ * not delete the provisions above, a recipient may use your version of
+ * this file under either the MPL or the LGPL License."
+ *
+ */
+package org.icepdf.core.util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A <code>MemoryPool</code> holds the least recently used list and the leases
+ * of the <code>MemoryManageable</code> objects of one document, or of the
+ * documents of one tenant when a pool is shared, and keeps them within the
+ * pool's own limits.  Pools are independent of each other, so releasing the
+ * objects of one document never touches another's and each pool has its own
+ * monitor.  The <code>MemoryManager</code> sits above the pools and keeps
+ * their total within the global budget.
+ * <p/>
+ * Each object has a lease count, and only objects without leases are kept
+ * in the least recently used order, so locking, releasing and evicting an
+ * object take constant time.  The bytes retained by the pool are kept as a
+ * running total, refreshed from an object's size whenever it is locked or
+ * released, so reading it neither walks the objects nor takes the monitor.
+ * Evicted objects are taken out of the pool under the monitor but their
+ * memory is reduced after leaving it, so other threads aren't held up by
+ * the objects being disposed.
+ * <p/>
+ * Leases are counted under the pool's monitor rather than in a striped or
+ * lock free table, as a lease moves its object in and out of the least
+ * recently used order, which needs the same lock.  Threads rendering
+ * different documents use different pools and never contend, threads
+ * rendering one document share its monitor for a few map operations.
+ *
+ * @since 3.1
+ */
+public class MemoryPool {
+
+    private static final Logger logger =
+            Logger.getLogger(MemoryPool.class.toString());
+
+    /**
+     * The maximum number of bytes the pool's objects may retain, 0 (zero)
+     * means it will not be used.
+     */
+    protected long maxRetainedBytes;
+
+    /**
+     * The maximum number of objects the pool may hold before purging
+     * commences, 0 (zero) means it will not be used.
+     */
+    protected int maxSize;
+
+    /**
+     * How many objects are purged at once when maxSize is exceeded.
+     */
+    protected int purgeSize;
+
+    // lease count of every object in the pool
+    private HashMap<MemoryManageable, Lease> leases;
+    // objects without leases, least recently used first, the eviction order
+    private LinkedHashMap<MemoryManageable, Lease> unleased;
+    // objects leased by each user
+    private WeakHashMap<Object, UserLeases> users;
+    // releases the leases of users that were garbage collected without
+    // releasing them
+    private ReferenceQueue<Object> collectedUsers;
+    private HashSet<UserReference> userReferences;
+
+    // bytes retained by the pool's objects, as of their last lock or release
+    private volatile long retainedBytes;
+    // manager whose global total includes this pool, set on registration
+    private MemoryManager memoryManager;
+
+    /**
+     * Creates a new pool.
+     *
+     * @param maxRetainedBytes maximum number of bytes the pool's objects may
+     *                         retain, 0 for no limit.
+     * @param maxSize          maximum number of objects in the pool, 0 for
+     *                         no limit.
+     */
+    public MemoryPool(long maxRetainedBytes, int maxSize) {
+        this.maxRetainedBytes = maxRetainedBytes;
+        this.maxSize = maxSize;
+        purgeSize = Defs.sysPropertyInt("org.icepdf.core.purgeSize", 5);
+        leases = new HashMap<MemoryManageable, Lease>(256);
+        unleased = new LinkedHashMap<MemoryManageable, Lease>(256);
+        users = new WeakHashMap<Object, UserLeases>();
+        collectedUsers = new ReferenceQueue<Object>();
+        userReferences = new HashSet<UserReference>();
+    }
+
+    /**
+     * Leases the object to the user, it won't be released until the user
+     * releases it.  A user holds at most one lease on an object.
+     *
+     * @param user user of the object.
+     * @param mm   object to lease.
+     */
+    public void lock(Object user, MemoryManageable mm) {
+        int numToDo = 0;
+        synchronized (this) {
+            expungeCollectedUsers();
+            UserLeases userLeases = users.get(user);
+            if (userLeases == null) {
+                userLeases = new UserLeases();
+                userLeases.reference = new UserReference(user, collectedUsers, userLeases);
+                userReferences.add(userLeases.reference);
+                users.put(user, userLeases);
+            }
+            Lease lease = leases.get(mm);
+            if (lease == null) {
+                lease = new Lease();
+                leases.put(mm, lease);
+            }
+            if (userLeases.held.add(mm)) {
+                lease.count++;
+            }
+            unleased.remove(mm);
+            updateSize(mm, lease);
+
+            if (maxSize > 0) {
+                int numUsedMoreThanShould = leases.size() - maxSize;
+                if (numUsedMoreThanShould > 0) {
+                    numToDo = Math.max(purgeSize, numUsedMoreThanShould);
+                }
+            }
+        }
+        if (numToDo > 0) {
+            reduceMemory(numToDo);
+        }
+    }
+
+    /**
+     * Releases the user's lease on the object.  Once it has no lease left
+     * the object becomes the most recently used candidate for release.
+     *
+     * @param user user of the object.
+     * @param mm   object to release.
+     */
+    public synchronized void release(Object user, MemoryManageable mm) {
+        expungeCollectedUsers();
+        UserLeases userLeases = users.get(user);
+        if (userLeases != null && userLeases.held.remove(mm)) {
+            releaseLease(mm);
+            // remove the user if it no longer holds any mm objects.
+            if (userLeases.held.isEmpty()) {
+                users.remove(user);
+                userReferences.remove(userLeases.reference);
+                userLeases.reference.clear();
+            }
+        }
+    }
+
+    private void releaseLease(MemoryManageable mm) {
+        Lease lease = leases.get(mm);
+        if (lease != null) {
+            // objects typically grow while leased, as pages are initialized
+            updateSize(mm, lease);
+            if (--lease.count == 0) {
+                unleased.put(mm, lease);
+            }
+        }
+    }
+
+    /**
+     * Refreshes the size recorded for an object, and the pool's total.
+     */
+    private void updateSize(MemoryManageable mm, Lease lease) {
+        long size = mm.getMemorySize();
+        addRetainedBytes(size - lease.size);
+        lease.size = size;
+    }
+
+    private void addRetainedBytes(long delta) {
+        if (delta != 0) {
+            retainedBytes += delta;
+            if (memoryManager != null) {
+                memoryManager.addRetainedBytes(delta);
+            }
+        }
+    }
+
+    /**
+     * Places the pool's total within the manager's global total, called
+     * when the pool is registered with the manager.
+     *
+     * @param memoryManager manager the pool is registered with.
+     */
+    synchronized void setMemoryManager(MemoryManager memoryManager) {
+        if (this.memoryManager == memoryManager) {
+            return;
+        }
+        if (this.memoryManager != null) {
+            this.memoryManager.addRetainedBytes(-retainedBytes);
+        }
+        this.memoryManager = memoryManager;
+        if (memoryManager != null) {
+            memoryManager.addRetainedBytes(retainedBytes);
+        }
+    }
+
+    /**
+     * Releases the leases of the users that were garbage collected.
+     */
+    private void expungeCollectedUsers() {
+        UserReference reference;
+        while ((reference = (UserReference) collectedUsers.poll()) != null) {
+            if (userReferences.remove(reference)) {
+                Iterator<MemoryManageable> held =
+                        reference.userLeases.held.iterator();
+                while (held.hasNext()) {
+                    releaseLease(held.next());
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes every object of the library from the pool, without reducing
+     * their memory.
+     *
+     * @param library library whose objects are removed.
+     */
+    public synchronized void releaseAllByLibrary(Library library) {
+        Iterator<Map.Entry<MemoryManageable, Lease>> mms =
+                leases.entrySet().iterator();
+        while (mms.hasNext()) {
+            Map.Entry<MemoryManageable, Lease> entry = mms.next();
+            MemoryManageable mm = entry.getKey();
+            if (library.equals(mm.getLibrary())) {
+                mms.remove();
+                unleased.remove(mm);
+                addRetainedBytes(-entry.getValue().size);
+            }
+        }
+
+        // Go through every user, and remove the library's objects that
+        //   it's leasing, and the user itself once it leases nothing.
+        Iterator<UserLeases> userIterator = users.values().iterator();
+        while (userIterator.hasNext()) {
+            UserLeases userLeases = userIterator.next();
+            Iterator<MemoryManageable> held = userLeases.held.iterator();
+            while (held.hasNext()) {
+                if (library.equals(held.next().getLibrary())) {
+                    held.remove();
+                }
+            }
+            if (userLeases.held.isEmpty()) {
+                userIterator.remove();
+                userReferences.remove(userLeases.reference);
+                userLeases.reference.clear();
+            }
+        }
+    }
+
+    /**
+     * Reduces the memory of the least recently used objects that aren't
+     * leased.
+     *
+     * @param numToDo number of objects to reduce.
+     * @return number of objects reduced.
+     */
+    public int reduceMemory(int numToDo) {
+        ArrayList<Map.Entry<MemoryManageable, Lease>> victims =
+                new ArrayList<Map.Entry<MemoryManageable, Lease>>();
+        takeLeastRecentlyUsed(numToDo, Long.MAX_VALUE, victims);
+        reduceMemory(victims);
+        return victims.size();
+    }
+
+    /**
+     * Reduces the memory of the least recently used objects that aren't
+     * leased until the given number of bytes have been released.
+     *
+     * @param bytesToFree number of bytes to release.
+     * @return number of bytes released.
+     */
+    public long reduceMemoryBytes(long bytesToFree) {
+        ArrayList<Map.Entry<MemoryManageable, Lease>> victims =
+                new ArrayList<Map.Entry<MemoryManageable, Lease>>();
+        long bytesFreed = takeLeastRecentlyUsed(Integer.MAX_VALUE,
+                bytesToFree, victims);
+        reduceMemory(victims);
+        return bytesFreed;
+    }
+
+    /**
+     * Removes the least recently used objects without leases from the pool,
+     * until either the given number of objects or of bytes is reached.
+     *
+     * @param numToDo     maximum number of objects to remove.
+     * @param bytesToFree number of bytes to remove.
+     * @param victims     receives the removed objects and their leases.
+     * @return bytes the removed objects retained.
+     */
+    private synchronized long takeLeastRecentlyUsed(
+            int numToDo, long bytesToFree,
+            List<Map.Entry<MemoryManageable, Lease>> victims) {
+        expungeCollectedUsers();
+        long bytesTaken = 0;
+        Iterator<Map.Entry<MemoryManageable, Lease>> iterator =
+                unleased.entrySet().iterator();
+        while (victims.size() < numToDo && bytesTaken < bytesToFree &&
+                iterator.hasNext()) {
+            Map.Entry<MemoryManageable, Lease> entry = iterator.next();
+            iterator.remove();
+            leases.remove(entry.getKey());
+            long size = entry.getValue().size;
+            addRetainedBytes(-size);
+            bytesTaken += size;
+            victims.add(entry);
+        }
+        return bytesTaken;
+    }
+
+    /**
+     * Reduces the memory of objects removed from the pool, called without
+     * holding the pool's monitor.
+     *
+     * @param victims objects removed by takeLeastRecentlyUsed.
+     */
+    private void reduceMemory(List<Map.Entry<MemoryManageable, Lease>> victims) {
+        for (int i = 0, max = victims.size(); i < max; i++) {
+            Map.Entry<MemoryManageable, Lease> entry = victims.get(i);
+            MemoryManageable mm = entry.getKey();
+            // the object may have been leased again since it was taken
+            if (isLocked(mm)) {
+                continue;
+            }
+            try {
+                mm.reduceMemory();
+                if (memoryManager != null) {
+                    memoryManager.addReleasedBytes(entry.getValue().size);
+                }
+            }
+            catch (Exception e) {
+                logger.log(Level.FINE, "Problem while reducing memory", e);
+            }
+        }
+    }
+
+    /**
+     * Releases objects until the pool's objects, and the bytes about to be
+     * allocated for it, fit within the pool's budget.
+     *
+     * @param bytes number of bytes about to be allocated.
+     * @return number of bytes released.
+     */
+    public long reduceMemoryToBudget(int bytes) {
+        if (maxRetainedBytes <= 0) {
+            return 0;
+        }
+        long excess = getRetainedBytes() + bytes - maxRetainedBytes;
+        return excess > 0 ? reduceMemoryBytes(excess) : 0;
+    }
+
+    protected synchronized boolean isLocked(MemoryManageable mm) {
+        Lease lease = leases.get(mm);
+        return lease != null && lease.count > 0;
+    }
+
+    /**
+     * Gets the bytes retained by the pool's objects, as of the last time
+     * each was locked or released.
+     *
+     * @return estimated retained bytes.
+     */
+    public long getRetainedBytes() {
+        return retainedBytes;
+    }
+
+    /**
+     * Gets the number of objects in the pool.
+     *
+     * @return number of objects.
+     */
+    public synchronized int size() {
+        return leases.size();
+    }
+
+    public void setMaxRetainedBytes(long bytes) {
+        maxRetainedBytes = bytes;
+    }
+
+    public long getMaxRetainedBytes() {
+        return maxRetainedBytes;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Number of leases held on an object.
+     */
+    private static class Lease {
+        int count;
+        // bytes retained by the object when last locked or released
+        long size;
+    }
+
+    /**
+     * Objects leased by a user.
+     */
+    private static class UserLeases {
+        HashSet<MemoryManageable> held = new HashSet<MemoryManageable>();
+        UserReference reference;
+    }
+
+    /**
+     * Enqueued once a user is garbage collected, so the leases it still
+     * held can be released.
+     */
+    private static class UserReference extends WeakReference<Object> {
+        final UserLeases userLeases;
+
+        UserReference(Object user, ReferenceQueue<Object> queue,
+                      UserLeases userLeases) {
+            super(user, queue);
+            this.userLeases = userLeases;
+        }
+    }
+}
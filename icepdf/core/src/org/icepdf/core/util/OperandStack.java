@@ -0,0 +1,173 @@
+/*
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * "The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations under
+ * the License.
+ *
+ * The Original Code is ICEpdf 3.0 open source software code, released
+ * May 1st, 2009. The Initial Developer of the Original Code is ICEsoft
+ * Technologies Canada, Corp. Portions created by ICEsoft are Copyright (C)
+ * 2004-2009 ICEsoft Technologies Canada, Corp. All Rights Reserved.
+ *
+ * Contributor(s): _____________________.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"
+ * License), in which case the provisions of the LGPL License are
+ * applicable instead of those above. If you wish to allow use of your
+ * version of this file only under the terms of the LGPL License and not to
+ * allow others to use your version of this file under the MPL, indicate
+ * your decision by deleting the provisions above and replace them with
+ * the notice and other provisions required by the LGPL License. If you do
+ * not delete the provisions above, a recipient may use your version of
+ * this file under either the MPL or the LGPL License."
+ *
+ */
+package org.icepdf.core.util;
+
+import java.util.EmptyStackException;
+
+/**
+ * The <code>OperandStack</code> holds the operands of content stream
+ * operators.  Numbers are kept as primitives in parallel arrays, and are only
+ * boxed if they are popped as objects, so the path and colour operators which
+ * make up most content streams can be interpreted without allocating.  The
+ * stack is meant to be cleared and reused rather than recreated.
+ * <p/>
+ * Like java.util.Stack, popping or peeking an empty stack throws an
+ * EmptyStackException, and popping an operand which isn't a number as a
+ * float throws a ClassCastException.
+ *
+ * @since 3.1
+ */
+public class OperandStack {
+
+    private static final byte REAL = 0;
+    private static final byte INTEGER = 1;
+    private static final byte OBJECT = 2;
+
+    private byte[] types;
+    // doubles hold both int and float operands exactly
+    private double[] numbers;
+    private Object[] objects;
+    private int size;
+
+    public OperandStack() {
+        types = new byte[16];
+        numbers = new double[16];
+        objects = new Object[16];
+    }
+
+    public void pushReal(float value) {
+        ensureCapacity();
+        types[size] = REAL;
+        numbers[size] = value;
+        size++;
+    }
+
+    public void pushInteger(int value) {
+        ensureCapacity();
+        types[size] = INTEGER;
+        numbers[size] = value;
+        size++;
+    }
+
+    public void push(Object value) {
+        ensureCapacity();
+        types[size] = OBJECT;
+        objects[size] = value;
+        size++;
+    }
+
+    /**
+     * Pops the top operand, which must be a number.
+     *
+     * @return value of the operand.
+     */
+    public float popFloat() {
+        if (size == 0) {
+            throw new EmptyStackException();
+        }
+        size--;
+        if (types[size] == OBJECT) {
+            Object value = objects[size];
+            objects[size] = null;
+            return ((Number) value).floatValue();
+        }
+        return (float) numbers[size];
+    }
+
+    /**
+     * Pops the top operand, numbers are boxed as the Integer or Float the
+     * Parser would have returned for them.
+     *
+     * @return the top operand.
+     */
+    public Object pop() {
+        Object value = peek();
+        size--;
+        objects[size] = null;
+        return value;
+    }
+
+    public Object peek() {
+        if (size == 0) {
+            throw new EmptyStackException();
+        }
+        int top = size - 1;
+        switch (types[top]) {
+            case INTEGER:
+                return Integer.valueOf((int) numbers[top]);
+            case REAL:
+                return Float.valueOf((float) numbers[top]);
+            default:
+                return objects[top];
+        }
+    }
+
+    /**
+     * @return true if the top operand is a number, false if the stack is
+     *         empty or the top operand is another kind of object.
+     */
+    public boolean isNumber() {
+        return size > 0 &&
+                (types[size - 1] != OBJECT || objects[size - 1] instanceof Number);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            objects[i] = null;
+        }
+        size = 0;
+    }
+
+    private void ensureCapacity() {
+        if (size == types.length) {
+            int capacity = types.length * 2;
+            byte[] newTypes = new byte[capacity];
+            double[] newNumbers = new double[capacity];
+            Object[] newObjects = new Object[capacity];
+            System.arraycopy(types, 0, newTypes, 0, size);
+            System.arraycopy(numbers, 0, newNumbers, 0, size);
+            System.arraycopy(objects, 0, newObjects, 0, size);
+            types = newTypes;
+            numbers = newNumbers;
+            objects = newObjects;
+        }
+    }
+}
@@ -43,7 +43,6 @@ import org.icepdf.core.pobjects.fonts.FontDescriptor;
 import org.icepdf.core.pobjects.fonts.FontFactory;
 import org.icepdf.core.pobjects.graphics.TilingPattern;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -67,6 +66,10 @@ public class Parser {
     // InputStream has to support mark(), reset(), and markSupported()
     // DO NOT close this, since we have two cases: read everything up front, and progressive reads
     private InputStream reader;
+    // tokenizes from a window over the input, reader reads through it too
+    private Lexer lexer;
+    // set when parsing a file, so stream data can be left in the file
+    private SeekableInput seekableInput;
     boolean lastTokenHString = false;
     private Stack<Object> stack = new Stack<Object>();
     private int parseMode;
@@ -76,7 +79,9 @@ public class Parser {
     }
 
     public Parser(SeekableInput r, int pm) {
-        reader = r.getInputStream();
+        lexer = new Lexer(r);
+        reader = lexer;
+        seekableInput = r;
         parseMode = pm;
     }
 
@@ -85,7 +90,8 @@ public class Parser {
     }
 
     public Parser(InputStream r, int pm) {
-        reader = new BufferedInputStream(r);
+        lexer = new Lexer(r);
+        reader = lexer;
         parseMode = pm;
     }
 
@@ -99,6 +105,15 @@ public class Parser {
      * @throws PDFException error getting object from library
      */
     public Object getObject(Library library) throws PDFException {
+        try {
+            return parseObject(library);
+        }
+        finally {
+            syncInput();
+        }
+    }
+
+    private Object parseObject(Library library) throws PDFException {
         int deepnessCount = 0;
         boolean inObject = false; // currently parsing tokens in an object
         boolean complete = false; // flag used for do loop.
@@ -111,7 +126,7 @@ public class Parser {
 
                 // get the next token inside the object stream
                 try {
-                    nextToken = getToken();
+                    nextToken = readToken();
 //System.out.println("Parser.getObject()  nextToken: " + nextToken);
                     // commented out for performance reasons
                     //Thread.yield();
@@ -233,15 +248,15 @@ public class Parser {
                         reader.reset();
                         */
 
-                        if (reader instanceof SeekableInput) {
-                            SeekableInput streamDataInput = (SeekableInput) reader;
-                            long filePositionOfStreamData = streamDataInput.getAbsolutePosition();
+                        if (seekableInput != null) {
+                            SeekableInput streamDataInput = seekableInput;
+                            long filePositionOfStreamData = lexer.getAbsolutePosition();
                             long lengthOfStreamData;
                             // If the stream has a length that we can currently use
                             // such as a R that has been parsed or an integer
                             if (streamLength > 0) {
                                 lengthOfStreamData = streamLength;
-                                streamDataInput.seekRelative(streamLength);
+                                lexer.seekAbsolute(filePositionOfStreamData + streamLength);
                                 // Read any extraneous data coming after the length, but before endstream
 //                                long skipped = skipUntilEndstream( null );
                                 lengthOfStreamData += skipUntilEndstream(null);
@@ -250,7 +265,7 @@ public class Parser {
                             }
                             streamInputWrapper = new SeekableInputConstrainedWrapper(
                                     streamDataInput, filePositionOfStreamData, lengthOfStreamData, false);
-                        } else { // reader is just regular InputStream (BufferedInputStream)
+                        } else { // reader is just a regular InputStream
 //System.out.println("Parser.getObject()  stream  NOT SeekableInput");
                             ConservativeSizingByteArrayOutputStream out;
                             // If the stream in from a regular InputStream,
@@ -561,8 +576,19 @@ public class Parser {
      *                             has been encountered.
      */
     public Object getStreamObject() throws IOException {
+        return getStreamObject(getToken());
+    }
 
-        Object o = getToken();
+    /**
+     * Returns the object starting with the given token, parsing the rest of
+     * an array or dictionary from the content stream.
+     *
+     * @param o first token of the object.
+     * @return next object in the input stream
+     * @throws java.io.IOException when the end of the <code>InputStream</code>
+     *                             has been encountered.
+     */
+    Object getStreamObject(Object o) throws IOException {
         if (o instanceof String) {
             if (o.equals("<<")) {
                 Hashtable h = new Hashtable();
@@ -591,318 +617,74 @@ public class Parser {
 
     /**
      * Utility method used to parse a valid pdf token from an DataIinputStream.
-     * Each call to this method return one pdf token.  The Reader object is
-     * used to "mark" the location of the last "read".
+     * Each call to this method return one pdf token.  When parsing a
+     * SeekableInput, it is left positioned after the token.
      *
      * @return the next token in the pdf data stream
      * @throws java.io.IOException if an I/O error occurs.
      */
     public Object getToken() throws IOException {
-
-        int currentByte;
-        char currentChar;
-        boolean inString = false;  // currently parsing a string
-        boolean hexString = false;
-        lastTokenHString = false;
-
-        // strip all white space characters
-        do {
-            currentByte = reader.read();
-            // input stream interupted
-            if (currentByte < 0) {
-                throw new IOException();
-            }
-            currentChar = (char) currentByte;
+        try {
+            return readToken();
         }
-        while (isWhitespace(currentChar));
-
-        /**
-         *  look the start of different primative pdf objects
-         * ( - strints
-         * [ - arrays
-         * % - comments
-         */
-        if (currentChar == '(') {
-            // mark that we are currrently processing a string
-            inString = true;
-        } else if (currentChar == ']') {
-            // fount end of an array
-            return "]";
-        } else if (currentChar == '[') {
-            // fount begining of an array
-            return "[";
-        } else if (currentChar == '%') {
-            // ignore all the characters after a comment token until
-            // we get to the end of the line
-            StringBuffer stringBuffer = new StringBuffer();
-            do {
-                stringBuffer.append(currentChar);
-                currentByte = reader.read();
-                if (currentByte < 0) {
-                    // Final %%EOF might not have CR LF afterwards
-                    if (stringBuffer.length() > 0)
-                        return stringBuffer.toString();
-                    throw new IOException();
-                }
-                currentChar = (char) currentByte;
-            }
-            while (currentChar != 13 && currentChar != 10);
-            // return all the text that is in the comment
-            return stringBuffer.toString();
+        finally {
+            syncInput();
         }
+    }
 
-        // mark this location in the input stream
-        reader.mark(1);
-
-        // read the next char from the reader
-        char nextChar = (char) reader.read();
+    /**
+     * Reads the next token from the lexer, boxing numbers and wrapping
+     * strings as the object parsing expects.  Keywords and delimiters are
+     * returned as the shared constants of PdfOps where possible.
+     */
+    private Object readToken() throws IOException {
+        lexer.nextToken();
+        return getTokenObject();
+    }
 
-        // Check for dictionaries, start '<<' and end '>>'
-        if (currentChar == '>' && nextChar == '>') {
-            return ">>";
-        }
-        if (currentChar == '<') {
-            // if two "<<" then we have a dictionary
-            if (nextChar == '<') {
-                return "<<";
-            }
-            // Otherwise we have a hex number
-            else {
-                inString = true;
-                hexString = true;
-            }
+    /**
+     * Gets the lexer's current token as the object getToken() returns for it.
+     */
+    Object getTokenObject() {
+        lastTokenHString = false;
+        switch (lexer.getTokenType()) {
+            case Lexer.TOKEN_INTEGER:
+                return Integer.valueOf(lexer.getIntValue());
+            case Lexer.TOKEN_REAL:
+                return Float.valueOf(lexer.getFloatValue());
+            case Lexer.TOKEN_NAME:
+                return lexer.getName();
+            case Lexer.TOKEN_LITERAL_STRING:
+                return new LiteralStringObject(lexer.getStringBuffer());
+            case Lexer.TOKEN_HEX_STRING:
+                lastTokenHString = true;
+                return new HexStringObject(lexer.getStringBuffer());
+            default:
+                return lexer.getKeyword();
         }
+    }
 
-        // return to the previous mark
-        reader.reset();
-
-        // store the parsed char in the token buffer.
-        StringBuffer stringBuffer = new StringBuffer();
-        stringBuffer.append(currentChar);
-
-        /**
-         * Finally parse the contents of a complex token
-         */
-
-        int parenthesisCount = 0;
-        boolean complete = false;
-        // indicates that the current char should be ignored and not added to
-        // the current string.
-        boolean ignoreChar = false;
-
-        do { // while !complete
-
-            // if we are not parsing a string mark the location
-            if (!inString) {
-                reader.mark(1);
-            }
-            // get the next byte and corresponeding char
-            currentByte = reader.read();
-            // if ther are no more bytes (-1) then we should return previous
-            // stringBuffer value, otherwise the last grouping of tokens will
-            // be ignored, which is very bad.
-            if (currentByte >= 0) {
-                currentChar = (char) currentByte;
-            } else {
-                return stringBuffer.toString();
-            }
-
-            // if we are parsing a token that is a string, (...)
-            if (inString) {
-                if (hexString) {
-                    // found the end of a dictionary
-                    if (currentChar == '>') {
-                        complete = true;
-                        stringBuffer.append(currentChar);
-                        break;
-                    }
-                } else {
-                    // look for embedded strings
-                    if (currentChar == '(') {
-                        parenthesisCount++;
-                    }
-                    if (currentChar == ')') {
-                        if (parenthesisCount == 0) {
-                            complete = true;
-                            stringBuffer.append(currentChar);
-                            break;
-                        } else {
-                            parenthesisCount--;
-                        }
-                    }
-                    // look for  "\" character
-                    /**
-                     * The escape sequences can be as follows:
-                     *   \n  - line feed (LF)
-                     *   \r  - Carriage return (CR)
-                     *   \t  - Horizontal tab  (HT)
-                     *   \b  - backspace (BS)
-                     *   \f  - form feed (FF)
-                     *   \(  - left parenthesis
-                     *   \)  - right parenthesis
-                     *   \\  - backslash
-                     *   \ddd - character code ddd (octal)
-                     *
-                     * Note: (\0053) denotes a string containing two characters,
-                     *       \005 (Control-E) followed by the digit 3.
-                     */
-                    if (currentChar == '\\') {
-                        // read next char
-                        currentChar = (char) reader.read();
-
-                        // check for a digit, if so we have an octal
-                        // and we need to handle it correctly
-                        if (Character.isDigit(currentChar)) {
-                            // store the read digits
-                            StringBuffer digit = new StringBuffer();
-                            digit.append(currentChar);
-                            // octals have a max size of 3 digits, we already
-                            // have one, so there can be up 2 more digits.
-                            for (int i = 0; i < 2; i++) {
-                                // mark the reader incase the next read is not
-                                // a digit.
-                                reader.mark(1);
-                                // read next char
-                                currentChar = (char) reader.read();
-                                if (Character.isDigit(currentChar)) {
-                                    digit.append(currentChar);
-                                } else {
-                                    // back up the reader just incase
-                                    // thre is only 1 or 2 digits in the octal
-                                    reader.reset();
-                                    break;
-                                }
-                            }
-
-                            // finally convert digit to a character
-                            int charNumber = 0;
-                            try {
-                                charNumber = Integer.parseInt(digit.toString(), 8);
-                            }
-                            catch (NumberFormatException e) {
-                                logger.log(Level.FINE, "Integer parse error ", e);
-                            }
-                            // convert the interger from octal to dec.
-                            currentChar = (char) charNumber;
-                        }
-                        // do nothing
-                        else if (currentChar == '(' || currentChar == ')'
-                                || currentChar == '\\') {
-                        }
-                        // capture the horizontal tab (HT), tab character is hard
-                        // to find, only appears in files with font substitution and
-                        // as a result we ahve better luck drawing a space character.
-                        else if (currentChar == 't') {
-                            currentChar = '\t';
-                        }
-                        // capture the carriage return (CR)
-                        else if (currentChar == 'r') {
-                            currentChar = '\r';
-                        }
-                        // capture the line feed (LF)
-                        else if (currentChar == 'n') {
-                            currentChar = '\n';
-                        }
-                        // capture the backspace (BS)
-                        else if (currentChar == 'b') {
-                            currentChar = '\b';
-                        }
-                        // capture the form feed (FF)
-                        else if (currentChar == 'f') {
-                            currentChar = '\f';
-                        }
-                        // ignor CF, which indicate a '\' lone split line token
-                        else if (currentChar == 13) {
-                            ignoreChar = true;
-                        }
-                        // otherwise report the file format error
-                        else {
-                            if (logger.isLoggable(Level.FINE)) {
-                                logger.warning("C=" + ((int) currentChar));
-                            }
-                        }
-                    }
-                }
-            }
-            // if we are not in a string definition we want to break
-            // and return the current token, as white spaces or other elements
-            // would mean that we are on the next token
-            else if (isWhitespace(currentChar)) {
-                // return  stringBuffer.toString();
-
-                // we need to return the CR LR, as it is need by stream parsing
-                if (currentByte == 13 || currentByte == 10) {
-                    reader.reset();
-                    break;
-                }
-                // break on any whitespace
-                else {
-                    // return  stringBuffer.toString();
-                    break;
-                }
-            } else if (isDelimiter(currentChar)) {
-                // reset the reader so we start on this token on the next parse
-                reader.reset();
-                break;
-            }
-            // append the current char and keep parsing if needed
-            // IgnoreChar is set by the the line split char '\'
-            if (!ignoreChar) {
-                stringBuffer.append(currentChar);
-            }
-            // reset the ignorChar flag
-            else {
-                ignoreChar = false;
-            }
-        }
-        while (!complete);
-
-        /**
-         * Return what we found
-         */
-        // if a hex string decode it as needed
-        if (hexString) {
-            lastTokenHString = true;
-            return new HexStringObject(stringBuffer);
-        }
+    /**
+     * Gets the lexer this parser reads its tokens from, for interpreting
+     * content streams without creating an object for every token.
+     *
+     * @return lexer of this parser.
+     */
+    Lexer getLexer() {
+        return lexer;
+    }
 
-        // do a little clean up for any object that may have been missed..
-        // this mainly for the the document trailer information
-        // a orphaned string
-        if (inString) {
-            return new LiteralStringObject(stringBuffer);
-        }
-        // return a new name
-        else if (stringBuffer.charAt(0) == '/') {
-            return new Name(stringBuffer.deleteCharAt(0));
+    /**
+     * The lexer reads ahead of a SeekableInput's position, which other
+     * objects expect to be just after what was parsed.
+     */
+    private void syncInput() {
+        try {
+            lexer.sync();
         }
-        // if a number try and parse it
-        else {
-            boolean foundDigit = false;
-            boolean foundDecimal = false;
-            for (int i = stringBuffer.length() - 1; i >= 0; i--) {
-                char curr = stringBuffer.charAt(i);
-                if (curr == '.')
-                    foundDecimal = true;
-                else if (curr >= '0' && curr <= '9')
-                    foundDigit = true;
-            }
-            // Only bother trying to interpret as a number if contains a digit somewhere,
-            //   to reduce NumberFormatExceptions
-            if (foundDigit) {
-                try {
-                    if (foundDecimal)
-                        return Float.valueOf(stringBuffer.toString());
-                    else {
-                        return Integer.valueOf(stringBuffer.toString());
-                    }
-                }
-                catch (NumberFormatException ex) {
-                    // Debug.trace("Number format exception " + ex);
-                }
-            }
+        catch (IOException e) {
+            logger.log(Level.FINE, "Error positioning input.", e);
         }
-        return stringBuffer.toString();
     }
 
     public Object getNumberOrStringWithMark(int maxLength) throws IOException {
@@ -1169,7 +951,13 @@ public class Parser {
                 (c == '\n') || (c == '\f'));
     }
 
-    private static final boolean isDelimiter(char c) {
+    /**
+     * Delimiter characters defined by '[', ']', '(', ')', '<', '>', '{', '}',
+     * '/', '%'
+     *
+     * @param c
+     */
+    public static final boolean isDelimiter(char c) {
         return ((c == '[') || (c == ']') ||
                 (c == '(') || (c == ')') ||
                 (c == '<') || (c == '>') ||
@@ -133,6 +133,7 @@ public final class PdfOps {
     // Inline Images
     public static final String BI_TOKEN = "BI";
     public static final String ID_TOKEN = "ID";
+    public static final String EI_TOKEN = "EI";
     public static final String BPC_TOKEN = "BPC";
     public static final String BPC_NAME = "BitsPerComponent";
     public static final String CS_NAME = "ColorSpace";
@@ -147,4 +148,156 @@ public final class PdfOps {
     public static final String I_TOKEN = "I";
     public static final String I_NAME = "Indexed";
     public static final String W_NAME = "Width";
+
+    // Object syntax keywords
+    public static final String obj_TOKEN = "obj";
+    public static final String endobj_TOKEN = "endobj";
+    public static final String stream_TOKEN = "stream";
+    public static final String endstream_TOKEN = "endstream";
+    public static final String R_TOKEN = "R";
+    public static final String true_TOKEN = "true";
+    public static final String false_TOKEN = "false";
+    public static final String null_TOKEN = "null";
+    public static final String xref_TOKEN = "xref";
+    public static final String trailer_TOKEN = "trailer";
+    public static final String startxref_TOKEN = "startxref";
+
+    /**
+     * Operator code of a keyword which isn't one of the known tokens.
+     */
+    public static final int NO_OP = -1;
+
+    // Operator codes, which the Lexer returns for the tokens above so that
+    // keywords can be dispatched on without comparing strings.  Each code is
+    // the index of its token in OPERATOR_TOKENS.
+    public static final int m_OP = 0;
+    public static final int l_OP = 1;
+    public static final int c_OP = 2;
+    public static final int v_OP = 3;
+    public static final int y_OP = 4;
+    public static final int h_OP = 5;
+    public static final int re_OP = 6;
+    public static final int S_OP = 7;
+    public static final int s_OP = 8;
+    public static final int f_OP = 9;
+    public static final int F_OP = 10;
+    public static final int f_STAR_OP = 11;
+    public static final int B_OP = 12;
+    public static final int b_OP = 13;
+    public static final int B_STAR_OP = 14;
+    public static final int b_STAR_OP = 15;
+    public static final int Do_OP = 16;
+    public static final int n_OP = 17;
+    public static final int W_OP = 18;
+    public static final int W_STAR_OP = 19;
+    public static final int BX_OP = 20;
+    public static final int EX_OP = 21;
+    public static final int BDC_OP = 22;
+    public static final int BMC_OP = 23;
+    public static final int EMC_OP = 24;
+    public static final int DP_OP = 25;
+    public static final int MP_OP = 26;
+    public static final int ri_OP = 27;
+    public static final int sh_OP = 28;
+    public static final int d0_OP = 29;
+    public static final int d1_OP = 30;
+    public static final int BT_OP = 31;
+    public static final int ET_OP = 32;
+    public static final int Tm_OP = 33;
+    public static final int Td_OP = 34;
+    public static final int TD_OP = 35;
+    public static final int T_STAR_OP = 36;
+    public static final int Tj_OP = 37;
+    public static final int Tc_OP = 38;
+    public static final int Tz_OP = 39;
+    public static final int Tw_OP = 40;
+    public static final int Tr_OP = 41;
+    public static final int TL_OP = 42;
+    public static final int Ts_OP = 43;
+    public static final int TJ_OP = 44;
+    public static final int Tf_OP = 45;
+    public static final int SINGLE_QUOTE_OP = 46;
+    public static final int DOUBLE_QUOTE_OP = 47;
+    public static final int G_OP = 48;
+    public static final int g_OP = 49;
+    public static final int RG_OP = 50;
+    public static final int rg_OP = 51;
+    public static final int K_OP = 52;
+    public static final int k_OP = 53;
+    public static final int CS_OP = 54;
+    public static final int cs_OP = 55;
+    public static final int SC_OP = 56;
+    public static final int SCN_OP = 57;
+    public static final int sc_OP = 58;
+    public static final int scn_OP = 59;
+    public static final int q_OP = 60;
+    public static final int Q_OP = 61;
+    public static final int cm_OP = 62;
+    public static final int i_OP = 63;
+    public static final int J_OP = 64;
+    public static final int j_OP = 65;
+    public static final int d_OP = 66;
+    public static final int w_OP = 67;
+    public static final int LW_OP = 68;
+    public static final int M_OP = 69;
+    public static final int gs_OP = 70;
+    public static final int BI_OP = 71;
+    public static final int ID_OP = 72;
+    public static final int EI_OP = 73;
+    public static final int BPC_OP = 74;
+    public static final int D_OP = 75;
+    public static final int H_OP = 76;
+    public static final int IM_OP = 77;
+    public static final int I_OP = 78;
+    public static final int obj_OP = 79;
+    public static final int endobj_OP = 80;
+    public static final int stream_OP = 81;
+    public static final int endstream_OP = 82;
+    public static final int R_OP = 83;
+    public static final int true_OP = 84;
+    public static final int false_OP = 85;
+    public static final int null_OP = 86;
+    public static final int xref_OP = 87;
+    public static final int trailer_OP = 88;
+    public static final int startxref_OP = 89;
+
+    private static final String[] OPERATOR_TOKENS = {
+            m_TOKEN, l_TOKEN, c_TOKEN, v_TOKEN, y_TOKEN, h_TOKEN, re_TOKEN,
+            S_TOKEN, s_TOKEN, f_TOKEN, F_TOKEN, f_STAR_TOKEN, B_TOKEN, b_TOKEN,
+            B_STAR_TOKEN, b_STAR_TOKEN, Do_TOKEN, n_TOKEN, W_TOKEN,
+            W_STAR_TOKEN, BX_TOKEN, EX_TOKEN, BDC_TOKEN, BMC_TOKEN, EMC_TOKEN,
+            DP_TOKEN, MP_TOKEN, ri_TOKEN, sh_TOKEN, d0_TOKEN, d1_TOKEN,
+            BT_TOKEN, ET_TOKEN, Tm_TOKEN, Td_TOKEN, TD_TOKEN, T_STAR_TOKEN,
+            Tj_TOKEN, Tc_TOKEN, Tz_TOKEN, Tw_TOKEN, Tr_TOKEN, TL_TOKEN,
+            Ts_TOKEN, TJ_TOKEN, Tf_TOKEN, SINGLE_QUOTE_TOKEN,
+            DOUBLE_QUOTE__TOKEN, G_TOKEN, g_TOKEN, RG_TOKEN, rg_TOKEN, K_TOKEN,
+            k_TOKEN, CS_TOKEN, cs_TOKEN, SC_TOKEN, SCN_TOKEN, sc_TOKEN,
+            scn_TOKEN, q_TOKEN, Q_TOKEN, cm_TOKEN, i_TOKEN, J_TOKEN, j_TOKEN,
+            d_TOKEN, w_TOKEN, LW_TOKEN, M_TOKEN, gs_TOKEN, BI_TOKEN, ID_TOKEN,
+            EI_TOKEN, BPC_TOKEN, D_TOKEN, H_TOKEN, IM_TOKEN, I_TOKEN,
+            obj_TOKEN, endobj_TOKEN, stream_TOKEN, endstream_TOKEN, R_TOKEN,
+            true_TOKEN, false_TOKEN, null_TOKEN, xref_TOKEN, trailer_TOKEN,
+            startxref_TOKEN
+    };
+
+    /**
+     * Gets the number of operator codes, all codes are less than this value.
+     *
+     * @return number of operator codes.
+     */
+    public static int getOperatorCount() {
+        return OPERATOR_TOKENS.length;
+    }
+
+    /**
+     * Gets the token of an operator code.
+     *
+     * @param operator operator code, as returned by the Lexer.
+     * @return token of the operator, or null if the code is unknown.
+     */
+    public static String getOperatorToken(int operator) {
+        if (operator < 0 || operator >= OPERATOR_TOKENS.length)
+            return null;
+        return OPERATOR_TOKENS[operator];
+    }
 }
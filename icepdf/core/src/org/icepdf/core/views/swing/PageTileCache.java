@@ -0,0 +1,206 @@
+/*
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * "The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations under
+ * the License.
+ *
+ * The Original Code is ICEpdf 3.0 open source software code, released
+ * May 1st, 2009. The Initial Developer of the Original Code is ICEsoft
+ * Technologies Canada, Corp. Portions created by ICEsoft are Copyright (C)
+ * 2004-2009 ICEsoft Technologies Canada, Corp. All Rights Reserved.
+ *
+ * Contributor(s): _____________________.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"
+ * License), in which case the provisions of the LGPL License are
+ * applicable instead of those above. If you wish to allow use of your
+ * version of this file only under the terms of the LGPL License and not to
+ * allow others to use your version of this file under the MPL, indicate
+ * your decision by deleting the provisions above and replace them with
+ * the notice and other provisions required by the LGPL License. If you do
+ * not delete the provisions above, a recipient may use your version of
+ * this file under either the MPL or the LGPL License."
+ *
+ */
+package org.icepdf.core.views.swing;
+
+import org.icepdf.core.util.Defs;
+import org.icepdf.core.util.MemoryManager;
+
+import java.awt.Image;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of the rendered page tiles of all page views.
+ * A tile is a fixed size square of a page, rendered at one zoom and
+ * rotation, so panning only renders the tiles coming into view and tiles of
+ * other zoom levels can be scaled while the sharp tiles are being rendered.
+ * <p/>
+ * The size of the cache is set with the system property
+ * org.icepdf.core.views.tiles.cachesize in bytes, and the cache is halved
+ * when the MemoryManager finds memory is low.
+ *
+ * @since 3.1
+ */
+class PageTileCache {
+
+    // most bytes of tile images kept
+    private static int maxTileBytes;
+
+    static {
+        maxTileBytes = Defs.sysPropertyInt(
+                "org.icepdf.core.views.tiles.cachesize", 67108864);
+    }
+
+    private static PageTileCache pageTileCache = new PageTileCache();
+
+    // tile images in access order
+    private LinkedHashMap<Key, Image> tiles =
+            new LinkedHashMap<Key, Image>(256, 0.75f, true);
+    private long tileBytes;
+
+    private PageTileCache() {
+    }
+
+    /**
+     * Gets the tile cache shared by all page views.
+     *
+     * @return tile cache.
+     */
+    static PageTileCache getInstance() {
+        return pageTileCache;
+    }
+
+    /**
+     * Gets the image of a tile, and marks it as recently used.
+     *
+     * @param key tile key.
+     * @return tile image, null if the tile isn't cached.
+     */
+    synchronized Image get(Key key) {
+        return tiles.get(key);
+    }
+
+    /**
+     * Indicates if a tile is cached, without marking it as recently used.
+     *
+     * @param key tile key.
+     * @return true if the tile is cached.
+     */
+    synchronized boolean contains(Key key) {
+        return tiles.containsKey(key);
+    }
+
+    /**
+     * Adds the image of a rendered tile, and drops the least recently used
+     * tiles to keep within the byte limit.
+     *
+     * @param key   tile key.
+     * @param image rendered tile image.
+     */
+    synchronized void put(Key key, Image image) {
+        Image previous = tiles.put(key, image);
+        if (previous != null) {
+            tileBytes -= getSize(previous);
+            previous.flush();
+        }
+        tileBytes += getSize(image);
+        long limit = maxTileBytes;
+        if (MemoryManager.getInstance().isLowMemory()) {
+            limit = Math.min(limit, tileBytes / 2);
+        }
+        Iterator<Map.Entry<Key, Image>> eldest = tiles.entrySet().iterator();
+        // the tile just rendered is kept, even if it is over the limit
+        while (tileBytes > limit && tiles.size() > 1) {
+            Image tile = eldest.next().getValue();
+            eldest.remove();
+            tileBytes -= getSize(tile);
+            tile.flush();
+        }
+    }
+
+    /**
+     * Removes all the tiles of a page view.
+     *
+     * @param owner page view whose tiles are removed.
+     */
+    synchronized void removeAll(Object owner) {
+        Iterator<Map.Entry<Key, Image>> entries = tiles.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<Key, Image> entry = entries.next();
+            if (entry.getKey().owner == owner) {
+                entries.remove();
+                tileBytes -= getSize(entry.getValue());
+                entry.getValue().flush();
+            }
+        }
+    }
+
+    private static long getSize(Image image) {
+        return (long) image.getWidth(null) * image.getHeight(null) * 4;
+    }
+
+    /**
+     * Page view, content generation, zoom, rotation, column and row of a
+     * tile.
+     */
+    static class Key {
+        private Object owner;
+        private int generation;
+        private float zoom;
+        private float rotation;
+        private int column;
+        private int row;
+
+        Key(Object owner, int generation, float zoom, float rotation,
+            int column, int row) {
+            this.owner = owner;
+            this.generation = generation;
+            this.zoom = zoom;
+            this.rotation = rotation;
+            this.column = column;
+            this.row = row;
+        }
+
+        float getZoom() {
+            return zoom;
+        }
+
+        float getRotation() {
+            return rotation;
+        }
+
+        int getGeneration() {
+            return generation;
+        }
+
+        public int hashCode() {
+            int h = System.identityHashCode(owner);
+            h = 31 * h + generation;
+            h = 31 * h + Float.floatToIntBits(zoom);
+            h = 31 * h + Float.floatToIntBits(rotation);
+            h = 31 * h + column;
+            return 31 * h + row;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return owner == k.owner && generation == k.generation &&
+                    zoom == k.zoom && rotation == k.rotation &&
+                    column == k.column && row == k.row;
+        }
+    }
+}
@@ -51,7 +51,13 @@ import javax.swing.event.MouseInputListener;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.geom.*;
+import java.awt.image.BufferedImage;
 import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.Vector;
 import java.util.logging.Logger;
 import java.util.logging.Level;
@@ -84,6 +90,14 @@ import java.util.logging.Level;
  *      "org.icepdf.core.views.buffersize.horizontal".  These system
  *      properties define the vertical and horizontal ratios in which the current
  *      viewport will be extended to define the buffer size.</p>
+ *      <p/>
+ *      <p>By default the page is instead rendered in square tiles, whose size is
+ *      set with the system property "org.icepdf.core.views.tiles.size".  Tiles are
+ *      rendered in parallel on the page painter threads and kept in a cache shared
+ *      by all page views, so panning only renders the tiles coming into view.
+ *      While the tiles of a new zoom level are rendered, the tiles of the nearest
+ *      zoom level painted before are shown scaled.  The single buffer is used
+ *      when "org.icepdf.core.views.tiles.enabled" is false.</p>
  * @since 2.5
  */
 public class PageViewComponentImpl extends
@@ -190,6 +204,27 @@ public class PageViewComponentImpl extends
     // horizontal  scale factor to extend buffer
     private static double horizontalScaleFactor;
 
+    // render the page in tiles rather than in one buffer
+    private static boolean isTiledRendering;
+    // width and height of the tiles
+    private static int tileSize;
+    // number of zoom levels whose tiles can be shown scaled
+    private static final int MAX_TILE_ZOOMS = 4;
+
+    // tiles queued for rendering
+    private final HashSet<PageTileCache.Key> pendingTiles =
+            new HashSet<PageTileCache.Key>();
+    // zoom levels most recently painted, newest first
+    private LinkedList<Float> tileZooms = new LinkedList<Float>();
+    // zoom, rotation and area of the tiles currently wanted
+    private volatile float tileZoom;
+    private volatile float tileRotation;
+    private volatile Rectangle tileViewport = new Rectangle();
+    // changed when the page content changes, older tiles are stale
+    private volatile int tileGeneration;
+    // true if tiles couldn't be queued as the page wasn't initialized
+    private volatile boolean isTileRequestNeeded;
+
     // annotation support
     private Annotation currentAnnotation;
     private boolean isMousePressed = false;
@@ -209,6 +244,14 @@ public class PageViewComponentImpl extends
         } catch (NumberFormatException e) {
             logger.warning("Error reading buffered scale factor");
         }
+
+        isTiledRendering = Defs.sysPropertyBoolean(
+                "org.icepdf.core.views.tiles.enabled", true);
+        tileSize = Defs.sysPropertyInt(
+                "org.icepdf.core.views.tiles.size", 256);
+        if (tileSize < 16) {
+            tileSize = 16;
+        }
     }
 
 
@@ -276,6 +319,9 @@ public class PageViewComponentImpl extends
             page.reduceMemory();
             pageTree.releasePage(page, this);
             currentZoom = -1;
+            // tiles of the old content are no longer shown
+            tileGeneration++;
+            PageTileCache.getInstance().removeAll(this);
         }
     }
 
@@ -298,6 +344,7 @@ public class PageViewComponentImpl extends
                 pageBufferImage.flush();
             }
         }
+        PageTileCache.getInstance().removeAll(this);
 
         inited = false;
     }
@@ -362,8 +409,12 @@ public class PageViewComponentImpl extends
 
         if (bufferedPageImageReference != null) {
             Image pageBufferImage = bufferedPageImageReference.get();
+            // draw the page tiles
+            if (isTiledRendering) {
+                paintTiles(g);
+            }
             // draw the clean buffer
-            if (pageBufferImage != null && !isPageStateDirty()) {
+            else if (pageBufferImage != null && !isPageStateDirty()) {
                 // block, if copy area is being done in painter thread
                 synchronized (paintCopyAreaLock) {
                     g.drawImage(pageBufferImage, bufferedPageImageBounds.x,
@@ -998,6 +1049,170 @@ public class PageViewComponentImpl extends
         }
     }
 
+    /**
+     * Paints the cached tiles of the page at the current zoom and rotation,
+     * and queues the rendering of the missing tiles in and around the visible
+     * area.  Missing tiles are painted scaled from the nearest zoom level
+     * with cached tiles until they have been rendered.
+     *
+     * @param g graphics context of the component, clipped to the page.
+     */
+    private void paintTiles(Graphics2D g) {
+        float zoom = documentViewModel.getViewZoom();
+        float rotation = documentViewModel.getViewRotation();
+        int generation = tileGeneration;
+        Rectangle pageArea = new Rectangle(0, 0, pageSize.width, pageSize.height);
+        Rectangle clip = g.getClipBounds();
+        clip = clip != null ? clip.intersection(pageArea) : pageArea;
+
+        // remember the zoom levels painted, for showing scaled tiles
+        Float zoomLevel = zoom;
+        tileZooms.remove(zoomLevel);
+        tileZooms.addFirst(zoomLevel);
+        if (tileZooms.size() > MAX_TILE_ZOOMS) {
+            tileZooms.removeLast();
+        }
+        tileZoom = zoom;
+        tileRotation = rotation;
+
+        PageTileCache tileCache = PageTileCache.getInstance();
+        if (!clip.isEmpty()) {
+            int lastColumn = (clip.x + clip.width - 1) / tileSize;
+            int lastRow = (clip.y + clip.height - 1) / tileSize;
+            for (int row = clip.y / tileSize; row <= lastRow; row++) {
+                for (int column = clip.x / tileSize; column <= lastColumn; column++) {
+                    Image tile = tileCache.get(new PageTileCache.Key(
+                            this, generation, zoom, rotation, column, row));
+                    if (tile != null) {
+                        g.drawImage(tile, column * tileSize, row * tileSize, this);
+                    } else {
+                        paintScaledTile(g, getTileBounds(column, row, pageArea),
+                                generation, zoom, rotation);
+                    }
+                }
+            }
+        }
+
+        // queue the missing tiles, the visible ones first and then the ones
+        // next to them so short pans find them rendered.
+        Rectangle visible = getVisibleRect().intersection(pageArea);
+        Rectangle wanted = new Rectangle(visible);
+        wanted.grow(tileSize, tileSize);
+        wanted = wanted.intersection(pageArea);
+        tileViewport = wanted;
+        Page page = pageTree.getPage(pageIndex, this);
+        if (page != null && page.isInitiated()) {
+            requestTiles(visible, pageArea, generation, zoom, rotation);
+            requestTiles(wanted, pageArea, generation, zoom, rotation);
+        } else {
+            isTileRequestNeeded = true;
+        }
+        pageTree.releasePage(page, this);
+    }
+
+    /**
+     * Paints the area of a missing tile with the cached tiles of the nearest
+     * zoom level painted before, scaled to the current zoom.
+     *
+     * @param g          graphics context of the component.
+     * @param bounds     bounds of the missing tile.
+     * @param generation content generation of the tiles.
+     * @param zoom       current zoom.
+     * @param rotation   current rotation.
+     */
+    private void paintScaledTile(Graphics2D g, Rectangle bounds, int generation,
+                                 final float zoom, float rotation) {
+        ArrayList<Float> zoomLevels = new ArrayList<Float>(tileZooms);
+        zoomLevels.remove(zoom);
+        Collections.sort(zoomLevels, new Comparator<Float>() {
+            public int compare(Float zoom1, Float zoom2) {
+                return Double.compare(Math.abs(Math.log(zoom1 / zoom)),
+                        Math.abs(Math.log(zoom2 / zoom)));
+            }
+        });
+        PageTileCache tileCache = PageTileCache.getInstance();
+        for (Float zoomLevel : zoomLevels) {
+            // the bounds of the missing tile at the other zoom level
+            double scale = zoomLevel / zoom;
+            int x1 = (int) Math.floor(bounds.x * scale);
+            int y1 = (int) Math.floor(bounds.y * scale);
+            int x2 = (int) Math.ceil((bounds.x + bounds.width) * scale);
+            int y2 = (int) Math.ceil((bounds.y + bounds.height) * scale);
+            Graphics2D scaledGraphics = null;
+            for (int row = y1 / tileSize; row <= (y2 - 1) / tileSize; row++) {
+                for (int column = x1 / tileSize; column <= (x2 - 1) / tileSize; column++) {
+                    Image tile = tileCache.get(new PageTileCache.Key(
+                            this, generation, zoomLevel, rotation, column, row));
+                    if (tile != null) {
+                        if (scaledGraphics == null) {
+                            scaledGraphics = (Graphics2D) g.create();
+                            scaledGraphics.clip(bounds);
+                            scaledGraphics.setRenderingHint(
+                                    RenderingHints.KEY_INTERPOLATION,
+                                    RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                            scaledGraphics.scale(1 / scale, 1 / scale);
+                        }
+                        scaledGraphics.drawImage(tile, column * tileSize,
+                                row * tileSize, null);
+                    }
+                }
+            }
+            if (scaledGraphics != null) {
+                scaledGraphics.dispose();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Queues the rendering of the tiles of an area which aren't cached or
+     * queued already.
+     *
+     * @param area       area of the component whose tiles are needed.
+     * @param pageArea   bounds of the page in the component.
+     * @param generation content generation of the tiles.
+     * @param zoom       current zoom.
+     * @param rotation   current rotation.
+     */
+    private void requestTiles(Rectangle area, Rectangle pageArea, int generation,
+                              float zoom, float rotation) {
+        if (area.isEmpty()) {
+            return;
+        }
+        PageTileCache tileCache = PageTileCache.getInstance();
+        int lastColumn = (area.x + area.width - 1) / tileSize;
+        int lastRow = (area.y + area.height - 1) / tileSize;
+        for (int row = area.y / tileSize; row <= lastRow; row++) {
+            for (int column = area.x / tileSize; column <= lastColumn; column++) {
+                PageTileCache.Key key = new PageTileCache.Key(
+                        this, generation, zoom, rotation, column, row);
+                synchronized (pendingTiles) {
+                    if (pendingTiles.contains(key) || tileCache.contains(key)) {
+                        continue;
+                    }
+                    pendingTiles.add(key);
+                }
+                try {
+                    documentViewModel.executePagePainter(new TileRenderer(
+                            key, getTileBounds(column, row, pageArea)));
+                }
+                catch (InterruptedException e) {
+                    synchronized (pendingTiles) {
+                        pendingTiles.remove(key);
+                    }
+                    if (logger.isLoggable(Level.FINE)) {
+                        logger.fine("Tile Painter Interrupted: " + pageIndex);
+                    }
+                }
+            }
+        }
+    }
+
+    private Rectangle getTileBounds(int column, int row, Rectangle pageArea) {
+        return new Rectangle(column * tileSize, row * tileSize,
+                tileSize, tileSize).intersection(pageArea);
+    }
+
     private void addPageRepaintListener() {
 
         Page currentPage = pageTree.getPage(pageIndex, this);
@@ -1128,6 +1343,75 @@ public class PageViewComponentImpl extends
         }
     }
 
+    /**
+     * Renders one tile of the page on the page painter thread pool, and adds
+     * it to the tile cache.
+     */
+    private class TileRenderer implements Runnable {
+
+        private PageTileCache.Key key;
+        private Rectangle bounds;
+
+        private TileRenderer(PageTileCache.Key key, Rectangle bounds) {
+            this.key = key;
+            this.bounds = bounds;
+        }
+
+        public void run() {
+            try {
+                // skip tiles which are no longer wanted, the zoom may have
+                // changed or the tile scrolled out of view while queued.
+                if (disposing || key.getZoom() != tileZoom ||
+                        key.getRotation() != tileRotation ||
+                        key.getGeneration() != tileGeneration ||
+                        !bounds.intersects(tileViewport) ||
+                        !MemoryManager.getInstance().checkMemory(
+                                bounds.width * bounds.height * 4)) {
+                    return;
+                }
+                BufferedImage tile = new BufferedImage(bounds.width,
+                        bounds.height, BufferedImage.TYPE_INT_RGB);
+                Graphics2D tileGraphics = tile.createGraphics();
+                tileGraphics.setColor(pageColor);
+                tileGraphics.fillRect(0, 0, bounds.width, bounds.height);
+                // paint the area of the page covered by the tile
+                tileGraphics.translate(-bounds.x, -bounds.y);
+                tileGraphics.setClip(bounds);
+                Page page = pageTree.getPage(pageIndex, this);
+                if (page != null) {
+                    page.paint(tileGraphics,
+                            GraphicsRenderingHints.SCREEN,
+                            mediaBox,
+                            key.getRotation(),
+                            key.getZoom(),
+                            null, false);
+                }
+                pageTree.releasePage(page, this);
+                tileGraphics.dispose();
+                if (page == null || disposing) {
+                    return;
+                }
+                PageTileCache.getInstance().put(key, tile);
+                Runnable doSwingWork = new Runnable() {
+                    public void run() {
+                        if (!disposing)
+                            repaint(bounds);
+                    }
+                };
+                SwingUtilities.invokeLater(doSwingWork);
+            }
+            catch (Throwable e) {
+                logger.log(Level.FINE,
+                        "Error rendering tile, page: " + pageIndex, e);
+            }
+            finally {
+                synchronized (pendingTiles) {
+                    pendingTiles.remove(key);
+                }
+            }
+        }
+    }
+
     private class PageInitilizer implements Runnable {
 
         private boolean isRunning;
@@ -1221,9 +1505,18 @@ public class PageViewComponentImpl extends
                     }
                 }
 
+                // tiles are queued when the page is painted, so paint again
+                // once the page is initialized
+                if (isTiledRendering && isTileRequestNeeded &&
+                        page != null && page.isInitiated()) {
+                    isTileRequestNeeded = false;
+                    repaint();
+                }
+
                 // paint page content
-                boolean isBufferDirty = isBufferDirty();
-                if (page != null &&
+                boolean isBufferDirty = !isTiledRendering && isBufferDirty();
+                if (!isTiledRendering &&
+                        page != null &&
                         !pageInitilizer.isRunning() &&
                         page.isInitiated() &&
                         !pagePainter.isRunning() &&
@@ -1245,7 +1538,8 @@ public class PageViewComponentImpl extends
                 }
 
                 // paint page content
-                if (page != null &&
+                if (!isTiledRendering &&
+                        page != null &&
                         !pageInitilizer.isRunning() &&
                         page.isInitiated() &&
                         !pagePainter.hasBeenQueued() &&
@@ -33,13 +33,14 @@
 package org.icepdf.ri.util;
 
 import org.icepdf.core.pobjects.Document;
+import org.icepdf.core.pobjects.TextIndex;
 import org.icepdf.ri.common.SearchPanel;
 import org.icepdf.ri.common.SwingWorker;
 
 import java.text.ChoiceFormat;
 import java.text.Format;
 import java.text.MessageFormat;
-import java.util.Enumeration;
+import java.util.List;
 import java.util.ResourceBundle;
 
 /**
@@ -164,115 +165,72 @@ public class SearchTextTask {
         ActualTask() {
             try {
                 currentlySearching = true;
-                // Extraction of text from pdf procedure
                 totalHitCount = 0;
                 current = 0;
-                for (int i = 0; i < document.getNumberOfPages(); i++) {
-                    // break if needed
+                // the document's text index is built in the background the
+                // first time, its progress is shown as the search progress
+                TextIndex textIndex = document.getTextIndex();
+                while (!textIndex.waitForCompletion(100)) {
                     if (canceled || done) {
                         setDialogMessage();
-                        break;
+                        return;
                     }
+                    current = Math.max(0, Math.min(lengthOfTask - 1,
+                            textIndex.getPagesIndexed()));
+                    setSearchingMessage();
+                }
+                if (canceled || done) {
+                    setDialogMessage();
+                    return;
+                }
 
-                    // Update task information
-                    current = i;
+                // count the hits of each page, the hits are in page order
+                List<TextIndex.Hit> hits = textIndex.search(pattern, 0).getHits();
+                for (int i = 0, max = hits.size(); i < max;) {
+                    int pageNumber = hits.get(i).getPageNumber();
+                    int hitCount = 0;
+                    while (i < max && hits.get(i).getPageNumber() == pageNumber) {
+                        hitCount++;
+                        i++;
+                    }
+                    current = pageNumber;
+                    // update total hit count
+                    totalHitCount += hitCount;
 
                     // Build Internationalized plural phrase.
                     MessageFormat messageForm =
                             new MessageFormat(messageBundle.getString(
-                                    "viewer.utilityPane.search.searching1.msg"));
-                    double[] fileLimits = {0, 1, 2};
-                    String[] fileStrings = {
+                                    "viewer.utilityPane.search.result.msg"));
+                    double[] fileLimits = new double[]{0, 1, 2};
+                    String[] fileStrings = new String[]{
                             messageBundle.getString(
-                                    "viewer.utilityPane.search.searching1.moreFile.msg"),
+                                    "viewer.utilityPane.search.result.moreFile.msg"),
                             messageBundle.getString(
-                                    "viewer.utilityPane.search.searching1.oneFile.msg"),
+                                    "viewer.utilityPane.search.result.oneFile.msg"),
                             messageBundle.getString(
-                                    "viewer.utilityPane.search.searching1.moreFile.msg"),
+                                    "viewer.utilityPane.search.result.moreFile.msg"),
                     };
                     ChoiceFormat choiceForm = new ChoiceFormat(fileLimits,
                             fileStrings);
-                    Format[] formats = {null, choiceForm, null};
+                    Format[] formats = new Format[]{null, choiceForm};
                     messageForm.setFormats(formats);
-                    Object[] messageArguments = {String.valueOf((current + 1)),
-                            new Integer(lengthOfTask), new Integer(lengthOfTask)};
-
-                    dialogMessage = messageForm.format(messageArguments);
-
-                    Enumeration pageText = document.getPageText(i).elements();
-                    // hits per page count
-                    int hitCount = 0;
+                    Object[] messageArguments = new Object[]{String.valueOf((current + 1)),
+                            new Integer(hitCount), new Integer(hitCount)};
 
-                    while (pageText.hasMoreElements()) {
-                        if (canceled || done) {
-                            setDialogMessage();
-                            break;
-                        }
-                        // do text string comparison
-                        String text =
-                                pageText.nextElement().toString().toLowerCase();
-                        if (!"".equals(text) && !"".equals(pattern)) {
-                            int offset = 0;
-                            // iterate through PDF text looking for pattern
-                            while (offset >= 0 && offset <= pattern.length()) {
-
-                                // break for cancelation of task
-                                if (canceled || done) {
-                                    setDialogMessage();
-                                    break;
-                                }
-                                // stop if there is no search pattern
-                                if (text.length() < pattern.length()) {
-                                    setDialogMessage();
-                                    break;
-                                }
-
-                                offset = text.indexOf(pattern.toLowerCase());
-                                if (offset < 0) {
-                                    setDialogMessage();
-                                    break;
-                                } else {
-                                    text = text.substring(offset + pattern.length());
-                                    hitCount++;
-                                }
-                            }
-                        }
-                    }
-                    // update total hit count
-                    totalHitCount += hitCount;
-                    if (hitCount > 0) {
-
-                        // Build Internationalized plural phrase.
-                        messageForm =
-                                new MessageFormat(messageBundle.getString(
-                                        "viewer.utilityPane.search.result.msg"));
-                        fileLimits = new double[]{0, 1, 2};
-                        fileStrings = new String[]{
-                                messageBundle.getString(
-                                        "viewer.utilityPane.search.result.moreFile.msg"),
-                                messageBundle.getString(
-                                        "viewer.utilityPane.search.result.oneFile.msg"),
-                                messageBundle.getString(
-                                        "viewer.utilityPane.search.result.moreFile.msg"),
-                        };
-                        choiceForm = new ChoiceFormat(fileLimits,
-                                fileStrings);
-                        formats = new Format[]{null, choiceForm};
-                        messageForm.setFormats(formats);
-                        messageArguments = new Object[]{String.valueOf((current + 1)),
-                                new Integer(hitCount), new Integer(hitCount)};
-
-                        searchPanel.addFoundEntry(
-                                messageForm.format(messageArguments),
-                                current);
-                    }
-                    Thread.yield();
+                    searchPanel.addFoundEntry(
+                            messageForm.format(messageArguments),
+                            current);
                 }
+                current = Math.max(0, lengthOfTask - 1);
                 // update the dialog and end the task
                 setDialogMessage();
 
                 done = true;
             }
+            catch (InterruptedException e) {
+                canceled = true;
+                setDialogMessage();
+            }
             finally {
                 currentlySearching = false;
             }
@@ -287,6 +245,35 @@ public class SearchTextTask {
         return dialogMessage;
     }
 
+    /**
+     * Utility method for setting the dialog message while the pages are
+     * searched.
+     */
+    private void setSearchingMessage() {
+
+        // Build Internationalized plural phrase.
+        MessageFormat messageForm =
+                new MessageFormat(messageBundle.getString(
+                        "viewer.utilityPane.search.searching1.msg"));
+        double[] fileLimits = {0, 1, 2};
+        String[] fileStrings = {
+                messageBundle.getString(
+                        "viewer.utilityPane.search.searching1.moreFile.msg"),
+                messageBundle.getString(
+                        "viewer.utilityPane.search.searching1.oneFile.msg"),
+                messageBundle.getString(
+                        "viewer.utilityPane.search.searching1.moreFile.msg"),
+        };
+        ChoiceFormat choiceForm = new ChoiceFormat(fileLimits,
+                fileStrings);
+        Format[] formats = {null, choiceForm, null};
+        messageForm.setFormats(formats);
+        Object[] messageArguments = {String.valueOf((current + 1)),
+                new Integer(lengthOfTask), new Integer(lengthOfTask)};
+
+        dialogMessage = messageForm.format(messageArguments);
+    }
+
     /**
      * Utility method for setting the dialog message.
      */